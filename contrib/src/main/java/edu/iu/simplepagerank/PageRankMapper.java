@@ -101,8 +101,8 @@ public class PageRankMapper extends
         .printLong2DoubleKVTable(globalPRTable);
 
       // all reduce pagerank tables
-      allreduce("harp-pagerank", "allgather_" + i,
-        globalPRTable);
+      allreduceKV("harp-pagerank", "allgather_" + i,
+        globalPRTable, getNumWorkers() * 4);
 
       // update pagerank
       updatePRTable(globalPRTable);
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.Constant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Barrier latency of the central, dissemination
+ * and tree algorithms. All the workers run in
+ * this JVM on the loopback (see LocalCluster),
+ * so the numbers show the number of steps and
+ * messages rather than the network. With fewer cores than workers, the
+ * time follows the number of messages (P log P
+ * for dissemination, 2 (P - 1) for the others)
+ * more than the number of steps.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BarrierBenchmark {
+
+  @Param({"8", "32", "128"})
+  public int numWorkers;
+
+  @Param({Communication.CENTRAL_BARRIER,
+    Communication.DISSEMINATION_BARRIER,
+    Communication.TREE_BARRIER})
+  public String algorithm;
+
+  private LocalCluster cluster;
+  private int count;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    // Measure the TCP path between workers
+    System.setProperty(Constant.SHM_TRANSPORT,
+      "false");
+    cluster = new LocalCluster(numWorkers);
+    count = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cluster.stop();
+  }
+
+  @Benchmark
+  public boolean barrier() throws Exception {
+    final String contextName = "barrier-" + count++;
+    List<Boolean> results = cluster
+      .run((workerID, workers, dataMap) -> {
+        boolean isSuccess = Communication.barrier(
+          contextName, "barrier", algorithm,
+          dataMap, workers);
+        dataMap.cleanData(contextName);
+        return isSuccess;
+      });
+    boolean isSuccess = true;
+    for (boolean result : results) {
+      isSuccess &= result;
+    }
+    return isSuccess;
+  }
+}
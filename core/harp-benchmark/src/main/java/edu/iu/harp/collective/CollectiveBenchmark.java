@@ -0,0 +1,387 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.combiner.DoubleArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Partitioner;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*******************************************************
+ * Run the collectives on workers in this JVM (see
+ * LocalCluster) over a sweep of partition counts
+ * and sizes, and print the latency percentiles
+ * and the bandwidth as CSV. The latency of an
+ * iteration is the time of the slowest worker,
+ * measured after a barrier; the bandwidth is the
+ * table size of one worker divided by the median
+ * latency.
+ *
+ * Usage: CollectiveBenchmark numWorkers
+ * operations numPartitions partitionBytes
+ * numIterations [numWarmups], where operations
+ * is "all" or a comma separated list of
+ * OPERATIONS, and numPartitions and
+ * partitionBytes are comma separated lists. Set
+ * -Dharp.transport.shm=false to measure TCP
+ * instead of the shared-memory rings.
+ ******************************************************/
+public class CollectiveBenchmark {
+
+  private static final Logger LOG =
+    Logger.getLogger(CollectiveBenchmark.class);
+
+  public static final String BROADCAST_CHAIN =
+    "broadcast-chain";
+  public static final String BROADCAST_MST =
+    "broadcast-mst";
+  public static final String REDUCE = "reduce";
+  public static final String ALLREDUCE =
+    "allreduce";
+  public static final String ALLREDUCE_RING =
+    "allreduce-ring";
+  public static final String ALLREDUCE_RABENSEIFNER =
+    "allreduce-rabenseifner";
+  public static final String ALLGATHER =
+    "allgather";
+  public static final String REGROUP = "regroup";
+  public static final String PUSH = "push";
+  public static final String PULL = "pull";
+  public static final String ROTATE = "rotate";
+  public static final String BARRIER = "barrier";
+
+  public static final String[] OPERATIONS =
+    {BROADCAST_CHAIN, BROADCAST_MST, REDUCE,
+      ALLREDUCE, ALLREDUCE_RING,
+      ALLREDUCE_RABENSEIFNER, ALLGATHER, REGROUP,
+      PUSH, PULL, ROTATE, BARRIER};
+
+  private static final int DEFAULT_NUM_WARMUPS = 5;
+
+  private final LocalCluster cluster;
+  private int count;
+
+  public CollectiveBenchmark(LocalCluster cluster) {
+    this.cluster = cluster;
+    this.count = 0;
+  }
+
+  public static void main(String args[])
+    throws Exception {
+    if (args.length < 5) {
+      System.err.println("Usage: "
+        + CollectiveBenchmark.class.getName()
+        + " numWorkers operations numPartitions"
+        + " partitionBytes numIterations"
+        + " [numWarmups]");
+      System.err.println("Operations: all or "
+        + String.join(",", OPERATIONS));
+      System.exit(1);
+    }
+    int numWorkers = Integer.parseInt(args[0]);
+    String[] operations = "all".equals(args[1])
+      ? OPERATIONS : args[1].split(",");
+    int[] numPartitionsList = parseInts(args[2]);
+    int[] partitionBytesList = parseInts(args[3]);
+    int numIterations = Integer.parseInt(args[4]);
+    int numWarmups = args.length > 5
+      ? Integer.parseInt(args[5])
+      : DEFAULT_NUM_WARMUPS;
+    // The collectives log each step at INFO
+    BasicConfigurator.configure();
+    Logger.getRootLogger().setLevel(Level.WARN);
+    LocalCluster cluster =
+      new LocalCluster(numWorkers);
+    CollectiveBenchmark benchmark =
+      new CollectiveBenchmark(cluster);
+    boolean isSuccess = true;
+    System.out.println("operation,workers,"
+      + "partitions,partitionBytes,iterations,"
+      + "p50Millis,p90Millis,p99Millis,maxMillis,"
+      + "bandwidthMBps");
+    try {
+      for (String operation : operations) {
+        // Barrier has no table to sweep
+        boolean hasTable = !BARRIER.equals(operation);
+        for (int numPartitions : hasTable
+          ? numPartitionsList : new int[]{0}) {
+          for (int partitionBytes : hasTable
+            ? partitionBytesList : new int[]{0}) {
+            long[] times = benchmark.run(operation,
+              numPartitions, partitionBytes,
+              numIterations, numWarmups);
+            if (times == null) {
+              isSuccess = false;
+              continue;
+            }
+            System.out.println(format(operation,
+              numWorkers, numPartitions,
+              partitionBytes, times));
+          }
+        }
+      }
+    } finally {
+      cluster.stop();
+    }
+    System.exit(isSuccess ? 0 : 1);
+  }
+
+  private static int[] parseInts(String list) {
+    String[] values = list.split(",");
+    int[] ints = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      ints[i] = Integer.parseInt(values[i].trim());
+    }
+    return ints;
+  }
+
+  /**
+   * Run an operation on all the workers
+   *
+   * @param operation
+   *          one of OPERATIONS
+   * @param numPartitions
+   *          the number of partitions in the
+   *          table of a worker
+   * @param partitionBytes
+   *          the size of a partition in bytes
+   * @param numIterations
+   *          the number of measured iterations
+   * @param numWarmups
+   *          the number of iterations before
+   *          measuring
+   * @return the sorted latencies of the
+   *         iterations in nanoseconds, null if
+   *         failed
+   * @throws Exception
+   *           if a worker throws an exception
+   */
+  public long[] run(final String operation,
+    final int numPartitions,
+    final int partitionBytes, int numIterations,
+    int numWarmups) throws Exception {
+    if (!Arrays.asList(OPERATIONS)
+      .contains(operation)) {
+      LOG.error("Unknown operation: " + operation);
+      return null;
+    }
+    final int numDoubles =
+      Math.max(1, partitionBytes / 8);
+    long[] times = new long[numIterations];
+    for (int i = 0; i < numWarmups
+      + numIterations; i++) {
+      final String contextName =
+        "collective-" + count++;
+      List<Long> results = cluster
+        .run((workerID, workers, dataMap) -> runOperation(
+          contextName, operation, numPartitions,
+          numDoubles, workerID, workers, dataMap));
+      long time = 0L;
+      for (long result : results) {
+        if (result < 0L) {
+          LOG.error("Fail to run " + operation
+            + " with " + numPartitions
+            + " partitions of " + partitionBytes
+            + " bytes.");
+          return null;
+        }
+        time = Math.max(time, result);
+      }
+      if (i >= numWarmups) {
+        times[i - numWarmups] = time;
+      }
+    }
+    Arrays.sort(times);
+    return times;
+  }
+
+  /**
+   * Run the operation on a worker
+   *
+   * @return the time in nanoseconds, -1 if failed
+   */
+  private static long runOperation(
+    String contextName, String operation,
+    int numPartitions, int numDoubles,
+    int workerID, Workers workers,
+    DataMap dataMap) {
+    int numWorkers = workers.getNumWorkers();
+    Table<DoubleArray> table = new Table<>(0,
+      new DoubleArrCombiner(Operation.SUM));
+    Table<DoubleArray> globalTable = new Table<>(1,
+      new DoubleArrCombiner(Operation.SUM));
+    if (operation.equals(ALLGATHER)
+      || operation.equals(ROTATE)) {
+      // Different partitions on each worker
+      addPartitions(table, workerID * numPartitions,
+        numPartitions, 1, numDoubles);
+    } else if (operation.equals(PULL)) {
+      addPartitions(table, 0, numPartitions, 1,
+        numDoubles);
+      addPartitions(globalTable, workerID,
+        numPartitions, numWorkers, numDoubles);
+    } else if (operation.startsWith("broadcast")) {
+      if (workerID == 0) {
+        addPartitions(table, 0, numPartitions, 1,
+          numDoubles);
+      }
+    } else if (!operation.equals(BARRIER)) {
+      addPartitions(table, 0, numPartitions, 1,
+        numDoubles);
+    }
+    boolean isSuccess =
+      Communication.barrier(contextName, "start",
+        dataMap, workers);
+    long startTime = System.nanoTime();
+    if (isSuccess) {
+      isSuccess = runOperation(contextName,
+        operation, table, globalTable, dataMap,
+        workers);
+    }
+    long time = System.nanoTime() - startTime;
+    table.release();
+    globalTable.release();
+    // No data of this context is in flight after
+    // the barrier
+    isSuccess &= Communication.barrier(contextName,
+      "end", dataMap, workers);
+    dataMap.cleanData(contextName);
+    return isSuccess ? time : -1L;
+  }
+
+  private static boolean runOperation(
+    String contextName, String operation,
+    Table<DoubleArray> table,
+    Table<DoubleArray> globalTable,
+    DataMap dataMap, Workers workers) {
+    switch (operation) {
+      case BROADCAST_CHAIN:
+        return BcastCollective.broadcast(
+          contextName, operation, table, 0, false,
+          dataMap, workers);
+      case BROADCAST_MST:
+        return BcastCollective.broadcast(
+          contextName, operation, table, 0, true,
+          dataMap, workers);
+      case REDUCE:
+        return ReduceCollective.reduce(contextName,
+          operation, table, 0, dataMap, workers);
+      case ALLREDUCE:
+        return AllreduceCollective.allreduce(
+          contextName, operation, table, dataMap,
+          workers);
+      case ALLREDUCE_RING:
+        return AllreduceCollective.allreduce(
+          contextName, operation, table, dataMap,
+          workers, AllreduceCollective.RING, 0L);
+      case ALLREDUCE_RABENSEIFNER:
+        return AllreduceCollective.allreduce(
+          contextName, operation, table, dataMap,
+          workers, AllreduceCollective.RABENSEIFNER,
+          0L);
+      case ALLGATHER:
+        return AllgatherCollective.allgather(
+          contextName, operation, table, dataMap,
+          workers);
+      case REGROUP:
+        return RegroupCollective.regroupCombine(
+          contextName, operation, table,
+          new Partitioner(workers.getNumWorkers()),
+          dataMap, workers);
+      case PUSH:
+        return LocalGlobalSyncCollective.push(
+          contextName, operation, table,
+          globalTable,
+          new Partitioner(workers.getNumWorkers()),
+          dataMap, workers);
+      case PULL:
+        return LocalGlobalSyncCollective.pull(
+          contextName, operation, table,
+          globalTable, false, dataMap, workers);
+      case ROTATE:
+        return LocalGlobalSyncCollective.rotate(
+          contextName, operation, table, null,
+          dataMap, workers);
+      default:
+        return Communication.barrier(contextName,
+          operation, dataMap, workers);
+    }
+  }
+
+  private static void addPartitions(
+    Table<DoubleArray> table, int firstID,
+    int numPartitions, int step, int numDoubles) {
+    for (int i = 0; i < numPartitions; i++) {
+      int partitionID = firstID + i * step;
+      if (step > 1 && partitionID >= numPartitions) {
+        break;
+      }
+      DoubleArray array =
+        DoubleArray.create(numDoubles, false);
+      Arrays.fill(array.get(), 0, numDoubles,
+        partitionID);
+      table.addPartition(
+        new Partition<>(partitionID, array));
+    }
+  }
+
+  /**
+   * Format the result as a CSV line
+   */
+  private static String format(String operation,
+    int numWorkers, int numPartitions,
+    int partitionBytes, long[] times) {
+    double median = percentile(times, 0.5);
+    double numMegaBytes =
+      (double) numPartitions * partitionBytes
+        / (1024 * 1024);
+    double bandwidth = median > 0.0
+      ? numMegaBytes / (median / 1e9) : 0.0;
+    return String.format(
+      "%s,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.2f",
+      operation, numWorkers, numPartitions,
+      partitionBytes, times.length,
+      median / 1e6, percentile(times, 0.9) / 1e6,
+      percentile(times, 0.99) / 1e6,
+      times.length == 0 ? 0.0
+        : times[times.length - 1] / 1e6,
+      bandwidth);
+  }
+
+  /**
+   * Get a percentile of sorted values by the
+   * nearest rank
+   */
+  static double percentile(long[] sorted,
+    double fraction) {
+    if (sorted.length == 0) {
+      return 0.0;
+    }
+    int rank = (int) Math.ceil(fraction * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.server.NioServer;
+import edu.iu.harp.server.Transport;
+import edu.iu.harp.worker.Workers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*******************************************************
+ * Workers on the loopback in this JVM, each with
+ * its own NioServer and DataMap, for running
+ * collectives without Hadoop or YARN
+ ******************************************************/
+public class LocalCluster {
+
+  /*******************************************************
+   * The work of a worker in a run
+   ******************************************************/
+  public interface WorkerTask<T> {
+    T run(int workerID, Workers workers,
+      DataMap dataMap) throws Exception;
+  }
+
+  private final int numWorkers;
+  private final List<Workers> workersList;
+  private final List<DataMap> dataMaps;
+  private final List<Transport> servers;
+  private final ExecutorService executor;
+
+  /**
+   * Start the servers of the workers
+   *
+   * @param numWorkers
+   *          the number of workers
+   * @throws Exception
+   *           if a server fails to start
+   */
+  public LocalCluster(int numWorkers)
+    throws Exception {
+    this.numWorkers = numWorkers;
+    List<String> hosts = new ArrayList<>();
+    for (int i = 0; i < numWorkers; i++) {
+      hosts.add("127.0.0.1");
+    }
+    Map<Integer, List<String>> nodes =
+      new HashMap<>();
+    nodes.put(0, hosts);
+    LinkedList<Integer> rackIDs =
+      new LinkedList<>();
+    rackIDs.add(0);
+    workersList = new ArrayList<>();
+    dataMaps = new ArrayList<>();
+    servers = new ArrayList<>();
+    for (int i = 0; i < numWorkers; i++) {
+      Workers workers =
+        new Workers(nodes, rackIDs, 1, i);
+      DataMap dataMap = new DataMap();
+      Transport server = new NioServer(
+        workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(),
+        new EventQueue(), dataMap, workers, 1);
+      server.start();
+      workersList.add(workers);
+      dataMaps.add(dataMap);
+      servers.add(server);
+    }
+    executor =
+      Executors.newFixedThreadPool(numWorkers);
+  }
+
+  public int getNumWorkers() {
+    return numWorkers;
+  }
+
+  /**
+   * Run the task on all the workers at the same
+   * time and wait for them
+   *
+   * @param task
+   *          the task
+   * @return the results in the order of worker
+   *         IDs
+   * @throws Exception
+   *           if a task throws an exception
+   */
+  public <T> List<T> run(final WorkerTask<T> task)
+    throws Exception {
+    List<Future<T>> futures =
+      new ArrayList<>(numWorkers);
+    for (int i = 0; i < numWorkers; i++) {
+      final int workerID = i;
+      futures.add(executor.submit(
+        () -> task.run(workerID,
+          workersList.get(workerID),
+          dataMaps.get(workerID))));
+    }
+    List<T> results = new ArrayList<>(numWorkers);
+    for (Future<T> future : futures) {
+      results.add(future.get());
+    }
+    return results;
+  }
+
+  /**
+   * Stop the workers
+   */
+  public void stop() {
+    executor.shutdownNow();
+    // Close the connections before stopping the
+    // servers
+    ConnPool.get().clean();
+    for (Transport server : servers) {
+      server.stop();
+    }
+  }
+}
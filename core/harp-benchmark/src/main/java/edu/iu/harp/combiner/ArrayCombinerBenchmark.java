@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.combiner;
+
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.LongArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Combine two arrays with the array combiners,
+ * the inner loop of allreduce, reduce and
+ * regroup. The doubles stay close to 1, so
+ * repeated MULTIPLY doesn't reach infinity or
+ * denormals within a run. The scalar benchmarks
+ * run the combiners as they were before the
+ * specialised loops, the largest size is
+ * combined in parallel blocks.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArrayCombinerBenchmark {
+
+  @Param({"SUM", "MAX", "MIN", "MULTIPLY"})
+  public Operation operation;
+
+  @Param({"1024", "65536", "4194304"})
+  public int size;
+
+  private DoubleArray curDoubles;
+  private DoubleArray newDoubles;
+  private IntArray curInts;
+  private IntArray newInts;
+  private LongArray curLongs;
+  private LongArray newLongs;
+  private DoubleArrCombiner doubleCombiner;
+  private IntArrCombiner intCombiner;
+  private LongArrCombiner longCombiner;
+  private ScalarArrCombiners.Doubles scalarDoubleCombiner;
+  private ScalarArrCombiners.Ints scalarIntCombiner;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    double[] doubles1 = new double[size];
+    double[] doubles2 = new double[size];
+    int[] ints1 = new int[size];
+    int[] ints2 = new int[size];
+    long[] longs1 = new long[size];
+    long[] longs2 = new long[size];
+    for (int i = 0; i < size; i++) {
+      doubles1[i] = 1.0 + (i % 7) * 1e-9;
+      doubles2[i] = 1.0 - (i % 5) * 1e-9;
+      ints1[i] = i % 7;
+      ints2[i] = 1 - i % 3;
+      longs1[i] = i % 7;
+      longs2[i] = 1 - i % 3;
+    }
+    curDoubles = new DoubleArray(doubles1, 0, size);
+    newDoubles = new DoubleArray(doubles2, 0, size);
+    curInts = new IntArray(ints1, 0, size);
+    newInts = new IntArray(ints2, 0, size);
+    curLongs = new LongArray(longs1, 0, size);
+    newLongs = new LongArray(longs2, 0, size);
+    doubleCombiner = new DoubleArrCombiner(operation);
+    intCombiner = new IntArrCombiner(operation);
+    longCombiner = new LongArrCombiner(operation);
+    scalarDoubleCombiner =
+      new ScalarArrCombiners.Doubles(operation);
+    scalarIntCombiner =
+      new ScalarArrCombiners.Ints(operation);
+  }
+
+  @Benchmark
+  public PartitionStatus combineDoubles() {
+    return doubleCombiner.combine(curDoubles,
+      newDoubles);
+  }
+
+  @Benchmark
+  public PartitionStatus combineDoublesScalar() {
+    return scalarDoubleCombiner.combine(curDoubles,
+      newDoubles);
+  }
+
+  @Benchmark
+  public PartitionStatus combineInts() {
+    return intCombiner.combine(curInts, newInts);
+  }
+
+  @Benchmark
+  public PartitionStatus combineIntsScalar() {
+    return scalarIntCombiner.combine(curInts,
+      newInts);
+  }
+
+  @Benchmark
+  public PartitionStatus combineLongs() {
+    return longCombiner.combine(curLongs, newLongs);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.combiner;
+
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.resource.DoubleArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Combine two double arrays of pairs, (value,
+ * index) for ARGMAX and ARGMIN and (sum,
+ * compensation) for KAHAN_SUM.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PairCombinerBenchmark {
+
+  @Param({"ARGMAX", "ARGMIN", "KAHAN_SUM"})
+  public Operation operation;
+
+  @Param({"1024", "1048576"})
+  public int numPairs;
+
+  private DoubleArray curPairs;
+  private DoubleArray newPairs;
+  private DoubleArrCombiner combiner;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    double[] pairs1 = new double[numPairs * 2];
+    double[] pairs2 = new double[numPairs * 2];
+    for (int i = 0; i < numPairs; i++) {
+      pairs1[2 * i] = (i * 31) % 17 * 1e-3;
+      pairs1[2 * i + 1] = i;
+      pairs2[2 * i] = (i * 37) % 19 * 1e-3;
+      pairs2[2 * i + 1] = i + 1;
+    }
+    curPairs = new DoubleArray(pairs1, 0, pairs1.length);
+    newPairs = new DoubleArray(pairs2, 0, pairs2.length);
+    combiner = new DoubleArrCombiner(operation);
+  }
+
+  @Benchmark
+  public PartitionStatus combinePairs() {
+    return combiner.combine(curPairs, newPairs);
+  }
+}
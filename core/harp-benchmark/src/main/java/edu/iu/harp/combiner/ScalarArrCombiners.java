@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.combiner;
+
+import edu.iu.harp.partition.PartitionCombiner;
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.IntArray;
+
+/*******************************************************
+ * The array combiners as they were before the
+ * specialised loops, a switch on the operation
+ * and one scalar loop per operation, kept as the
+ * baseline of ArrayCombinerBenchmark.
+ ******************************************************/
+class ScalarArrCombiners {
+
+  static class Doubles
+    extends PartitionCombiner<DoubleArray> {
+    private final Operation operation;
+
+    Doubles(Operation operation) {
+      this.operation = operation;
+    }
+
+    @Override
+    public PartitionStatus combine(
+      DoubleArray curPar, DoubleArray newPar) {
+      double[] arr1 = curPar.get();
+      int size1 = curPar.size();
+      double[] arr2 = newPar.get();
+      int size2 = newPar.size();
+      if (size1 != size2) {
+        return PartitionStatus.COMBINE_FAILED;
+      }
+      switch (operation) {
+        case SUM:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] += arr2[i];
+          }
+          break;
+        case MINUS:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] -= arr2[i];
+          }
+          break;
+        case MAX:
+          for (int i = 0; i < size2; i++) {
+            if (arr1[i] < arr2[i]) {
+              arr1[i] = arr2[i];
+            }
+          }
+          break;
+        case MIN:
+          for (int i = 0; i < size2; i++) {
+            if (arr1[i] > arr2[i]) {
+              arr1[i] = arr2[i];
+            }
+          }
+          break;
+        case MULTIPLY:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] *= arr2[i];
+          }
+          break;
+        default:
+          return PartitionStatus.COMBINE_FAILED;
+      }
+      return PartitionStatus.COMBINED;
+    }
+  }
+
+  static class Ints
+    extends PartitionCombiner<IntArray> {
+    private final Operation operation;
+
+    Ints(Operation operation) {
+      this.operation = operation;
+    }
+
+    @Override
+    public PartitionStatus combine(IntArray curPar,
+      IntArray newPar) {
+      int[] arr1 = curPar.get();
+      int size1 = curPar.size();
+      int[] arr2 = newPar.get();
+      int size2 = newPar.size();
+      if (size1 != size2) {
+        return PartitionStatus.COMBINE_FAILED;
+      }
+      switch (operation) {
+        case SUM:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] += arr2[i];
+          }
+          break;
+        case MINUS:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] -= arr2[i];
+          }
+          break;
+        case MAX:
+          for (int i = 0; i < size2; i++) {
+            if (arr1[i] < arr2[i]) {
+              arr1[i] = arr2[i];
+            }
+          }
+          break;
+        case MIN:
+          for (int i = 0; i < size2; i++) {
+            if (arr1[i] > arr2[i]) {
+              arr1[i] = arr2[i];
+            }
+          }
+          break;
+        case MULTIPLY:
+          for (int i = 0; i < size2; i++) {
+            arr1[i] *= arr2[i];
+          }
+          break;
+        default:
+          return PartitionStatus.COMBINE_FAILED;
+      }
+      return PartitionStatus.COMBINED;
+    }
+  }
+}
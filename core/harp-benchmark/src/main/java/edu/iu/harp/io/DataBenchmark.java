@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.Transferable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Encode and decode a partition list of double
+ * arrays, as allreduce and regroup do for every
+ * message. decodeBodyArray starts from a copy of
+ * the encoded arrays, so it includes one copy
+ * of the bytes, like a receiver which reads
+ * them from the socket.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark {
+
+  private static final String CONTEXT = "bench";
+  private static final String OPERATION = "data";
+
+  @State(Scope.Thread)
+  public static class Body {
+    @Param({"16", "256"})
+    public int numPartitions;
+
+    @Param({"128", "8192"})
+    public int partitionSize;
+
+    List<Transferable> partitions;
+    long bodySize;
+    ByteArray bodyArray;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+      partitions = new ArrayList<>(numPartitions);
+      for (int i = 0; i < numPartitions; i++) {
+        double[] doubles = new double[partitionSize];
+        for (int j = 0; j < partitionSize; j++) {
+          // Smooth values, like model parameters
+          doubles[j] = Math.sin(i + j * 0.001);
+        }
+        partitions.add(new Partition<>(i,
+          new DoubleArray(doubles, 0, partitionSize)));
+      }
+      bodySize =
+        DataUtil.getNumTransListBytes(partitions);
+      bodyArray =
+        ByteArray.create((int) bodySize, false);
+      DataUtil.encodeTransList(partitions, bodySize,
+        new Serializer(bodyArray));
+    }
+
+    Data newData() {
+      return new Data(DataType.PARTITION_LIST,
+        CONTEXT, 0, partitions, bodySize,
+        OPERATION);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Encoded {
+    @Param({Compression.NONE, "lz", "delta"})
+    public String codec;
+
+    byte[] headBytes;
+    byte[] bodyBytes;
+
+    @Setup(Level.Trial)
+    public void setup(Body body) {
+      // Compress every body with the codec
+      Compression.configure(codec, 0L, null);
+      Data data = body.newData();
+      // Encode the body first, as Sender does
+      data.encodeBody();
+      data.encodeHead();
+      headBytes = copy(data.getHeadArray());
+      bodyBytes = copy(data.getBodyArray());
+      data.releaseHeadArray();
+      data.releaseBodyArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      Compression.configure(Compression.NONE,
+        Compression.DEFAULT_THRESHOLD, null);
+    }
+
+    private static byte[] copy(ByteArray array) {
+      byte[] bytes = new byte[array.size()];
+      System.arraycopy(array.get(), array.start(),
+        bytes, 0, bytes.length);
+      return bytes;
+    }
+
+    private static ByteArray
+      toByteArray(byte[] bytes) {
+      ByteArray array =
+        ByteArray.create(bytes.length, true);
+      System.arraycopy(bytes, 0, array.get(),
+        array.start(), bytes.length);
+      return array;
+    }
+  }
+
+  @Benchmark
+  public int encodeBody(Body body, Encoded encoded) {
+    Data data = body.newData();
+    data.encodeBody();
+    int size = data.getBodyArray().size();
+    // Keep the partitions, release the bytes
+    data.releaseBodyArray();
+    return size;
+  }
+
+  @Benchmark
+  public int decodeBodyArray(Encoded encoded) {
+    Data data = new Data(
+      Encoded.toByteArray(encoded.headBytes),
+      Encoded.toByteArray(encoded.bodyBytes));
+    data.decodeHeadArray();
+    data.decodeBodyArray();
+    int numPartitions = data.getBody().size();
+    data.release();
+    return numPartitions;
+  }
+
+  @Benchmark
+  public int decodePartitionList(Body body) {
+    List<Transferable> partitions = DataUtil
+      .decodePartitionList(body.bodyArray);
+    int numPartitions = partitions.size();
+    DataUtil.releaseTransList(partitions);
+    return numPartitions;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Write and read primitives through Serializer
+ * and Deserializer, the loops run by every
+ * array encode and decode.
+ ******************************************************/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+  /** The number of values in a loop */
+  @Param({"1024", "262144"})
+  public int size;
+
+  private byte[] bytes;
+  private int[] ints;
+  private long[] longs;
+  private double[] doubles;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    bytes = new byte[size * 8];
+    ints = new int[size];
+    longs = new long[size];
+    doubles = new double[size];
+    for (int i = 0; i < size; i++) {
+      ints[i] = i * 31;
+      longs[i] = i * 6364136223846793005L;
+      doubles[i] = i * 0.5;
+    }
+    // Fill the bytes so reads decode real values
+    writeDoubles();
+  }
+
+  @Benchmark
+  public int writeInts() throws IOException {
+    Serializer serializer =
+      new Serializer(bytes, 0, bytes.length);
+    for (int i = 0; i < size; i++) {
+      serializer.writeInt(ints[i]);
+    }
+    return serializer.getPos();
+  }
+
+  @Benchmark
+  public int readInts() throws IOException {
+    Deserializer deserializer =
+      new Deserializer(bytes, 0, bytes.length);
+    int sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += deserializer.readInt();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int writeLongs() throws IOException {
+    Serializer serializer =
+      new Serializer(bytes, 0, bytes.length);
+    for (int i = 0; i < size; i++) {
+      serializer.writeLong(longs[i]);
+    }
+    return serializer.getPos();
+  }
+
+  @Benchmark
+  public long readLongs() throws IOException {
+    Deserializer deserializer =
+      new Deserializer(bytes, 0, bytes.length);
+    long sum = 0L;
+    for (int i = 0; i < size; i++) {
+      sum += deserializer.readLong();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int writeDoubles() throws IOException {
+    Serializer serializer =
+      new Serializer(bytes, 0, bytes.length);
+    for (int i = 0; i < size; i++) {
+      serializer.writeDouble(doubles[i]);
+    }
+    return serializer.getPos();
+  }
+
+  @Benchmark
+  public double readDoubles() throws IOException {
+    Deserializer deserializer =
+      new Deserializer(bytes, 0, bytes.length);
+    double sum = 0.0;
+    for (int i = 0; i < size; i++) {
+      sum += deserializer.readDouble();
+    }
+    return sum;
+  }
+}
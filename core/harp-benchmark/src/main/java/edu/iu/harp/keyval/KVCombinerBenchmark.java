@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.keyval;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Combine key-value partitions with the
+ * partition combiners of the KV tables, and
+ * merge sorted KVBuckets as the sparse
+ * allreduce does. Half of the new keys are in
+ * the current partition. After the first call
+ * the current partition holds all the keys, so
+ * the hash combiners measure the update path.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KVCombinerBenchmark {
+
+  @Param({"1024", "65536"})
+  public int numKeys;
+
+  private Int2IntKVPartition curIntPartition;
+  private Int2IntKVPartition newIntPartition;
+  private Int2IntKVPartitionCombiner intCombiner;
+  private Long2DoubleKVPartition curDoublePartition;
+  private Long2DoubleKVPartition newDoublePartition;
+  private Long2DoubleKVPartitionCombiner doubleCombiner;
+  private KVBucket curBucket;
+  private KVBucket newBucket;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    curIntPartition = new Int2IntKVPartition();
+    curIntPartition.initialize();
+    newIntPartition = new Int2IntKVPartition();
+    newIntPartition.initialize();
+    curDoublePartition = new Long2DoubleKVPartition();
+    curDoublePartition.initialize();
+    newDoublePartition = new Long2DoubleKVPartition();
+    newDoublePartition.initialize();
+    curBucket = new KVBucket(0, numKeys);
+    newBucket = new KVBucket(0, numKeys);
+    TypeIntCombiner intValCombiner =
+      new TypeIntCombiner();
+    TypeDoubleCombiner doubleValCombiner =
+      new TypeDoubleCombiner();
+    for (int i = 0; i < numKeys; i++) {
+      // Scattered keys, the new ones shifted by
+      // half of the range
+      int curKey = i * 7919;
+      int newKey = (i + numKeys / 2) * 7919;
+      curIntPartition.putKeyVal(curKey, i,
+        intValCombiner);
+      newIntPartition.putKeyVal(newKey, i,
+        intValCombiner);
+      curDoublePartition.putKeyVal(curKey, i,
+        doubleValCombiner);
+      newDoublePartition.putKeyVal(newKey, i,
+        doubleValCombiner);
+      curBucket.add(curKey, i);
+      newBucket.add(newKey, i);
+    }
+    curBucket.sort();
+    newBucket.sort();
+    intCombiner =
+      new Int2IntKVPartitionCombiner(intValCombiner);
+    doubleCombiner = new Long2DoubleKVPartitionCombiner(
+      doubleValCombiner);
+  }
+
+  @Benchmark
+  public int combineInt2Int() {
+    intCombiner.combine(curIntPartition,
+      newIntPartition);
+    return curIntPartition.size();
+  }
+
+  @Benchmark
+  public int combineLong2Double() {
+    doubleCombiner.combine(curDoublePartition,
+      newDoublePartition);
+    return curDoublePartition.size();
+  }
+
+  @Benchmark
+  public int mergeBuckets() {
+    return KVBucket.merge(curBucket, newBucket,
+      Long::sum).size();
+  }
+}
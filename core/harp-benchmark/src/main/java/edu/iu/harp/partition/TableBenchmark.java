@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.partition;
+
+import edu.iu.harp.combiner.DoubleArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.resource.DoubleArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Add received partitions to a table. "merge"
+ * adds partitions whose IDs are in the table,
+ * so each one is combined, as in allreduce and
+ * regroup; "insert" adds them to an empty table.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TableBenchmark {
+
+  @Param({"64", "4096"})
+  public int numPartitions;
+
+  @Param({"16", "1024"})
+  public int partitionSize;
+
+  private Table<DoubleArray> table;
+  private List<Partition<DoubleArray>> partitions;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    table = new Table<>(0,
+      new DoubleArrCombiner(Operation.SUM));
+    partitions = new ArrayList<>(numPartitions);
+    for (int i = 0; i < numPartitions; i++) {
+      table.addPartition(
+        new Partition<>(i, createArray(i)));
+      partitions.add(
+        new Partition<>(i, createArray(i)));
+    }
+  }
+
+  private DoubleArray createArray(int id) {
+    double[] doubles = new double[partitionSize];
+    for (int j = 0; j < partitionSize; j++) {
+      doubles[j] = id + j * 0.5;
+    }
+    return new DoubleArray(doubles, 0,
+      partitionSize);
+  }
+
+  @Benchmark
+  public int merge() {
+    int numCombined = 0;
+    for (Partition<DoubleArray> partition : partitions) {
+      if (table.addPartition(
+        partition) == PartitionStatus.COMBINED) {
+        numCombined++;
+      }
+    }
+    return numCombined;
+  }
+
+  @Benchmark
+  public int insert() {
+    Table<DoubleArray> newTable = new Table<>(0,
+      new DoubleArrCombiner(Operation.SUM));
+    for (Partition<DoubleArray> partition : partitions) {
+      newTable.addPartition(partition);
+    }
+    return newTable.getNumPartitions();
+  }
+}
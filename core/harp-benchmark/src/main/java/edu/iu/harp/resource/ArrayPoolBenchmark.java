@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * Get and release arrays from many threads, as
+ * compute tasks and receivers do. The pools
+ * compared are the synchronized pool, ArrayPool
+ * and ArrayPool without tracking. Run with
+ * "-t" to change the number of threads.
+ ******************************************************/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ArrayPoolBenchmark {
+
+  /** Arrays held by a thread at the same time */
+  private static final int NUM_HELD = 4;
+
+  @State(Scope.Benchmark)
+  public static class Pools {
+    @Param({"synchronized", "tracked",
+      "untracked"})
+    public String pool;
+
+    @Param({"1000", "100000"})
+    public int maxSize;
+
+    SynchronizedDoublesPool synchronizedPool;
+    DoublesPool doublesPool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      synchronizedPool =
+        new SynchronizedDoublesPool();
+      doublesPool = new DoublesPool(
+        !pool.equals("untracked"));
+    }
+
+    double[] getArray(int size) {
+      if (pool.equals("synchronized")) {
+        return synchronizedPool.getArray(size);
+      } else {
+        return doublesPool.getArray(size, true);
+      }
+    }
+
+    void releaseArray(double[] array) {
+      if (pool.equals("synchronized")) {
+        synchronizedPool.releaseArray(array);
+      } else {
+        doublesPool.releaseArray(array);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Sizes {
+    int[] sizes;
+    int next;
+    double[][] held;
+
+    @Setup(Level.Trial)
+    public void setup(Pools pools,
+      ThreadParams params) {
+      // Different sizes in each thread
+      sizes = new int[64];
+      long seed = params.getThreadIndex() + 1;
+      for (int i = 0; i < sizes.length; i++) {
+        seed = seed * 6364136223846793005L
+          + 1442695040888963407L;
+        sizes[i] = 1 + (int) ((seed >>> 33)
+          % pools.maxSize);
+      }
+      next = 0;
+      held = new double[NUM_HELD][];
+    }
+  }
+
+  @Benchmark
+  public void churn(Pools pools, Sizes sizes,
+    Blackhole bh) {
+    for (int i = 0; i < NUM_HELD; i++) {
+      int size = sizes.sizes[sizes.next];
+      sizes.next = (sizes.next + 1)
+        % sizes.sizes.length;
+      double[] array = pools.getArray(size);
+      array[0] = i;
+      sizes.held[i] = array;
+    }
+    for (int i = 0; i < NUM_HELD; i++) {
+      bh.consume(sizes.held[i][0]);
+      pools.releaseArray(sizes.held[i]);
+      sizes.held[i] = null;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+
+/*******************************************************
+ * The pool of double arrays before ArrayPool
+ * became lock-free, one monitor guards the pool
+ * and in-use arrays are always tracked. Only used
+ * as the baseline of ArrayPoolBenchmark.
+ ******************************************************/
+public class SynchronizedDoublesPool {
+
+  private final Int2ObjectOpenHashMap<ArrayStore> arrayMap;
+
+  private static class ArrayStore {
+    private final LinkedList<double[]> freeQueue =
+      new LinkedList<>();
+    private final HashSet<double[]> inUseSet =
+      new HashSet<>();
+  }
+
+  public SynchronizedDoublesPool() {
+    arrayMap = new Int2ObjectOpenHashMap<>();
+  }
+
+  /**
+   * Get an array of the smallest power of 2 size
+   * no less than the size
+   * 
+   * @param size
+   *          the size of array required
+   * @return an array
+   */
+  public synchronized double[] getArray(
+    int size) {
+    int adjustSize = 1 << (32
+      - Integer.numberOfLeadingZeros(size - 1));
+    ArrayStore arrayStore =
+      arrayMap.get(adjustSize);
+    if (arrayStore == null) {
+      arrayStore = new ArrayStore();
+      arrayMap.put(adjustSize, arrayStore);
+    }
+    double[] array;
+    if (arrayStore.freeQueue.isEmpty()) {
+      array = new double[adjustSize];
+    } else {
+      array = arrayStore.freeQueue.removeFirst();
+    }
+    arrayStore.inUseSet.add(array);
+    return array;
+  }
+
+  /**
+   * Release the array
+   * 
+   * @param array
+   *          the array to release
+   * @return true if succeeded, false if failed.
+   */
+  public synchronized boolean releaseArray(
+    double[] array) {
+    ArrayStore arrayStore =
+      arrayMap.get(array.length);
+    if (arrayStore != null
+      && arrayStore.inUseSet.remove(array)) {
+      arrayStore.freeQueue.add(array);
+      return true;
+    } else {
+      return false;
+    }
+  }
+}
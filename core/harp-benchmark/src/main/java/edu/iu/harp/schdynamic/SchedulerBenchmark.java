@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.schdynamic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * One iteration of fine-grained inputs, as in
+ * K-means and LDA: submit all the inputs to a
+ * running scheduler and wait for all the outputs.
+ * The schedulers compared are DynamicScheduler
+ * and WorkStealingScheduler, "work" is the number
+ * of multiply-adds per input.
+ ******************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+
+  private static final int NUM_INPUTS = 10000;
+
+  @Param({"dynamic", "work-stealing"})
+  public String scheduler;
+
+  @Param({"4", "16", "48"})
+  public int numThreads;
+
+  @Param({"100", "10000"})
+  public int work;
+
+  @Param({"true", "false"})
+  public boolean isBatched;
+
+  private DynamicScheduler<double[], Object, CalcTask> dynamicScheduler;
+  private WorkStealingScheduler<double[], Object, CalcTask> stealingScheduler;
+  private List<double[]> inputs;
+
+  /** Null output like most of the compute tasks */
+  private static class CalcTask
+    implements Task<double[], Object> {
+    private double sum = 0.0;
+
+    @Override
+    public Object run(double[] input) {
+      double s = 0.0;
+      for (int i = 0; i < input.length; i++) {
+        s += input[i] * input[i];
+      }
+      sum += s;
+      return null;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    inputs = new ArrayList<>(NUM_INPUTS);
+    for (int i = 0; i < NUM_INPUTS; i++) {
+      double[] input = new double[work];
+      for (int j = 0; j < work; j++) {
+        input[j] = i + j;
+      }
+      inputs.add(input);
+    }
+    List<CalcTask> tasks = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      tasks.add(new CalcTask());
+    }
+    if (scheduler.equals("dynamic")) {
+      dynamicScheduler =
+        new DynamicScheduler<>(tasks);
+      dynamicScheduler.start();
+    } else {
+      stealingScheduler =
+        new WorkStealingScheduler<>(tasks);
+      stealingScheduler.start();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (dynamicScheduler != null) {
+      dynamicScheduler.stop();
+    } else {
+      stealingScheduler.stop();
+    }
+  }
+
+  @Benchmark
+  public int iteration() {
+    int count = 0;
+    if (dynamicScheduler != null) {
+      if (isBatched) {
+        dynamicScheduler.submitAll(inputs);
+      } else {
+        for (double[] input : inputs) {
+          dynamicScheduler.submit(input);
+        }
+      }
+      while (dynamicScheduler.hasOutput()) {
+        dynamicScheduler.waitForOutput();
+        count++;
+      }
+    } else {
+      if (isBatched) {
+        stealingScheduler.submitAll(inputs);
+      } else {
+        for (double[] input : inputs) {
+          stealingScheduler.submit(input);
+        }
+      }
+      while (stealingScheduler.hasOutput()) {
+        stealingScheduler.waitForOutput();
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,4 @@
+package edu.iu.harp.collective.generated;
+public class BarrierBenchmark_jmhType extends BarrierBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package edu.iu.harp.combiner.generated;
+public class ArrayCombinerBenchmark_jmhType extends ArrayCombinerBenchmark_jmhType_B3 {
+}
+
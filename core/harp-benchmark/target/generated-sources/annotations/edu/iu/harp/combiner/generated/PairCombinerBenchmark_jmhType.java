@@ -0,0 +1,4 @@
+package edu.iu.harp.combiner.generated;
+public class PairCombinerBenchmark_jmhType extends PairCombinerBenchmark_jmhType_B3 {
+}
+
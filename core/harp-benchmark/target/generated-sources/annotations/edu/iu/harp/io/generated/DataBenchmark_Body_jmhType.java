@@ -0,0 +1,4 @@
+package edu.iu.harp.io.generated;
+public class DataBenchmark_Body_jmhType extends DataBenchmark_Body_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package edu.iu.harp.io.generated;
+public class DataBenchmark_jmhType extends DataBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package edu.iu.harp.io.generated;
+public class SerializerBenchmark_jmhType extends SerializerBenchmark_jmhType_B3 {
+}
+
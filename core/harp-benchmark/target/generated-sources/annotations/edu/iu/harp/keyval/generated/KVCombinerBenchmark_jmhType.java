@@ -0,0 +1,4 @@
+package edu.iu.harp.keyval.generated;
+public class KVCombinerBenchmark_jmhType extends KVCombinerBenchmark_jmhType_B3 {
+}
+
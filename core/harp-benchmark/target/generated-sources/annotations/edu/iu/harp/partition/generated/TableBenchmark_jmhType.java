@@ -0,0 +1,4 @@
+package edu.iu.harp.partition.generated;
+public class TableBenchmark_jmhType extends TableBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package edu.iu.harp.resource.generated;
+public class ArrayPoolBenchmark_Sizes_jmhType extends ArrayPoolBenchmark_Sizes_jmhType_B3 {
+}
+
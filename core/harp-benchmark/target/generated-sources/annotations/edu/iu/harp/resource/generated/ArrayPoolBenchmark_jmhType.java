@@ -0,0 +1,4 @@
+package edu.iu.harp.resource.generated;
+public class ArrayPoolBenchmark_jmhType extends ArrayPoolBenchmark_jmhType_B3 {
+}
+
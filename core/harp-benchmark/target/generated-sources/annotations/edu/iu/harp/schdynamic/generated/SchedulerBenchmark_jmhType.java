@@ -0,0 +1,4 @@
+package edu.iu.harp.schdynamic.generated;
+public class SchedulerBenchmark_jmhType extends SchedulerBenchmark_jmhType_B3 {
+}
+
@@ -189,6 +189,7 @@ public class DataMSTBcastSender extends DataSender {
             super.sendDataBytes(destConn, opArray,
                     data);
             destConn.release();
+            recordSent(data, destID);
           } catch (IOException e) {
             LOG.error("Fail to send data bytes.",
                     e);
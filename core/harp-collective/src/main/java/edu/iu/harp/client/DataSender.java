@@ -16,17 +16,25 @@
 
 package edu.iu.harp.client;
 
+import edu.iu.harp.io.ChunkPipeline;
 import edu.iu.harp.io.Connection;
+import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.Data;
 import edu.iu.harp.io.DataStatus;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.GatheringSerializer;
 import edu.iu.harp.io.IOUtil;
 import edu.iu.harp.io.Serializer;
+import edu.iu.harp.io.StreamSerializer;
 import edu.iu.harp.resource.ByteArray;
 import edu.iu.harp.worker.Workers;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.Future;
 
 /**
  * The actual sender for sending the data.
@@ -62,12 +70,54 @@ public class DataSender extends Sender {
       throw new IOException("Cannot get op array.");
     }
     try {
-      sendDataBytes(conn, opArray, data);
+      if (isBodyGathered(data)) {
+        gatherDataBytes(conn, opArray, data);
+      } else if (isBodyStreamed(data)) {
+        streamDataBytes(conn, opArray, data);
+      } else {
+        sendDataBytes(conn, opArray, data);
+      }
     } finally {
       opArray.release();
     }
   }
 
+  /**
+   * A large body sent with SEND_DECODE is
+   * streamed and a body with DirectArrays is
+   * gathered, so they are never encoded to one
+   * array. A body to compress is always encoded.
+   */
+  @Override
+  protected boolean isBodyStreamed(Data data) {
+    return isBodyGathered(data)
+            || getCommand() == Constant.SEND_DECODE
+            && !data.isBodyCompressible()
+            && data.getBodyStatus() == DataStatus.DECODED
+            && data.getBodySize() > Constant.PIPELINE_SIZE
+            && (data.getBodyType() == DataType.SIMPLE_LIST
+            || data.getBodyType() == DataType.PARTITION_LIST);
+  }
+
+  /**
+   * A body with DirectArrays sent with SEND or
+   * SEND_DECODE is written with gathering writes,
+   * so the bodies of the DirectArrays are not
+   * copied
+   *
+   * @param data the Data
+   * @return true if the body is gathered
+   */
+  private boolean isBodyGathered(Data data) {
+    return (getCommand() == Constant.SEND
+            || getCommand() == Constant.SEND_DECODE)
+            && data.getBodyStatus() == DataStatus.DECODED
+            && (data.getBodyType() == DataType.SIMPLE_LIST
+            || data.getBodyType() == DataType.PARTITION_LIST)
+            && !data.isBodyCompressible()
+            && DataUtil.hasDirectArray(data.getBody());
+  }
+
   /**
    * Get the size of the head array
    *
@@ -141,6 +191,124 @@ public class DataSender extends Sender {
     }
   }
 
+  /**
+   * Send the data with SEND_STREAM. The body is
+   * encoded into a ring of buffers in another
+   * thread, each buffer is sent once it is
+   * filled.
+   *
+   * @param conn    the Connection object
+   * @param opArray the ByteArray storing the size of
+   *                the head array
+   * @param data    the Data to be sent
+   * @throws Exception
+   */
+  private void streamDataBytes(Connection conn,
+                               final ByteArray opArray, final Data data)
+          throws Exception {
+    final long bodySize = data.getBodySize();
+    final ChunkPipeline pipeline =
+            new ChunkPipeline(Constant.NUM_PIPELINE_BUFFERS,
+                    Constant.PIPELINE_SIZE);
+    if (!pipeline.isValid()) {
+      pipeline.release();
+      throw new IOException("Cannot create pipeline.");
+    }
+    Future<Long> encoder = ChunkPipeline.submit(pipeline,
+            () -> {
+              StreamSerializer serializer =
+                      new StreamSerializer(pipeline);
+              DataUtil.encodeTransList(data.getBody(),
+                      bodySize, serializer);
+              serializer.flush();
+              pipeline.end();
+              return serializer.getNumBytes();
+            });
+    try {
+      OutputStream out = conn.getOutputStream();
+      ByteArray headArray = data.getHeadArray();
+      out.write(Constant.SEND_STREAM);
+      IOUtil.sendBytes(out, opArray.get(), 0,
+              opArray.size());
+      IOUtil.sendBytes(out, headArray.get(), 0,
+              headArray.size());
+      long numBytes = 0L;
+      while (numBytes < bodySize) {
+        ByteArray buffer = pipeline.takeFilled();
+        if (buffer == null) {
+          break;
+        }
+        out.write(buffer.get(), buffer.start(),
+                buffer.size());
+        numBytes += buffer.size();
+        pipeline.putFree(buffer);
+      }
+      out.flush();
+      // Stop the encoder if it writes too much
+      pipeline.fail();
+      if (numBytes != bodySize
+              || encoder.get() != bodySize) {
+        throw new IOException(
+                "Encoded body size does not match.");
+      }
+    } catch (Exception e) {
+      pipeline.fail();
+      throw e;
+    } finally {
+      try {
+        encoder.get();
+      } catch (Exception e) {
+        // Already logged by the pipeline
+      }
+      pipeline.release();
+    }
+  }
+
+  /**
+   * Send the data with gathering writes to the
+   * channel. The body is encoded to a list of
+   * buffers, in which the bodies of DirectArrays
+   * are the direct buffers themselves.
+   *
+   * @param conn    the Connection object
+   * @param opArray the ByteArray storing the size of
+   *                the head array
+   * @param data    the Data to be sent
+   * @throws Exception
+   */
+  private void gatherDataBytes(Connection conn,
+                               final ByteArray opArray, final Data data)
+          throws Exception {
+    GatheringByteChannel channel =
+            conn.getChannel();
+    if (channel == null) {
+      throw new IOException("No channel to write.");
+    }
+    ByteArray headArray = data.getHeadArray();
+    GatheringSerializer serializer =
+            new GatheringSerializer();
+    try {
+      serializer.writeByte(getCommand());
+      serializer.write(opArray.get(),
+              opArray.start(), opArray.size());
+      serializer.write(headArray.get(),
+              headArray.start(), headArray.size());
+      DataUtil.encodeTransList(data.getBody(),
+              data.getBodySize(), serializer);
+      serializer.flush();
+      if (serializer.getNumBytes() != 1
+              + opArray.size() + headArray.size()
+              + data.getBodySize()) {
+        throw new IOException(
+                "Encoded body size does not match.");
+      }
+      IOUtil.writeBuffers(channel,
+              serializer.getBuffers());
+    } finally {
+      serializer.release();
+    }
+  }
+
   /**
    * Send the data body
    *
@@ -157,9 +325,8 @@ public class DataSender extends Sender {
     if (bodyStatus == DataStatus.ENCODED_ARRAY_DECODED
             || bodyStatus == DataStatus.ENCODED_ARRAY
             || bodyStatus == DataStatus.ENCODED_ARRAY_DECODE_FAILED) {
-      ByteArray bodyArray = data.getBodyArray();
-      IOUtil.sendBytes(out, bodyArray.get(),
-              bodyArray.start(), bodyArray.size());
+      IOUtil.sendSegments(out,
+              data.getBodySegments());
     }
   }
 }
@@ -20,6 +20,8 @@ import edu.iu.harp.io.Connection;
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.Data;
 import edu.iu.harp.io.DataStatus;
+import edu.iu.harp.metrics.Metrics;
+import edu.iu.harp.resource.ByteArray;
 import edu.iu.harp.worker.WorkerInfo;
 import edu.iu.harp.worker.Workers;
 import org.apache.log4j.Logger;
@@ -113,19 +115,23 @@ public abstract class Sender {
             .getBodyStatus() == DataStatus.DECODE_FAILED) {
       return false;
     }
+    // Encode body, a streamed body is encoded
+    // while it is sent. The body is encoded
+    // first, the head holds the size of the
+    // compressed body.
     if (data
-            .getHeadStatus() == DataStatus.DECODED) {
-      DataStatus headStatus = data.encodeHead();
-      if (headStatus == DataStatus.ENCODE_FAILED_DECODED) {
+            .getBodyStatus() == DataStatus.DECODED
+            && !isBodyStreamed(data)) {
+      DataStatus bodyStatus = data.encodeBody();
+      if (bodyStatus == DataStatus.ENCODE_FAILED_DECODED) {
+        // No generating encoded data
         return false;
       }
     }
-    // Encode body
     if (data
-            .getBodyStatus() == DataStatus.DECODED) {
-      DataStatus bodyStatus = data.encodeBody();
-      if (bodyStatus == DataStatus.ENCODE_FAILED_DECODED) {
-        // No generating encoded data
+            .getHeadStatus() == DataStatus.DECODED) {
+      DataStatus headStatus = data.encodeHead();
+      if (headStatus == DataStatus.ENCODE_FAILED_DECODED) {
         return false;
       }
     }
@@ -141,6 +147,7 @@ public abstract class Sender {
     try {
       handleData(conn, data);
       conn.release();
+      recordSent(data, destWorkerID);
     } catch (Exception e) {
       LOG.error("Error in sending data.", e);
       conn.free();
@@ -150,6 +157,31 @@ public abstract class Sender {
     return !isFailed;
   }
 
+  /**
+   * Record the Data sent in the metrics
+   *
+   * @param data   the Data
+   * @param destID the destination worker ID
+   */
+  protected void recordSent(Data data, int destID) {
+    if (Metrics.isEnabled()) {
+      long numBytes = data.getHeadArray().size();
+      ByteArray[] bodySegments =
+              data.getBodySegments();
+      if (bodySegments != null) {
+        for (ByteArray segment : bodySegments) {
+          numBytes += segment.size();
+        }
+      } else {
+        // Streamed or gathered
+        numBytes += data.getBodySize();
+      }
+      Metrics.get().recordSent(data.getContextName(),
+              data.getOperationName(), destID,
+              numBytes);
+    }
+  }
+
   /**
    * Get the ID of the destination worker
    *
@@ -177,6 +209,18 @@ public abstract class Sender {
     return this.commandType;
   }
 
+  /**
+   * Check if the body is encoded while it is
+   * sent, instead of being encoded to one array
+   * before sending
+   *
+   * @param data the Data
+   * @return true if the body is streamed
+   */
+  protected boolean isBodyStreamed(Data data) {
+    return false;
+  }
+
   /**
    * Abstract method for handling the data
    *
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.client;
+
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.worker.Workers;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*******************************************************
+ * A bounded pool of threads sending data to
+ * different workers concurrently. Each sending
+ * thread takes the next destination in the given
+ * order and sends all the data to it, so the data
+ * to a destination are encoded and sent by one
+ * thread in the order given, while the data to
+ * different destinations are encoded and sent at
+ * the same time. The calling thread is one of
+ * the sending threads.
+ ******************************************************/
+public class SenderPool {
+
+  private static final Logger LOG =
+    Logger.getLogger(SenderPool.class);
+
+  /** The number of concurrent destinations */
+  public static final String SEND_CONCURRENCY =
+    "harp.send.concurrency";
+  public static final int DEFAULT_CONCURRENCY =
+    Math.min(8, Constant.NUM_THREADS);
+
+  /**
+   * Senders run in dedicated threads, not in the
+   * ForkJoinPool, a sender blocked on a socket
+   * does not hold a computing thread.
+   */
+  private static final ExecutorService executor =
+    Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable,
+        "Harp-Sender");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  private static volatile int concurrency =
+    Math.max(1, Integer.getInteger(
+      SEND_CONCURRENCY, DEFAULT_CONCURRENCY));
+
+  /**
+   * Get the number of destinations sent to
+   * concurrently
+   * 
+   * @return the concurrency
+   */
+  public static int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Set the number of destinations sent to
+   * concurrently, 1 sends one after another in
+   * the calling thread
+   * 
+   * @param numDests
+   *          the concurrency
+   */
+  public static void setConcurrency(int numDests) {
+    concurrency = Math.max(1, numDests);
+  }
+
+  /**
+   * Send each data to the destination at the same
+   * index. The destinations are started in the
+   * order of their first appearance. The head and
+   * body arrays of the data are released after
+   * sending.
+   * 
+   * @param dataList
+   *          the data to send
+   * @param destIDs
+   *          the destination worker IDs
+   * @param workers
+   *          the Workers
+   * @param command
+   *          the command
+   * @return true if all succeeded, false
+   *         otherwise
+   */
+  public static boolean send(List<Data> dataList,
+    int[] destIDs, Workers workers, byte command) {
+    // Group the data by the destination
+    Int2ObjectOpenHashMap<List<Data>> destMap =
+      new Int2ObjectOpenHashMap<>();
+    IntArrayList destOrder = new IntArrayList();
+    int index = 0;
+    for (Data data : dataList) {
+      int destID = destIDs[index++];
+      List<Data> destData = destMap.get(destID);
+      if (destData == null) {
+        destData = new ObjectArrayList<>();
+        destMap.put(destID, destData);
+        destOrder.add(destID);
+      }
+      destData.add(data);
+    }
+    final int[] dests = destOrder.toIntArray();
+    final AtomicInteger next = new AtomicInteger(0);
+    final AtomicBoolean isFailed =
+      new AtomicBoolean(false);
+    Runnable task = () -> {
+      int i;
+      while ((i = next.getAndIncrement()) < dests.length) {
+        for (Data data : destMap.get(dests[i])) {
+          if (!sendData(data, dests[i], workers,
+            command)) {
+            isFailed.set(true);
+          }
+        }
+      }
+    };
+    int numThreads =
+      Math.min(concurrency, dests.length);
+    List<Future<?>> futures =
+      new ArrayList<>(numThreads);
+    for (int i = 1; i < numThreads; i++) {
+      futures.add(executor.submit(task));
+    }
+    task.run();
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (Exception e) {
+        LOG.error("Fail to send.", e);
+        isFailed.set(true);
+      }
+    }
+    return !isFailed.get();
+  }
+
+  private static boolean sendData(Data data,
+    int destID, Workers workers, byte command) {
+    DataSender sender =
+      new DataSender(data, destID, workers, command);
+    boolean isSuccess = sender.execute();
+    data.releaseHeadArray();
+    data.releaseBodyArray();
+    if (!isSuccess) {
+      LOG.error("Fail to send to worker " + destID
+        + ".");
+    }
+    return isSuccess;
+  }
+}
@@ -137,6 +137,77 @@ public class AllreduceCollective {
     System.exit(0);
   }
 
+  /** Allreduce algorithms */
+  public static final String AUTO = "auto";
+  public static final String RECURSIVE_DOUBLING =
+      "recursive-doubling";
+  public static final String RING = "ring";
+  public static final String RABENSEIFNER =
+      "rabenseifner";
+  /** Tables smaller than this use recursive doubling */
+  public static final long DEFAULT_CHUNKED_THRESHOLD =
+      1048576L;
+
+  /**
+   * Allreduce communication operation with the
+   * given algorithm. Ring and Rabenseifner are
+   * only used when every worker holds the same
+   * array partitions, otherwise it falls back to
+   * recursive doubling. In AUTO mode, tables
+   * smaller than the threshold also use recursive
+   * doubling, larger ones use Rabenseifner if the
+   * number of workers is a power of two and ring
+   * otherwise. Except for recursive doubling, the
+   * layout is checked in an extra allreduce round
+   * first. AllreduceSelector lets repeated calls
+   * on small tables skip it.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @param algorithm     the allreduce algorithm
+   * @param threshold     the threshold in bytes
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  allreduce(final String contextName,
+            final String operationName,
+            final Table<P> table, final DataMap dataMap,
+            final Workers workers, final String algorithm,
+            final long threshold) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    if (!RING.equals(algorithm)
+        && !RABENSEIFNER.equals(algorithm)
+        && !AUTO.equals(algorithm)) {
+      return allreduce(contextName, operationName,
+          table, dataMap, workers);
+    }
+    long numBytes = ChunkedAllreduceCollective
+        .getUniformLayoutBytes(contextName,
+            operationName, table, dataMap, workers);
+    if (numBytes < 0L || (AUTO.equals(algorithm)
+        && numBytes < threshold)) {
+      return allreduce(contextName, operationName,
+          table, dataMap, workers);
+    }
+    int numWorkers = workers.getNumWorkers();
+    if (RABENSEIFNER.equals(algorithm)
+        || (AUTO.equals(algorithm)
+        && Integer.bitCount(numWorkers) == 1)) {
+      return ChunkedAllreduceCollective
+          .rabenseifnerAllreduce(contextName,
+              operationName, table, dataMap, workers);
+    } else {
+      return ChunkedAllreduceCollective
+          .ringAllreduce(contextName, operationName,
+              table, dataMap, workers);
+    }
+  }
+
   /**
    * Allreduce communication operation.
    *
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.Simple;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*******************************************************
+ * Picks the allreduce algorithm of the repeated
+ * calls of an operation in AUTO mode without the
+ * layout round. After a successful allreduce,
+ * every worker holds the same table, so the size
+ * of the result is known to all the workers
+ * without any message. If the last result of an
+ * operation is smaller than the threshold, the
+ * next call uses recursive doubling directly,
+ * which needs no uniform layout. Otherwise AUTO
+ * checks the layout as usual, so small tables
+ * only pay for it in the first call.
+ * 
+ * Each worker keeps its own selector, and the
+ * workers make the calls of an operation in the
+ * same order.
+ ******************************************************/
+public class AllreduceSelector {
+
+  /** Context and operation to the result size */
+  private final ConcurrentHashMap<String, Long> resultBytes;
+
+  public AllreduceSelector() {
+    resultBytes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get the algorithm of the next call
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param algorithm     the configured algorithm
+   * @param threshold     the threshold in bytes
+   * @return the algorithm to use
+   */
+  public String select(String contextName,
+      String operationName, String algorithm,
+      long threshold) {
+    if (AllreduceCollective.AUTO.equals(algorithm)) {
+      Long numBytes = resultBytes
+          .get(getKey(contextName, operationName));
+      if (numBytes != null && numBytes < threshold) {
+        return AllreduceCollective.RECURSIVE_DOUBLING;
+      }
+    }
+    return algorithm;
+  }
+
+  /**
+   * Record the size of the result. A failed call
+   * is forgotten, the next one checks the layout.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the result Table
+   * @param isSuccess     if the call succeeded
+   */
+  public <P extends Simple> void record(
+      String contextName, String operationName,
+      Table<P> table, boolean isSuccess) {
+    String key = getKey(contextName, operationName);
+    if (isSuccess) {
+      resultBytes.put(key, SegmentedBcastCollective
+          .getNumBytes(table));
+    } else {
+      resultBytes.remove(key);
+    }
+  }
+
+  private static String getKey(String contextName,
+      String operationName) {
+    return contextName + "/" + operationName;
+  }
+}
@@ -323,6 +323,94 @@ public class BcastCollective {
     return isSuccess;
   }
 
+  /** Broadcast algorithms */
+  public static final String AUTO = "auto";
+  public static final String WHOLE = "whole";
+  public static final String PIPELINE = "pipeline";
+  public static final String SCATTER_ALLGATHER =
+      "scatter-allgather";
+  /** The size of a segment in a pipeline */
+  public static final int DEFAULT_SEGMENT_SIZE =
+      1048576;
+  /** Tables from this size use scatter-allgather */
+  public static final long DEFAULT_SCATTER_THRESHOLD =
+      268435456L;
+
+  /**
+   * The broadcast communication operation with the
+   * given algorithm, see SegmentedBcastCollective.
+   * WHOLE sends the table as one message. In AUTO
+   * mode, tables smaller than four segments are
+   * sent whole, tables from the scatter threshold
+   * use scatter-allgather if there are more than
+   * two workers, and the others are pipelined.
+   * Only the root looks at the size, the other
+   * workers accept any of them.
+   *
+   * @param contextName      the name of the context
+   * @param operationName    the name of the operation
+   * @param table            the data Table
+   * @param bcastWorkerID    the worker which broadcasts
+   * @param useMSTBcast      use MST method or not
+   * @param algorithm        the broadcast algorithm
+   * @param segmentSize      the segment size in bytes
+   * @param scatterThreshold the threshold in bytes
+   * @param dataMap          the DataMap
+   * @param workers          the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  broadcast(String contextName,
+            String operationName, Table<P> table,
+            int bcastWorkerID, boolean useMSTBcast,
+            String algorithm, int segmentSize,
+            long scatterThreshold, DataMap dataMap,
+            Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    if (!AUTO.equals(algorithm)
+        && !PIPELINE.equals(algorithm)
+        && !SCATTER_ALLGATHER.equals(algorithm)) {
+      return broadcast(contextName, operationName,
+          table, bcastWorkerID, useMSTBcast, dataMap,
+          workers);
+    }
+    if (workers.getSelfID() != bcastWorkerID) {
+      return SegmentedBcastCollective.receive(
+          contextName, operationName, table,
+          bcastWorkerID, dataMap, workers);
+    }
+    if (AUTO.equals(algorithm)) {
+      long numBytes =
+          SegmentedBcastCollective.getNumBytes(table);
+      if (numBytes < 4L * segmentSize) {
+        algorithm = WHOLE;
+      } else if (numBytes >= scatterThreshold
+          && workers.getNumWorkers() > 2) {
+        algorithm = SCATTER_ALLGATHER;
+      } else {
+        algorithm = PIPELINE;
+      }
+    }
+    if (PIPELINE.equals(algorithm)) {
+      return SegmentedBcastCollective
+          .pipelinedBroadcast(contextName,
+              operationName, table, bcastWorkerID,
+              useMSTBcast, segmentSize, dataMap,
+              workers);
+    } else if (SCATTER_ALLGATHER.equals(algorithm)) {
+      return SegmentedBcastCollective
+          .scatterAllgatherBroadcast(contextName,
+              operationName, table, bcastWorkerID,
+              dataMap, workers);
+    } else {
+      return broadcast(contextName, operationName,
+          table, bcastWorkerID, useMSTBcast, dataMap,
+          workers);
+    }
+  }
+
   /**
    * The broadcast communication operation
    *
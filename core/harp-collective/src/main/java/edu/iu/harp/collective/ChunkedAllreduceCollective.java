@@ -0,0 +1,611 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.client.DataSender;
+import edu.iu.harp.combiner.LongArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.PartitionCombiner;
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.Array;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.FloatArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.LongArray;
+import edu.iu.harp.resource.Simple;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.worker.Workers;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.log4j.Logger;
+
+import java.util.List;
+
+/*******************************************************
+ * Bandwidth-optimal allreduce for tables of
+ * DoubleArray, FloatArray, IntArray and LongArray
+ * partitions. Every partition is cut into chunks
+ * which are reduce-scattered and then
+ * allgathered, so each worker sends about 2N
+ * bytes instead of N log P as in the recursive
+ * doubling of AllreduceCollective.
+ * 
+ * Both algorithms require every worker to hold
+ * the same partition IDs with arrays of the same
+ * size. Use getUniformLayoutBytes to check it.
+ ******************************************************/
+public class ChunkedAllreduceCollective {
+
+  private static final Logger LOG = Logger
+    .getLogger(ChunkedAllreduceCollective.class);
+
+  /**
+   * Ring allreduce: P - 1 reduce-scatter steps
+   * followed by P - 1 allgather steps, each worker
+   * only talks to its neighbors. Works with any
+   * number of workers.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+    ringAllreduce(final String contextName,
+      final String operationName,
+      final Table<P> table, final DataMap dataMap,
+      final Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int numWorkers = workers.getNumWorkers();
+    int minID = workers.getMinID();
+    int rank = workers.getSelfID() - minID;
+    int nextID = workers.getNextID();
+    int prevID =
+      minID + (rank - 1 + numWorkers) % numWorkers;
+    Int2ObjectOpenHashMap<Data> cachedDataMap =
+      new Int2ObjectOpenHashMap<>();
+    boolean isSuccess = true;
+    // Reduce-scatter, after that this worker owns
+    // the reduced chunk (rank + 1) % numWorkers
+    for (int i = 0; i < numWorkers - 1
+      && isSuccess; i++) {
+      int sendChunk = mod(rank - i, numWorkers);
+      int recvChunk = mod(rank - i - 1, numWorkers);
+      isSuccess = sendChunks(contextName,
+        operationName, i, table, sendChunk,
+        sendChunk + 1, numWorkers, nextID, workers)
+        && recvChunks(contextName, operationName,
+          i, table, recvChunk, recvChunk + 1,
+          numWorkers, true, dataMap,
+          cachedDataMap);
+    }
+    // Allgather
+    for (int i = 0; i < numWorkers - 1
+      && isSuccess; i++) {
+      int step = numWorkers - 1 + i;
+      int sendChunk = mod(rank + 1 - i, numWorkers);
+      int recvChunk = mod(rank - i, numWorkers);
+      isSuccess = sendChunks(contextName,
+        operationName, step, table, sendChunk,
+        sendChunk + 1, numWorkers, nextID, workers)
+        && recvChunks(contextName, operationName,
+          step, table, recvChunk, recvChunk + 1,
+          numWorkers, false, dataMap,
+          cachedDataMap);
+    }
+    return finish(isSuccess, table, cachedDataMap);
+  }
+
+  /**
+   * Rabenseifner's allreduce: reduce-scatter by
+   * recursive halving and allgather by recursive
+   * doubling, 2 log P steps. If the number of
+   * workers is not a power of two, the extra
+   * workers first fold their data into a partner
+   * and get the result back at the end.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+    rabenseifnerAllreduce(final String contextName,
+      final String operationName,
+      final Table<P> table, final DataMap dataMap,
+      final Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int numWorkers = workers.getNumWorkers();
+    int minID = workers.getMinID();
+    int rank = workers.getSelfID() - minID;
+    int pof2 = Integer.highestOneBit(numWorkers);
+    int rem = numWorkers - pof2;
+    int logPof2 =
+      Integer.numberOfTrailingZeros(pof2);
+    Int2ObjectOpenHashMap<Data> cachedDataMap =
+      new Int2ObjectOpenHashMap<>();
+    boolean isSuccess = true;
+    // Step 0, fold the extra workers
+    int newRank = -1;
+    if (rank < 2 * rem) {
+      if (rank % 2 == 0) {
+        isSuccess = sendChunks(contextName,
+          operationName, 0, table, 0, 1, 1,
+          minID + rank + 1, workers);
+      } else {
+        isSuccess = recvChunks(contextName,
+          operationName, 0, table, 0, 1, 1, true,
+          dataMap, cachedDataMap);
+        newRank = rank / 2;
+      }
+    } else {
+      newRank = rank - rem;
+    }
+    if (newRank >= 0) {
+      // The chunk range owned by this worker
+      int lo = 0;
+      int hi = pof2;
+      // Recursive halving
+      int step = 1;
+      for (int mask = pof2 >> 1; mask > 0
+        && isSuccess; mask >>= 1) {
+        int destID = minID
+          + getOldRank(newRank ^ mask, rem);
+        int mid = (lo + hi) / 2;
+        if ((newRank & mask) == 0) {
+          isSuccess = sendChunks(contextName,
+            operationName, step, table, mid, hi,
+            pof2, destID, workers)
+            && recvChunks(contextName,
+              operationName, step, table, lo, mid,
+              pof2, true, dataMap, cachedDataMap);
+          hi = mid;
+        } else {
+          isSuccess = sendChunks(contextName,
+            operationName, step, table, lo, mid,
+            pof2, destID, workers)
+            && recvChunks(contextName,
+              operationName, step, table, mid, hi,
+              pof2, true, dataMap, cachedDataMap);
+          lo = mid;
+        }
+        step++;
+      }
+      // Recursive doubling
+      step = 1 + logPof2;
+      for (int mask = 1; mask < pof2
+        && isSuccess; mask <<= 1) {
+        int destID = minID
+          + getOldRank(newRank ^ mask, rem);
+        int len = hi - lo;
+        isSuccess = sendChunks(contextName,
+          operationName, step, table, lo, hi, pof2,
+          destID, workers);
+        if ((newRank & mask) == 0) {
+          isSuccess = isSuccess
+            && recvChunks(contextName,
+              operationName, step, table, hi,
+              hi + len, pof2, false, dataMap,
+              cachedDataMap);
+          hi += len;
+        } else {
+          isSuccess = isSuccess
+            && recvChunks(contextName,
+              operationName, step, table, lo - len,
+              lo, pof2, false, dataMap,
+              cachedDataMap);
+          lo -= len;
+        }
+        step++;
+      }
+    }
+    // Unfold, send the result to the extra workers
+    if (rank < 2 * rem && isSuccess) {
+      int step = 1 + 2 * logPof2;
+      if (rank % 2 == 1) {
+        isSuccess = sendChunks(contextName,
+          operationName, step, table, 0, 1, 1,
+          minID + rank - 1, workers);
+      } else {
+        isSuccess = recvChunks(contextName,
+          operationName, step, table, 0, 1, 1,
+          false, dataMap, cachedDataMap);
+      }
+    }
+    return finish(isSuccess, table, cachedDataMap);
+  }
+
+  /**
+   * Check if the partitions on every worker have
+   * the same IDs, the same array types and the
+   * same sizes. This is done by a recursive
+   * doubling allreduce on a few longs, under the
+   * operation name with "-layout" appended.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return the maximum number of bytes of the
+   *         table on a worker, -1 if the layouts
+   *         are not the same or the table can not
+   *         be chunked
+   */
+  public static <P extends Simple> long
+    getUniformLayoutBytes(final String contextName,
+      final String operationName,
+      final Table<P> table, final DataMap dataMap,
+      final Workers workers) {
+    long signature = table.getNumPartitions();
+    long bytes = 0L;
+    long unsupported = 0L;
+    for (Partition<P> partition : table
+      .getPartitions()) {
+      int type = getArrayType(partition.get());
+      if (type == DataType.UNKNOWN_DATA_TYPE) {
+        unsupported = 1L;
+      } else {
+        // Sum of hashes does not depend on the
+        // iteration order
+        signature += hash(partition.id(),
+          ((Array<?>) partition.get()).size(),
+          type);
+        bytes += partition.getNumEnocdeBytes();
+      }
+    }
+    if (workers.isTheOnlyWorker()) {
+      return unsupported == 0L ? bytes : -1L;
+    }
+    LongArray layout = LongArray.create(4, false);
+    long[] longs = layout.get();
+    longs[0] = signature;
+    longs[1] = -signature;
+    longs[2] = unsupported;
+    longs[3] = bytes;
+    Table<LongArray> layoutTable =
+      new Table<>(0, new LongArrCombiner(Operation.MAX));
+    layoutTable
+      .addPartition(new Partition<>(0, layout));
+    String layoutOpName = operationName + "-layout";
+    boolean isSuccess =
+      AllreduceCollective.allreduce(contextName,
+        layoutOpName, layoutTable, dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      layoutOpName);
+    if (!isSuccess) {
+      return -1L;
+    }
+    long[] result =
+      layoutTable.getPartition(0).get().get();
+    boolean isUniform = result[0] == -result[1]
+      && result[2] == 0L;
+    long maxBytes = result[3];
+    layoutTable.release();
+    return isUniform ? maxBytes : -1L;
+  }
+
+  /**
+   * Send chunks [chunkStart, chunkEnd) of every
+   * partition as one message tagged with the step
+   *
+   * @return true if succeeded or nothing to send
+   */
+  private static <P extends Simple> boolean
+    sendChunks(String contextName,
+      String operationName, int step,
+      Table<P> table, int chunkStart, int chunkEnd,
+      int numChunks, int destID, Workers workers) {
+    List<Transferable> chunks =
+      new ObjectArrayList<>();
+    for (Partition<P> partition : table
+      .getPartitions()) {
+      Array<?> array = (Array<?>) partition.get();
+      int start = getChunkOffset(array.size(),
+        chunkStart, numChunks);
+      int end = getChunkOffset(array.size(),
+        chunkEnd, numChunks);
+      if (end > start) {
+        chunks.add(new Partition<>(partition.id(),
+          createArray(array, array.get(),
+            array.start() + start, end - start)));
+      }
+    }
+    if (chunks.isEmpty()) {
+      return true;
+    }
+    // Use partition ID in the head as the step
+    Data sendData = new Data(
+      DataType.PARTITION_LIST, contextName,
+      workers.getSelfID(), chunks,
+      DataUtil.getNumTransListBytes(chunks),
+      operationName, step);
+    DataSender sender = new DataSender(sendData,
+      destID, workers, Constant.SEND_DECODE);
+    boolean isSuccess = sender.execute();
+    // Release the encoded arrays only, the chunks
+    // are views of the local partitions
+    sendData.releaseHeadArray();
+    sendData.releaseBodyArray();
+    if (!isSuccess) {
+      LOG.error("Fail to send chunks of step "
+        + step + " to worker " + destID);
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Receive chunks [chunkStart, chunkEnd) of every
+   * partition and combine them into or copy them
+   * to the local partitions
+   *
+   * @return true if succeeded or nothing to
+   *         receive
+   */
+  private static <P extends Simple> boolean
+    recvChunks(String contextName,
+      String operationName, int step,
+      Table<P> table, int chunkStart, int chunkEnd,
+      int numChunks, boolean isCombine,
+      DataMap dataMap,
+      Int2ObjectOpenHashMap<Data> cachedDataMap) {
+    boolean isExpected = false;
+    for (Partition<P> partition : table
+      .getPartitions()) {
+      int size = ((Array<?>) partition.get()).size();
+      if (getChunkOffset(size, chunkEnd,
+        numChunks) > getChunkOffset(size,
+          chunkStart, numChunks)) {
+        isExpected = true;
+        break;
+      }
+    }
+    if (!isExpected) {
+      return true;
+    }
+    Data recvData = cachedDataMap.remove(step);
+    while (recvData == null) {
+      Data data = IOUtil.waitAndGet(dataMap,
+        contextName, operationName);
+      if (data == null) {
+        return false;
+      }
+      data.releaseHeadArray();
+      data.releaseBodyArray();
+      if (data.getPartitionID() == step) {
+        recvData = data;
+      } else {
+        cachedDataMap.put(data.getPartitionID(),
+          data);
+      }
+    }
+    List<Transferable> chunks = recvData.getBody();
+    if (chunks == null) {
+      return false;
+    }
+    PartitionCombiner<P> combiner =
+      table.getCombiner();
+    long numFailed =
+      chunks.parallelStream().filter(obj -> {
+        @SuppressWarnings("unchecked")
+        Partition<P> chunk = (Partition<P>) obj;
+        Partition<P> partition =
+          table.getPartition(chunk.id());
+        boolean isDone = false;
+        if (partition != null) {
+          int offset = getChunkOffset(
+            ((Array<?>) partition.get()).size(),
+            chunkStart, numChunks);
+          if (isCombine) {
+            isDone = combineChunk(combiner,
+              partition.get(), offset, chunk.get());
+          } else {
+            isDone = copyChunk(partition.get(),
+              offset, chunk.get());
+          }
+        }
+        chunk.release();
+        return !isDone;
+      }).count();
+    chunks.clear();
+    return numFailed == 0;
+  }
+
+  /**
+   * Combine a received chunk into the local
+   * partition at the offset. Combiners only see
+   * arrays starting at 0, so a chunk in the middle
+   * is combined in a temporary array.
+   */
+  @SuppressWarnings("unchecked")
+  private static <P extends Simple> boolean
+    combineChunk(PartitionCombiner<P> combiner,
+      P local, int offset, P chunk) {
+    Array<?> localArray = (Array<?>) local;
+    Array<?> chunkArray = (Array<?>) chunk;
+    int size = chunkArray.size();
+    int start = localArray.start() + offset;
+    if (offset + size > localArray.size()) {
+      return false;
+    }
+    if (start == 0) {
+      return combiner.combine(
+        (P) createArray(localArray,
+          localArray.get(), 0, size),
+        chunk) != PartitionStatus.COMBINE_FAILED;
+    }
+    Array<?> tmp = createArray(localArray, size);
+    if (tmp == null) {
+      return false;
+    }
+    System.arraycopy(localArray.get(), start,
+      tmp.get(), 0, size);
+    boolean isDone = combiner.combine((P) tmp,
+      chunk) != PartitionStatus.COMBINE_FAILED;
+    System.arraycopy(tmp.get(), 0,
+      localArray.get(), start, size);
+    tmp.release();
+    return isDone;
+  }
+
+  /**
+   * Copy a received chunk to the local partition
+   * at the offset
+   */
+  private static <P extends Simple> boolean
+    copyChunk(P local, int offset, P chunk) {
+    Array<?> localArray = (Array<?>) local;
+    Array<?> chunkArray = (Array<?>) chunk;
+    if (offset + chunkArray.size() > localArray
+      .size()) {
+      return false;
+    }
+    System.arraycopy(chunkArray.get(),
+      chunkArray.start(), localArray.get(),
+      localArray.start() + offset,
+      chunkArray.size());
+    return true;
+  }
+
+  /**
+   * Release the cached data, and release the
+   * table on failure as AllreduceCollective does
+   */
+  private static <P extends Simple> boolean
+    finish(boolean isSuccess, Table<P> table,
+      Int2ObjectOpenHashMap<Data> cachedDataMap) {
+    for (Data data : cachedDataMap.values()) {
+      data.release();
+    }
+    cachedDataMap.clear();
+    if (!isSuccess) {
+      table.release();
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Get the offset of the chunk in an array. The
+   * last offset equals to the size.
+   *
+   * @param size      the size of the array
+   * @param chunk     the chunk index
+   * @param numChunks the number of chunks
+   * @return the offset
+   */
+  static int getChunkOffset(int size, int chunk,
+    int numChunks) {
+    return (int) ((long) size * chunk / numChunks);
+  }
+
+  /**
+   * Map a rank among the power of two workers
+   * back to the rank among all the workers
+   */
+  private static int getOldRank(int newRank,
+    int rem) {
+    return newRank < rem ? newRank * 2 + 1
+      : newRank + rem;
+  }
+
+  private static int mod(int a, int b) {
+    return ((a % b) + b) % b;
+  }
+
+  private static long hash(int id, int size,
+    int type) {
+    long h = id * 0x9E3779B97F4A7C15L
+      + size * 0xC2B2AE3D27D4EB4FL + type;
+    h ^= (h >>> 31);
+    h *= 0xBF58476D1CE4E5B9L;
+    return h ^ (h >>> 29);
+  }
+
+  /**
+   * Get the data type of a supported array
+   *
+   * @return the data type, UNKNOWN_DATA_TYPE if
+   *         not supported
+   */
+  static int getArrayType(Simple array) {
+    if (array instanceof DoubleArray) {
+      return DataType.DOUBLE_ARRAY;
+    } else if (array instanceof FloatArray) {
+      return DataType.FLOAT_ARRAY;
+    } else if (array instanceof IntArray) {
+      return DataType.INT_ARRAY;
+    } else if (array instanceof LongArray) {
+      return DataType.LONG_ARRAY;
+    } else {
+      return DataType.UNKNOWN_DATA_TYPE;
+    }
+  }
+
+  /**
+   * Wrap a part of an array in a new object of
+   * the same type
+   */
+  static Array<?> createArray(
+    Array<?> type, Object array, int start,
+    int size) {
+    if (type instanceof DoubleArray) {
+      return new DoubleArray((double[]) array,
+        start, size);
+    } else if (type instanceof FloatArray) {
+      return new FloatArray((float[]) array, start,
+        size);
+    } else if (type instanceof IntArray) {
+      return new IntArray((int[]) array, start,
+        size);
+    } else {
+      return new LongArray((long[]) array, start,
+        size);
+    }
+  }
+
+  /**
+   * Get an array of the same type from the pool
+   */
+  static Array<?> createArray(
+    Array<?> type, int size) {
+    if (type instanceof DoubleArray) {
+      return DoubleArray.create(size, false);
+    } else if (type instanceof FloatArray) {
+      return FloatArray.create(size, false);
+    } else if (type instanceof IntArray) {
+      return IntArray.create(size, false);
+    } else {
+      return LongArray.create(size, false);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.DataMap;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/*******************************************************
+ * Runs collective operations on dedicated
+ * communication threads and returns futures, so
+ * the caller can compute while the operations
+ * are in flight.
+ * 
+ * Operations under different operation names
+ * run concurrently, their data are kept apart in
+ * DataMap. Operations submitted under the same
+ * context and operation name run one after
+ * another in the submission order, and the data
+ * of an operation are cleaned before the next
+ * one starts. All the workers should submit the
+ * operations in the same order.
+ ******************************************************/
+public class CollectiveExecutor {
+
+  private static final Logger LOG =
+    Logger.getLogger(CollectiveExecutor.class);
+
+  private final DataMap dataMap;
+  /**
+   * The threads are not bounded, an operation
+   * waiting for other workers never blocks the
+   * operations queued behind it
+   */
+  private final ExecutorService executor;
+  /** The last operation of each operation name */
+  private final ConcurrentMap<String, CompletableFuture<Boolean>> lastOps;
+
+  public CollectiveExecutor(DataMap dataMap) {
+    this.dataMap = dataMap;
+    this.executor =
+      Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable,
+          "Harp-Collective");
+        thread.setDaemon(true);
+        return thread;
+      });
+    this.lastOps = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Submit a collective operation
+   * 
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param operation
+   *          the collective operation, returns
+   *          true if succeeded
+   * @return the future of the operation, which
+   *         completes with false if the operation
+   *         fails
+   */
+  public CompletableFuture<Boolean> submit(
+    String contextName, String operationName,
+    BooleanSupplier operation) {
+    String key = contextName + "/" + operationName;
+    CompletableFuture<Boolean> result =
+      new CompletableFuture<>();
+    CompletableFuture<Boolean> lastOp =
+      lastOps.put(key, result);
+    Runnable task = () -> {
+      result.complete(run(contextName,
+        operationName, operation));
+      lastOps.remove(key, result);
+    };
+    if (lastOp == null) {
+      executeOrFail(key, task, result);
+    } else {
+      lastOp.whenComplete((isSuccess,
+        t) -> executeOrFail(key, task, result));
+    }
+    return result;
+  }
+
+  /**
+   * Run the operation and clean its data
+   * 
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param operation
+   *          the collective operation
+   * @return true if succeeded
+   */
+  private boolean run(String contextName,
+    String operationName,
+    BooleanSupplier operation) {
+    boolean isSuccess = false;
+    try {
+      isSuccess = operation.getAsBoolean();
+    } catch (Exception e) {
+      LOG.error("Fail to do collective operation "
+        + operationName + " in context "
+        + contextName, e);
+    } finally {
+      dataMap.cleanOperationData(contextName,
+        operationName);
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Execute the task, the result is failed if the
+   * executor is stopped
+   * 
+   * @param key
+   *          the key of the operation
+   * @param task
+   *          the task
+   * @param result
+   *          the future of the task
+   */
+  private void executeOrFail(String key,
+    Runnable task,
+    CompletableFuture<Boolean> result) {
+    try {
+      executor.execute(task);
+    } catch (Exception e) {
+      LOG.error("Fail to submit the operation.", e);
+      result.complete(false);
+      lastOps.remove(key, result);
+    }
+  }
+
+  /**
+   * Wait for the submitted operations and stop
+   * the threads
+   * 
+   * @param timeout
+   *          the maximum time to wait in seconds
+   * @return true if all the operations are done
+   */
+  public boolean stop(long timeout) {
+    CompletableFuture<?>[] ops =
+      lastOps.values()
+        .toArray(new CompletableFuture<?>[0]);
+    boolean isDone = true;
+    try {
+      CompletableFuture.allOf(ops).get(timeout,
+        TimeUnit.SECONDS);
+    } catch (Exception e) {
+      LOG.error("Fail to wait for operations.", e);
+      isDone = false;
+    }
+    executor.shutdownNow();
+    return isDone;
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.client.SenderPool;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.Simple;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.resource.Writable;
+import edu.iu.harp.util.Barrier;
+import edu.iu.harp.worker.WorkerInfo;
+import edu.iu.harp.worker.Workers;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.log4j.Logger;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/*******************************************************
+ * A communication plan reused by an iterative
+ * regroup, push, pull or join. The first call
+ * with a plan runs the metadata rounds as usual
+ * and records where each partition goes and how
+ * many partitions this worker receives. The
+ * later calls with the same plan skip the
+ * metadata rounds.
+ * 
+ * A plan is valid as long as the partition IDs
+ * of the tables stay the same on all the
+ * workers. The layout of the local tables is
+ * checked against a checksum on every call. If
+ * it changed, the worker tells all the other
+ * workers and the call fails on all of them
+ * instead of waiting for the partitions. The
+ * plan should then be reset on all the workers,
+ * the next call plans again. Each worker keeps its own plan
+ * for each operation, a plan is not shared by
+ * different operations.
+ ******************************************************/
+public class CommPlan {
+
+  private static final Logger LOG =
+      Logger.getLogger(CommPlan.class);
+
+  /**
+   * The partition count of the data telling the
+   * receivers that the sender cannot use its plan
+   */
+  public static final int STALE_PLAN = -1;
+
+  private boolean isPlanned;
+  /** The checksum of the table layout */
+  private long checksum;
+  /** Partition ID to worker ID */
+  private Int2IntOpenHashMap workerMap;
+  /** Partition ID to worker IDs */
+  private Int2ObjectOpenHashMap<IntArrayList> workersMap;
+  /** The number of partitions to receive */
+  private int numRecvPartitions;
+  /** The number of calls reusing the plan */
+  private int numCalls;
+
+  public CommPlan() {
+    reset();
+    numCalls = 0;
+  }
+
+  /**
+   * Check if the plan is made
+   *
+   * @return true if the plan is made
+   */
+  public boolean isPlanned() {
+    return isPlanned;
+  }
+
+  /**
+   * Drop the plan, the next call plans again
+   */
+  public void reset() {
+    isPlanned = false;
+    checksum = 0L;
+    workerMap = null;
+    workersMap = null;
+    numRecvPartitions = 0;
+    // The call names are not reused, data of a
+    // failed call may still arrive
+  }
+
+  /**
+   * Get the number of partitions to receive
+   *
+   * @return the number of partitions to receive
+   */
+  public int getNumRecvPartitions() {
+    return numRecvPartitions;
+  }
+
+  /**
+   * Get the operation name of the next call
+   * reusing the plan. Without the metadata rounds
+   * in between, a worker may send the data of the
+   * next call before the others receive all the
+   * data of this call, so each call has its own
+   * name. The workers make the calls in the same
+   * order and get the same names. Get the name
+   * before checking the plan, a worker failing the
+   * check still uses up the name.
+   *
+   * @param operationName the name of the operation
+   * @return the name of the call
+   */
+  String nextOperationName(String operationName) {
+    numCalls++;
+    return operationName + ".plan" + numCalls;
+  }
+
+  /**
+   * Get the destination of each partition
+   *
+   * @return partition ID to worker ID
+   */
+  Int2IntOpenHashMap getWorkerMap() {
+    return workerMap;
+  }
+
+  /**
+   * Get the destinations of each partition
+   *
+   * @return partition ID to worker IDs
+   */
+  Int2ObjectOpenHashMap<IntArrayList> getWorkersMap() {
+    return workersMap;
+  }
+
+  /**
+   * Record a plan with one destination per
+   * partition
+   *
+   * @param tables            the tables of the operation
+   * @param workerMap         partition ID to worker ID
+   * @param numRecvPartitions the number of partitions to receive
+   */
+  void plan(Table<?>[] tables,
+      Int2IntOpenHashMap workerMap,
+      int numRecvPartitions) {
+    this.checksum = getChecksum(tables);
+    this.workerMap = workerMap;
+    this.numRecvPartitions = numRecvPartitions;
+    this.isPlanned = true;
+  }
+
+  /**
+   * Record a plan with a list of destinations per
+   * partition
+   *
+   * @param tables            the tables of the operation
+   * @param workersMap        partition ID to worker IDs
+   * @param numRecvPartitions the number of partitions to receive
+   */
+  void plan(Table<?>[] tables,
+      Int2ObjectOpenHashMap<IntArrayList> workersMap,
+      int numRecvPartitions) {
+    this.checksum = getChecksum(tables);
+    this.workersMap = workersMap;
+    this.numRecvPartitions = numRecvPartitions;
+    this.isPlanned = true;
+  }
+
+  /**
+   * Check if the plan is made for this kind of
+   * operation and the layout of the tables is the
+   * one the plan was made for
+   *
+   * @param operationName the name of the operation
+   * @param isMultiDest   if the operation sends a partition
+   *                      to a list of workers
+   * @param tables        the tables of the operation
+   * @return true if the plan can be used
+   */
+  boolean check(String operationName,
+      boolean isMultiDest, Table<?>... tables) {
+    if ((isMultiDest ? workersMap == null
+        : workerMap == null)) {
+      LOG.error("The plan of " + operationName
+          + " is made for another operation.");
+      return false;
+    }
+    if (getChecksum(tables) != checksum) {
+      LOG.error("The table layout of "
+          + operationName
+          + " is changed, the plan is stale.");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Tell all the other workers that this worker
+   * cannot use the plan in this call, they fail
+   * the call instead of waiting for its partitions
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the call
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   */
+  static void abort(String contextName,
+      String operationName, DataMap dataMap,
+      Workers workers) {
+    int selfID = workers.getSelfID();
+    List<Data> dataList = new LinkedList<>();
+    IntArrayList destIDs = new IntArrayList();
+    for (WorkerInfo worker : workers
+        .getWorkerInfoList()) {
+      if (worker.getID() == selfID) {
+        continue;
+      }
+      Barrier barrier =
+          Writable.create(Barrier.class);
+      barrier.setStatus(false);
+      List<Transferable> commList =
+          new LinkedList<>();
+      commList.add(barrier);
+      dataList.add(new Data(DataType.SIMPLE_LIST,
+          contextName, selfID, commList,
+          DataUtil.getNumTransListBytes(commList),
+          operationName, STALE_PLAN));
+      destIDs.add(worker.getID());
+    }
+    if (!dataList.isEmpty()) {
+      SenderPool.send(dataList,
+          destIDs.toIntArray(), workers,
+          Constant.SEND_DECODE);
+    }
+    for (Data data : dataList) {
+      data.release();
+    }
+    dataMap.cleanOperationData(contextName,
+        operationName);
+  }
+
+  /**
+   * Get the checksum of the partition IDs in the
+   * tables. The IDs of a table are hashed in any
+   * order.
+   *
+   * @param tables the tables
+   * @return the checksum
+   */
+  static long getChecksum(Table<?>... tables) {
+    long checksum = tables.length;
+    for (Table<?> table : tables) {
+      long sum = 0L;
+      for (Partition<? extends Simple> partition : table
+          .getPartitions()) {
+        sum += mix(partition.id());
+      }
+      checksum = checksum * 31L
+          + table.getNumPartitions() + mix(sum);
+    }
+    return checksum;
+  }
+
+  /**
+   * The finalizer of MurmurHash3
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
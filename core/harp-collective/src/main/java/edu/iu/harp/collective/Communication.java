@@ -31,6 +31,7 @@ import edu.iu.harp.resource.Writable;
 import edu.iu.harp.util.Barrier;
 import edu.iu.harp.worker.WorkerInfo;
 import edu.iu.harp.worker.Workers;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.apache.log4j.Logger;
 
 import java.util.LinkedList;
@@ -45,6 +46,56 @@ public class Communication {
   protected static final Logger LOG =
       Logger.getLogger(Communication.class);
 
+  /** Barrier algorithms */
+  public static final String CENTRAL_BARRIER =
+      "central";
+  public static final String DISSEMINATION_BARRIER =
+      "dissemination";
+  public static final String TREE_BARRIER = "tree";
+
+  /**
+   * Barrier with the dissemination algorithm.
+   *
+   * @param contextName   the name of operation context
+   * @param operationName the name of the operation
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static boolean barrier(
+      String contextName, String operationName,
+      DataMap dataMap, Workers workers) {
+    return disseminationBarrier(contextName,
+        operationName, dataMap, workers);
+  }
+
+  /**
+   * Barrier with the given algorithm. Unknown
+   * algorithms fall back to dissemination.
+   *
+   * @param contextName   the name of operation context
+   * @param operationName the name of the operation
+   * @param algorithm     the barrier algorithm
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static boolean barrier(
+      String contextName, String operationName,
+      String algorithm, DataMap dataMap,
+      Workers workers) {
+    if (CENTRAL_BARRIER.equals(algorithm)) {
+      return centralBarrier(contextName,
+          operationName, dataMap, workers);
+    } else if (TREE_BARRIER.equals(algorithm)) {
+      return treeBarrier(contextName,
+          operationName, dataMap, workers);
+    } else {
+      return disseminationBarrier(contextName,
+          operationName, dataMap, workers);
+    }
+  }
+
   /**
    * In barrier, each worker send a message to
    * master. If the master gets all the messages,
@@ -58,7 +109,7 @@ public class Communication {
    * @param workers       the Workers
    * @return true if succeeded, false otherwise
    */
-  public static boolean barrier(
+  public static boolean centralBarrier(
       String contextName, String operationName,
       DataMap dataMap, Workers workers) {
     if (workers.isTheOnlyWorker()) {
@@ -182,6 +233,230 @@ public class Communication {
     }
   }
 
+  /**
+   * Dissemination barrier. In round k, each
+   * worker sends to the worker 2^k after it and
+   * waits for the worker 2^k before it, so all
+   * the workers leave after ceil(log P) rounds
+   * without a central worker. The status sent is
+   * false once a message is missing or false, and
+   * after the last round every worker has heard
+   * from all the others, directly or not.
+   *
+   * @param contextName   the name of operation context
+   * @param operationName the name of the operation
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static boolean disseminationBarrier(
+      String contextName, String operationName,
+      DataMap dataMap, Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int numWorkers = workers.getNumWorkers();
+    int minID = workers.getMinID();
+    int rank = workers.getSelfID() - minID;
+    Int2ObjectOpenHashMap<LinkedList<Data>> cachedDataMap =
+        new Int2ObjectOpenHashMap<>();
+    boolean isBarrierSuccess = true;
+    for (int round = 0, dist = 1;
+         dist < numWorkers; round++, dist <<= 1) {
+      int sendID =
+          minID + (rank + dist) % numWorkers;
+      // Keep going after a failure so that the
+      // others get the false status instead of
+      // waiting
+      if (!sendBarrier(contextName, operationName,
+          round, isBarrierSuccess, sendID,
+          workers)) {
+        isBarrierSuccess = false;
+      }
+      if (!recvBarrier(contextName, operationName,
+          round, dataMap, cachedDataMap)) {
+        isBarrierSuccess = false;
+      }
+    }
+    restoreBarrierData(cachedDataMap, dataMap);
+    return isBarrierSuccess;
+  }
+
+  /**
+   * Tree barrier. The status is reduced to the
+   * master through a binomial tree and then
+   * broadcast back along the same tree. It takes
+   * 2 log P steps but only 2 (P - 1) messages.
+   *
+   * @param contextName   the name of operation context
+   * @param operationName the name of the operation
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static boolean treeBarrier(
+      String contextName, String operationName,
+      DataMap dataMap, Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int numWorkers = workers.getNumWorkers();
+    int minID = workers.getMinID();
+    int rank = workers.getSelfID() - minID;
+    // The children are rank + 2^k for 2^k below
+    // the lowest set bit of the rank, the root
+    // (rank 0) has all the powers of two
+    int lowBit = rank == 0
+        ? Integer.highestOneBit(numWorkers - 1) << 1
+        : Integer.lowestOneBit(rank);
+    Int2ObjectOpenHashMap<LinkedList<Data>> cachedDataMap =
+        new Int2ObjectOpenHashMap<>();
+    boolean isBarrierSuccess = true;
+    // Gather the status from the children
+    for (int dist = 1; dist < lowBit
+        && rank + dist < numWorkers; dist <<= 1) {
+      if (!recvBarrier(contextName, operationName,
+          0, dataMap, cachedDataMap)) {
+        isBarrierSuccess = false;
+      }
+    }
+    if (rank != 0) {
+      // Send to the parent and wait for the result
+      isBarrierSuccess = sendBarrier(contextName,
+          operationName, 0, isBarrierSuccess,
+          minID + rank - lowBit, workers)
+          && recvBarrier(contextName, operationName,
+              1, dataMap, cachedDataMap);
+    }
+    // Broadcast the result to the children
+    for (int dist = lowBit >> 1; dist > 0;
+         dist >>= 1) {
+      if (rank + dist < numWorkers) {
+        sendBarrier(contextName, operationName, 1,
+            isBarrierSuccess, minID + rank + dist,
+            workers);
+      }
+    }
+    restoreBarrierData(cachedDataMap, dataMap);
+    return isBarrierSuccess;
+  }
+
+  /**
+   * Send the barrier status of a step. The step
+   * is sent as the partition ID.
+   *
+   * @return true if succeeded, false otherwise
+   */
+  private static boolean sendBarrier(
+      String contextName, String operationName,
+      int step, boolean status, int destID,
+      Workers workers) {
+    Barrier barrier =
+        Writable.create(Barrier.class);
+    barrier.setStatus(status);
+    LinkedList<Transferable> commList =
+        new LinkedList<>();
+    commList.add(barrier);
+    Data sendData = new Data(
+        DataType.SIMPLE_LIST, contextName,
+        workers.getSelfID(), commList,
+        DataUtil.getNumTransListBytes(commList),
+        operationName, step);
+    Sender sender = new DataSender(sendData,
+        destID, workers, Constant.SEND_DECODE);
+    boolean isSuccess = false;
+    int retryCount = 0;
+    do {
+      isSuccess = sender.execute();
+      if (!isSuccess) {
+        retryCount++;
+        try {
+          Thread.sleep(Constant.SHORT_SLEEP);
+        } catch (InterruptedException e) {
+        }
+      }
+    } while (!isSuccess
+        && retryCount < Constant.SMALL_RETRY_COUNT);
+    sendData.release();
+    if (!isSuccess) {
+      LOG.error("Fail to send barrier of step "
+          + step + " to worker " + destID);
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Wait for the barrier status of a step. Data
+   * of other steps received before are cached in
+   * a queue per step, a step can get data from
+   * several workers, e.g. the children in the
+   * tree barrier.
+   *
+   * @return the status received, false if no
+   * data is received
+   */
+  private static boolean recvBarrier(
+      String contextName, String operationName,
+      int step, DataMap dataMap,
+      Int2ObjectOpenHashMap<LinkedList<Data>> cachedDataMap) {
+    Data recvData = null;
+    LinkedList<Data> cachedData =
+        cachedDataMap.get(step);
+    if (cachedData != null) {
+      recvData = cachedData.poll();
+      if (cachedData.isEmpty()) {
+        cachedDataMap.remove(step);
+      }
+    }
+    while (recvData == null) {
+      Data data = IOUtil.waitAndGet(dataMap,
+          contextName, operationName);
+      if (data == null) {
+        LOG.error("Fail to get barrier of step "
+            + step);
+        return false;
+      }
+      if (data.getPartitionID() == step) {
+        recvData = data;
+      } else {
+        cachedData =
+            cachedDataMap.get(data.getPartitionID());
+        if (cachedData == null) {
+          cachedData = new LinkedList<>();
+          cachedDataMap.put(data.getPartitionID(),
+              cachedData);
+        }
+        cachedData.add(data);
+      }
+    }
+    boolean status = false;
+    List<Transferable> body = recvData.getBody();
+    if (body != null && !body.isEmpty()
+        && body.get(0) instanceof Barrier) {
+      status = ((Barrier) body.get(0)).getStatus();
+    }
+    recvData.release();
+    return status;
+  }
+
+  /**
+   * Put the data not used back to the DataMap,
+   * they belong to the next barrier of the same
+   * operation, so the operation data must not be
+   * cleaned after these barriers.
+   */
+  private static void restoreBarrierData(
+      Int2ObjectOpenHashMap<LinkedList<Data>> cachedDataMap,
+      DataMap dataMap) {
+    for (LinkedList<Data> cachedData : cachedDataMap
+        .values()) {
+      for (Data data : cachedData) {
+        dataMap.putData(data);
+      }
+    }
+    cachedDataMap.clear();
+  }
+
   /**
    * Gather collective communication operation
    *
@@ -27,7 +27,6 @@ import edu.iu.harp.example.VertexTable;
 import edu.iu.harp.io.ConnPool;
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.DataMap;
-import edu.iu.harp.io.DataUtil;
 import edu.iu.harp.io.EventQueue;
 import edu.iu.harp.keyval.ValStatus;
 import edu.iu.harp.partition.Partition;
@@ -35,13 +34,8 @@ import edu.iu.harp.partition.PartitionUtil;
 import edu.iu.harp.partition.Partitioner;
 import edu.iu.harp.partition.Table;
 import edu.iu.harp.resource.Simple;
-import edu.iu.harp.resource.Transferable;
-import edu.iu.harp.resource.Writable;
 import edu.iu.harp.server.Server;
-import edu.iu.harp.util.Join;
-import edu.iu.harp.util.PartitionSet;
 import edu.iu.harp.worker.Workers;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
@@ -317,67 +311,77 @@ public class GraphCollective {
                Partitioner partitioner,
                Table<P2> staticTable, DataMap dataMap,
                Workers workers) {
+    return join(contextName, operationName,
+        dynamicTable, partitioner, staticTable, null,
+        dataMap, workers);
+  }
+
+  /**
+   * The Join communication operation with a
+   * communication plan. The first call with the
+   * plan exchanges the routes of the partitions,
+   * the later calls reuse the routes without the
+   * exchange.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param dynamicTable  the dynamic data Table
+   * @param partitioner   the Partitioner
+   * @param staticTable   the static data Table
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P1 extends Simple, P2 extends Simple>
+  boolean join(String contextName,
+               String operationName,
+               Table<P1> dynamicTable,
+               Partitioner partitioner,
+               Table<P2> staticTable, CommPlan plan,
+               DataMap dataMap, Workers workers) {
     if (workers.isTheOnlyWorker()) {
       return true;
     }
     final int selfID = workers.getSelfID();
-    final int masterID = workers.getMasterID();
     final int numWorkers =
         workers.getNumWorkers();
-    // ---------------------------------------------------
-    // Gather the partition information of the
-    // static table to master
-    // LOG.info("Gather static table info.");
-    LinkedList<Transferable> recvStaticPSets =
-        new LinkedList<>();
-    boolean isSuccess = PartitionUtil
-        .gatherPartitionSet(contextName,
-            operationName + ".gatherstatic",
-            staticTable, recvStaticPSets, dataMap,
-            workers);
-    if (!isSuccess) {
-      return false;
-    }
-    // ---------------------------------------------------
-    // Gather the information of dynamic table
-    // partitions to master
-    // LOG.info("Gather dynamic table info.");
-    LinkedList<Transferable> recvDynamicPSets =
-        new LinkedList<>();
-    isSuccess = PartitionUtil.gatherPartitionSet(
-        contextName,
-        operationName + ".gatherdynamic",
-        dynamicTable, recvDynamicPSets, dataMap,
-        workers);
-    // LOG.info("Dynamic table info is
-    // gathered.");
-    if (!isSuccess) {
-      return false;
-    }
-    // ---------------------------------------------------
-    // Generate partition and worker mapping for
-    // join
-    // Bcast partition regroup request
-    LinkedList<Transferable> recvJoin =
-        new LinkedList<>();
-    if (workers.isMaster()) {
-      Join join = createJoin(recvStaticPSets,
-          recvDynamicPSets, partitioner);
-      recvStaticPSets = null;
-      recvDynamicPSets = null;
-      recvJoin.add(join);
+    Int2ObjectOpenHashMap<IntArrayList> parToWorkerMap =
+        null;
+    int numPlannedPartitions = 0;
+    if (plan != null && plan.isPlanned()) {
+      if (!plan.check(operationName, true,
+          dynamicTable, staticTable)) {
+        return false;
+      }
+      parToWorkerMap = plan.getWorkersMap();
+      numPlannedPartitions =
+          plan.getNumRecvPartitions();
+      // Each call reusing the plan has its own name
+      operationName =
+          plan.nextOperationName(operationName);
+    } else {
+      // Route the dynamic partitions to the
+      // holders of the static partitions, or by
+      // the partitioner
+      parToWorkerMap = new Int2ObjectOpenHashMap<>();
+      numPlannedPartitions = PartitionUtil
+          .exchangeRoutes(contextName,
+              operationName + ".routes",
+              dynamicTable.getPartitionIDs(),
+              staticTable.getPartitionIDs(),
+              partitioner, parToWorkerMap, dataMap,
+              workers);
+      if (numPlannedPartitions
+          == PartitionUtil.FAIL_TO_REGROUP_PARTITION_SET) {
+        return false;
+      }
+      if (plan != null) {
+        plan.plan(new Table<?>[]{dynamicTable,
+            staticTable}, parToWorkerMap,
+            numPlannedPartitions);
+      }
     }
-    // --------------------------------------------------
-    // LOG.info("Bcast all-to-all information.");
-    isSuccess =
-        Communication.mstBcastAndRecv(contextName,
-            masterID, operationName + ".bcast",
-            recvJoin, workers, dataMap);
-    dataMap.cleanOperationData(contextName,
-        operationName + ".bcast");
-    Join join = (Join) recvJoin.removeFirst();
-    recvJoin = null;
-    // LOG.info("Join info is bcasted.");
     // -------------------------------------------------
     // Send partition
     // Optimize with broadcast
@@ -394,7 +398,7 @@ public class GraphCollective {
         .getPartitions()) {
       int partitionID = partition.id();
       IntArrayList workerIDs =
-          join.getParToWorkerMap().get(partitionID);
+          parToWorkerMap.get(partitionID);
       if (workerIDs != null) {
         boolean isLocal = false;
         if (workerIDs.size() == numWorkers) {
@@ -435,84 +439,17 @@ public class GraphCollective {
     // --------------------------------------------------
     // Receive all the partitions
     int numRecvPartitions =
-        join.getWorkerParCountMap().get(selfID)
-            - localCount;
+        numPlannedPartitions - localCount;
     // LOG.info("Total receive: "
     // + numRecvPartitions);
-    join.release();
-    join = null;
-    return PartitionUtil.receivePartitions(
-        contextName, operationName, dynamicTable,
-        numRecvPartitions, rmPartitionIDs, dataMap);
-  }
-
-  /**
-   * Generate partition and worker mapping for
-   * join
-   *
-   * @param recvStaticPSets
-   * @param recvDynamicPSets
-   * @param partitioner
-   * @return a Join object
-   */
-  private static Join createJoin(
-      LinkedList<Transferable> recvStaticPSets,
-      LinkedList<Transferable> recvDynamicPSets,
-      Partitioner partitioner) {
-    // partition <-> workers mapping
-    // based on static partition info
-    Int2ObjectOpenHashMap<IntArrayList> parToWorkerMap =
-        new Int2ObjectOpenHashMap<>();
-    for (Transferable trans : recvStaticPSets) {
-      PartitionSet recvPSet =
-          (PartitionSet) trans;
-      int workerID = recvPSet.getWorkerID();
-      IntArrayList pList = recvPSet.getParSet();
-      // See which partition is on which workers
-      for (int pID : pList) {
-        IntArrayList destWorkerIDs =
-            parToWorkerMap.get(pID);
-        if (destWorkerIDs == null) {
-          destWorkerIDs = new IntArrayList();
-          parToWorkerMap.put(pID, destWorkerIDs);
-        }
-        destWorkerIDs.add(workerID);
-      }
-    }
-    DataUtil.releaseTransList(recvStaticPSets);
-    // worker <-> partition count
-    // based on dynamic partition info
-    Int2IntOpenHashMap workerParCountMap =
-        new Int2IntOpenHashMap();
-    for (Transferable trans : recvDynamicPSets) {
-      PartitionSet recvPSet =
-          (PartitionSet) trans;
-      IntArrayList pList = recvPSet.getParSet();
-      for (int pID : pList) {
-        IntArrayList destWorkerIDs =
-            parToWorkerMap.get(pID);
-        if (destWorkerIDs != null) {
-          for (int destID : destWorkerIDs) {
-            workerParCountMap.addTo(destID, 1);
-          }
-        } else if (partitioner != null) {
-          int destWorkerID =
-              partitioner.getWorkerID(pID);
-          if (destWorkerID != Constant.UNKNOWN_WORKER_ID) {
-            destWorkerIDs = new IntArrayList();
-            parToWorkerMap.put(pID,
-                destWorkerIDs);
-            destWorkerIDs.add(destWorkerID);
-            workerParCountMap.addTo(destWorkerID,
-                1);
-          }
-        }
-      }
+    boolean isSuccess = PartitionUtil
+        .receivePartitions(
+            contextName, operationName, dynamicTable,
+            numRecvPartitions, rmPartitionIDs, dataMap);
+    if (plan != null) {
+      dataMap.cleanOperationData(contextName,
+          operationName);
     }
-    DataUtil.releaseTransList(recvDynamicPSets);
-    Join join = Writable.create(Join.class);
-    join.setParToWorkerMap(parToWorkerMap);
-    join.setWorkerParCountMap(workerParCountMap);
-    return join;
+    return isSuccess;
   }
 }
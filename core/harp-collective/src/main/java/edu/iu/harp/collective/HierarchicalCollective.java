@@ -0,0 +1,437 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.client.DataSender;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.partition.PartitionUtil;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.Simple;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.Logger;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/*******************************************************
+ * Node-aware collective communication. When
+ * several workers run on one node, the workers
+ * first combine their data within the node, then
+ * one leader per node runs the collective across
+ * the nodes, and the result fans back out within
+ * each node. Each worker sends its data through
+ * the network once per operation, and the
+ * traffic between the nodes is proportional to
+ * the number of nodes instead of the number of
+ * workers.
+ * 
+ * The steps run the existing algorithms on
+ * groups of the workers, see
+ * Workers.getSubWorkers, each step under its own
+ * operation name.
+ ******************************************************/
+public class HierarchicalCollective {
+
+  private static final Logger LOG =
+      Logger.getLogger(HierarchicalCollective.class);
+
+  private static final String NODE_OP = "-node";
+  private static final String LEADER_OP = "-leader";
+  private static final String FANOUT_OP = "-fanout";
+
+  /**
+   * Check if the node-aware collectives help,
+   * that is the workers run on more than one
+   * node and some node runs more than one worker.
+   *
+   * @param workers the Workers
+   * @return true if the node-aware collectives
+   * should be used
+   */
+  public static boolean isApplicable(
+      Workers workers) {
+    return workers.hasSharedNodes();
+  }
+
+  /**
+   * Broadcast across the node leaders, then
+   * within each node. The root is the leader of
+   * its node.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param bcastWorkerID the worker which broadcasts
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  broadcast(String contextName,
+            String operationName, Table<P> table,
+            int bcastWorkerID, DataMap dataMap,
+            Workers workers) {
+    return broadcast(contextName, operationName,
+        table, bcastWorkerID,
+        BcastCollective.DEFAULT_SCATTER_THRESHOLD,
+        dataMap, workers);
+  }
+
+  /**
+   * Broadcast across the node leaders, then
+   * within each node. In each step, the root
+   * uses scatter-allgather for tables from the
+   * scatter threshold if the group has more than
+   * two workers, and the tree broadcast
+   * otherwise. The chain and MST broadcast, and
+   * so the pipelined broadcast, are forwarded by
+   * the servers to all the workers and cannot run
+   * on a group.
+   *
+   * @param contextName      the name of the context
+   * @param operationName    the name of the operation
+   * @param table            the data Table
+   * @param bcastWorkerID    the worker which broadcasts
+   * @param scatterThreshold the threshold in bytes
+   * @param dataMap          the DataMap
+   * @param workers          the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  broadcast(String contextName,
+            String operationName, Table<P> table,
+            int bcastWorkerID, long scatterThreshold,
+            DataMap dataMap, Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int selfID = workers.getSelfID();
+    List<Integer> leaderIDs =
+        workers.getNodeLeaderIDs(bcastWorkerID);
+    List<Integer> nodeIDs =
+        workers.getNodeWorkerIDs(selfID);
+    int leaderID = getLeaderID(nodeIDs, leaderIDs);
+    boolean isSuccess = true;
+    if (selfID == leaderID) {
+      isSuccess = groupBroadcast(contextName,
+          operationName + LEADER_OP, table,
+          leaderIDs.indexOf(bcastWorkerID),
+          scatterThreshold, dataMap,
+          workers.getSubWorkers(leaderIDs));
+    }
+    // Still fan out on failure, so the workers on
+    // the node do not wait for the timeout
+    isSuccess &= groupBroadcast(contextName,
+        operationName + FANOUT_OP, table,
+        nodeIDs.indexOf(leaderID), scatterThreshold,
+        dataMap, workers.getSubWorkers(nodeIDs));
+    cleanOperationData(contextName,
+        operationName, dataMap);
+    return isSuccess;
+  }
+
+  /**
+   * Reduce within each node to the node leader,
+   * then across the node leaders to the root.
+   *
+   * @param contextName    the name of the context
+   * @param operationName  the operation of the context
+   * @param table          the data Table
+   * @param reduceWorkerID the workerID to send
+   * @param dataMap        the DataMap
+   * @param workers        the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean reduce(
+      String contextName, String operationName,
+      Table<P> table, int reduceWorkerID,
+      DataMap dataMap, Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int selfID = workers.getSelfID();
+    List<Integer> leaderIDs =
+        workers.getNodeLeaderIDs(reduceWorkerID);
+    List<Integer> nodeIDs =
+        workers.getNodeWorkerIDs(selfID);
+    int leaderID = getLeaderID(nodeIDs, leaderIDs);
+    boolean isSuccess = ReduceCollective.reduce(
+        contextName, operationName + NODE_OP,
+        table, nodeIDs.indexOf(leaderID), dataMap,
+        workers.getSubWorkers(nodeIDs));
+    if (isSuccess && selfID == leaderID) {
+      isSuccess = ReduceCollective.reduce(
+          contextName, operationName + LEADER_OP,
+          table, leaderIDs.indexOf(reduceWorkerID),
+          dataMap, workers.getSubWorkers(leaderIDs));
+    }
+    cleanOperationData(contextName,
+        operationName, dataMap);
+    return isSuccess;
+  }
+
+  /**
+   * Reduce within each node, allreduce across the
+   * node leaders with the given algorithm, then
+   * broadcast within each node.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @param algorithm     the allreduce algorithm
+   *                      across the node leaders
+   * @param threshold     the threshold in bytes
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  allreduce(String contextName,
+            String operationName, Table<P> table,
+            DataMap dataMap, Workers workers,
+            String algorithm, long threshold) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int selfID = workers.getSelfID();
+    List<Integer> leaderIDs =
+        workers.getNodeLeaderIDs(
+            Constant.UNKNOWN_WORKER_ID);
+    List<Integer> nodeIDs =
+        workers.getNodeWorkerIDs(selfID);
+    Workers nodeWorkers =
+        workers.getSubWorkers(nodeIDs);
+    boolean isSuccess = ReduceCollective.reduce(
+        contextName, operationName + NODE_OP,
+        table, 0, dataMap, nodeWorkers);
+    if (selfID == nodeIDs.get(0)) {
+      isSuccess &= AllreduceCollective.allreduce(
+          contextName, operationName + LEADER_OP,
+          table, dataMap,
+          workers.getSubWorkers(leaderIDs),
+          algorithm, threshold);
+    }
+    isSuccess &= treeBroadcast(contextName,
+        operationName + FANOUT_OP, table, 0,
+        dataMap, nodeWorkers);
+    cleanOperationData(contextName,
+        operationName, dataMap);
+    return isSuccess;
+  }
+
+  /**
+   * Gather within each node to the node leader,
+   * allgather across the node leaders, then
+   * broadcast within each node.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  allgather(String contextName,
+            String operationName, Table<P> table,
+            DataMap dataMap, Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int selfID = workers.getSelfID();
+    List<Integer> leaderIDs =
+        workers.getNodeLeaderIDs(
+            Constant.UNKNOWN_WORKER_ID);
+    List<Integer> nodeIDs =
+        workers.getNodeWorkerIDs(selfID);
+    Workers nodeWorkers =
+        workers.getSubWorkers(nodeIDs);
+    // Partitions from different workers have
+    // different IDs in allgather, reducing them
+    // gathers them
+    boolean isSuccess = ReduceCollective.reduce(
+        contextName, operationName + NODE_OP,
+        table, 0, dataMap, nodeWorkers);
+    if (selfID == nodeIDs.get(0)) {
+      isSuccess &= AllgatherCollective.allgather(
+          contextName, operationName + LEADER_OP,
+          table, dataMap,
+          workers.getSubWorkers(leaderIDs));
+    }
+    isSuccess &= treeBroadcast(contextName,
+        operationName + FANOUT_OP, table, 0,
+        dataMap, nodeWorkers);
+    cleanOperationData(contextName,
+        operationName, dataMap);
+    return isSuccess;
+  }
+
+  /**
+   * Broadcast in a group of the workers with
+   * scatter-allgather or the tree broadcast. Only
+   * the root looks at the size, the tree
+   * broadcast receives either of them.
+   *
+   * @param contextName      the name of the context
+   * @param operationName    the name of the operation
+   * @param table            the data Table
+   * @param rootID           the root in the group
+   * @param scatterThreshold the threshold in bytes
+   * @param dataMap          the DataMap
+   * @param workers          the group of the workers
+   * @return true if succeeded, false otherwise
+   */
+  private static <P extends Simple> boolean
+  groupBroadcast(String contextName,
+                 String operationName, Table<P> table,
+                 int rootID, long scatterThreshold,
+                 DataMap dataMap, Workers workers) {
+    if (workers.getSelfID() == rootID
+        && workers.getNumWorkers() > 2
+        && SegmentedBcastCollective.getNumBytes(
+        table) >= scatterThreshold) {
+      return SegmentedBcastCollective
+          .scatterAllgatherBroadcast(contextName,
+              operationName, table, rootID, dataMap,
+              workers);
+    }
+    return treeBroadcast(contextName,
+        operationName, table, rootID, dataMap,
+        workers);
+  }
+
+  /**
+   * Binomial tree broadcast with point-to-point
+   * sends, each worker forwards the received data
+   * without decoding it again. Unlike the chain
+   * and MST broadcast, the forwarding is not done
+   * by the server, so it works on a group of the
+   * workers.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param rootID        the root in the group
+   * @param dataMap       the DataMap
+   * @param workers       the group of the workers
+   * @return true if succeeded, false otherwise
+   */
+  static <P extends Simple> boolean
+  treeBroadcast(String contextName,
+                String operationName, Table<P> table,
+                int rootID, DataMap dataMap,
+                Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    int numWorkers = workers.getNumWorkers();
+    int selfID = workers.getSelfID();
+    int rank =
+        (selfID - rootID + numWorkers) % numWorkers;
+    Data data = null;
+    if (rank == 0) {
+      LinkedList<Transferable> ownedPartitions =
+          new LinkedList<>(table.getPartitions());
+      data = new Data(DataType.PARTITION_LIST,
+          contextName, selfID, ownedPartitions,
+          DataUtil
+              .getNumTransListBytes(ownedPartitions),
+          operationName, table.getNumPartitions());
+    } else {
+      data = IOUtil.waitAndGet(dataMap,
+          contextName, operationName);
+      if (data == null) {
+        LOG.error("Fail to receive broadcast data "
+            + operationName);
+        return false;
+      }
+      if (data.getBodyType() != DataType.PARTITION_LIST) {
+        // Sent by scatter-allgather
+        return SegmentedBcastCollective.receive(
+            contextName, operationName, table,
+            rootID, data, dataMap, workers);
+      }
+    }
+    // The children are rank + mask for the masks
+    // above the highest bit of the rank, send to
+    // the largest subtree first
+    int minMask = 1;
+    if (rank > 0) {
+      minMask = Integer.highestOneBit(rank) << 1;
+    }
+    boolean isSuccess = true;
+    for (int mask = Integer.highestOneBit(
+        numWorkers - 1); mask >= minMask; mask >>>= 1) {
+      if (rank + mask < numWorkers) {
+        int destID =
+            (rank + mask + rootID) % numWorkers;
+        DataSender sender = new DataSender(data,
+            destID, workers, Constant.SEND_DECODE);
+        isSuccess &= sender.execute();
+      }
+    }
+    data.releaseHeadArray();
+    data.releaseBodyArray();
+    if (rank != 0) {
+      PartitionUtil.addPartitionsToTable(
+          data.getBody(), table);
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Get the leader of the node from the leaders
+   *
+   * @param nodeIDs   the workers on the node
+   * @param leaderIDs the leaders of the nodes
+   * @return the leader of the node
+   */
+  private static int getLeaderID(
+      List<Integer> nodeIDs,
+      List<Integer> leaderIDs) {
+    for (int leaderID : leaderIDs) {
+      if (nodeIDs.contains(leaderID)) {
+        return leaderID;
+      }
+    }
+    return nodeIDs.get(0);
+  }
+
+  /**
+   * Clean the data of the steps
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param dataMap       the DataMap
+   */
+  private static void cleanOperationData(
+      String contextName, String operationName,
+      DataMap dataMap) {
+    dataMap.cleanOperationData(contextName,
+        operationName + NODE_OP);
+    dataMap.cleanOperationData(contextName,
+        operationName + LEADER_OP);
+    dataMap.cleanOperationData(contextName,
+        operationName + FANOUT_OP);
+  }
+}
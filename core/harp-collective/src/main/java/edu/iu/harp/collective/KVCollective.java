@@ -0,0 +1,270 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.keyval.KVBucket;
+import edu.iu.harp.keyval.KVTable;
+import edu.iu.harp.keyval.SparseKVTable;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.PartitionCombiner;
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.partition.Partitioner;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.Logger;
+
+/*******************************************************
+ * Key-aware allreduce and regroup for primitive
+ * KVTables. The keys are hashed to a bounded
+ * number of buckets, each bucket is sent as
+ * sorted packed arrays (keys optionally delta
+ * encoded as varints) and the owner of the bucket
+ * combines the runs from all the workers by
+ * sort-merge. The traffic is proportional to the
+ * number of distinct keys rather than the number
+ * of key partitions.
+ ******************************************************/
+public class KVCollective {
+
+  private static final Logger LOG =
+    Logger.getLogger(KVCollective.class);
+
+  /**
+   * Regroup the key-value pairs, after the
+   * operation every worker holds the combined
+   * pairs of the buckets it owns (bucket ID mod
+   * the number of workers).
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the KVTable
+   * @param numBuckets    the number of buckets
+   * @param isDelta       delta encode the keys
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <T extends KVTable<?> & SparseKVTable> boolean
+    regroup(String contextName,
+      String operationName, T table, int numBuckets,
+      boolean isDelta, DataMap dataMap,
+      Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    KVBucket[] buckets =
+      regroupBuckets(contextName, operationName,
+        table, numBuckets, isDelta, dataMap,
+        workers);
+    if (buckets == null) {
+      return false;
+    }
+    table.release();
+    for (KVBucket bucket : buckets) {
+      if (bucket != null) {
+        table.addBucket(bucket);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Allreduce the key-value pairs. The buckets are
+   * regrouped and combined on their owners, then
+   * allgathered.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the KVTable
+   * @param numBuckets    the number of buckets
+   * @param isDelta       delta encode the keys
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <T extends KVTable<?> & SparseKVTable> boolean
+    allreduce(String contextName,
+      String operationName, T table, int numBuckets,
+      boolean isDelta, DataMap dataMap,
+      Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    KVBucket[] buckets =
+      regroupBuckets(contextName, operationName,
+        table, numBuckets, isDelta, dataMap,
+        workers);
+    if (buckets == null) {
+      return false;
+    }
+    Table<ByteArray> bucketTable =
+      new Table<>(0, new BucketCombiner());
+    for (KVBucket bucket : buckets) {
+      if (bucket != null && bucket.size() > 0) {
+        ByteArray array = bucket.encode(
+          table.getNumValBytes(), isDelta);
+        if (array == null) {
+          LOG.error("Fail to encode bucket "
+            + bucket.getBucketID());
+          bucketTable.release();
+          return false;
+        }
+        bucketTable.addPartition(new Partition<>(
+          bucket.getBucketID(), array));
+      }
+    }
+    buckets = null;
+    boolean isSuccess =
+      AllgatherCollective.allgather(contextName,
+        operationName + ".allgather", bucketTable,
+        dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      operationName + ".allgather");
+    if (!isSuccess) {
+      bucketTable.release();
+      return false;
+    }
+    // Buckets hold disjoint keys
+    table.release();
+    for (Partition<ByteArray> partition : bucketTable
+      .getPartitions()) {
+      table.addBucket(KVBucket.decode(
+        partition.id(), partition.get()));
+    }
+    bucketTable.release();
+    return true;
+  }
+
+  /**
+   * Send the encoded buckets to their owners and
+   * merge the runs received
+   *
+   * @return the merged buckets owned by this
+   *         worker indexed by the bucket ID, null
+   *         if failed
+   */
+  private static <T extends KVTable<?> & SparseKVTable> KVBucket[]
+    regroupBuckets(String contextName,
+      String operationName, T table, int numBuckets,
+      boolean isDelta, DataMap dataMap,
+      Workers workers) {
+    final int selfID = workers.getSelfID();
+    final int numWorkers = workers.getNumWorkers();
+    if (numBuckets <= 0
+      || (long) numBuckets
+        * numWorkers > Integer.MAX_VALUE) {
+      LOG.error("Invalid number of buckets: "
+        + numBuckets);
+      return null;
+    }
+    // Partition ID: bucket ID * P + worker ID
+    Table<ByteArray> bucketTable =
+      new Table<>(0, new BucketCombiner());
+    KVBucket[] buckets = table.getBuckets(numBuckets);
+    if (buckets != null) {
+      for (KVBucket bucket : buckets) {
+        if (bucket.size() == 0) {
+          continue;
+        }
+        ByteArray array = bucket.encode(
+          table.getNumValBytes(), isDelta);
+        if (array == null) {
+          LOG.error("Fail to encode bucket "
+            + bucket.getBucketID());
+          bucketTable.release();
+          return null;
+        }
+        bucketTable.addPartition(new Partition<>(
+          bucket.getBucketID() * numWorkers
+            + selfID, array));
+      }
+      buckets = null;
+    }
+    boolean isSuccess =
+      RegroupCollective.regroupCombine(contextName,
+        operationName + ".regroup", bucketTable,
+        new BucketPartitioner(numWorkers), dataMap,
+        workers);
+    dataMap.cleanOperationData(contextName,
+      operationName + ".regroup");
+    if (!isSuccess) {
+      bucketTable.release();
+      return null;
+    }
+    // Group the runs by bucket
+    KVBucket[][] runs =
+      new KVBucket[numBuckets][];
+    int[] numRuns = new int[numBuckets];
+    for (Partition<ByteArray> partition : bucketTable
+      .getPartitions()) {
+      int bucketID = partition.id() / numWorkers;
+      if (runs[bucketID] == null) {
+        runs[bucketID] = new KVBucket[numWorkers];
+      }
+      runs[bucketID][numRuns[bucketID]++] =
+        KVBucket.decode(bucketID, partition.get());
+    }
+    bucketTable.release();
+    // A method reference on the intersection type
+    // fails to link on JDK 8, refer to the table
+    // through SparseKVTable
+    SparseKVTable sparseTable = table;
+    KVBucket[] merged = new KVBucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      if (numRuns[i] > 0) {
+        merged[i] = KVBucket.mergeAll(runs[i],
+          numRuns[i], sparseTable::combineVal);
+      }
+    }
+    return merged;
+  }
+
+  /*******************************************************
+   * Sends bucket ID * P + worker ID to the owner
+   * of the bucket
+   ******************************************************/
+  private static class BucketPartitioner
+    extends Partitioner {
+
+    BucketPartitioner(int numWorkers) {
+      super(numWorkers);
+    }
+
+    @Override
+    public int getWorkerID(int partitionID) {
+      return (partitionID / getNumWorkers())
+        % getNumWorkers();
+    }
+  }
+
+  /*******************************************************
+   * Partition IDs of the encoded buckets are
+   * unique, nothing is combined
+   ******************************************************/
+  private static class BucketCombiner
+    extends PartitionCombiner<ByteArray> {
+
+    @Override
+    public PartitionStatus combine(ByteArray curPar,
+      ByteArray newPar) {
+      return PartitionStatus.COMBINE_FAILED;
+    }
+  }
+}
@@ -18,6 +18,7 @@ package edu.iu.harp.collective;
 
 import edu.iu.harp.client.DataChainBcastSender;
 import edu.iu.harp.client.DataSender;
+import edu.iu.harp.client.SenderPool;
 import edu.iu.harp.example.DoubleArrPlus;
 import edu.iu.harp.io.ConnPool;
 import edu.iu.harp.io.Constant;
@@ -36,10 +37,10 @@ import edu.iu.harp.resource.Simple;
 import edu.iu.harp.resource.Transferable;
 import edu.iu.harp.server.Server;
 import edu.iu.harp.util.PartitionCount;
-import edu.iu.harp.util.PartitionSet;
 import edu.iu.harp.worker.Workers;
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.log4j.Logger;
@@ -190,7 +191,32 @@ public class LocalGlobalSyncCollective {
       Workers workers) {
     return pullGlobalToLocal(contextName,
         operationName, localTable, globalTable,
-        useBcast, dataMap, workers);
+        useBcast, null, dataMap, workers);
+  }
+
+  /**
+   * The pull communication operation with a
+   * communication plan, see CommPlan
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param localTable    the local Table
+   * @param globalTable   the global Table
+   * @param useBcast      use broadcast or not
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean pull(
+      final String contextName,
+      final String operationName,
+      Table<P> localTable, Table<P> globalTable,
+      boolean useBcast, CommPlan plan,
+      DataMap dataMap, Workers workers) {
+    return pullGlobalToLocal(contextName,
+        operationName, localTable, globalTable,
+        useBcast, plan, dataMap, workers);
   }
 
   /**
@@ -214,7 +240,32 @@ public class LocalGlobalSyncCollective {
                Workers workers) {
     return pushLocalToGlobal(contextName,
         operationName, localTable, globalTable,
-        partitioner, dataMap, workers);
+        partitioner, null, dataMap, workers);
+  }
+
+  /**
+   * The push communication operation with a
+   * communication plan, see CommPlan
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param localTable    the local Table
+   * @param globalTable   the global Table
+   * @param partitioner   the Partitioner
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple, PT extends Partitioner>
+  boolean push(final String contextName,
+               final String operationName,
+               Table<P> localTable, Table<P> globalTable,
+               PT partitioner, CommPlan plan,
+               DataMap dataMap, Workers workers) {
+    return pushLocalToGlobal(contextName,
+        operationName, localTable, globalTable,
+        partitioner, plan, dataMap, workers);
   }
 
   /**
@@ -229,40 +280,17 @@ public class LocalGlobalSyncCollective {
       String contextName, String operationName,
       List<Partition<P>> ownedPartitions,
       Workers workers) {
-    final int numPartitions =
-        ownedPartitions.size();
     List<Transferable> bcastPartitions =
         new LinkedList<>();
     long size = 0L;
-    int count = 0;
-    int selfID = workers.getSelfID();
     for (Partition<P> partition : ownedPartitions) {
-      long partitionSize =
-          partition.getNumEnocdeBytes();
-      if (size
-          + partitionSize > Constant.MAX_ARRAY_SIZE) {
-        broadcastPartitions(contextName,
-            operationName, selfID, bcastPartitions,
-            (int) size, workers);
-        bcastPartitions.clear();
-        bcastPartitions.add(partition);
-        size = partitionSize;
-        count++;
-      } else {
-        bcastPartitions.add(partition);
-        size += partitionSize;
-        count++;
-      }
-      if (count == numPartitions
-          && size <= Constant.MAX_ARRAY_SIZE) {
-        broadcastPartitions(contextName,
-            operationName, selfID, bcastPartitions,
-            (int) size, workers);
-        bcastPartitions.clear();
-        size = 0L;
-        count = 0;
-      }
+      bcastPartitions.add(partition);
+      size += partition.getNumEnocdeBytes();
     }
+    // A large body is sent in segments
+    broadcastPartitions(contextName,
+        operationName, workers.getSelfID(),
+        bcastPartitions, size, workers);
   }
 
   /**
@@ -278,7 +306,7 @@ public class LocalGlobalSyncCollective {
   private static void broadcastPartitions(
       String contextName, String operationName,
       int selfID,
-      List<Transferable> bcastPartitions, int size,
+      List<Transferable> bcastPartitions, long size,
       Workers workers) {
     if (bcastPartitions.size() > 0) {
       Data data = new Data(
@@ -296,7 +324,9 @@ public class LocalGlobalSyncCollective {
 
   /**
    * Send partitions to destinations according to
-   * the partitionMap
+   * the partitionMap. The destinations are sent
+   * to concurrently by the SenderPool, in the send
+   * order.
    *
    * @param contextName   the name of the context
    * @param operationName the name of the operation
@@ -311,46 +341,32 @@ public class LocalGlobalSyncCollective {
     int[] sendOrder =
         PartitionUtil.createSendOrder(workers);
     int selfID = workers.getSelfID();
+    List<Data> dataList = new LinkedList<>();
+    IntArrayList destIDs = new IntArrayList();
     for (int i = 0; i < sendOrder.length; i++) {
       List<Partition<P>> partitionList =
           partitionMap[sendOrder[i]];
-      if (partitionList != null) {
-        int numPartitions = partitionList.size();
+      if (partitionList != null
+          && !partitionList.isEmpty()) {
         long size = 0L;
-        int count = 0;
         List<Transferable> sendPartitions =
             new LinkedList<>();
         for (Partition<P> partition : partitionList) {
-          long partitionSize =
-              partition.getNumEnocdeBytes();
-          if (size
-              + partitionSize > Constant.MAX_ARRAY_SIZE) {
-            sendPartitions(contextName,
-                operationName, selfID, sendOrder[i],
-                sendPartitions, (int) size,
-                workers);
-            sendPartitions.clear();
-            sendPartitions.add(partition);
-            size = partitionSize;
-            count++;
-          } else {
-            sendPartitions.add(partition);
-            size += partitionSize;
-            count++;
-          }
-          if (count == numPartitions
-              && size <= Constant.MAX_ARRAY_SIZE) {
-            sendPartitions(contextName,
-                operationName, selfID, sendOrder[i],
-                sendPartitions, (int) size,
-                workers);
-            sendPartitions.clear();
-            size = 0L;
-            count++;
-          }
+          sendPartitions.add(partition);
+          size += partition.getNumEnocdeBytes();
         }
+        dataList.add(new Data(
+            DataType.PARTITION_LIST, contextName,
+            selfID, sendPartitions, size,
+            operationName, sendPartitions.size()));
+        destIDs.add(sendOrder[i]);
       }
     }
+    if (!dataList.isEmpty()) {
+      SenderPool.send(dataList,
+          destIDs.toIntArray(), workers,
+          Constant.SEND_DECODE);
+    }
   }
 
   /**
@@ -366,40 +382,16 @@ public class LocalGlobalSyncCollective {
       String contextName, String operationName,
       List<Partition<P>> ownedPartitions,
       Workers workers, DataMap dataMap) {
-    final int numPartitions =
-        ownedPartitions.size();
     List<Transferable> localPartitions =
         new LinkedList<>();
     long size = 0L;
-    int count = 0;
-    int selfID = workers.getSelfID();
     for (Partition<P> partition : ownedPartitions) {
-      long partitionSize =
-          partition.getNumEnocdeBytes();
-      if (size
-          + partitionSize > Constant.MAX_ARRAY_SIZE) {
-        copyPartitions(contextName, operationName,
-            selfID, localPartitions, (int) size,
-            workers, dataMap);
-        localPartitions.clear();
-        localPartitions.add(partition);
-        size = partitionSize;
-        count++;
-      } else {
-        localPartitions.add(partition);
-        size += partitionSize;
-        count++;
-      }
-      if (count == numPartitions
-          && size <= Constant.MAX_ARRAY_SIZE) {
-        copyPartitions(contextName, operationName,
-            selfID, localPartitions, (int) size,
-            workers, dataMap);
-        localPartitions.clear();
-        size = 0L;
-        count = 0;
-      }
+      localPartitions.add(partition);
+      size += partition.getNumEnocdeBytes();
     }
+    copyPartitions(contextName, operationName,
+        workers.getSelfID(), localPartitions, size,
+        workers, dataMap);
   }
 
   /**
@@ -416,7 +408,7 @@ public class LocalGlobalSyncCollective {
   private static void copyPartitions(
       String contextName, String operationName,
       int selfID,
-      List<Transferable> localPartitions, int size,
+      List<Transferable> localPartitions, long size,
       Workers workers, DataMap dataMap) {
     if (localPartitions.size() > 0) {
       Data data = new Data(
@@ -426,7 +418,7 @@ public class LocalGlobalSyncCollective {
       data.encodeHead();
       data.encodeBody();
       final Data newData = new Data(
-          data.getHeadArray(), data.getBodyArray());
+          data.getHeadArray(), data.getBodySegments());
       data = null;
       newData.decodeHeadArray();
       newData.decodeBodyArray();
@@ -458,56 +450,84 @@ public class LocalGlobalSyncCollective {
                             String operationName, Table<P> localTable,
                             Table<P> globalTable, PT partitioner,
                             DataMap dataMap, Workers workers) {
+    return pushLocalToGlobal(contextName,
+        operationName, localTable, globalTable,
+        partitioner, null, dataMap, workers);
+  }
+
+  /**
+   * The push communication operation with a
+   * communication plan. The first call with the
+   * plan exchanges the routes of the partitions,
+   * the later calls reuse the routes.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param localTable    the local Table
+   * @param globalTable   the global Table
+   * @param partitioner   the Partitioner
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple, PT extends Partitioner>
+  boolean pushLocalToGlobal(String contextName,
+                            String operationName, Table<P> localTable,
+                            Table<P> globalTable, PT partitioner,
+                            CommPlan plan, DataMap dataMap,
+                            Workers workers) {
     final int selfID = workers.getSelfID();
     final int numWorkers =
         workers.getNumWorkers();
-    // ---------------------------------------------------
-    // Broadcast global table's partition
-    // distribution to all the workers
-    List<Transferable> commList =
-        new LinkedList<>();
-    boolean isSuccess = PartitionUtil
-        .allgatherPartitionSet(contextName,
-            operationName + ".allgather.global",
-            globalTable, commList, dataMap, workers);
-    if (!isSuccess) {
-      return false;
-    }
-    // ------------------------------------------
-    Int2IntOpenHashMap globalTableMap =
-        new Int2IntOpenHashMap();
-    for (Transferable trans : commList) {
-      PartitionSet recvPSet =
-          (PartitionSet) trans;
-      final IntArrayList pList =
-          recvPSet.getParSet();
-      if (pList != null) {
-        int workerID = recvPSet.getWorkerID();
-        for (int pID : pList) {
-          globalTableMap.put(pID, workerID);
-        }
-      }
-    }
-    DataUtil.releaseTransList(commList);
-    // ---------------------------------------------
-    isSuccess = PartitionUtil
-        .regroupPartitionCount(contextName,
-            operationName + ".regroup.local",
-            localTable, commList, globalTableMap,
-            partitioner, dataMap, workers);
-    if (!isSuccess) {
-      return false;
-    }
-    // --------------------------------------------
+    Int2IntOpenHashMap globalTableMap = null;
     int numRecvPartitions = 0;
-    for (Transferable trans : commList) {
-      PartitionCount recvPCount =
-          (PartitionCount) trans;
-      numRecvPartitions +=
-          recvPCount.getPartitionCount();
+    // The global table gets the pushed partitions,
+    // only the local table layout is checked
+    if (plan != null && plan.isPlanned()) {
+      // Each call reusing the plan has its own name
+      String callName =
+          plan.nextOperationName(operationName);
+      if (!plan.check(operationName, false,
+          localTable)) {
+        CommPlan.abort(contextName, callName,
+            dataMap, workers);
+        return false;
+      }
+      globalTableMap = plan.getWorkerMap();
+      numRecvPartitions =
+          plan.getNumRecvPartitions();
+      operationName = callName;
+    } else {
+      // ---------------------------------------------------
+      // Route the local partitions to the holders
+      // of the global partitions, or by the
+      // partitioner
+      Int2ObjectOpenHashMap<IntArrayList> routes =
+          new Int2ObjectOpenHashMap<>();
+      numRecvPartitions = PartitionUtil
+          .exchangeRoutes(contextName,
+              operationName + ".routes",
+              localTable.getPartitionIDs(),
+              globalTable.getPartitionIDs(),
+              partitioner, routes, dataMap, workers);
+      if (numRecvPartitions == PartitionUtil.FAIL_TO_REGROUP_PARTITION_SET) {
+        return false;
+      }
+      globalTableMap = new Int2IntOpenHashMap();
+      globalTableMap.defaultReturnValue(
+          Constant.UNKNOWN_WORKER_ID);
+      for (Int2ObjectMap.Entry<IntArrayList> entry : routes
+          .int2ObjectEntrySet()) {
+        // A global partition has one holder
+        globalTableMap.put(entry.getIntKey(),
+            entry.getValue().getInt(0));
+      }
+      if (plan != null) {
+        plan.plan(new Table<?>[]{localTable},
+            globalTableMap, numRecvPartitions);
+      }
     }
-    DataUtil.releaseTransList(commList);
-    commList = null;
     // -------------------------------------------
     @SuppressWarnings("unchecked")
     List<Partition<P>>[] sendPartitionMap =
@@ -542,10 +562,16 @@ public class LocalGlobalSyncCollective {
     }
     // ---------------------------------------------
     // Start receiving
-    return PartitionUtil.receivePartitions(
-        contextName, operationName, globalTable,
-        numRecvPartitions, new IntArrayList(),
-        dataMap);
+    boolean isSuccess = PartitionUtil
+        .receivePartitions(
+            contextName, operationName, globalTable,
+            numRecvPartitions, new IntArrayList(),
+            dataMap);
+    if (plan != null) {
+      dataMap.cleanOperationData(contextName,
+          operationName);
+    }
+    return isSuccess;
   }
 
   /**
@@ -569,72 +595,78 @@ public class LocalGlobalSyncCollective {
                     final boolean useBcast,
                     final DataMap dataMap,
                     final Workers workers) {
+    return pullGlobalToLocal(contextName,
+        operationName, localTable, globalTable,
+        useBcast, null, dataMap, workers);
+  }
+
+  /**
+   * The pull communication operation with a
+   * communication plan. The first call with the
+   * plan exchanges the routes of the requested
+   * partitions, the later calls reuse the routes.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param localTable    the local Table
+   * @param globalTable   the global Table
+   * @param useBcast      use broadcast or not
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  pullGlobalToLocal(final String contextName,
+                    String operationName,
+                    final Table<P> localTable,
+                    final Table<P> globalTable,
+                    final boolean useBcast,
+                    final CommPlan plan,
+                    final DataMap dataMap,
+                    final Workers workers) {
     final int selfID = workers.getSelfID();
     final int numWorkers =
         workers.getNumWorkers();
-    // ------------------------------------------------
-    List<Transferable> commList =
-        new LinkedList<>();
-    boolean isSuccess = PartitionUtil
-        .allgatherPartitionSet(contextName,
-            operationName + ".allgather.global",
-            globalTable, commList, dataMap, workers);
-    if (!isSuccess) {
-      return false;
-    }
-    // -----------------------------------------------
-    // Record partition distribution on the global
-    // table partition ID <-> worker ID
-    Int2IntOpenHashMap globalParDistrMap =
-        new Int2IntOpenHashMap();
-    for (Transferable trans : commList) {
-      PartitionSet recvPSet =
-          (PartitionSet) trans;
-      IntArrayList pIDList = recvPSet.getParSet();
-      if (pIDList != null) {
-        int workerID = recvPSet.getWorkerID();
-        for (int pID : pIDList) {
-          globalParDistrMap.put(pID, workerID);
-        }
-      }
-    }
-    DataUtil.releaseTransList(commList);
-    // -----------------------------------------------
-    // Regroup local table info to global table
-    // locations, let the global table holders
-    // know the data sending request
-    int numRecvPartitions = PartitionUtil
-        .regroupPartitionSet(contextName,
-            operationName + ".regroup.local",
-            localTable, commList, globalParDistrMap,
-            null, dataMap, workers);
-    if (numRecvPartitions == PartitionUtil.FAIL_TO_REGROUP_PARTITION_SET) {
-      return false;
-    }
-    // ----------------------------------------------
-    // Detect which and where to send
     Int2ObjectOpenHashMap<IntArrayList> globalParRecvWorkerMap =
-        new Int2ObjectOpenHashMap<>();
-    for (Transferable trans : commList) {
-      PartitionSet recvPSet =
-          (PartitionSet) trans;
-      IntArrayList pList = recvPSet.getParSet();
-      if (pList != null) {
-        int workerID = recvPSet.getWorkerID();
-        for (int pID : pList) {
-          IntArrayList recvWorkerIDs =
-              globalParRecvWorkerMap.get(pID);
-          if (recvWorkerIDs == null) {
-            recvWorkerIDs = new IntArrayList();
-            globalParRecvWorkerMap.put(pID,
-                recvWorkerIDs);
-          }
-          recvWorkerIDs.add(workerID);
-        }
+        null;
+    int numRecvPartitions = 0;
+    if (plan != null && plan.isPlanned()) {
+      // Each call reusing the plan has its own name
+      String callName =
+          plan.nextOperationName(operationName);
+      if (!plan.check(operationName, true,
+          localTable, globalTable)) {
+        CommPlan.abort(contextName, callName,
+            dataMap, workers);
+        return false;
+      }
+      globalParRecvWorkerMap = plan.getWorkersMap();
+      numRecvPartitions =
+          plan.getNumRecvPartitions();
+      operationName = callName;
+    } else {
+      // ------------------------------------------------
+      // Route the global partitions to the workers
+      // requesting them in the local tables
+      globalParRecvWorkerMap =
+          new Int2ObjectOpenHashMap<>();
+      numRecvPartitions = PartitionUtil
+          .exchangeRoutes(contextName,
+              operationName + ".routes",
+              globalTable.getPartitionIDs(),
+              localTable.getPartitionIDs(), null,
+              globalParRecvWorkerMap, dataMap,
+              workers);
+      if (numRecvPartitions == PartitionUtil.FAIL_TO_REGROUP_PARTITION_SET) {
+        return false;
+      }
+      if (plan != null) {
+        plan.plan(new Table<?>[]{localTable,
+            globalTable}, globalParRecvWorkerMap,
+            numRecvPartitions);
       }
     }
-    DataUtil.releaseTransList(commList);
-    commList = null;
     // -----------------------------------------
     // Build communication lists
     List<Partition<P>> bcastPartitions =
@@ -691,10 +723,16 @@ public class LocalGlobalSyncCollective {
     }
     // ---------------------------------------------
     // Receive all the partitions
-    return PartitionUtil.receivePartitions(
-        contextName, operationName, localTable,
-        numRecvPartitions, new IntArrayList(),
-        dataMap);
+    boolean isSuccess = PartitionUtil
+        .receivePartitions(
+            contextName, operationName, localTable,
+            numRecvPartitions, new IntArrayList(),
+            dataMap);
+    if (plan != null) {
+      dataMap.cleanOperationData(contextName,
+          operationName);
+    }
+    return isSuccess;
   }
 
   /**
@@ -786,40 +824,17 @@ public class LocalGlobalSyncCollective {
       String contextName, String operationName,
       Table<P> table, int selfID, int destID,
       Workers workers) {
-    final int numPartitions =
-        table.getNumPartitions();
     List<Transferable> sendPartitions =
         new LinkedList<>();
     long size = 0L;
-    int count = 0;
     for (Partition<P> partition : table
         .getPartitions()) {
-      long partitionSize =
-          partition.getNumEnocdeBytes();
-      if (size
-          + partitionSize > Constant.MAX_ARRAY_SIZE) {
-        sendPartitions(contextName, operationName,
-            selfID, destID, sendPartitions,
-            (int) size, workers);
-        sendPartitions.clear();
-        sendPartitions.add(partition);
-        size = partitionSize;
-        count++;
-      } else {
-        sendPartitions.add(partition);
-        size += partitionSize;
-        count++;
-      }
-      if (count == numPartitions
-          && size <= Constant.MAX_ARRAY_SIZE) {
-        sendPartitions(contextName, operationName,
-            selfID, destID, sendPartitions,
-            (int) size, workers);
-        sendPartitions.clear();
-        size = 0L;
-        count = 0;
-      }
+      sendPartitions.add(partition);
+      size += partition.getNumEnocdeBytes();
     }
+    sendPartitions(contextName, operationName,
+        selfID, destID, sendPartitions, size,
+        workers);
   }
 
   /**
@@ -836,7 +851,7 @@ public class LocalGlobalSyncCollective {
   private static void sendPartitions(
       String contextName, String operationName,
       int selfID, int destID,
-      List<Transferable> sendPartitions, int size,
+      List<Transferable> sendPartitions, long size,
       Workers workers) {
     if (sendPartitions.size() > 0) {
       Data data = new Data(
@@ -156,6 +156,32 @@ public class RegroupCollective {
                  String operationName, Table<P> table,
                  Partitioner partitioner, DataMap dataMap,
                  Workers workers) {
+    return regroupCombine(contextName,
+        operationName, table, partitioner, null,
+        dataMap, workers);
+  }
+
+  /**
+   * The regroup communication operation with a
+   * communication plan. The first call with the
+   * plan exchanges the partition counts and
+   * records the routing, the later calls reuse it
+   * without any metadata round.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the Table
+   * @param partitioner   the Partitioner
+   * @param plan          the plan, null if not reused
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+  regroupCombine(final String contextName,
+                 String operationName, Table<P> table,
+                 Partitioner partitioner, CommPlan plan,
+                 DataMap dataMap, Workers workers) {
     if (workers.isTheOnlyWorker()) {
       return true;
     }
@@ -164,33 +190,53 @@ public class RegroupCollective {
         workers.getNumWorkers();
     // -----------------------------------------
     // A partition to worker map
-    Int2IntOpenHashMap partitionMap =
-        new Int2IntOpenHashMap(
-            table.getNumPartitions());
-    if (partitioner == null) {
-      partitioner = new Partitioner(numWorkers);
-    }
-    List<Transferable> recvPCounts =
-        new LinkedList<>();
-    boolean isSuccess = PartitionUtil
-        .regroupPartitionCount(contextName,
-            operationName + ".regroup.meta", table,
-            recvPCounts, partitionMap, partitioner,
-            dataMap, workers);
-    if (!isSuccess) {
-      return false;
-    }
+    Int2IntOpenHashMap partitionMap = null;
     int numRecvPartitions = 0;
-    for (Transferable trans : recvPCounts) {
-      PartitionCount pCount =
-          (PartitionCount) trans;
-      if (pCount.getWorkerID() != selfID) {
-        numRecvPartitions +=
-            pCount.getPartitionCount();
+    if (plan != null && plan.isPlanned()) {
+      // Each call reusing the plan has its own name
+      String callName =
+          plan.nextOperationName(operationName);
+      if (!plan.check(operationName, false,
+          table)) {
+        CommPlan.abort(contextName, callName,
+            dataMap, workers);
+        return false;
+      }
+      partitionMap = plan.getWorkerMap();
+      numRecvPartitions =
+          plan.getNumRecvPartitions();
+      operationName = callName;
+    } else {
+      partitionMap = new Int2IntOpenHashMap(
+          table.getNumPartitions());
+      if (partitioner == null) {
+        partitioner = new Partitioner(numWorkers);
+      }
+      List<Transferable> recvPCounts =
+          new LinkedList<>();
+      boolean isSuccess = PartitionUtil
+          .regroupPartitionCount(contextName,
+              operationName + ".regroup.meta", table,
+              recvPCounts, partitionMap, partitioner,
+              dataMap, workers);
+      if (!isSuccess) {
+        return false;
+      }
+      for (Transferable trans : recvPCounts) {
+        PartitionCount pCount =
+            (PartitionCount) trans;
+        if (pCount.getWorkerID() != selfID) {
+          numRecvPartitions +=
+              pCount.getPartitionCount();
+        }
+      }
+      DataUtil.releaseTransList(recvPCounts);
+      recvPCounts = null;
+      if (plan != null) {
+        plan.plan(new Table<?>[]{table},
+            partitionMap, numRecvPartitions);
       }
     }
-    DataUtil.releaseTransList(recvPCounts);
-    recvPCounts = null;
     // ----------------------------------------
     // Send partition
     @SuppressWarnings("unchecked")
@@ -220,9 +266,15 @@ public class RegroupCollective {
           contextName, operationName,
           sendPartitionMap, workers);
     }
-    return PartitionUtil.receivePartitions(
-        contextName, operationName, table,
-        numRecvPartitions, rmPartitionIDs, dataMap);
+    boolean isSuccess = PartitionUtil
+        .receivePartitions(
+            contextName, operationName, table,
+            numRecvPartitions, rmPartitionIDs, dataMap);
+    if (plan != null) {
+      dataMap.cleanOperationData(contextName,
+          operationName);
+    }
+    return isSuccess;
   }
 
   /**
@@ -0,0 +1,647 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.collective;
+
+import edu.iu.harp.client.DataChainBcastSender;
+import edu.iu.harp.client.DataMSTBcastSender;
+import edu.iu.harp.client.DataSender;
+import edu.iu.harp.client.Sender;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.PartitionUtil;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.Array;
+import edu.iu.harp.resource.LongArray;
+import edu.iu.harp.resource.Simple;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.worker.Workers;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.log4j.Logger;
+
+import java.util.List;
+
+/*******************************************************
+ * Broadcast of large tables in segments. Array
+ * partitions are cut into slices and the table
+ * is sent as a series of messages of about the
+ * segment size, which travel down the chain or
+ * the MST one after another, so a worker
+ * forwards a segment while the next one is still
+ * on the way instead of waiting for the whole
+ * table. Scatter-allgather sends 1/P of the table
+ * to each worker and circulates the parts in a
+ * ring, so the root sends about 2N bytes
+ * whatever the number of workers.
+ * 
+ * Every message is a simple list whose first
+ * object is a LongArray layout: the kind of
+ * broadcast, the number of segments, the segment
+ * index, then (partition ID, offset, array size)
+ * of each following object, offset -1 for a
+ * whole partition. Receivers learn the kind from
+ * the first message, and also accept the single
+ * message of BcastCollective.broadcast, so only
+ * the root needs to pick the algorithm.
+ ******************************************************/
+public class SegmentedBcastCollective {
+
+  private static final Logger LOG = Logger
+    .getLogger(SegmentedBcastCollective.class);
+
+  private static final long PIPELINE_KIND = 1L;
+  private static final long SCATTER_KIND = 2L;
+  /** Kind, number of segments and segment index */
+  private static final int HEADER_SIZE = 3;
+  /** The offset of a whole partition */
+  private static final long WHOLE_OFFSET = -1L;
+
+  /**
+   * Broadcast the table as segments of about
+   * segmentSize bytes, each sent with the chain
+   * or the MST method
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param bcastWorkerID the worker which broadcasts
+   * @param useMSTBcast   use MST method or not
+   * @param segmentSize   the size of a segment in
+   *                      bytes
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+    pipelinedBroadcast(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, boolean useMSTBcast,
+      int segmentSize, DataMap dataMap,
+      Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    if (workers.getSelfID() != bcastWorkerID) {
+      return receive(contextName, operationName,
+        table, bcastWorkerID, dataMap, workers);
+    }
+    List<Segment> segments =
+      split(table, segmentSize, Integer.MAX_VALUE);
+    boolean isSuccess = true;
+    for (int i = 0; i < segments.size()
+      && isSuccess; i++) {
+      Data sendData = segments.get(i).createData(
+        PIPELINE_KIND, segments.size(), i,
+        contextName, operationName, bcastWorkerID,
+        i);
+      Sender sender = null;
+      if (useMSTBcast) {
+        sender = new DataMSTBcastSender(sendData,
+          workers, Constant.MST_BCAST_DECODE);
+      } else {
+        sender = new DataChainBcastSender(sendData,
+          workers, Constant.CHAIN_BCAST_DECODE);
+      }
+      isSuccess = sender.execute();
+      // The slices are views of the partitions
+      sendData.releaseHeadArray();
+      sendData.releaseBodyArray();
+    }
+    if (!isSuccess) {
+      LOG.error("Fail to broadcast "
+        + segments.size() + " segments.");
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Broadcast the table by scattering P parts of
+   * it and allgathering them in a ring
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param bcastWorkerID the worker which broadcasts
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+    scatterAllgatherBroadcast(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, DataMap dataMap,
+      Workers workers) {
+    if (workers.isTheOnlyWorker()) {
+      return true;
+    }
+    if (workers.getSelfID() != bcastWorkerID) {
+      return receive(contextName, operationName,
+        table, bcastWorkerID, dataMap, workers);
+    }
+    int numWorkers = workers.getNumWorkers();
+    int minID = workers.getMinID();
+    long numBytes = getNumBytes(table);
+    List<Segment> segments = split(table,
+      (numBytes + numWorkers - 1) / numWorkers,
+      numWorkers);
+    while (segments.size() < numWorkers) {
+      segments.add(new Segment());
+    }
+    boolean isSuccess = true;
+    // Scatter, the part of rank r goes to rank r
+    for (int rank = 1; rank < numWorkers
+      && isSuccess; rank++) {
+      isSuccess = sendSegment(contextName,
+        operationName, segments.get(rank), rank, 0,
+        minID + mod(bcastWorkerID - minID + rank,
+          numWorkers),
+        workers);
+    }
+    // Ring, the root only sends. In step s, rank
+    // r sends part r - s to rank r + 1.
+    int nextID = workers.getNextID();
+    for (int step = 0; step < numWorkers - 1
+      && isSuccess; step++) {
+      int index = mod(-step, numWorkers);
+      isSuccess = sendSegment(contextName,
+        operationName, segments.get(index), index,
+        step + 1, nextID, workers);
+    }
+    if (!isSuccess) {
+      LOG.error("Fail to scatter-allgather.");
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Receive the table broadcast by
+   * pipelinedBroadcast, scatterAllgatherBroadcast
+   * or BcastCollective.broadcast
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param bcastWorkerID the worker which broadcasts
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  public static <P extends Simple> boolean
+    receive(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, DataMap dataMap,
+      Workers workers) {
+    Data recvData = IOUtil.waitAndGet(dataMap,
+      contextName, operationName);
+    if (recvData == null) {
+      return false;
+    }
+    return receive(contextName, operationName,
+      table, bcastWorkerID, recvData, dataMap,
+      workers);
+  }
+
+  /**
+   * Receive the table from the first message
+   * already taken from the DataMap
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param table         the data Table
+   * @param bcastWorkerID the worker which broadcasts
+   * @param recvData      the first message
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return true if succeeded, false otherwise
+   */
+  static <P extends Simple> boolean receive(
+    String contextName, String operationName,
+    Table<P> table, int bcastWorkerID,
+    Data recvData, DataMap dataMap,
+    Workers workers) {
+    recvData.releaseHeadArray();
+    recvData.releaseBodyArray();
+    if (recvData.getBodyType() == DataType.PARTITION_LIST) {
+      // The whole table in one message
+      PartitionUtil.addPartitionsToTable(
+        recvData.getBody(), table);
+      return true;
+    }
+    long[] layout = getLayout(recvData);
+    if (layout == null) {
+      LOG.error("Unknown broadcast message.");
+      recvData.release();
+      return false;
+    }
+    if (layout[0] == SCATTER_KIND) {
+      return receiveScatterAllgather(contextName,
+        operationName, table, bcastWorkerID,
+        recvData, dataMap, workers);
+    } else {
+      return receivePipelined(contextName,
+        operationName, table, recvData,
+        (int) layout[1], dataMap);
+    }
+  }
+
+  /**
+   * Receive the segments of a pipelined broadcast
+   */
+  private static <P extends Simple> boolean
+    receivePipelined(String contextName,
+      String operationName, Table<P> table,
+      Data recvData, int numSegments,
+      DataMap dataMap) {
+    Assembler assembler = new Assembler();
+    boolean isSuccess = assembler.add(recvData);
+    for (int i = 1; i < numSegments
+      && isSuccess; i++) {
+      recvData = IOUtil.waitAndGet(dataMap,
+        contextName, operationName);
+      if (recvData == null) {
+        isSuccess = false;
+      } else {
+        recvData.releaseHeadArray();
+        recvData.releaseBodyArray();
+        isSuccess = assembler.add(recvData);
+      }
+    }
+    return assembler.finish(isSuccess, table);
+  }
+
+  /**
+   * Receive the part of this worker, then forward
+   * each part to the next worker and receive the
+   * next part from the previous one
+   */
+  private static <P extends Simple> boolean
+    receiveScatterAllgather(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, Data firstData,
+      DataMap dataMap, Workers workers) {
+    int numWorkers = workers.getNumWorkers();
+    int nextID = workers.getNextID();
+    Int2ObjectOpenHashMap<Data> cachedDataMap =
+      new Int2ObjectOpenHashMap<>();
+    cachedDataMap.put(firstData.getPartitionID(),
+      firstData);
+    Assembler assembler = new Assembler();
+    boolean isSuccess = true;
+    Data part = recvStep(contextName,
+      operationName, 0, dataMap, cachedDataMap);
+    for (int step = 0; step < numWorkers - 1
+      && isSuccess; step++) {
+      if (part == null) {
+        isSuccess = false;
+        break;
+      }
+      if (nextID != bcastWorkerID) {
+        Data sendData = new Data(
+          DataType.SIMPLE_LIST, contextName,
+          workers.getSelfID(), part.getBody(),
+          DataUtil.getNumTransListBytes(
+            part.getBody()),
+          operationName, step + 1);
+        isSuccess = new DataSender(sendData,
+          nextID, workers, Constant.SEND_DECODE)
+            .execute();
+        sendData.releaseHeadArray();
+        sendData.releaseBodyArray();
+      }
+      isSuccess &= assembler.add(part);
+      part = null;
+      if (isSuccess) {
+        part = recvStep(contextName, operationName,
+          step + 1, dataMap, cachedDataMap);
+      }
+    }
+    if (isSuccess) {
+      isSuccess = part != null && assembler.add(part);
+    } else if (part != null) {
+      part.release();
+    }
+    for (Data data : cachedDataMap.values()) {
+      data.release();
+    }
+    cachedDataMap.clear();
+    return assembler.finish(isSuccess, table);
+  }
+
+  /**
+   * Get the message tagged with the step
+   *
+   * @return the message, null if failed
+   */
+  private static Data recvStep(String contextName,
+    String operationName, int step,
+    DataMap dataMap,
+    Int2ObjectOpenHashMap<Data> cachedDataMap) {
+    Data recvData = cachedDataMap.remove(step);
+    while (recvData == null) {
+      Data data = IOUtil.waitAndGet(dataMap,
+        contextName, operationName);
+      if (data == null) {
+        return null;
+      }
+      data.releaseHeadArray();
+      data.releaseBodyArray();
+      if (data.getPartitionID() == step) {
+        recvData = data;
+      } else {
+        cachedDataMap.put(data.getPartitionID(),
+          data);
+      }
+    }
+    return recvData;
+  }
+
+  private static boolean sendSegment(
+    String contextName, String operationName,
+    Segment segment, int index, int step,
+    int destID, Workers workers) {
+    Data sendData = segment.createData(
+      SCATTER_KIND, workers.getNumWorkers(), index,
+      contextName, operationName,
+      workers.getSelfID(), step);
+    boolean isSuccess = new DataSender(sendData,
+      destID, workers, Constant.SEND_DECODE)
+        .execute();
+    sendData.releaseHeadArray();
+    sendData.releaseBodyArray();
+    return isSuccess;
+  }
+
+  /**
+   * Get the number of bytes of the partitions
+   *
+   * @param table the data Table
+   * @return the number of bytes
+   */
+  public static <P extends Simple> long
+    getNumBytes(Table<P> table) {
+    long numBytes = 0L;
+    for (Partition<P> partition : table
+      .getPartitions()) {
+      numBytes += partition.getNumEnocdeBytes();
+    }
+    return numBytes;
+  }
+
+  /**
+   * Cut the table into segments of about
+   * segmentSize bytes. Arrays are sliced, other
+   * partitions are kept whole. The last of
+   * maxSegments segments takes the rest.
+   *
+   * @return the segments, at least one
+   */
+  static <P extends Simple> List<Segment> split(
+    Table<P> table, long segmentSize,
+    int maxSegments) {
+    segmentSize = Math.max(segmentSize, 1L);
+    List<Segment> segments =
+      new ObjectArrayList<>();
+    Segment segment = new Segment();
+    segments.add(segment);
+    for (Partition<P> partition : table
+      .getPartitions()) {
+      Simple obj = partition.get();
+      int type =
+        ChunkedAllreduceCollective.getArrayType(obj);
+      if (type == DataType.UNKNOWN_DATA_TYPE
+        || ((Array<?>) obj).size() == 0) {
+        if (segment.numBytes >= segmentSize
+          && segments.size() < maxSegments) {
+          segment = new Segment();
+          segments.add(segment);
+        }
+        segment.add(partition.id(), WHOLE_OFFSET,
+          0, obj);
+        continue;
+      }
+      Array<?> array = (Array<?>) obj;
+      int size = array.size();
+      int elementBytes = getElementBytes(type);
+      int offset = 0;
+      while (offset < size) {
+        if (segment.numBytes >= segmentSize
+          && segments.size() < maxSegments) {
+          segment = new Segment();
+          segments.add(segment);
+        }
+        int length = size - offset;
+        if (segments.size() < maxSegments) {
+          long room = Math.max(
+            segmentSize - segment.numBytes,
+            elementBytes) / elementBytes;
+          length = (int) Math.min(length, room);
+        }
+        segment.add(partition.id(), offset, size,
+          ChunkedAllreduceCollective.createArray(
+            array, array.get(),
+            array.start() + offset, length));
+        offset += length;
+      }
+    }
+    return segments;
+  }
+
+  private static int getElementBytes(int type) {
+    if (type == DataType.DOUBLE_ARRAY
+      || type == DataType.LONG_ARRAY) {
+      return 8;
+    } else {
+      return 4;
+    }
+  }
+
+  /**
+   * Get the layout of a segment message
+   *
+   * @return the layout, null if not a segment
+   */
+  private static long[] getLayout(Data data) {
+    List<Transferable> body = data.getBody();
+    if (body == null || body.isEmpty()
+      || !(body.get(0) instanceof LongArray)) {
+      return null;
+    }
+    LongArray layout = (LongArray) body.get(0);
+    if (layout.start() != 0
+      || layout.size() < HEADER_SIZE
+      || (layout.size() - HEADER_SIZE) % 3 != 0
+      || (layout.size() - HEADER_SIZE) / 3
+        != body.size() - 1) {
+      return null;
+    }
+    return layout.get();
+  }
+
+  private static int mod(int a, int b) {
+    return ((a % b) + b) % b;
+  }
+
+  /*******************************************************
+   * The objects of a message and their layout
+   ******************************************************/
+  static class Segment {
+    private final LongArrayList layout =
+      new LongArrayList();
+    private final List<Transferable> objs =
+      new ObjectArrayList<>();
+    private long numBytes = 0L;
+
+    private void add(int partitionID, long offset,
+      int size, Simple obj) {
+      layout.add(partitionID);
+      layout.add(offset);
+      layout.add(size);
+      objs.add(obj);
+      numBytes += obj.getNumEnocdeBytes();
+    }
+
+    int getNumObjects() {
+      return objs.size();
+    }
+
+    long getNumBytes() {
+      return numBytes;
+    }
+
+    private Data createData(long kind,
+      int numSegments, int index,
+      String contextName, String operationName,
+      int workerID, int tag) {
+      long[] longs =
+        new long[HEADER_SIZE + layout.size()];
+      longs[0] = kind;
+      longs[1] = numSegments;
+      longs[2] = index;
+      layout.getElements(0, longs, HEADER_SIZE,
+        layout.size());
+      List<Transferable> body =
+        new ObjectArrayList<>(objs.size() + 1);
+      body.add(new LongArray(longs, 0,
+        longs.length));
+      body.addAll(objs);
+      return new Data(DataType.SIMPLE_LIST,
+        contextName, workerID, body,
+        DataUtil.getNumTransListBytes(body),
+        operationName, tag);
+    }
+  }
+
+  /*******************************************************
+   * Put the received slices back into arrays
+   ******************************************************/
+  private static class Assembler {
+    private final Int2ObjectOpenHashMap<Array<?>> arrays =
+      new Int2ObjectOpenHashMap<>();
+    private final List<Transferable> partitions =
+      new ObjectArrayList<>();
+
+    /**
+     * Take the objects of a segment message
+     *
+     * @return true if the layout matches
+     */
+    private boolean add(Data data) {
+      long[] layout = getLayout(data);
+      List<Transferable> body = data.getBody();
+      if (layout == null) {
+        data.release();
+        return false;
+      }
+      boolean isSuccess = true;
+      for (int i = 1; i < body.size(); i++) {
+        int pos = HEADER_SIZE + (i - 1) * 3;
+        int partitionID = (int) layout[pos];
+        long offset = layout[pos + 1];
+        int size = (int) layout[pos + 2];
+        Simple obj = (Simple) body.get(i);
+        if (offset == WHOLE_OFFSET) {
+          partitions.add(
+            new Partition<>(partitionID, obj));
+          continue;
+        }
+        if (isSuccess) {
+          isSuccess = copySlice(partitionID,
+            (int) offset, size, obj);
+        }
+        obj.release();
+      }
+      body.get(0).release();
+      body.clear();
+      return isSuccess;
+    }
+
+    private boolean copySlice(int partitionID,
+      int offset, int size, Simple obj) {
+      if (ChunkedAllreduceCollective
+        .getArrayType(obj) == DataType.UNKNOWN_DATA_TYPE) {
+        return false;
+      }
+      Array<?> slice = (Array<?>) obj;
+      Array<?> array = arrays.get(partitionID);
+      if (array == null) {
+        array = ChunkedAllreduceCollective
+          .createArray(slice, size);
+        if (array == null) {
+          return false;
+        }
+        arrays.put(partitionID, array);
+      }
+      if (array.getClass() != slice.getClass()
+        || array.size() != size || offset < 0
+        || offset + slice.size() > size) {
+        return false;
+      }
+      System.arraycopy(slice.get(), slice.start(),
+        array.get(), array.start() + offset,
+        slice.size());
+      return true;
+    }
+
+    /**
+     * Add the partitions to the table, or release
+     * them on failure
+     */
+    private <P extends Simple> boolean finish(
+      boolean isSuccess, Table<P> table) {
+      for (Int2ObjectOpenHashMap.Entry<Array<?>> entry : arrays
+        .int2ObjectEntrySet()) {
+        partitions.add(new Partition<>(
+          entry.getIntKey(), entry.getValue()));
+      }
+      arrays.clear();
+      if (isSuccess) {
+        PartitionUtil.addPartitionsToTable(
+          partitions, table);
+      } else {
+        DataUtil.releaseTransList(partitions);
+        partitions.clear();
+      }
+      return isSuccess;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package edu.iu.harp.combiner;
+
+import edu.iu.harp.partition.PartitionCombiner;
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.resource.Array;
+
+import java.util.stream.IntStream;
+
+/**
+ * The base of the primitive array combiners.
+ *
+ * The operation is resolved once in the constructor
+ * to a loop specialised for it, so no operation is
+ * dispatched inside the loop, and each loop is a
+ * plain counted loop the JIT can unroll and
+ * vectorise. The loops index both arrays with the
+ * same index when the two starts are equal, with
+ * different starts the arrays may overlap and the
+ * loops are not vectorised. Arrays of at least
+ * PARALLEL_THRESHOLD elements are combined in
+ * blocks in parallel.
+ *
+ * ARGMAX, ARGMIN and KAHAN_SUM work on pairs of
+ * elements, the arrays of these operations must
+ * have an even size.
+ */
+public abstract class ArrCombiner<A extends Array<T>, T>
+    extends PartitionCombiner<A> {
+  /** Arrays of this size or larger are combined in parallel */
+  public static final int PARALLEL_THRESHOLD = 1 << 20;
+  /** The number of elements combined by a parallel task */
+  static final int BLOCK_SIZE = 1 << 16;
+  private static final int NUM_PROCESSORS =
+      Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Combine length elements of arr2 from start2 into
+   * arr1 from start1.
+   */
+  interface Loop<T> {
+    void apply(T arr1, int start1, T arr2, int start2, int length);
+  }
+
+  protected final Operation operation;
+  private final Loop<T> loop;
+  /** The number of elements in a unit, 2 for pairs */
+  private final int stride;
+
+  ArrCombiner(Operation operation, Loop<T> loop, int stride) {
+    this.operation = operation;
+    this.loop = loop;
+    this.stride = stride;
+  }
+
+  /**
+   * Get the operation of this combiner.
+   *
+   * @return the operation
+   */
+  public Operation getOperation() {
+    return operation;
+  }
+
+  @Override
+  public PartitionStatus combine(A curPar, A newPar) {
+    T arr1 = curPar.get();
+    int start1 = curPar.start();
+    int size1 = curPar.size();
+    T arr2 = newPar.get();
+    int start2 = newPar.start();
+    int size2 = newPar.size();
+    if (size1 != size2 || size2 % stride != 0
+        || start1 < 0 || start2 < 0
+        || start1 + size1 > java.lang.reflect.Array.getLength(arr1)
+        || start2 + size2 > java.lang.reflect.Array.getLength(arr2)) {
+      return PartitionStatus.COMBINE_FAILED;
+    }
+    if (size2 < PARALLEL_THRESHOLD || NUM_PROCESSORS == 1) {
+      loop.apply(arr1, start1, arr2, start2, size2);
+    } else {
+      // BLOCK_SIZE is even, pairs are not split
+      int numBlocks = (size2 + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      IntStream.range(0, numBlocks).parallel().forEach(i -> {
+        int offset = i * BLOCK_SIZE;
+        loop.apply(arr1, start1 + offset, arr2, start2 + offset,
+            Math.min(BLOCK_SIZE, size2 - offset));
+      });
+    }
+    return PartitionStatus.COMBINED;
+  }
+}
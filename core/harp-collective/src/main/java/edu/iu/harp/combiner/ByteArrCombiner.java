@@ -1,7 +1,5 @@
 package edu.iu.harp.combiner;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.ByteArray;
 
 /**
@@ -11,58 +9,131 @@ import edu.iu.harp.resource.ByteArray;
  *     MINUS,
  *     MULTIPLY,
  *     MAX,
- *     MIN
+ *     MIN,
+ *     ARGMAX,
+ *     ARGMIN,
+ *     KAHAN_SUM (the same as SUM)
  */
-public class ByteArrCombiner extends PartitionCombiner<ByteArray> {
-  private Operation operation;
+public class ByteArrCombiner extends ArrCombiner<ByteArray, byte[]> {
 
   public ByteArrCombiner(Operation operation) {
-    this.operation = operation;
+    super(operation, getLoop(operation),
+        DoubleArrCombiner.getStride(operation));
   }
 
-  @Override
-  public PartitionStatus combine(ByteArray curPar,
-                                 ByteArray newPar) {
-    byte[] arr1 = curPar.get();
-    int size1 = curPar.size();
-    byte[] arr2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
+  static Loop<byte[]> getLoop(Operation operation) {
     switch (operation) {
       case SUM:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] += arr2[i];
-        }
-        break;
+      case KAHAN_SUM:
+        return ByteArrCombiner::sum;
       case MINUS:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] -= arr2[i];
-        }
-        break;
+        return ByteArrCombiner::minus;
+      case MULTIPLY:
+        return ByteArrCombiner::multiply;
       case MAX:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] < arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
+        return ByteArrCombiner::max;
       case MIN:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] > arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
-      case MULTIPLY:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] *= arr2[i];
-        }
-        break;
+        return ByteArrCombiner::min;
+      case ARGMAX:
+        return ByteArrCombiner::argmax;
+      case ARGMIN:
+        return ByteArrCombiner::argmin;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown operation " + operation);
+    }
+  }
+
+  static void sum(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] += arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] += arr2[start2 + i];
+      }
+    }
+  }
+
+  static void minus(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] -= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] -= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void multiply(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] *= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] *= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void max(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = (byte) Math.max(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            (byte) Math.max(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void min(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = (byte) Math.min(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            (byte) Math.min(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void argmax(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      byte a = arr1[start1 + i];
+      byte b = arr2[start2 + i];
+      if (a < b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void argmin(byte[] arr1, int start1,
+      byte[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      byte a = arr1[start1 + i];
+      byte b = arr2[start2 + i];
+      if (a > b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
     }
-    return PartitionStatus.COMBINED;
   }
 }
@@ -1,7 +1,5 @@
 package edu.iu.harp.combiner;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.DoubleArray;
 
 /**
@@ -11,59 +9,185 @@ import edu.iu.harp.resource.DoubleArray;
  *     MINUS,
  *     MULTIPLY,
  *     MAX,
- *     MIN
+ *     MIN,
+ *     ARGMAX,
+ *     ARGMIN,
+ *     KAHAN_SUM
+ * MAX and MIN follow Math.max and Math.min, a NaN in
+ * either array gives NaN.
  */
-public class DoubleArrCombiner extends PartitionCombiner<DoubleArray> {
-  private Operation operation;
+public class DoubleArrCombiner extends ArrCombiner<DoubleArray, double[]> {
 
   public DoubleArrCombiner(Operation operation) {
-    this.operation = operation;
+    super(operation, getLoop(operation), getStride(operation));
   }
 
-  @Override
-  public PartitionStatus combine(
-      DoubleArray curPar, DoubleArray newPar) {
-    double[] arr1 = curPar.get();
-    int size1 = curPar.size();
-    double[] arr2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
-
+  static Loop<double[]> getLoop(Operation operation) {
     switch (operation) {
       case SUM:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] += arr2[i];
-        }
-        break;
+        return DoubleArrCombiner::sum;
       case MINUS:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] -= arr2[i];
-        }
-        break;
+        return DoubleArrCombiner::minus;
+      case MULTIPLY:
+        return DoubleArrCombiner::multiply;
       case MAX:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] < arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
+        return DoubleArrCombiner::max;
       case MIN:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] > arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
-      case MULTIPLY:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] *= arr2[i];
-        }
-        break;
+        return DoubleArrCombiner::min;
+      case ARGMAX:
+        return DoubleArrCombiner::argmax;
+      case ARGMIN:
+        return DoubleArrCombiner::argmin;
+      case KAHAN_SUM:
+        return DoubleArrCombiner::kahanSum;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown operation " + operation);
+    }
+  }
+
+  static int getStride(Operation operation) {
+    return operation == Operation.ARGMAX
+        || operation == Operation.ARGMIN
+        || operation == Operation.KAHAN_SUM ? 2 : 1;
+  }
+
+  /**
+   * Add a value to the (sum, compensation) pair
+   * at the index, the arrays combined with
+   * KAHAN_SUM are built this way.
+   *
+   * @param arr the array of pairs
+   * @param index the index of the sum
+   * @param value the value to add
+   */
+  public static void kahanAdd(double[] arr, int index, double value) {
+    double sum = arr[index];
+    double t = sum + value;
+    if (Math.abs(sum) >= Math.abs(value)) {
+      arr[index + 1] += (sum - t) + value;
+    } else {
+      arr[index + 1] += (value - t) + sum;
+    }
+    arr[index] = t;
+  }
+
+  /**
+   * Get the compensated sum of the
+   * (sum, compensation) pair at the index.
+   *
+   * @param arr the array of pairs
+   * @param index the index of the sum
+   * @return the sum
+   */
+  public static double kahanGet(double[] arr, int index) {
+    return arr[index] + arr[index + 1];
+  }
+
+  static void sum(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] += arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] += arr2[start2 + i];
+      }
+    }
+  }
+
+  static void minus(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] -= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] -= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void multiply(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] *= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] *= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void max(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.max(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.max(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void min(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.min(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.min(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void argmax(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      double a = arr1[start1 + i];
+      double b = arr2[start2 + i];
+      if (a < b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void argmin(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      double a = arr1[start1 + i];
+      double b = arr2[start2 + i];
+      if (a > b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void kahanSum(double[] arr1, int start1,
+      double[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      double a = arr1[start1 + i];
+      double b = arr2[start2 + i];
+      double t = a + b;
+      // Neumaier's variant, exact for either order
+      double c = Math.abs(a) >= Math.abs(b)
+          ? (a - t) + b : (b - t) + a;
+      arr1[start1 + i] = t;
+      arr1[start1 + i + 1] += arr2[start2 + i + 1] + c;
     }
-    return PartitionStatus.COMBINED;
   }
 }
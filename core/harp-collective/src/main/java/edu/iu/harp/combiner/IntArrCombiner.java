@@ -1,68 +1,139 @@
 package edu.iu.harp.combiner;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.IntArray;
 
 /**
- * Combine two Integer arrays according to a operation specified.
+ * Combine two int arrays according to a operation specified.
  * Supported operations are
  *     SUM,
  *     MINUS,
  *     MULTIPLY,
  *     MAX,
- *     MIN
+ *     MIN,
+ *     ARGMAX,
+ *     ARGMIN,
+ *     KAHAN_SUM (the same as SUM)
  */
-public class IntArrCombiner extends PartitionCombiner<IntArray> {
-  private Operation operation;
+public class IntArrCombiner extends ArrCombiner<IntArray, int[]> {
 
   public IntArrCombiner(Operation operation) {
-    this.operation = operation;
+    super(operation, getLoop(operation),
+        DoubleArrCombiner.getStride(operation));
   }
 
-  @Override
-  public PartitionStatus combine(IntArray curPar,
-                                 IntArray newPar) {
-    int[] arr1 = curPar.get();
-    int size1 = curPar.size();
-    int[] arr2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
+  static Loop<int[]> getLoop(Operation operation) {
     switch (operation) {
       case SUM:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] += arr2[i];
-        }
-        break;
+      case KAHAN_SUM:
+        return IntArrCombiner::sum;
       case MINUS:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] -= arr2[i];
-        }
-        break;
+        return IntArrCombiner::minus;
+      case MULTIPLY:
+        return IntArrCombiner::multiply;
       case MAX:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] < arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
+        return IntArrCombiner::max;
       case MIN:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] > arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
-      case MULTIPLY:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] *= arr2[i];
-        }
-        break;
+        return IntArrCombiner::min;
+      case ARGMAX:
+        return IntArrCombiner::argmax;
+      case ARGMIN:
+        return IntArrCombiner::argmin;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown operation " + operation);
+    }
+  }
+
+  static void sum(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] += arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] += arr2[start2 + i];
+      }
+    }
+  }
+
+  static void minus(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] -= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] -= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void multiply(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] *= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] *= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void max(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.max(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.max(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void min(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.min(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.min(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void argmax(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      int a = arr1[start1 + i];
+      int b = arr2[start2 + i];
+      if (a < b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void argmin(int[] arr1, int start1,
+      int[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      int a = arr1[start1 + i];
+      int b = arr2[start2 + i];
+      if (a > b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
     }
-    return PartitionStatus.COMBINED;
   }
 }
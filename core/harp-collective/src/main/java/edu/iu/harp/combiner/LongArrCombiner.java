@@ -1,7 +1,5 @@
 package edu.iu.harp.combiner;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.LongArray;
 
 /**
@@ -11,58 +9,131 @@ import edu.iu.harp.resource.LongArray;
  *     MINUS,
  *     MULTIPLY,
  *     MAX,
- *     MIN
+ *     MIN,
+ *     ARGMAX,
+ *     ARGMIN,
+ *     KAHAN_SUM (the same as SUM)
  */
-public class LongArrCombiner extends PartitionCombiner<LongArray> {
-  private Operation operation;
+public class LongArrCombiner extends ArrCombiner<LongArray, long[]> {
 
   public LongArrCombiner(Operation operation) {
-    this.operation = operation;
+    super(operation, getLoop(operation),
+        DoubleArrCombiner.getStride(operation));
   }
 
-  @Override
-  public PartitionStatus combine(LongArray curPar,
-                                 LongArray newPar) {
-    long[] arr1 = curPar.get();
-    int size1 = curPar.size();
-    long[] arr2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
+  static Loop<long[]> getLoop(Operation operation) {
     switch (operation) {
       case SUM:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] += arr2[i];
-        }
-        break;
+      case KAHAN_SUM:
+        return LongArrCombiner::sum;
       case MINUS:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] -= arr2[i];
-        }
-        break;
+        return LongArrCombiner::minus;
+      case MULTIPLY:
+        return LongArrCombiner::multiply;
       case MAX:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] < arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
+        return LongArrCombiner::max;
       case MIN:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] > arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
-      case MULTIPLY:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] *= arr2[i];
-        }
-        break;
+        return LongArrCombiner::min;
+      case ARGMAX:
+        return LongArrCombiner::argmax;
+      case ARGMIN:
+        return LongArrCombiner::argmin;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown operation " + operation);
+    }
+  }
+
+  static void sum(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] += arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] += arr2[start2 + i];
+      }
+    }
+  }
+
+  static void minus(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] -= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] -= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void multiply(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] *= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] *= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void max(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.max(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.max(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void min(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = Math.min(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            Math.min(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void argmax(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      long a = arr1[start1 + i];
+      long b = arr2[start2 + i];
+      if (a < b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void argmin(long[] arr1, int start1,
+      long[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      long a = arr1[start1 + i];
+      long b = arr2[start2 + i];
+      if (a > b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
     }
-    return PartitionStatus.COMBINED;
   }
 }
@@ -5,5 +5,22 @@ public enum Operation {
     MINUS,
     MULTIPLY,
     MAX,
-    MIN
+    MIN,
+    /**
+     * On (value, index) pairs, keep the pair with
+     * the larger value, the smaller index on ties
+     */
+    ARGMAX,
+    /**
+     * On (value, index) pairs, keep the pair with
+     * the smaller value, the smaller index on ties
+     */
+    ARGMIN,
+    /**
+     * On floating point (sum, compensation) pairs,
+     * a compensated sum, see
+     * DoubleArrCombiner.kahanAdd. On integers, the
+     * same as SUM.
+     */
+    KAHAN_SUM
 }
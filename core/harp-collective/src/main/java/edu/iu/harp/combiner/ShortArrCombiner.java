@@ -1,7 +1,5 @@
 package edu.iu.harp.combiner;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.ShortArray;
 
 /**
@@ -11,58 +9,131 @@ import edu.iu.harp.resource.ShortArray;
  *     MINUS,
  *     MULTIPLY,
  *     MAX,
- *     MIN
+ *     MIN,
+ *     ARGMAX,
+ *     ARGMIN,
+ *     KAHAN_SUM (the same as SUM)
  */
-public class ShortArrCombiner extends PartitionCombiner<ShortArray> {
-  private Operation operation;
+public class ShortArrCombiner extends ArrCombiner<ShortArray, short[]> {
 
   public ShortArrCombiner(Operation operation) {
-    this.operation = operation;
+    super(operation, getLoop(operation),
+        DoubleArrCombiner.getStride(operation));
   }
 
-  @Override
-  public PartitionStatus combine(ShortArray curPar,
-                                 ShortArray newPar) {
-    short[] arr1 = curPar.get();
-    int size1 = curPar.size();
-    short[] arr2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
+  static Loop<short[]> getLoop(Operation operation) {
     switch (operation) {
       case SUM:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] += arr2[i];
-        }
-        break;
+      case KAHAN_SUM:
+        return ShortArrCombiner::sum;
       case MINUS:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] -= arr2[i];
-        }
-        break;
+        return ShortArrCombiner::minus;
+      case MULTIPLY:
+        return ShortArrCombiner::multiply;
       case MAX:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] < arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
+        return ShortArrCombiner::max;
       case MIN:
-        for (int i = 0; i < size2; i++) {
-          if (arr1[i] > arr2[i]) {
-            arr1[i] = arr2[i];
-          }
-        }
-        break;
-      case MULTIPLY:
-        for (int i = 0; i < size2; i++) {
-          arr1[i] *= arr2[i];
-        }
-        break;
+        return ShortArrCombiner::min;
+      case ARGMAX:
+        return ShortArrCombiner::argmax;
+      case ARGMIN:
+        return ShortArrCombiner::argmin;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown operation " + operation);
+    }
+  }
+
+  static void sum(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] += arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] += arr2[start2 + i];
+      }
+    }
+  }
+
+  static void minus(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] -= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] -= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void multiply(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] *= arr2[i];
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] *= arr2[start2 + i];
+      }
+    }
+  }
+
+  static void max(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = (short) Math.max(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            (short) Math.max(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void min(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    if (start1 == start2) {
+      for (int i = start1, end = start1 + length; i < end; i++) {
+        arr1[i] = (short) Math.min(arr1[i], arr2[i]);
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        arr1[start1 + i] =
+            (short) Math.min(arr1[start1 + i], arr2[start2 + i]);
+      }
+    }
+  }
+
+  static void argmax(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      short a = arr1[start1 + i];
+      short b = arr2[start2 + i];
+      if (a < b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
+    }
+  }
+
+  static void argmin(short[] arr1, int start1,
+      short[] arr2, int start2, int length) {
+    for (int i = 0; i < length; i += 2) {
+      short a = arr1[start1 + i];
+      short b = arr2[start2 + i];
+      if (a > b || (a == b
+          && arr2[start2 + i + 1] < arr1[start1 + i + 1])) {
+        arr1[start1 + i] = b;
+        arr1[start1 + i + 1] = arr2[start2 + i + 1];
+      }
     }
-    return PartitionStatus.COMBINED;
   }
 }
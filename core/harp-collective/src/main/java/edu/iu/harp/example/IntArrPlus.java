@@ -16,34 +16,15 @@
 
 package edu.iu.harp.example;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
-import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.combiner.IntArrCombiner;
+import edu.iu.harp.combiner.Operation;
 
 /*******************************************************
- * Combiner for IntArray
+ * Combiner for IntArray, the sum of the arrays
  ******************************************************/
-public class IntArrPlus
-  extends PartitionCombiner<IntArray> {
+public class IntArrPlus extends IntArrCombiner {
 
-  /**
-   * Combine two DoubleArrays
-   */
-  @Override
-  public PartitionStatus combine(IntArray curPar,
-    IntArray newPar) {
-    int[] ints1 = curPar.get();
-    int size1 = curPar.size();
-    int[] ints2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
-    for (int i = 0; i < size2; i++) {
-      ints1[i] += ints2[i];
-    }
-    return PartitionStatus.COMBINED;
+  public IntArrPlus() {
+    super(Operation.SUM);
   }
 }
@@ -16,34 +16,15 @@
 
 package edu.iu.harp.example;
 
-import edu.iu.harp.partition.PartitionCombiner;
-import edu.iu.harp.partition.PartitionStatus;
-import edu.iu.harp.resource.LongArray;
+import edu.iu.harp.combiner.LongArrCombiner;
+import edu.iu.harp.combiner.Operation;
 
 /*******************************************************
- * Combiner for LongArray
+ * Combiner for LongArray, the sum of the arrays
  ******************************************************/
-public class LongArrPlus
-  extends PartitionCombiner<LongArray> {
+public class LongArrPlus extends LongArrCombiner {
 
-  /**
-   * Combine two LongArrays
-   */
-  @Override
-  public PartitionStatus combine(LongArray curPar,
-    LongArray newPar) {
-    long[] longs1 = curPar.get();
-    int size1 = curPar.size();
-    long[] longs2 = newPar.get();
-    int size2 = newPar.size();
-    if (size1 != size2) {
-      // throw new Exception("size1: " + size1
-      // + ", size2: " + size2);
-      return PartitionStatus.COMBINE_FAILED;
-    }
-    for (int i = 0; i < size2; i++) {
-      longs1[i] += longs2[i];
-    }
-    return PartitionStatus.COMBINED;
+  public LongArrPlus() {
+    super(Operation.SUM);
   }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************
+ * A bounded ring of fixed-size byte buffers
+ * passed between a producer and a consumer, e.g.
+ * an encoder and a socket writer. Free buffers
+ * are filled by the producer and handed to the
+ * consumer, which gives them back after use, so
+ * the memory used is bounded by the ring size
+ * regardless of the message size.
+ ******************************************************/
+public class ChunkPipeline {
+
+  private static final Logger LOG =
+    Logger.getLogger(ChunkPipeline.class);
+
+  /**
+   * Pipelines run one side in a dedicated thread,
+   * not in the ForkJoinPool, so a side is never
+   * waiting for a busy pool.
+   */
+  private static final ExecutorService executor =
+    Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable,
+        "Harp-Pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  private final ByteArray[] buffers;
+  private final int bufferSize;
+  private final BlockingQueue<ByteArray> freeQueue;
+  private final BlockingQueue<ByteArray> filledQueue;
+  private volatile boolean isFailed;
+  private volatile boolean isEnded;
+
+  /**
+   * Create a pipeline with numBuffers buffers of
+   * bufferSize bytes from the resource pool
+   *
+   * @param numBuffers the number of buffers
+   * @param bufferSize the size of each buffer
+   */
+  public ChunkPipeline(int numBuffers,
+    int bufferSize) {
+    this.buffers = new ByteArray[numBuffers];
+    this.bufferSize = bufferSize;
+    this.freeQueue =
+      new ArrayBlockingQueue<>(numBuffers);
+    this.filledQueue =
+      new ArrayBlockingQueue<>(numBuffers);
+    this.isFailed = false;
+    this.isEnded = false;
+    for (int i = 0; i < numBuffers; i++) {
+      buffers[i] = ByteArray.create(bufferSize, true);
+      if (buffers[i] == null) {
+        isFailed = true;
+        break;
+      }
+      freeQueue.add(new ByteArray(buffers[i].get(),
+        0, bufferSize));
+    }
+  }
+
+  /**
+   * Check if the pipeline can be used
+   *
+   * @return true if all the buffers are allocated
+   *         and no side has failed
+   */
+  public boolean isValid() {
+    return !isFailed;
+  }
+
+  /**
+   * Get the size of each buffer
+   *
+   * @return the size of each buffer
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Take an empty buffer to fill
+   *
+   * @return the buffer
+   * @throws IOException if the pipeline failed
+   */
+  public ByteArray takeFree() throws IOException {
+    return take(freeQueue, false);
+  }
+
+  /**
+   * Hand a filled buffer to the consumer
+   *
+   * @param buffer the buffer from takeFree
+   * @param size   the number of bytes filled
+   */
+  public void putFilled(ByteArray buffer,
+    int size) {
+    filledQueue
+      .add(new ByteArray(buffer.get(), 0, size));
+  }
+
+  /**
+   * Take the next filled buffer. The size of the
+   * returned ByteArray is the number of bytes
+   * filled.
+   *
+   * @return the buffer, null if the producer has
+   *         ended and all the buffers are taken
+   * @throws IOException if the pipeline failed
+   */
+  public ByteArray takeFilled()
+    throws IOException {
+    return take(filledQueue, true);
+  }
+
+  /**
+   * Give a consumed buffer back to the producer
+   *
+   * @param buffer the buffer from takeFilled
+   */
+  public void putFree(ByteArray buffer) {
+    freeQueue.add(
+      new ByteArray(buffer.get(), 0, bufferSize));
+  }
+
+  /**
+   * The producer has no more buffers to fill
+   */
+  public void end() {
+    isEnded = true;
+  }
+
+  /**
+   * Mark the pipeline as failed, the other side
+   * stops at the next take
+   */
+  public void fail() {
+    isFailed = true;
+  }
+
+  /**
+   * Release the buffers to the resource pool. Both
+   * sides must have stopped.
+   */
+  public void release() {
+    freeQueue.clear();
+    filledQueue.clear();
+    for (int i = 0; i < buffers.length; i++) {
+      if (buffers[i] != null) {
+        buffers[i].release();
+        buffers[i] = null;
+      }
+    }
+    isFailed = true;
+  }
+
+  private ByteArray take(
+    BlockingQueue<ByteArray> queue,
+    boolean isEndChecked) throws IOException {
+    int count = 0;
+    while (!isFailed) {
+      try {
+        ByteArray buffer = queue.poll(
+          Constant.SHORT_SLEEP,
+          TimeUnit.MILLISECONDS);
+        if (buffer != null) {
+          return buffer;
+        }
+        // Buffers are put before the end is set
+        if (isEndChecked && isEnded
+          && queue.isEmpty()) {
+          return null;
+        }
+      } catch (InterruptedException e) {
+        if (count == Constant.SMALL_RETRY_COUNT) {
+          break;
+        }
+        count++;
+      }
+    }
+    throw new IOException("Pipeline failed.");
+  }
+
+  /**
+   * Run one side of a pipeline. If it throws an
+   * exception, the pipeline is marked as failed.
+   *
+   * @param pipeline the pipeline
+   * @param task     the task to run
+   * @return the Future of the task
+   */
+  public static <T> Future<T> submit(
+    final ChunkPipeline pipeline,
+    final Callable<T> task) {
+    return executor.submit(() -> {
+      try {
+        return task.call();
+      } catch (Exception e) {
+        LOG.error("Fail to run the pipeline task.",
+          e);
+        pipeline.fail();
+        throw e;
+      }
+    });
+  }
+}
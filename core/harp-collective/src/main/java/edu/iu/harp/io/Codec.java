@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.io;
+
+/*******************************************************
+ * A codec compresses the encoded body of a Data.
+ * The ID is sent in the Data head, so the IDs of
+ * the codecs must be the same on all the workers
+ * and fit in 4 bits.
+ ******************************************************/
+public abstract class Codec {
+
+  /** The ID of no compression */
+  public static final byte NONE = 0;
+
+  /**
+   * Get the ID sent in the Data head
+   *
+   * @return the ID, 1 to 15
+   */
+  public abstract byte getID();
+
+  /**
+   * Get the name used in the configuration
+   *
+   * @return the name
+   */
+  public abstract String getName();
+
+  /**
+   * Get the largest size of the compressed bytes
+   *
+   * @param len the number of bytes to compress
+   * @return the size of the output buffer
+   */
+  public abstract int getMaxCompressedLength(
+      int len);
+
+  /**
+   * Compress the bytes
+   *
+   * @param src    the source bytes
+   * @param srcPos the start of the source
+   * @param len    the number of bytes
+   * @param dst    the output bytes, at least
+   *               getMaxCompressedLength(len)
+   *               bytes from dstPos
+   * @param dstPos the start of the output
+   * @return the number of compressed bytes
+   */
+  public abstract int compress(byte[] src,
+      int srcPos, int len, byte[] dst, int dstPos);
+
+  /**
+   * Decompress the bytes
+   *
+   * @param src    the compressed bytes
+   * @param srcPos the start of the compressed
+   *               bytes
+   * @param len    the number of compressed bytes
+   * @param dst    the output bytes
+   * @param dstPos the start of the output
+   * @param rawLen the number of bytes before
+   *               compression
+   * @return the number of decompressed bytes, -1
+   * if the compressed bytes are corrupted
+   */
+  public abstract int decompress(byte[] src,
+      int srcPos, int len, byte[] dst, int dstPos,
+      int rawLen);
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*******************************************************
+ * Selects the codec of the Data bodies sent. A
+ * codec is chosen by the longest operation name
+ * prefix configured, or the default codec, and
+ * only bodies of at least the threshold size are
+ * compressed. A body is sent as it is if it
+ * doesn't shrink. The codec ID is sent in the
+ * Data head, so the receivers need no
+ * configuration.
+ * 
+ * The counters show how much is saved and the
+ * time spent on it.
+ ******************************************************/
+public class Compression {
+
+  private static final Logger LOG =
+      Logger.getLogger(Compression.class);
+
+  public static final String NONE = "none";
+  public static final long DEFAULT_THRESHOLD =
+      16384L;
+
+  private static final Codec[] CODECS =
+      new Codec[16];
+
+  static {
+    register(new LZCodec());
+    register(new DeltaCodec());
+  }
+
+  private static volatile Compression compression =
+      new Compression(null, DEFAULT_THRESHOLD,
+          new String[0], new Codec[0]);
+
+  private static final AtomicLong numCompressed =
+      new AtomicLong();
+  private static final AtomicLong numIncompressible =
+      new AtomicLong();
+  private static final AtomicLong numRawBytes =
+      new AtomicLong();
+  private static final AtomicLong numCompressedBytes =
+      new AtomicLong();
+  private static final AtomicLong compressNanos =
+      new AtomicLong();
+  private static final AtomicLong numDecompressed =
+      new AtomicLong();
+  private static final AtomicLong decompressNanos =
+      new AtomicLong();
+
+  private final Codec defaultCodec;
+  private final long threshold;
+  private final String[] prefixes;
+  private final Codec[] codecs;
+
+  Compression(Codec defaultCodec, long threshold,
+      String[] prefixes, Codec[] codecs) {
+    this.defaultCodec = defaultCodec;
+    this.threshold = threshold;
+    this.prefixes = prefixes;
+    this.codecs = codecs;
+  }
+
+  private static void register(Codec codec) {
+    CODECS[codec.getID()] = codec;
+  }
+
+  /**
+   * Get the current configuration
+   *
+   * @return the Compression
+   */
+  public static Compression get() {
+    return compression;
+  }
+
+  /**
+   * Configure the compression
+   *
+   * @param codecName  the default codec, "none",
+   *                   "lz" or "delta"
+   * @param threshold  the smallest body size
+   *                   compressed
+   * @param operations the codecs of operations as
+   *                   "prefix=codec,...", can be
+   *                   null or empty
+   * @return true if succeeded, false if a codec
+   * is unknown
+   */
+  public static boolean configure(String codecName,
+      long threshold, String operations) {
+    Codec defaultCodec = null;
+    if (codecName != null
+        && !NONE.equals(codecName)) {
+      defaultCodec = getCodec(codecName);
+      if (defaultCodec == null) {
+        LOG.error("Unknown codec: " + codecName);
+        return false;
+      }
+    }
+    List<String> prefixList = new ArrayList<>();
+    List<Codec> codecList = new ArrayList<>();
+    if (operations != null) {
+      for (String rule : operations.split(",")) {
+        rule = rule.trim();
+        if (rule.isEmpty()) {
+          continue;
+        }
+        int index = rule.lastIndexOf('=');
+        if (index < 0) {
+          LOG.error("Invalid operation codec: "
+              + rule);
+          return false;
+        }
+        String name = rule.substring(index + 1).trim();
+        Codec codec = null;
+        if (!NONE.equals(name)) {
+          codec = getCodec(name);
+          if (codec == null) {
+            LOG.error("Unknown codec: " + name);
+            return false;
+          }
+        }
+        prefixList.add(rule.substring(0, index).trim());
+        codecList.add(codec);
+      }
+    }
+    compression = new Compression(defaultCodec,
+        threshold,
+        prefixList.toArray(new String[0]),
+        codecList.toArray(new Codec[0]));
+    return true;
+  }
+
+  /**
+   * Get a codec by name
+   *
+   * @param name the name
+   * @return the codec, null if unknown
+   */
+  public static Codec getCodec(String name) {
+    for (Codec codec : CODECS) {
+      if (codec != null
+          && codec.getName().equals(name)) {
+        return codec;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get a codec by ID
+   *
+   * @param id the ID
+   * @return the codec, null if unknown
+   */
+  public static Codec getCodec(byte id) {
+    if (id <= 0 || id >= CODECS.length) {
+      return null;
+    }
+    return CODECS[id];
+  }
+
+  /**
+   * Select the codec of a body
+   *
+   * @param operationName the name of the
+   *                      operation, can be null
+   * @param size          the body size
+   * @return the codec, null if not compressed
+   */
+  public Codec select(String operationName,
+      long size) {
+    if (size < threshold
+        || size > Constant.MAX_SEGMENT_SIZE) {
+      return null;
+    }
+    Codec codec = defaultCodec;
+    if (operationName != null) {
+      int prefixLen = -1;
+      for (int i = 0; i < prefixes.length; i++) {
+        if (prefixes[i].length() > prefixLen
+            && operationName
+            .startsWith(prefixes[i])) {
+          prefixLen = prefixes[i].length();
+          codec = codecs[i];
+        }
+      }
+    }
+    return codec;
+  }
+
+  /**
+   * Compress a body. The compressed array starts
+   * with the raw size.
+   *
+   * @param codec the codec
+   * @param raw   the encoded body
+   * @return the compressed array, null if the
+   * body doesn't shrink
+   */
+  public static ByteArray compress(Codec codec,
+      ByteArray raw) {
+    long startTime = System.nanoTime();
+    int rawSize = raw.size();
+    int maxSize =
+        4 + codec.getMaxCompressedLength(rawSize);
+    ByteArray array = ByteArray.create(maxSize, true);
+    if (array == null) {
+      return null;
+    }
+    byte[] bytes = array.get();
+    int start = array.start();
+    bytes[start] = (byte) (rawSize >>> 24);
+    bytes[start + 1] = (byte) (rawSize >>> 16);
+    bytes[start + 2] = (byte) (rawSize >>> 8);
+    bytes[start + 3] = (byte) rawSize;
+    int size = 4 + codec.compress(raw.get(),
+        raw.start(), rawSize, bytes, start + 4);
+    compressNanos.addAndGet(
+        System.nanoTime() - startTime);
+    if (size >= rawSize) {
+      numIncompressible.incrementAndGet();
+      array.release();
+      return null;
+    }
+    numCompressed.incrementAndGet();
+    numRawBytes.addAndGet(rawSize);
+    numCompressedBytes.addAndGet(size);
+    return new ByteArray(bytes, start, size);
+  }
+
+  /**
+   * Decompress a body
+   *
+   * @param codec      the codec
+   * @param compressed the compressed array
+   * @return the encoded body, null if failed
+   */
+  public static ByteArray decompress(Codec codec,
+      ByteArray compressed) {
+    long startTime = System.nanoTime();
+    byte[] src = compressed.get();
+    int start = compressed.start();
+    if (compressed.size() < 4) {
+      LOG.error("Compressed body is too short.");
+      return null;
+    }
+    int rawSize = (src[start] & 0xFF) << 24
+        | (src[start + 1] & 0xFF) << 16
+        | (src[start + 2] & 0xFF) << 8
+        | (src[start + 3] & 0xFF);
+    if (rawSize <= 0) {
+      LOG.error("Invalid raw body size: "
+          + rawSize);
+      return null;
+    }
+    ByteArray raw = ByteArray.create(rawSize, true);
+    if (raw == null) {
+      return null;
+    }
+    int size = codec.decompress(src, start + 4,
+        compressed.size() - 4, raw.get(),
+        raw.start(), rawSize);
+    if (size != rawSize) {
+      LOG.error("Fail to decompress the body with "
+          + codec.getName());
+      raw.release();
+      return null;
+    }
+    numDecompressed.incrementAndGet();
+    decompressNanos.addAndGet(
+        System.nanoTime() - startTime);
+    return raw;
+  }
+
+  /**
+   * Get the number of bodies compressed
+   *
+   * @return the number of bodies compressed
+   */
+  public static long getNumCompressed() {
+    return numCompressed.get();
+  }
+
+  /**
+   * Get the number of bodies sent as they are
+   * because they didn't shrink
+   *
+   * @return the number of incompressible bodies
+   */
+  public static long getNumIncompressible() {
+    return numIncompressible.get();
+  }
+
+  /**
+   * Get the ratio of the raw size to the
+   * compressed size of the compressed bodies
+   *
+   * @return the compression ratio, 1 if nothing
+   * is compressed
+   */
+  public static double getRatio() {
+    long compressedBytes = numCompressedBytes.get();
+    if (compressedBytes == 0L) {
+      return 1.0;
+    }
+    return (double) numRawBytes.get()
+        / compressedBytes;
+  }
+
+  /**
+   * Get the time spent on compressing, including
+   * the incompressible bodies
+   *
+   * @return the time in nanoseconds
+   */
+  public static long getCompressNanos() {
+    return compressNanos.get();
+  }
+
+  /**
+   * Get the time spent on decompressing
+   *
+   * @return the time in nanoseconds
+   */
+  public static long getDecompressNanos() {
+    return decompressNanos.get();
+  }
+
+  /**
+   * Log the counters
+   */
+  public static void logStats() {
+    LOG.info("Compressed bodies: "
+        + numCompressed.get() + ", incompressible: "
+        + numIncompressible.get() + ", raw bytes: "
+        + numRawBytes.get() + ", compressed bytes: "
+        + numCompressedBytes.get() + ", ratio: "
+        + getRatio() + ", compress time (ms): "
+        + compressNanos.get() / 1000000L
+        + ", decompressed bodies: "
+        + numDecompressed.get()
+        + ", decompress time (ms): "
+        + decompressNanos.get() / 1000000L);
+  }
+}
@@ -16,6 +16,8 @@
 
 package edu.iu.harp.io;
 
+import org.apache.log4j.Logger;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -23,17 +25,35 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*******************************************************
- * The connection object as a client
+ * The connection object as a client. A cached
+ * connection to a worker on the same node writes
+ * to a shared-memory ring instead of the socket,
+ * the socket is kept open alongside it. The ring
+ * is only used after the server acknowledges it.
  ******************************************************/
 public class Connection {
 
+  private static final Logger LOG =
+      Logger.getLogger(Connection.class);
+
+  // Servers failed to open a ring, e.g. in
+  // another container with its own /dev/shm
+  private static final Set<String> noRingServers =
+      ConcurrentHashMap.newKeySet();
+
   private final String node;
   private final int port;
   private OutputStream out;
   private InputStream in;
   private Socket socket;
+  private GatheringByteChannel channel;
+  private ShmRing ring;
   private final boolean useCache;
 
   /**
@@ -56,17 +76,109 @@ public class Connection {
           InetAddress.getByName(node);
       SocketAddress sockaddr =
           new InetSocketAddress(addr, port);
-      this.socket = new Socket();
+      // The socket has a channel for gathering
+      // writes, the connection is only written
+      SocketChannel socketChannel =
+          SocketChannel.open();
+      this.channel = socketChannel;
+      this.socket = socketChannel.socket();
       IOUtil.setSocketOptions(socket);
       this.socket.connect(sockaddr, timeOutMs);
       this.out = socket.getOutputStream();
       this.in = socket.getInputStream();
+      // Rings are set up once per cached
+      // connection
+      if (useCache && ShmRing.isEnabled()
+          && ShmRing.isLocalHost(node)
+          && !noRingServers
+          .contains(node + ":" + port)) {
+        connectRing();
+      }
     } catch (Exception e) {
       close();
       throw e;
     }
   }
 
+  /**
+   * Create a shared-memory ring and tell the
+   * server to read from it. Stay on the socket if
+   * the ring cannot be created or the server
+   * cannot open it. If the server doesn't answer
+   * in time, it may still switch to the ring
+   * later, so the connection is given up and the
+   * next one to this server uses TCP.
+   *
+   * @throws IOException
+   */
+  private void connectRing() throws IOException {
+    ShmRing shmRing = null;
+    try {
+      shmRing = ShmRing.create(Constant.SHM_RING_SIZE);
+    } catch (Exception e) {
+      LOG.error("Fail to create shared-memory ring, "
+          + "use TCP to " + node + ":" + port, e);
+      return;
+    }
+    try {
+      String path = shmRing.getPath();
+      // Framed as command, op and head
+      int headSize = 4 + path.length() * 2;
+      byte[] bytes = new byte[5 + headSize];
+      Serializer serializer =
+          new Serializer(bytes, 0, bytes.length);
+      serializer.writeByte(Constant.SHM_CONNECT);
+      serializer.writeInt(headSize);
+      serializer.writeUTF(path);
+      out.write(bytes);
+      out.flush();
+      if (!waitForRing()) {
+        shmRing.close();
+        return;
+      }
+    } catch (IOException e) {
+      noRingServers.add(node + ":" + port);
+      shmRing.close();
+      throw e;
+    }
+    ShmRing.ShmOutputStream ringOut =
+        shmRing.getOutputStream();
+    this.ring = shmRing;
+    this.out = ringOut;
+    this.channel = ringOut;
+  }
+
+  /**
+   * Wait for the server to answer SHM_CONNECT
+   *
+   * @return true if the server reads the ring,
+   *         false if it stays on the socket
+   * @throws IOException
+   *           if the server doesn't answer
+   */
+  private boolean waitForRing() throws IOException {
+    int ack;
+    int timeOut = socket.getSoTimeout();
+    socket.setSoTimeout(Constant.SHM_ACK_WAIT_TIME);
+    try {
+      ack = in.read();
+    } finally {
+      socket.setSoTimeout(timeOut);
+    }
+    if (ack == Constant.SHM_ACCEPTED) {
+      return true;
+    } else if (ack == Constant.SHM_REJECTED) {
+      LOG.error("Shared-memory ring is rejected, "
+          + "use TCP to " + node + ":" + port);
+      noRingServers.add(node + ":" + port);
+      return false;
+    } else {
+      throw new IOException(
+          "No answer to the shared-memory ring from "
+              + node + ":" + port);
+    }
+  }
+
   /**
    * Get the host
    *
@@ -94,6 +206,18 @@ public class Connection {
     return this.out;
   }
 
+  /**
+   * Get the channel of the socket or the ring.
+   * Don't mix the writes to the channel and the
+   * OutputStream without flushing the
+   * OutputStream.
+   *
+   * @return the channel
+   */
+  public GatheringByteChannel getChannel() {
+    return this.channel;
+  }
+
   /**
    * Get the InputStream
    *
@@ -107,6 +231,10 @@ public class Connection {
    * Close the connection
    */
   void close() {
+    if (ring != null) {
+      ring.close();
+      ring = null;
+    }
     if (out != null || in != null
         || socket != null) {
       try {
@@ -130,6 +258,7 @@ public class Connection {
       out = null;
       in = null;
       socket = null;
+      channel = null;
     }
   }
 
@@ -31,6 +31,16 @@ public class Constant {
   public static final byte MST_BCAST = 5;
   public static final byte MST_BCAST_DECODE = 6;
   public static final byte CONNECTION_END = 7;
+  // SEND_DECODE with the body encoded and decoded
+  // while it is transferred
+  public static final byte SEND_STREAM = 8;
+  // Move a connection between workers on the
+  // same node to a shared-memory ring
+  public static final byte SHM_CONNECT = 9;
+  // The server answers SHM_CONNECT on the socket
+  // before the client writes to the ring
+  public static final byte SHM_ACCEPTED = 1;
+  public static final byte SHM_REJECTED = 0;
 
   public static final int DATA_MAX_WAIT_TIME =
     1800; // seconds
@@ -41,10 +51,36 @@ public class Constant {
     60L;
   public static final int PIPELINE_SIZE = 262144;
   // 256 KB
+  // Buffers of PIPELINE_SIZE in a streaming send
+  public static final int NUM_PIPELINE_BUFFERS = 4;
   public static final int BUFFER_SIZE = 262144;
   // 256 KB
   public static final int MAX_ARRAY_SIZE =
     Integer.MAX_VALUE - 5;
+  // A larger Data body is split into segments
+  public static final int MAX_SEGMENT_SIZE =
+    1 << 30;
+  // Released arrays and writables cached in each
+  // thread for each size or class
+  public static final int MAGAZINE_SIZE = 8;
+  // Larger arrays are only cached in the pool
+  public static final int MAX_MAGAZINE_ARRAY_SIZE =
+    65536;
+  // Set to false to stop tracking in-use arrays
+  // and writables in the ResourcePool
+  public static final String POOL_TRACKING =
+    "harp.resource.pool.tracking";
+  // Set to false to keep the connections between
+  // workers on the same node on TCP
+  public static final String SHM_TRANSPORT =
+    "harp.transport.shm";
+  // The directory of the shared-memory rings
+  public static final String SHM_DIR =
+    "harp.transport.shm.dir";
+  public static final int SHM_RING_SIZE = 1 << 22;
+  // 4 MB
+  public static final int SHM_ACK_WAIT_TIME = 5000;
+  // ms
 
   public static final int SHORT_SLEEP = 100;
   public static final int LONG_SLEEP = 1000;
@@ -54,6 +90,9 @@ public class Constant {
 
   public static final int NUM_THREADS =
     Runtime.getRuntime().availableProcessors();
+  // Selector threads of the NIO transport
+  public static final int NUM_IO_THREADS =
+    Math.min(4, NUM_THREADS);
   public static final int DEFAULT_WORKER_POART_BASE =
     12800;
 
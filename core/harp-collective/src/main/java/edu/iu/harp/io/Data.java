@@ -16,6 +16,7 @@
 
 package edu.iu.harp.io;
 
+import edu.iu.harp.metrics.Metrics;
 import edu.iu.harp.resource.ByteArray;
 import edu.iu.harp.resource.Transferable;
 import org.apache.log4j.Logger;
@@ -58,14 +59,22 @@ public class Data {
   /**
    * The size in bytes of the body
    */
-  private int bodySize = 0;
+  private long bodySize = 0L;
   /**
    * Data object contained
    */
   private List<Transferable> body = null;
 
   private ByteArray headArray = null;
-  private ByteArray bodyArray = null;
+  /**
+   * The encoded body, usually in one segment
+   */
+  private ByteArray[] bodySegments = null;
+  /**
+   * The codec of the encoded body, sent in the
+   * high bits of the body type
+   */
+  private byte codecID = Codec.NONE;
 
   private DataStatus headStatus;
   private DataStatus bodyStatus;
@@ -74,7 +83,7 @@ public class Data {
    * Construct a data
    */
   public Data(byte type, String conName, int wID,
-              List<Transferable> object, int s) {
+              List<Transferable> object, long s) {
     bodyType = type;
     contextName = conName;
     workerID = wID;
@@ -93,7 +102,7 @@ public class Data {
    * Construct an operation data
    */
   public Data(byte type, String conName, int wID,
-              List<Transferable> object, int s,
+              List<Transferable> object, long s,
               String opName) {
     bodyType = type;
     contextName = conName;
@@ -114,7 +123,7 @@ public class Data {
    * Construct a partition data in an operation
    */
   public Data(byte type, String conName, int wID,
-              List<Transferable> object, int s,
+              List<Transferable> object, long s,
               String opName, int parID) {
     bodyType = type;
     contextName = conName;
@@ -140,23 +149,39 @@ public class Data {
       headArray = null;
       headStatus = DataStatus.DECODE_FAILED;
     }
-    bodyArray = null;
+    bodySegments = null;
     bodyStatus = DataStatus.DECODE_FAILED;
   }
 
   public Data(ByteArray headArr,
               ByteArray bodyArr) {
+    this(headArr, bodyArr == null ? null
+        : new ByteArray[]{bodyArr});
+  }
+
+  public Data(ByteArray headArr,
+              ByteArray[] bodySegs) {
     headArray = headArr;
-    bodyArray = bodyArr;
+    bodySegments = bodySegs;
     headStatus = DataStatus.ENCODED_ARRAY;
     bodyStatus = DataStatus.ENCODED_ARRAY;
-    if (headArray == null
-        || headArray.get() == null
-        || bodyArray == null
-        || bodyArray.get() == null) {
+    boolean isValid = headArray != null
+        && headArray.get() != null
+        && bodySegments != null
+        && bodySegments.length > 0;
+    if (isValid) {
+      for (ByteArray segment : bodySegments) {
+        if (segment == null
+            || segment.get() == null) {
+          isValid = false;
+          break;
+        }
+      }
+    }
+    if (!isValid) {
       headArray = null;
       headStatus = DataStatus.DECODE_FAILED;
-      bodyArray = null;
+      bodySegments = null;
       bodyStatus = DataStatus.DECODE_FAILED;
     }
   }
@@ -264,7 +289,7 @@ public class Data {
    *
    * @return the size of the body
    */
-  public int getBodySize() {
+  public long getBodySize() {
     return bodySize;
   }
 
@@ -289,10 +314,25 @@ public class Data {
   /**
    * Get the body array
    *
-   * @return the body array
+   * @return the body array, null if the body is
+   * in more than one segment
    */
   public ByteArray getBodyArray() {
-    return bodyArray;
+    if (bodySegments != null
+        && bodySegments.length == 1) {
+      return bodySegments[0];
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Get the segments of the encoded body
+   *
+   * @return the body segments
+   */
+  public ByteArray[] getBodySegments() {
+    return bodySegments;
   }
 
   /**
@@ -313,6 +353,21 @@ public class Data {
     return bodyStatus;
   }
 
+  /**
+   * Check if the body will be compressed when it
+   * is encoded. The body must be encoded before
+   * the head, so the head carries the compressed
+   * size.
+   *
+   * @return true if the body will be compressed
+   */
+  public boolean isBodyCompressible() {
+    return headStatus == DataStatus.DECODED
+        && bodyStatus == DataStatus.DECODED
+        && Compression.get().select(operationName,
+        bodySize) != null;
+  }
+
   /**
    * Release the head array. If the array is
    * removed without encode/decode, make sure that
@@ -342,16 +397,16 @@ public class Data {
    */
   public void releaseBodyArray() {
     if (bodyStatus == DataStatus.ENCODED_ARRAY_DECODED) {
-      bodyArray.release();
-      bodyArray = null;
+      DataUtil.releaseSegments(bodySegments);
+      bodySegments = null;
       bodyStatus = DataStatus.DECODED;
     } else if (bodyStatus == DataStatus.ENCODED_ARRAY) {
-      bodyArray.release();
-      bodyArray = null;
+      DataUtil.releaseSegments(bodySegments);
+      bodySegments = null;
       bodyStatus = DataStatus.DECODE_FAILED;
     } else if (bodyStatus == DataStatus.ENCODED_ARRAY_DECODE_FAILED) {
-      bodyArray.release();
-      bodyArray = null;
+      DataUtil.releaseSegments(bodySegments);
+      bodySegments = null;
       bodyStatus = DataStatus.DECODE_FAILED;
     }
   }
@@ -389,6 +444,21 @@ public class Data {
    * @return
    */
   public DataStatus decodeHeadArray() {
+    return decodeHeadArray(true);
+  }
+
+  /**
+   * Decode the headArray as the head
+   *
+   * @param isBodyArrayPrepared prepare the body
+   *                            array or not. A
+   *                            streamed body is
+   *                            decoded without
+   *                            the body array.
+   * @return
+   */
+  public DataStatus
+  decodeHeadArray(boolean isBodyArrayPrepared) {
     if (headStatus == DataStatus.ENCODED_ARRAY) {
       // Decode head array to fields
       // If head array is null, the status cannot
@@ -397,11 +467,13 @@ public class Data {
           new Deserializer(headArray);
       boolean isFailed = false;
       try {
-        bodyType = deserializer.readByte();
+        byte type = deserializer.readByte();
+        bodyType = (byte) (type & 0x0F);
+        codecID = (byte) ((type >>> 4) & 0x0F);
         // LOG.info("body type: " + bodyType);
         contextName = deserializer.readUTF();
         workerID = deserializer.readInt();
-        bodySize = deserializer.readInt();
+        bodySize = deserializer.readLong();
       } catch (IOException e) {
         LOG.error("Fail to decode head array", e);
         resetHead();
@@ -435,13 +507,20 @@ public class Data {
       } else {
         headStatus =
             DataStatus.ENCODED_ARRAY_DECODED;
-        if (bodyArray == null
+        if (Metrics.isEnabled()) {
+          // The body size is the size on the wire
+          Metrics.get().recordReceived(contextName,
+              operationName, workerID,
+              headArray.size() + bodySize);
+        }
+        if (isBodyArrayPrepared
+            && bodySegments == null
             && bodyStatus == DataStatus.DECODE_FAILED) {
           // Prepare body array
           // if there is no such one
-          bodyArray =
-              ByteArray.create(bodySize, true);
-          if (bodyArray != null) {
+          bodySegments =
+              DataUtil.createSegments(bodySize);
+          if (bodySegments != null) {
             bodyStatus = DataStatus.ENCODED_ARRAY;
           }
         }
@@ -455,6 +534,7 @@ public class Data {
    */
   private void resetHead() {
     bodyType = DataType.UNKNOWN_DATA_TYPE;
+    codecID = Codec.NONE;
     contextName = null;
     workerID = Constant.UNKNOWN_WORKER_ID;
     bodySize = 0;
@@ -472,15 +552,30 @@ public class Data {
         || headStatus == DataStatus.ENCODED_ARRAY_DECODED
         || headStatus == DataStatus.ENCODE_FAILED_DECODED)
         && bodyStatus == DataStatus.ENCODED_ARRAY) {
+      long startTime =
+          Metrics.isEnabled() ? System.nanoTime() : 0L;
       // If body status is encoded array
       // body array cannot be null.
       // body object must be null;
-      if (bodyType == DataType.SIMPLE_LIST) {
-        body =
-            DataUtil.decodeSimpleList(bodyArray);
+      if (codecID != Codec.NONE
+          && !decompressBody()) {
+        bodyStatus =
+            DataStatus.ENCODED_ARRAY_DECODE_FAILED;
+        return bodyStatus;
+      }
+      if (bodySegments.length > 1
+          && (bodyType == DataType.SIMPLE_LIST
+          || bodyType == DataType.PARTITION_LIST)) {
+        body = DataUtil.decodeTransList(
+            new SegmentedDeserializer(bodySegments,
+                bodySize),
+            bodyType == DataType.PARTITION_LIST);
+      } else if (bodyType == DataType.SIMPLE_LIST) {
+        body = DataUtil
+            .decodeSimpleList(bodySegments[0]);
       } else if (bodyType == DataType.PARTITION_LIST) {
-        body =
-            DataUtil.decodePartitionList(bodyArray);
+        body = DataUtil
+            .decodePartitionList(bodySegments[0]);
       } else {
         LOG.error("Cannot decode unknown body: "
             + bodyType);
@@ -491,11 +586,45 @@ public class Data {
       } else {
         bodyStatus =
             DataStatus.ENCODED_ARRAY_DECODED;
+        if (startTime != 0L) {
+          Metrics.get().recordDecode(contextName,
+              operationName,
+              System.nanoTime() - startTime);
+        }
       }
     }
     return bodyStatus;
   }
 
+  /**
+   * Replace the compressed body segment with the
+   * decompressed one
+   *
+   * @return true if succeeded, false otherwise
+   */
+  private boolean decompressBody() {
+    Codec codec = Compression.getCodec(codecID);
+    if (codec == null) {
+      LOG.error("Unknown codec: " + codecID);
+      return false;
+    }
+    if (bodySegments.length > 1) {
+      LOG.error("Compressed body in "
+          + bodySegments.length + " segments.");
+      return false;
+    }
+    ByteArray raw =
+        Compression.decompress(codec, bodySegments[0]);
+    if (raw == null) {
+      return false;
+    }
+    bodySegments[0].release();
+    bodySegments[0] = raw;
+    bodySize = raw.size();
+    codecID = Codec.NONE;
+    return true;
+  }
+
   /**
    * Encode the head as a ByteArray
    *
@@ -508,7 +637,7 @@ public class Data {
       boolean isParData = isPartitionData();
       // bodyType, contextName, workerID, bodySize
       int headArrSize =
-          9 + (4 + 2 * contextName.length());
+          13 + (4 + 2 * contextName.length());
       if (isOpData) {
         headArrSize +=
             (4 + 2 * operationName.length());
@@ -522,10 +651,15 @@ public class Data {
           new Serializer(headArray);
       boolean isFailed = false;
       try {
-        serializer.writeByte(bodyType);
+        // The compressed size is sent as the
+        // body size
+        serializer.writeByte(
+            (byte) (bodyType | codecID << 4));
         serializer.writeUTF(contextName);
         serializer.writeInt(workerID);
-        serializer.writeInt(bodySize);
+        serializer.writeLong(
+            codecID == Codec.NONE ? bodySize
+                : bodySegments[0].size());
       } catch (Exception e) {
         LOG.error(
             "Fail to encode body type, context name"
@@ -575,35 +709,64 @@ public class Data {
    */
   public DataStatus encodeBody() {
     if (bodyStatus == DataStatus.DECODED) {
+      long startTime =
+          Metrics.isEnabled() ? System.nanoTime() : 0L;
+      Codec codec = null;
+      if (isBodyCompressible()) {
+        codec = Compression.get()
+            .select(operationName, bodySize);
+      }
+      codecID = Codec.NONE;
       if (headStatus == DataStatus.DECODED
           || headStatus == DataStatus.ENCODED_ARRAY_DECODED
           || headStatus == DataStatus.ENCODE_FAILED_DECODED) {
         // Use body size info for encoding
-        bodyArray =
-            ByteArray.create(bodySize, true);
+        bodySegments =
+            DataUtil.createSegments(bodySize);
       } else {
-        int size =
+        long size =
             DataUtil.getNumTransListBytes(body);
-        bodyArray = ByteArray.create(size, true);
+        bodySegments =
+            DataUtil.createSegments(size);
       }
-      DataOutput dataOut =
-          new Serializer(bodyArray);
-      if (bodyType == DataType.SIMPLE_LIST
-          || bodyType == DataType.PARTITION_LIST) {
+      if (bodySegments != null
+          && (bodyType == DataType.SIMPLE_LIST
+          || bodyType == DataType.PARTITION_LIST)) {
+        // A large body is encoded to segments
+        DataOutput dataOut =
+            bodySegments.length == 1
+                ? new Serializer(bodySegments[0])
+                : new SegmentedSerializer(
+                bodySegments);
         try {
           DataUtil.encodeTransList(body, bodySize,
               dataOut);
         } catch (Exception e) {
-          bodyArray.release();
-          bodyArray = null;
+          DataUtil.releaseSegments(bodySegments);
+          bodySegments = null;
         }
-      } else {
+      } else if (bodySegments != null) {
         LOG.info(
             "Cannot encode unknown data type.");
       }
-      if (bodyArray != null) {
+      if (bodySegments != null && codec != null
+          && bodySegments.length == 1) {
+        ByteArray compressed = Compression
+            .compress(codec, bodySegments[0]);
+        if (compressed != null) {
+          bodySegments[0].release();
+          bodySegments[0] = compressed;
+          codecID = codec.getID();
+        }
+      }
+      if (bodySegments != null) {
         bodyStatus =
             DataStatus.ENCODED_ARRAY_DECODED;
+        if (startTime != 0L) {
+          Metrics.get().recordEncode(contextName,
+              operationName,
+              System.nanoTime() - startTime);
+        }
       } else {
         bodyStatus =
             DataStatus.ENCODE_FAILED_DECODED;
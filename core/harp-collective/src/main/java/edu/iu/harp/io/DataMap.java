@@ -16,6 +16,7 @@
 
 package edu.iu.harp.io;
 
+import edu.iu.harp.metrics.Metrics;
 import org.apache.log4j.Logger;
 
 import java.util.Map.Entry;
@@ -108,8 +109,17 @@ public class DataMap {
     BlockingQueue<Data> opDataQueue =
       createOperationDataQueue(contextName,
         operationName);
-    return opDataQueue.poll(maxWaitTime,
+    if (!Metrics.isEnabled()) {
+      return opDataQueue.poll(maxWaitTime,
+        TimeUnit.SECONDS);
+    }
+    long startTime = System.nanoTime();
+    Data data = opDataQueue.poll(maxWaitTime,
       TimeUnit.SECONDS);
+    Metrics.get().recordWait(contextName,
+      operationName, System.nanoTime() - startTime,
+      data == null);
+    return data;
   }
 
   /**
@@ -124,6 +134,12 @@ public class DataMap {
         data.getContextName(),
         data.getOperationName());
     opDataQueue.add(data);
+    if (Metrics.isEnabled()) {
+      Metrics.get().recordQueueDepth(
+        data.getContextName(),
+        data.getOperationName(),
+        opDataQueue.size());
+    }
   }
 
   /**
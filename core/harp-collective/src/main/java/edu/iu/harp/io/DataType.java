@@ -31,4 +31,8 @@ public class DataType {
   public static final byte WRITABLE = 7;
   public static final byte SIMPLE_LIST = 8;
   public static final byte PARTITION_LIST = 9;
+  // Arrays in direct ByteBuffers
+  public static final byte DIRECT_DOUBLE_ARRAY = 10;
+  public static final byte DIRECT_FLOAT_ARRAY = 11;
+  public static final byte DIRECT_INT_ARRAY = 12;
 }
@@ -20,6 +20,10 @@ import edu.iu.harp.client.Event;
 import edu.iu.harp.client.EventType;
 import edu.iu.harp.partition.Partition;
 import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.DirectArray;
+import edu.iu.harp.resource.DirectDoubleArray;
+import edu.iu.harp.resource.DirectFloatArray;
+import edu.iu.harp.resource.DirectIntArray;
 import edu.iu.harp.resource.DoubleArray;
 import edu.iu.harp.resource.FloatArray;
 import edu.iu.harp.resource.IntArray;
@@ -28,11 +32,13 @@ import edu.iu.harp.resource.ShortArray;
 import edu.iu.harp.resource.Simple;
 import edu.iu.harp.resource.Transferable;
 import edu.iu.harp.resource.Writable;
+import edu.iu.harp.resource.WritableRegistry;
 import org.apache.log4j.Logger;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -54,7 +60,7 @@ public class DataUtil {
    * Deserializer
    */
   public static ByteArray
-  deserializeByteArray(Deserializer din) {
+  deserializeByteArray(DataInput din) {
     int bytesSize = 0;
     try {
       bytesSize = din.readInt();
@@ -90,7 +96,7 @@ public class DataUtil {
    * Deserializer
    */
   public static ShortArray
-  deserializeShortArray(Deserializer din) {
+  deserializeShortArray(DataInput din) {
     int shortsSize = 0;
     try {
       shortsSize = din.readInt();
@@ -120,7 +126,7 @@ public class DataUtil {
    * Deserializer
    */
   public static IntArray
-  deserializeIntArray(Deserializer din) {
+  deserializeIntArray(DataInput din) {
     int intsSize = 0;
     try {
       intsSize = din.readInt();
@@ -150,7 +156,7 @@ public class DataUtil {
    * Deserializer
    */
   public static FloatArray
-  deserializeFloatArray(Deserializer din) {
+  deserializeFloatArray(DataInput din) {
     int floatsSize = 0;
     try {
       floatsSize = din.readInt();
@@ -180,7 +186,7 @@ public class DataUtil {
    * Deserializer
    */
   public static LongArray
-  deserializeLongArray(Deserializer din) {
+  deserializeLongArray(DataInput din) {
     int longsSize = 0;
     try {
       longsSize = din.readInt();
@@ -214,7 +220,7 @@ public class DataUtil {
    * Deserializer
    */
   public static DoubleArray
-  deserializeDoubleArray(Deserializer din) {
+  deserializeDoubleArray(DataInput din) {
     int doublesSize = 0;
     try {
       doublesSize = din.readInt();
@@ -242,6 +248,61 @@ public class DataUtil {
     }
   }
 
+  /**
+   * Deserialize the data from a DataInput as a
+   * DirectArray. The elements are read in bulk.
+   *
+   * @param dataType the type of the DirectArray
+   * @param din      the DataInput
+   * @return a DirectArray deserialized from the
+   * DataInput
+   */
+  public static DirectArray deserializeDirectArray(
+      byte dataType, DataInput din) {
+    int size = 0;
+    try {
+      size = din.readInt();
+    } catch (IOException e) {
+      LOG.error("Fail to deserialize direct array",
+          e);
+      return null;
+    }
+    DirectArray array = null;
+    if (dataType == DataType.DIRECT_DOUBLE_ARRAY) {
+      array = DirectDoubleArray.create(size, false);
+    } else if (dataType == DataType.DIRECT_FLOAT_ARRAY) {
+      array = DirectFloatArray.create(size, false);
+    } else if (dataType == DataType.DIRECT_INT_ARRAY) {
+      array = DirectIntArray.create(size, false);
+    }
+    if (array == null) {
+      return null;
+    }
+    try {
+      ByteBuffer body = array.getBody();
+      if (din instanceof Deserializer) {
+        ((Deserializer) din).readFully(body);
+      } else if (din instanceof SegmentedDeserializer) {
+        ((SegmentedDeserializer) din).readFully(body);
+      } else {
+        byte[] bytes = new byte[Math.min(
+            Constant.BUFFER_SIZE, body.remaining())];
+        while (body.hasRemaining()) {
+          int len = Math.min(bytes.length,
+              body.remaining());
+          din.readFully(bytes, 0, len);
+          body.put(bytes, 0, len);
+        }
+      }
+      return array;
+    } catch (Exception e) {
+      LOG.error("Fail to deserialize direct array",
+          e);
+      array.release();
+      return null;
+    }
+  }
+
   /**
    * Deserialize the data from a Deserializer as a
    * Writable
@@ -252,16 +313,18 @@ public class DataUtil {
    */
   public static Writable
   deserializeWritable(DataInput din) {
-    String className = null;
+    Class<Writable> clazz = null;
     try {
-      className = din.readUTF();
+      clazz = WritableRegistry.readClass(din);
     } catch (Exception e) {
       LOG.error(
-          "Fail to deserialize the class name", e);
+          "Fail to deserialize the class", e);
+      return null;
+    }
+    if (clazz == null) {
       return null;
     }
-    Writable obj = Writable
-        .create(Writable.forClass(className));
+    Writable obj = Writable.create(clazz);
     if (obj == null) {
       return null;
     }
@@ -271,13 +334,48 @@ public class DataUtil {
     } catch (Exception e) {
       LOG.error(
           "Fail to deserialize writable with class name "
-              + className,
+              + clazz.getName(),
           e);
       obj.release();
       return null;
     }
   }
 
+  /**
+   * Deserialize the data from a DataInput based
+   * on the data type
+   *
+   * @param dataType the data type
+   * @param din      the DataInput
+   * @return a Simple object deserialized from the
+   * DataInput, null if failed
+   */
+  private static Simple deserializeSimple(
+      byte dataType, DataInput din) {
+    if (dataType == DataType.BYTE_ARRAY) {
+      return deserializeByteArray(din);
+    } else if (dataType == DataType.SHORT_ARRAY) {
+      return deserializeShortArray(din);
+    } else if (dataType == DataType.INT_ARRAY) {
+      return deserializeIntArray(din);
+    } else if (dataType == DataType.FLOAT_ARRAY) {
+      return deserializeFloatArray(din);
+    } else if (dataType == DataType.LONG_ARRAY) {
+      return deserializeLongArray(din);
+    } else if (dataType == DataType.DOUBLE_ARRAY) {
+      return deserializeDoubleArray(din);
+    } else if (dataType == DataType.WRITABLE) {
+      return deserializeWritable(din);
+    } else if (dataType == DataType.DIRECT_DOUBLE_ARRAY
+        || dataType == DataType.DIRECT_FLOAT_ARRAY
+        || dataType == DataType.DIRECT_INT_ARRAY) {
+      return deserializeDirectArray(dataType, din);
+    } else {
+      LOG.info("Unkown data type.");
+      return null;
+    }
+  }
+
   /**
    * Decode the ByteArray as a list of
    * Transferable objects
@@ -299,26 +397,11 @@ public class DataUtil {
         releaseTransList(objs);
         return null;
       }
-      Simple obj = null;
       if (dataType == DataType.UNKNOWN_DATA_TYPE) {
         break;
-      } else if (dataType == DataType.BYTE_ARRAY) {
-        obj = deserializeByteArray(decoder);
-      } else if (dataType == DataType.SHORT_ARRAY) {
-        obj = deserializeShortArray(decoder);
-      } else if (dataType == DataType.INT_ARRAY) {
-        obj = deserializeIntArray(decoder);
-      } else if (dataType == DataType.FLOAT_ARRAY) {
-        obj = deserializeFloatArray(decoder);
-      } else if (dataType == DataType.LONG_ARRAY) {
-        obj = deserializeLongArray(decoder);
-      } else if (dataType == DataType.DOUBLE_ARRAY) {
-        obj = deserializeDoubleArray(decoder);
-      } else if (dataType == DataType.WRITABLE) {
-        obj = deserializeWritable(decoder);
-      } else {
-        LOG.info("Unkown data type.");
       }
+      Simple obj =
+          deserializeSimple(dataType, decoder);
       if (obj == null) {
         releaseTransList(objs);
         return null;
@@ -353,29 +436,11 @@ public class DataUtil {
         releaseTransList(partitions);
         return null;
       }
-      Simple partition = null;
       if (dataType == DataType.UNKNOWN_DATA_TYPE) {
         break;
-      } else if (dataType == DataType.BYTE_ARRAY) {
-        partition = deserializeByteArray(decoder);
-      } else if (dataType == DataType.SHORT_ARRAY) {
-        partition =
-            deserializeShortArray(decoder);
-      } else if (dataType == DataType.INT_ARRAY) {
-        partition = deserializeIntArray(decoder);
-      } else if (dataType == DataType.FLOAT_ARRAY) {
-        partition =
-            deserializeFloatArray(decoder);
-      } else if (dataType == DataType.LONG_ARRAY) {
-        partition = deserializeLongArray(decoder);
-      } else if (dataType == DataType.DOUBLE_ARRAY) {
-        partition =
-            deserializeDoubleArray(decoder);
-      } else if (dataType == DataType.WRITABLE) {
-        partition = deserializeWritable(decoder);
-      } else {
-        LOG.info("Unkown data type.");
       }
+      Simple partition =
+          deserializeSimple(dataType, decoder);
       if (partition == null) {
         releaseTransList(partitions);
         return null;
@@ -393,6 +458,73 @@ public class DataUtil {
     return partitions;
   }
 
+  /**
+   * Decode the bytes from a SegmentedDeserializer
+   * as a list of Transferable objects or a list of
+   * Partitions. With a StreamDeserializer, objects
+   * are decoded as soon as their bytes arrive.
+   *
+   * @param decoder         the SegmentedDeserializer
+   * @param isPartitionList decode as partitions
+   *                        or not
+   * @return a list of Transferable objects, null
+   * if failed
+   */
+  public static List<Transferable> decodeTransList(
+      final SegmentedDeserializer decoder,
+      boolean isPartitionList) {
+    List<Transferable> objs = new LinkedList<>();
+    while (decoder.getPos() < decoder
+        .getLength()) {
+      byte dataType = DataType.UNKNOWN_DATA_TYPE;
+      try {
+        dataType = decoder.readByte();
+      } catch (Exception e) {
+        LOG.error("Fail to decode the stream.", e);
+        releaseTransList(objs);
+        return null;
+      }
+      if (dataType == DataType.UNKNOWN_DATA_TYPE) {
+        break;
+      }
+      Simple obj =
+          deserializeSimple(dataType, decoder);
+      if (obj == null) {
+        releaseTransList(objs);
+        return null;
+      }
+      if (isPartitionList) {
+        try {
+          int partitionID = decoder.readInt();
+          objs.add(new Partition<Simple>(
+              partitionID, obj));
+        } catch (IOException e) {
+          obj.release();
+          releaseTransList(objs);
+          return null;
+        }
+      } else {
+        objs.add(obj);
+      }
+    }
+    try {
+      // Skip the rest after an empty list mark
+      while (decoder.getPos() < decoder
+          .getLength()) {
+        if (decoder.skipBytes((int) Math.min(
+            Integer.MAX_VALUE, decoder.getLength()
+                - decoder.getPos())) == 0) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      releaseTransList(objs);
+      return null;
+    }
+    decoder.close();
+    return objs;
+  }
+
   /**
    * Serialize multiple Transferable with
    * different data types
@@ -403,9 +535,14 @@ public class DataUtil {
    */
   public static ByteArray
   encodeTransList(List<Transferable> objs) {
-    int size = getNumTransListBytes(objs);
+    long size = getNumTransListBytes(objs);
+    if (size > Constant.MAX_ARRAY_SIZE) {
+      LOG.error("Too large to encode to one array: "
+          + size);
+      return null;
+    }
     ByteArray byteArray =
-        ByteArray.create(size, true);
+        ByteArray.create((int) size, true);
     if (byteArray != null) {
       Serializer serializer =
           new Serializer(byteArray);
@@ -423,15 +560,62 @@ public class DataUtil {
     }
   }
 
+  /**
+   * Create segments from the resource pool to
+   * hold the number of bytes. Each segment is at
+   * most Constant.MAX_SEGMENT_SIZE bytes.
+   *
+   * @param size the number of bytes
+   * @return the segments, null if failed
+   */
+  public static ByteArray[] createSegments(
+      long size) {
+    if (size <= 0L) {
+      return null;
+    }
+    int numSegments = (int) ((size - 1)
+        / Constant.MAX_SEGMENT_SIZE + 1);
+    ByteArray[] segments =
+        new ByteArray[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      int segmentSize = (int) Math.min(
+          Constant.MAX_SEGMENT_SIZE,
+          size - (long) i * Constant.MAX_SEGMENT_SIZE);
+      segments[i] =
+          ByteArray.create(segmentSize, true);
+      if (segments[i] == null) {
+        releaseSegments(segments);
+        return null;
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * Release the segments to the resource pool
+   *
+   * @param segments the segments
+   */
+  public static void releaseSegments(
+      ByteArray[] segments) {
+    if (segments != null) {
+      for (ByteArray segment : segments) {
+        if (segment != null) {
+          segment.release();
+        }
+      }
+    }
+  }
+
   /**
    * Get the size in bytes of the encoded data
    *
    * @param objs the data
    * @return the size in bytes of the data
    */
-  public static int getNumTransListBytes(
+  public static long getNumTransListBytes(
       List<Transferable> objs) {
-    int size = 0;
+    long size = 0L;
     for (Transferable obj : objs) {
       size += obj.getNumEnocdeBytes();
     }
@@ -450,7 +634,7 @@ public class DataUtil {
    * @throws Exception if an error happens
    */
   public static void encodeTransList(
-      List<Transferable> objs, int size,
+      List<Transferable> objs, long size,
       DataOutput dataOut) throws Exception {
     if (size == 1) {
       dataOut
@@ -462,6 +646,26 @@ public class DataUtil {
     }
   }
 
+  /**
+   * Check if any object in the list is a
+   * DirectArray or a partition of a DirectArray
+   *
+   * @param objs the list of Transferable objects
+   * @return true if a DirectArray is found
+   */
+  public static boolean hasDirectArray(
+      List<Transferable> objs) {
+    for (Transferable obj : objs) {
+      if (obj instanceof DirectArray
+          || (obj instanceof Partition
+          && ((Partition<?>) obj)
+          .get() instanceof DirectArray)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Transferable List may include different types
    * Identify each of them and release
@@ -503,12 +707,17 @@ public class DataUtil {
     // + data.isData() + ", head status: "
     // + data.getHeadStatus() + ", body status: "
     // + data.getBodyStatus());
-    if ((data
+    if (((data
         .getHeadStatus() == DataStatus.ENCODED_ARRAY_DECODED)
         && (data
         .getBodyStatus() == DataStatus.ENCODED_ARRAY
         || data
-        .getBodyStatus() == DataStatus.ENCODED_ARRAY_DECODED)) {
+        .getBodyStatus() == DataStatus.ENCODED_ARRAY_DECODED))
+        // Streamed data is decoded without arrays
+        || (data
+        .getHeadStatus() == DataStatus.DECODED
+        && data
+        .getBodyStatus() == DataStatus.DECODED)) {
       if (data.isOperationData()) {
         dataMap.putData(data);
       } else if (data.isData()) {
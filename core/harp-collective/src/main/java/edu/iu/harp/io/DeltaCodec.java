@@ -0,0 +1,273 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.io;
+
+/*******************************************************
+ * A codec for bodies of sorted or slowly changing
+ * short, int and long arrays, e.g. sorted IDs and
+ * sparse counts. The body is cut into blocks.
+ * For each block the word size (2, 4 or 8 bytes)
+ * and the offset of the first word are chosen by
+ * sampling, then the big-endian words are written
+ * as zigzag varints of the differences to the
+ * previous word. A block which does not shrink is
+ * stored as it is.
+ * 
+ * Block layout: a code byte (0 for a stored
+ * block, otherwise the word size code in the high
+ * 4 bits and the offset in the low 4 bits), the
+ * bytes before the first word, the varints, and
+ * the bytes after the last word.
+ ******************************************************/
+public class DeltaCodec extends Codec {
+
+  public static final byte ID = 2;
+  public static final String NAME = "delta";
+
+  private static final int BLOCK_SIZE = 8192;
+  private static final int SAMPLE_SIZE = 512;
+  private static final int[] WORD_SIZES = {0, 2,
+      4, 8};
+
+  @Override
+  public byte getID() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public int getMaxCompressedLength(int len) {
+    // One code byte per block, a varint may pass
+    // the end of a stored block before it is
+    // given up
+    return len + len / BLOCK_SIZE + 16;
+  }
+
+  @Override
+  public int compress(byte[] src, int srcPos,
+      int len, byte[] dst, int dstPos) {
+    int op = dstPos;
+    for (int pos = srcPos, end = srcPos + len;
+         pos < end; pos += BLOCK_SIZE) {
+      int blockLen = Math.min(BLOCK_SIZE, end - pos);
+      int code = chooseCode(src, pos, blockLen);
+      int blockOp = -1;
+      if (code != 0) {
+        blockOp =
+            compressBlock(src, pos, blockLen, code,
+                dst, op);
+      }
+      if (blockOp < 0) {
+        dst[op++] = 0;
+        System.arraycopy(src, pos, dst, op,
+            blockLen);
+        op += blockLen;
+      } else {
+        op = blockOp;
+      }
+    }
+    return op - dstPos;
+  }
+
+  /**
+   * Choose the word size and the offset with the
+   * fewest estimated bytes on a sample of the
+   * block
+   *
+   * @return the code, 0 to store the block
+   */
+  private static int chooseCode(byte[] src,
+      int pos, int blockLen) {
+    int sampleLen = Math.min(SAMPLE_SIZE, blockLen);
+    int bestCode = 0;
+    // Bytes per 1024 raw bytes
+    long bestCost = 1024L;
+    for (int c = 1; c < WORD_SIZES.length; c++) {
+      int wordSize = WORD_SIZES[c];
+      for (int offset = 0; offset < wordSize
+          && offset + wordSize <= sampleLen;
+           offset++) {
+        int numWords =
+            (sampleLen - offset) / wordSize;
+        long numBytes = 0L;
+        long prev = 0L;
+        for (int i = 0, p = pos + offset;
+             i < numWords; i++, p += wordSize) {
+          long word = readWord(src, p, wordSize);
+          numBytes += getVarLongSize(
+              zigzag(word - prev, wordSize));
+          prev = word;
+        }
+        long cost = numBytes * 1024L
+            / ((long) numWords * wordSize);
+        if (cost < bestCost) {
+          bestCost = cost;
+          bestCode = c << 4 | offset;
+        }
+      }
+    }
+    return bestCode;
+  }
+
+  /**
+   * Compress a block
+   *
+   * @return the position after the block, -1 if
+   * the block doesn't shrink
+   */
+  private static int compressBlock(byte[] src,
+      int pos, int blockLen, int code, byte[] dst,
+      int op) {
+    int wordSize = WORD_SIZES[code >>> 4];
+    int offset = code & 0x0F;
+    int numWords = (blockLen - offset) / wordSize;
+    int limit = op + 1 + blockLen;
+    dst[op++] = (byte) code;
+    System.arraycopy(src, pos, dst, op, offset);
+    op += offset;
+    long prev = 0L;
+    for (int i = 0, p = pos + offset; i < numWords;
+         i++, p += wordSize) {
+      if (op >= limit) {
+        return -1;
+      }
+      long word = readWord(src, p, wordSize);
+      long v = zigzag(word - prev, wordSize);
+      prev = word;
+      while ((v & ~0x7FL) != 0L) {
+        dst[op++] = (byte) ((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      dst[op++] = (byte) v;
+    }
+    int tailPos = pos + offset + numWords * wordSize;
+    int tailLen = pos + blockLen - tailPos;
+    if (op + tailLen >= limit) {
+      return -1;
+    }
+    System.arraycopy(src, tailPos, dst, op,
+        tailLen);
+    return op + tailLen;
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcPos,
+      int len, byte[] dst, int dstPos,
+      int rawLen) {
+    int ip = srcPos;
+    int end = srcPos + len;
+    int op = dstPos;
+    int opEnd = dstPos + rawLen;
+    while (op < opEnd) {
+      if (ip >= end) {
+        return -1;
+      }
+      int blockLen = Math.min(BLOCK_SIZE, opEnd - op);
+      int code = src[ip++] & 0xFF;
+      if (code == 0) {
+        if (end - ip < blockLen) {
+          return -1;
+        }
+        System.arraycopy(src, ip, dst, op, blockLen);
+        ip += blockLen;
+        op += blockLen;
+        continue;
+      }
+      int wordCode = code >>> 4;
+      int offset = code & 0x0F;
+      if (wordCode == 0
+          || wordCode >= WORD_SIZES.length
+          || offset > blockLen
+          || end - ip < offset) {
+        return -1;
+      }
+      int wordSize = WORD_SIZES[wordCode];
+      System.arraycopy(src, ip, dst, op, offset);
+      ip += offset;
+      op += offset;
+      int numWords = (blockLen - offset) / wordSize;
+      long prev = 0L;
+      for (int i = 0; i < numWords; i++) {
+        long v = 0L;
+        int shift = 0;
+        byte b;
+        do {
+          if (ip >= end || shift > 63) {
+            return -1;
+          }
+          b = src[ip++];
+          v |= (long) (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        prev += (v >>> 1) ^ -(v & 1L);
+        op = writeWord(dst, op, prev, wordSize);
+      }
+      int tailLen = blockLen - offset
+          - numWords * wordSize;
+      if (end - ip < tailLen) {
+        return -1;
+      }
+      System.arraycopy(src, ip, dst, op, tailLen);
+      ip += tailLen;
+      op += tailLen;
+    }
+    return ip == end ? op - dstPos : -1;
+  }
+
+  /**
+   * Zigzag the difference of two words, taken in
+   * the width of the words
+   */
+  private static long zigzag(long diff,
+      int wordSize) {
+    int shift = 64 - wordSize * 8;
+    long v = (diff << shift) >> shift;
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long readWord(byte[] bytes,
+      int pos, int wordSize) {
+    long v = 0L;
+    for (int i = 0; i < wordSize; i++) {
+      v = (v << 8) | (bytes[pos + i] & 0xFFL);
+    }
+    return v;
+  }
+
+  private static int writeWord(byte[] bytes,
+      int pos, long v, int wordSize) {
+    for (int i = (wordSize - 1) * 8; i >= 0;
+         i -= 8) {
+      bytes[pos++] = (byte) (v >>> i);
+    }
+    return pos;
+  }
+
+  private static int getVarLongSize(long v) {
+    int numBytes = 1;
+    while ((v & ~0x7FL) != 0L) {
+      v >>>= 7;
+      numBytes++;
+    }
+    return numBytes;
+  }
+}
@@ -21,6 +21,7 @@ import org.apache.log4j.Logger;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /*******************************************************
  * A class for Deserialization implemented
@@ -95,6 +96,20 @@ public class Deserializer implements DataInput {
     pos += length;
   }
 
+  /**
+   * Read bytes to the remaining space of the
+   * ByteBuffer
+   */
+  public void readFully(ByteBuffer dst)
+    throws IOException {
+    int length = dst.remaining();
+    if ((pos + length) > len) {
+      throw new IOException("Cannot read.");
+    }
+    dst.put(bytes, pos, length);
+    pos += length;
+  }
+
   /**
    * Skip n number of bytes
    */
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*******************************************************
+ * A DataOutput producing a list of ByteBuffers for
+ * a gathering write. Primitive values are written
+ * to pooled byte arrays, while a ByteBuffer
+ * written in bulk, e.g. the body of a
+ * DirectArray, is added to the list as it is, so
+ * it is not copied. The encoding is the same as
+ * Serializer.
+ ******************************************************/
+public class GatheringSerializer
+  extends SegmentedSerializer {
+
+  private final List<ByteBuffer> buffers;
+  private final List<ByteArray> arrays;
+  private long numBufferBytes;
+
+  public GatheringSerializer() {
+    super(null);
+    this.buffers = new ArrayList<>();
+    this.arrays = new ArrayList<>();
+    this.numBufferBytes = 0L;
+  }
+
+  @Override
+  protected ByteArray nextSegment()
+    throws IOException {
+    ByteArray array = ByteArray
+      .create(Constant.PIPELINE_SIZE, true);
+    if (array == null) {
+      throw new IOException("Cannot write.");
+    }
+    arrays.add(array);
+    return array;
+  }
+
+  @Override
+  protected void finishSegment(int offset,
+    int size) {
+    buffers.add(
+      ByteBuffer.wrap(segment.get(), offset, size));
+  }
+
+  /**
+   * Add the remaining bytes of the ByteBuffer to
+   * the list without copying
+   */
+  @Override
+  public void write(ByteBuffer src)
+    throws IOException {
+    if (src.hasRemaining()) {
+      cut();
+      numBufferBytes += src.remaining();
+      buffers.add(src.slice());
+      src.position(src.limit());
+    }
+  }
+
+  @Override
+  public long getNumBytes() {
+    return super.getNumBytes() + numBufferBytes;
+  }
+
+  /**
+   * Get the buffers written, call flush first
+   *
+   * @return the buffers
+   */
+  public ByteBuffer[] getBuffers() {
+    return buffers.toArray(new ByteBuffer[0]);
+  }
+
+  /**
+   * Release the byte arrays back to the pool.
+   * The buffers are no longer valid.
+   */
+  public void release() {
+    for (ByteArray array : arrays) {
+      array.release();
+    }
+    arrays.clear();
+    buffers.clear();
+  }
+}
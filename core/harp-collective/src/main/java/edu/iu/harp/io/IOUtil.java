@@ -16,6 +16,7 @@
 
 package edu.iu.harp.io;
 
+import edu.iu.harp.resource.ByteArray;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
@@ -24,6 +25,8 @@ import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 
 /*******************************************************
  * Some utils for IO operations
@@ -61,11 +64,78 @@ public class IOUtil {
     throws IOException {
     while (size > 0) {
       int len = in.read(bytes, start, size);
+      if (len < 0) {
+        throw new IOException(
+          "Connection is closed.");
+      }
       size -= len;
       start += len;
     }
   }
 
+  /**
+   * Send the segments of a body to OutputStream
+   * 
+   * @param out
+   *          the OutputStream
+   * @param segments
+   *          the body segments
+   * @throws IOException
+   */
+  public static void sendSegments(
+    final OutputStream out,
+    final ByteArray[] segments)
+    throws IOException {
+    for (ByteArray segment : segments) {
+      out.write(segment.get(), segment.start(),
+        segment.size());
+    }
+    out.flush();
+  }
+
+  /**
+   * Receive the segments of a body from the
+   * InputStream
+   * 
+   * @param in
+   *          the InputStream
+   * @param segments
+   *          the body segments
+   * @throws IOException
+   */
+  public static void receiveSegments(
+    InputStream in, ByteArray[] segments)
+    throws IOException {
+    for (ByteArray segment : segments) {
+      receiveBytes(in, segment.get(),
+        segment.start(), segment.size());
+    }
+  }
+
+  /**
+   * Write all the buffers to the channel in
+   * gathering writes
+   * 
+   * @param channel
+   *          the channel in blocking mode
+   * @param buffers
+   *          the buffers
+   * @throws IOException
+   */
+  public static void writeBuffers(
+    GatheringByteChannel channel,
+    ByteBuffer[] buffers) throws IOException {
+    int offset = 0;
+    while (offset < buffers.length) {
+      channel.write(buffers, offset,
+        buffers.length - offset);
+      while (offset < buffers.length
+        && !buffers[offset].hasRemaining()) {
+        offset++;
+      }
+    }
+  }
+
   /**
    * Set the options for the Socket
    * 
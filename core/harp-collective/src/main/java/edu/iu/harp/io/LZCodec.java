@@ -0,0 +1,228 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.io;
+
+import java.util.Arrays;
+
+/*******************************************************
+ * A fast LZ77 codec in the LZ4 block layout. Each
+ * sequence is a token (literal length and match
+ * length in 4 bits each, 15 means more length
+ * bytes follow), the literals, a 2-byte little
+ * endian offset and the rest of the match
+ * length. The last sequence only has literals.
+ * Matches are found with a single-entry hash
+ * table; incompressible input is skipped faster
+ * the longer no match is found.
+ ******************************************************/
+public class LZCodec extends Codec {
+
+  public static final byte ID = 1;
+  public static final String NAME = "lz";
+
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_OFFSET = 65535;
+  private static final int HASH_LOG = 12;
+  private static final int SKIP_TRIGGER = 6;
+
+  @Override
+  public byte getID() {
+    return ID;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public int getMaxCompressedLength(int len) {
+    return len + len / 255 + 16;
+  }
+
+  @Override
+  public int compress(byte[] src, int srcPos,
+      int len, byte[] dst, int dstPos) {
+    final int end = srcPos + len;
+    final int matchLimit = end - LAST_LITERALS;
+    final int mfLimit = end - MF_LIMIT;
+    int anchor = srcPos;
+    int op = dstPos;
+    if (len >= MF_LIMIT) {
+      int[] table = new int[1 << HASH_LOG];
+      Arrays.fill(table, -1);
+      int ip = srcPos;
+      while (ip < mfLimit) {
+        int h = hash(readInt(src, ip));
+        int ref = table[h];
+        table[h] = ip;
+        if (ref < 0 || ip - ref > MAX_OFFSET
+            || readInt(src, ref) != readInt(src,
+            ip)) {
+          // Step up in long runs without match
+          ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+          continue;
+        }
+        while (ip > anchor && ref > srcPos
+            && src[ip - 1] == src[ref - 1]) {
+          ip--;
+          ref--;
+        }
+        int matchLen = MIN_MATCH;
+        while (ip + matchLen < matchLimit
+            && src[ip + matchLen] == src[ref
+            + matchLen]) {
+          matchLen++;
+        }
+        op = writeSequence(src, anchor,
+            ip - anchor, dst, op, ip - ref,
+            matchLen);
+        ip += matchLen;
+        anchor = ip;
+        if (ip < mfLimit) {
+          table[hash(readInt(src, ip - 2))] =
+              ip - 2;
+        }
+      }
+    }
+    // The last literals
+    int litLen = end - anchor;
+    int token = op++;
+    dst[token] = (byte) (Math.min(litLen, 15) << 4);
+    op = writeLength(dst, op, litLen - 15);
+    System.arraycopy(src, anchor, dst, op, litLen);
+    op += litLen;
+    return op - dstPos;
+  }
+
+  private static int writeSequence(byte[] src,
+      int litStart, int litLen, byte[] dst, int op,
+      int offset, int matchLen) {
+    int matchCode = matchLen - MIN_MATCH;
+    int token = op++;
+    dst[token] = (byte) ((Math.min(litLen, 15) << 4)
+        | Math.min(matchCode, 15));
+    op = writeLength(dst, op, litLen - 15);
+    System.arraycopy(src, litStart, dst, op,
+        litLen);
+    op += litLen;
+    dst[op++] = (byte) offset;
+    dst[op++] = (byte) (offset >>> 8);
+    return writeLength(dst, op, matchCode - 15);
+  }
+
+  /**
+   * Write the rest of a length, nothing if it is
+   * negative
+   */
+  private static int writeLength(byte[] dst,
+      int op, int rest) {
+    if (rest >= 0) {
+      while (rest >= 255) {
+        dst[op++] = (byte) 255;
+        rest -= 255;
+      }
+      dst[op++] = (byte) rest;
+    }
+    return op;
+  }
+
+  private static int readInt(byte[] bytes,
+      int pos) {
+    return (bytes[pos] & 0xFF)
+        | (bytes[pos + 1] & 0xFF) << 8
+        | (bytes[pos + 2] & 0xFF) << 16
+        | bytes[pos + 3] << 24;
+  }
+
+  private static int hash(int v) {
+    return (v * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcPos,
+      int len, byte[] dst, int dstPos,
+      int rawLen) {
+    final int end = srcPos + len;
+    final int opEnd = dstPos + rawLen;
+    int ip = srcPos;
+    int op = dstPos;
+    while (ip < end) {
+      int token = src[ip++] & 0xFF;
+      int litLen = token >>> 4;
+      if (litLen == 15) {
+        int b;
+        do {
+          if (ip >= end) {
+            return -1;
+          }
+          b = src[ip++] & 0xFF;
+          litLen += b;
+        } while (b == 255 && litLen > 0);
+      }
+      if (litLen < 0 || litLen > end - ip
+          || litLen > opEnd - op) {
+        return -1;
+      }
+      System.arraycopy(src, ip, dst, op, litLen);
+      ip += litLen;
+      op += litLen;
+      if (ip == end) {
+        break;
+      }
+      if (end - ip < 2) {
+        return -1;
+      }
+      int offset = (src[ip] & 0xFF)
+          | (src[ip + 1] & 0xFF) << 8;
+      ip += 2;
+      int matchLen = token & 0x0F;
+      if (matchLen == 15) {
+        int b;
+        do {
+          if (ip >= end) {
+            return -1;
+          }
+          b = src[ip++] & 0xFF;
+          matchLen += b;
+        } while (b == 255 && matchLen > 0);
+      }
+      matchLen += MIN_MATCH;
+      int ref = op - offset;
+      if (offset == 0 || ref < dstPos
+          || matchLen < 0
+          || matchLen > opEnd - op) {
+        return -1;
+      }
+      if (offset >= matchLen) {
+        System.arraycopy(dst, ref, dst, op,
+            matchLen);
+        op += matchLen;
+      } else {
+        // Overlapped, repeats the last offset
+        // bytes
+        for (int i = 0; i < matchLen; i++) {
+          dst[op++] = dst[ref++];
+        }
+      }
+    }
+    return op - dstPos;
+  }
+}
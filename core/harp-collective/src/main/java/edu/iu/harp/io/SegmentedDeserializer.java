@@ -0,0 +1,288 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*******************************************************
+ * A DataInput reading a known number of bytes
+ * across a list of byte array segments. Values may
+ * be split between two segments. The encoding is
+ * the same as Deserializer.
+ ******************************************************/
+public class SegmentedDeserializer
+  implements DataInput {
+
+  private final ByteArray[] segments;
+  private final long length;
+  private int index;
+  /** The current segment */
+  protected ByteArray segment;
+  private byte[] bytes;
+  private int start;
+  private int pos;
+  private int len;
+  private long numBytes;
+
+  /**
+   * @param segments the segments to read
+   * @param length   the total number of bytes
+   */
+  public SegmentedDeserializer(
+    ByteArray[] segments, long length) {
+    this.segments = segments;
+    this.length = length;
+    this.index = 0;
+    this.segment = null;
+    this.bytes = null;
+    this.start = 0;
+    this.pos = 0;
+    this.len = 0;
+    this.numBytes = 0L;
+  }
+
+  /**
+   * Get the current position
+   *
+   * @return the current position
+   */
+  public long getPos() {
+    return numBytes + pos - start;
+  }
+
+  /**
+   * Get the length
+   *
+   * @return the length
+   */
+  public long getLength() {
+    return this.length;
+  }
+
+  /**
+   * Get the next segment to read
+   *
+   * @return the next segment
+   * @throws IOException if there is no more
+   *           segment
+   */
+  protected ByteArray nextSegment()
+    throws IOException {
+    if (segments == null
+      || index == segments.length) {
+      throw new IOException("Cannot read.");
+    }
+    return segments[index++];
+  }
+
+  /**
+   * Called when the current segment is read or
+   * closed
+   *
+   * @param segment the segment
+   */
+  protected void finishSegment(ByteArray segment) {
+  }
+
+  /**
+   * Finish the current segment
+   */
+  public void close() {
+    if (segment != null) {
+      numBytes += pos - start;
+      finishSegment(segment);
+      segment = null;
+      bytes = null;
+      start = 0;
+      pos = 0;
+      len = 0;
+    }
+  }
+
+  /**
+   * Make sure there are bytes to read in the
+   * current segment
+   */
+  private void next() throws IOException {
+    if (pos == len) {
+      if (getPos() >= length) {
+        throw new IOException("Cannot read.");
+      }
+      close();
+      segment = nextSegment();
+      bytes = segment.get();
+      start = segment.start();
+      pos = start;
+      // Do not read beyond the length
+      len = start + (int) Math.min(segment.size(),
+        length - numBytes);
+    }
+  }
+
+  @Override
+  public void readFully(byte[] b)
+    throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off,
+    int length) throws IOException {
+    if ((off + length) > b.length) {
+      throw new IOException("Cannot read.");
+    }
+    while (length > 0) {
+      next();
+      int n = Math.min(length, len - pos);
+      System.arraycopy(bytes, pos, b, off, n);
+      pos += n;
+      off += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Read bytes to the remaining space of the
+   * ByteBuffer in bulk
+   *
+   * @param dst the ByteBuffer
+   * @throws IOException
+   */
+  public void readFully(ByteBuffer dst)
+    throws IOException {
+    while (dst.hasRemaining()) {
+      next();
+      int n = Math.min(dst.remaining(), len - pos);
+      dst.put(bytes, pos, n);
+      pos += n;
+    }
+  }
+
+  @Override
+  public int skipBytes(int n) throws IOException {
+    int count = 0;
+    while (count < n && getPos() < length) {
+      next();
+      int m = Math.min(n - count, len - pos);
+      pos += m;
+      count += m;
+    }
+    return count;
+  }
+
+  @Override
+  public boolean readBoolean()
+    throws IOException {
+    return readByte() == 1;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    next();
+    return bytes[pos++];
+  }
+
+  @Override
+  public int readUnsignedByte()
+    throws IOException {
+    return readByte() & 0xff;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) ((readUnsignedByte() << 8)
+      | readUnsignedByte());
+  }
+
+  @Override
+  public int readUnsignedShort()
+    throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) ((readUnsignedByte() << 8)
+      | readUnsignedByte());
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    if (len - pos >= 4) {
+      return ((bytes[pos++] & 0xff) << 24)
+        | ((bytes[pos++] & 0xff) << 16)
+        | ((bytes[pos++] & 0xff) << 8)
+        | (bytes[pos++] & 0xff);
+    } else {
+      // Across two segments
+      return (readUnsignedByte() << 24)
+        | (readUnsignedByte() << 16)
+        | (readUnsignedByte() << 8)
+        | readUnsignedByte();
+    }
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    if (len - pos >= 8) {
+      return ((bytes[pos++] & 0xffL) << 56)
+        | ((bytes[pos++] & 0xffL) << 48)
+        | ((bytes[pos++] & 0xffL) << 40)
+        | ((bytes[pos++] & 0xffL) << 32)
+        | ((bytes[pos++] & 0xffL) << 24)
+        | ((bytes[pos++] & 0xffL) << 16)
+        | ((bytes[pos++] & 0xffL) << 8)
+        | (bytes[pos++] & 0xffL);
+    } else {
+      return ((readInt() & 0xffffffffL) << 32)
+        | (readInt() & 0xffffffffL);
+    }
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    return readUTF();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    int length = readInt();
+    if (length < 0
+      || getPos() + length * 2L > this.length) {
+      throw new IOException("Cannot read.");
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = readChar();
+    }
+    return new String(chars);
+  }
+}
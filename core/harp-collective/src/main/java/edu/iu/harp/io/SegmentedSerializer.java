@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*******************************************************
+ * A DataOutput writing across a list of byte
+ * array segments, so the output can be larger
+ * than one array. Values may be split between two
+ * segments. The encoding is the same as
+ * Serializer.
+ ******************************************************/
+public class SegmentedSerializer
+  implements DataOutput {
+
+  private final ByteArray[] segments;
+  private int index;
+  /** The current segment */
+  protected ByteArray segment;
+  private byte[] bytes;
+  private int start;
+  private int pos;
+  private int len;
+  private long numBytes;
+
+  public SegmentedSerializer(ByteArray[] segments) {
+    this.segments = segments;
+    this.index = 0;
+    this.segment = null;
+    this.bytes = null;
+    this.start = 0;
+    this.pos = 0;
+    this.len = 0;
+    this.numBytes = 0L;
+  }
+
+  /**
+   * Get the number of bytes written
+   *
+   * @return the number of bytes written
+   */
+  public long getNumBytes() {
+    return numBytes + pos - start;
+  }
+
+  /**
+   * Get the next segment to write
+   *
+   * @return the next segment
+   * @throws IOException if there is no more
+   *           segment
+   */
+  protected ByteArray nextSegment()
+    throws IOException {
+    if (segments == null
+      || index == segments.length) {
+      throw new IOException("Cannot write.");
+    }
+    return segments[index++];
+  }
+
+  /**
+   * Called when the current segment is full or
+   * flushed
+   *
+   * @param offset the index in the segment array
+   *               where the bytes start
+   * @param size   the number of bytes written to
+   *               the segment
+   */
+  protected void finishSegment(int offset,
+    int size) {
+  }
+
+  /**
+   * Finish the bytes written to the current
+   * segment, the following bytes are written to
+   * the rest of it
+   */
+  protected void cut() {
+    if (segment != null && pos > start) {
+      finishSegment(start, pos - start);
+      numBytes += pos - start;
+      start = pos;
+    }
+  }
+
+  /**
+   * Finish the current segment, even if it is not
+   * full
+   */
+  public void flush() {
+    if (segment != null && pos > start) {
+      finishSegment(start, pos - start);
+      numBytes += pos - start;
+      segment = null;
+      bytes = null;
+      start = 0;
+      pos = 0;
+      len = 0;
+    }
+  }
+
+  /**
+   * Make sure there is space in the current
+   * segment
+   */
+  private void next() throws IOException {
+    if (pos == len) {
+      flush();
+      segment = nextSegment();
+      bytes = segment.get();
+      start = segment.start();
+      pos = start;
+      len = start + segment.size();
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    writeByte(b);
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off,
+    int length) throws IOException {
+    while (length > 0) {
+      next();
+      int n = Math.min(length, len - pos);
+      System.arraycopy(b, off, bytes, pos, n);
+      pos += n;
+      off += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Write the remaining bytes of the ByteBuffer
+   * in bulk
+   *
+   * @param src the ByteBuffer
+   * @throws IOException
+   */
+  public void write(ByteBuffer src)
+    throws IOException {
+    while (src.hasRemaining()) {
+      next();
+      int n = Math.min(src.remaining(), len - pos);
+      src.get(bytes, pos, n);
+      pos += n;
+    }
+  }
+
+  @Override
+  public void writeBoolean(boolean v)
+    throws IOException {
+    writeByte(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    next();
+    bytes[pos++] = (byte) (v & 0xFF);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    writeByte(v >>> 8);
+    writeByte(v);
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    writeByte(v >>> 8);
+    writeByte(v);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    if (len - pos >= 4) {
+      bytes[pos++] = (byte) ((v >>> 24) & 0xFF);
+      bytes[pos++] = (byte) ((v >>> 16) & 0xFF);
+      bytes[pos++] = (byte) ((v >>> 8) & 0xFF);
+      bytes[pos++] = (byte) (v & 0xFF);
+    } else {
+      // Across two segments
+      writeByte(v >>> 24);
+      writeByte(v >>> 16);
+      writeByte(v >>> 8);
+      writeByte(v);
+    }
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    if (len - pos >= 8) {
+      bytes[pos++] = (byte) ((v >>> 56) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 48) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 40) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 32) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 24) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 16) & 0xffL);
+      bytes[pos++] = (byte) ((v >>> 8) & 0xffL);
+      bytes[pos++] = (byte) (v & 0xffL);
+    } else {
+      writeInt((int) (v >>> 32));
+      writeInt((int) v);
+    }
+  }
+
+  @Override
+  public void writeFloat(float v)
+    throws IOException {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v)
+    throws IOException {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s)
+    throws IOException {
+    writeChars(s);
+  }
+
+  @Override
+  public void writeChars(String s)
+    throws IOException {
+    int length = s.length();
+    writeInt(length);
+    for (int i = 0; i < length; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    writeChars(s);
+  }
+}
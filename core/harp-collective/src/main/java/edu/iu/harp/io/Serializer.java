@@ -21,6 +21,7 @@ import org.apache.log4j.Logger;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /*******************************************************
  * A class for serialization implemented
@@ -110,6 +111,19 @@ public class Serializer implements DataOutput {
     pos += length;
   }
 
+  /**
+   * Write the remaining bytes of the ByteBuffer
+   * to the output stream
+   */
+  public void write(ByteBuffer src) throws IOException {
+    int length = src.remaining();
+    if ((pos + length) > len) {
+      throw new IOException("Cannot write.");
+    }
+    src.get(bytes, pos, length);
+    pos += length;
+  }
+
   /**
    * Write the boolean value to the output stream
    */
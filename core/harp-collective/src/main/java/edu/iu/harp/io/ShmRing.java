@@ -0,0 +1,809 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*******************************************************
+ * A single-producer single-consumer byte ring in
+ * a memory-mapped file, used to pass a
+ * connection's byte stream between two workers on
+ * the same node without going through the
+ * network stack. The producer creates the file,
+ * the consumer maps it and removes the file name.
+ * 
+ * The write position and the read position are
+ * on separate cache lines, each one is only
+ * written by its own side with ordered stores and
+ * read by the other side with volatile loads, so
+ * no lock is needed. A side waiting for the other
+ * one spins, yields and then parks.
+ * 
+ * sun.misc.Unsafe is only looked up by name and
+ * called through method handles, there is no
+ * compile-time reference to the internal API.
+ ******************************************************/
+public class ShmRing {
+
+  private static final Logger LOG =
+    Logger.getLogger(ShmRing.class);
+
+  private static final int WRITE_POS = 0;
+  private static final int READ_POS = 64;
+  private static final int FLAGS = 128;
+  private static final int CAPACITY = 192;
+  private static final int HEADER_SIZE = 256;
+
+  private static final String FILE_PREFIX = "harp-";
+  private static final String FILE_SUFFIX = ".ring";
+
+  private static final int PRODUCER_CLOSED = 1;
+  private static final int CONSUMER_CLOSED = 2;
+  private static final int CONSUMER_OPENED = 4;
+
+  private static final int NUM_SPINS = 100;
+  private static final int NUM_YIELDS = 200;
+  private static final long PARK_NANOS = 50000L;
+
+  private static final Object UNSAFE;
+  private static final long ADDRESS_OFFSET;
+  private static final Method INVOKE_CLEANER;
+  private static final MethodHandle GET_LONG;
+  private static final MethodHandle GET_LONG_VOLATILE;
+  private static final MethodHandle PUT_LONG_VOLATILE;
+  private static final MethodHandle PUT_ORDERED_LONG;
+  private static final MethodHandle GET_INT_VOLATILE;
+  private static final MethodHandle PUT_INT_VOLATILE;
+  private static final MethodHandle COMPARE_AND_SWAP_INT;
+
+  static {
+    Object unsafe = null;
+    long addressOffset = -1L;
+    Method invokeCleaner = null;
+    MethodHandle[] handles = new MethodHandle[7];
+    try {
+      Class<?> unsafeClass =
+        Class.forName("sun.misc.Unsafe");
+      Field field =
+        unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      addressOffset = (Long) unsafeClass
+        .getMethod("objectFieldOffset", Field.class)
+        .invoke(unsafe,
+          Buffer.class.getDeclaredField("address"));
+      MethodHandles.Lookup lookup =
+        MethodHandles.lookup();
+      MethodType getLong = MethodType
+        .methodType(long.class, Object.class,
+          long.class);
+      MethodType putLong = MethodType.methodType(
+        void.class, Object.class, long.class,
+        long.class);
+      MethodType getInt = MethodType.methodType(
+        int.class, Object.class, long.class);
+      MethodType putInt = MethodType.methodType(
+        void.class, Object.class, long.class,
+        int.class);
+      handles[0] = lookup.findVirtual(unsafeClass,
+        "getLong", getLong);
+      handles[1] = lookup.findVirtual(unsafeClass,
+        "getLongVolatile", getLong);
+      handles[2] = lookup.findVirtual(unsafeClass,
+        "putLongVolatile", putLong);
+      handles[3] = lookup.findVirtual(unsafeClass,
+        "putOrderedLong", putLong);
+      handles[4] = lookup.findVirtual(unsafeClass,
+        "getIntVolatile", getInt);
+      handles[5] = lookup.findVirtual(unsafeClass,
+        "putIntVolatile", putInt);
+      handles[6] = lookup.findVirtual(unsafeClass,
+        "compareAndSwapInt",
+        MethodType.methodType(boolean.class,
+          Object.class, long.class, int.class,
+          int.class));
+      for (int i = 0; i < handles.length; i++) {
+        handles[i] = handles[i].bindTo(unsafe);
+      }
+      try {
+        // Unmap explicitly since Java 9
+        invokeCleaner = unsafeClass.getMethod(
+          "invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        invokeCleaner = null;
+      }
+    } catch (Throwable t) {
+      LOG.info("Shared-memory transport "
+        + "is not supported. " + t.getMessage());
+      unsafe = null;
+    }
+    UNSAFE = unsafe;
+    ADDRESS_OFFSET = addressOffset;
+    INVOKE_CLEANER = invokeCleaner;
+    GET_LONG = handles[0];
+    GET_LONG_VOLATILE = handles[1];
+    PUT_LONG_VOLATILE = handles[2];
+    PUT_ORDERED_LONG = handles[3];
+    GET_INT_VOLATILE = handles[4];
+    PUT_INT_VOLATILE = handles[5];
+    COMPARE_AND_SWAP_INT = handles[6];
+  }
+
+  private static final ConcurrentHashMap<String, Boolean> localHosts =
+    new ConcurrentHashMap<>();
+
+  private final File file;
+  private final MappedByteBuffer buffer;
+  /** Used to copy bytes, only by this side */
+  private final ByteBuffer ring;
+  private final long address;
+  private final int capacity;
+  private final int mask;
+  private final boolean isProducer;
+  /** The position of this side */
+  private long position;
+  /** The last seen position of the other side */
+  private long otherPosition;
+  private volatile boolean isClosed;
+  private boolean isUnmapped;
+
+  private ShmRing(File file,
+    MappedByteBuffer buffer, int capacity,
+    boolean isProducer) {
+    this.file = file;
+    this.buffer = buffer;
+    this.ring = buffer.duplicate();
+    this.address = getAddress(buffer);
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.isProducer = isProducer;
+    this.position = 0L;
+    this.otherPosition = 0L;
+    this.isClosed = false;
+    this.isUnmapped = false;
+  }
+
+  /**
+   * Check if the shared-memory transport is
+   * enabled and supported
+   * 
+   * @return true if it can be used
+   */
+  public static boolean isEnabled() {
+    return UNSAFE != null
+      && Boolean.parseBoolean(System.getProperty(
+        Constant.SHM_TRANSPORT, "true"))
+      && getDirectory().isDirectory();
+  }
+
+  /**
+   * Check if the host is this node
+   * 
+   * @param host
+   *          the host
+   * @return true if the host is this node
+   */
+  public static boolean isLocalHost(String host) {
+    Boolean isLocal = localHosts.get(host);
+    if (isLocal == null) {
+      try {
+        InetAddress addr =
+          InetAddress.getByName(host);
+        isLocal = addr.isLoopbackAddress()
+          || addr.isAnyLocalAddress()
+          || NetworkInterface
+            .getByInetAddress(addr) != null;
+      } catch (Exception e) {
+        isLocal = false;
+      }
+      localHosts.put(host, isLocal);
+    }
+    return isLocal;
+  }
+
+  /**
+   * Get the directory of the ring files, /dev/shm
+   * by default
+   * 
+   * @return the directory
+   */
+  private static File getDirectory() {
+    return new File(System.getProperty(
+      Constant.SHM_DIR, "/dev/shm"));
+  }
+
+  /**
+   * Create a ring as the producer
+   * 
+   * @param capacity
+   *          the capacity in bytes, a power of two
+   * @return the ring
+   * @throws IOException
+   */
+  public static ShmRing create(int capacity)
+    throws IOException {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IOException(
+        "Capacity is not a power of two.");
+    }
+    File file = File.createTempFile(FILE_PREFIX,
+      FILE_SUFFIX, getDirectory());
+    try {
+      MappedByteBuffer buffer =
+        map(file, HEADER_SIZE + capacity);
+      ShmRing ring =
+        new ShmRing(file, buffer, capacity, true);
+      putLongVolatile(ring.address + WRITE_POS,
+        0L);
+      putLongVolatile(ring.address + READ_POS, 0L);
+      putIntVolatile(ring.address + FLAGS, 0);
+      putIntVolatile(ring.address + CAPACITY,
+        capacity);
+      return ring;
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  /**
+   * Open a ring created by the producer as the
+   * consumer, the file name is removed. The path
+   * comes from the peer, so only an existing ring
+   * file in the ring directory is accepted, and it
+   * is not created or removed if it is invalid.
+   * 
+   * @param path
+   *          the path of the ring file
+   * @return the ring
+   * @throws IOException
+   */
+  public static ShmRing open(String path)
+    throws IOException {
+    File file = new File(path).getCanonicalFile();
+    String name = file.getName();
+    if (!getDirectory().getCanonicalFile()
+      .equals(file.getParentFile())
+      || !name.startsWith(FILE_PREFIX)
+      || !name.endsWith(FILE_SUFFIX)
+      || !file.isFile()) {
+      throw new IOException(
+        "Not a ring file " + path);
+    }
+    MappedByteBuffer buffer = null;
+    try (FileChannel channel = FileChannel.open(
+      file.toPath(), StandardOpenOption.READ,
+      StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE
+        || size > Integer.MAX_VALUE) {
+        throw new IOException(
+          "Invalid ring file size " + path);
+      }
+      buffer = channel.map(
+        FileChannel.MapMode.READ_WRITE, 0L, size);
+    }
+    int capacity = getIntVolatile(
+      getAddress(buffer) + CAPACITY);
+    if (Integer.bitCount(capacity) != 1
+      || HEADER_SIZE + capacity > buffer
+        .capacity()) {
+      throw new IOException(
+        "Invalid ring file " + path);
+    }
+    ShmRing ring = new ShmRing(file, buffer,
+      capacity, false);
+    ring.setFlag(CONSUMER_OPENED);
+    file.delete();
+    return ring;
+  }
+
+  private static MappedByteBuffer map(File file,
+    int size) throws IOException {
+    try (RandomAccessFile raf =
+      new RandomAccessFile(file, "rw")) {
+      raf.setLength(size);
+      return raf.getChannel()
+        .map(FileChannel.MapMode.READ_WRITE, 0L,
+          size);
+    }
+  }
+
+  /**
+   * Get the path of the ring file
+   * 
+   * @return the path
+   */
+  public String getPath() {
+    return file.getAbsolutePath();
+  }
+
+  /**
+   * Get the capacity
+   * 
+   * @return the capacity in bytes
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Get the stream writing to the ring, only for
+   * the producer
+   * 
+   * @return the output stream
+   */
+  public ShmOutputStream getOutputStream() {
+    return new ShmOutputStream();
+  }
+
+  /**
+   * Get the stream reading from the ring, only
+   * for the consumer
+   * 
+   * @return the input stream
+   */
+  public InputStream getInputStream() {
+    return new ShmInputStream();
+  }
+
+  /**
+   * Write the bytes, wait until there is space
+   * 
+   * @param bytes
+   *          the bytes
+   * @param off
+   *          the start index
+   * @param len
+   *          the number of bytes
+   * @throws IOException
+   */
+  private synchronized void write(byte[] bytes,
+    int off, int len) throws IOException {
+    while (len > 0) {
+      int n = waitForSpace(len);
+      int index = (int) (position & mask);
+      int first = Math.min(n, capacity - index);
+      ring.clear();
+      ring.position(HEADER_SIZE + index);
+      ring.put(bytes, off, first);
+      if (first < n) {
+        ring.position(HEADER_SIZE);
+        ring.put(bytes, off + first, n - first);
+      }
+      publish(n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Write the remaining bytes of the buffer, wait
+   * until there is space
+   * 
+   * @param src
+   *          the buffer
+   * @return the number of bytes written
+   * @throws IOException
+   */
+  private synchronized int write(ByteBuffer src)
+    throws IOException {
+    int total = src.remaining();
+    while (src.hasRemaining()) {
+      int n = waitForSpace(src.remaining());
+      int index = (int) (position & mask);
+      int first = Math.min(n, capacity - index);
+      int limit = src.limit();
+      ring.clear();
+      ring.position(HEADER_SIZE + index);
+      src.limit(src.position() + first);
+      ring.put(src);
+      src.limit(limit);
+      if (first < n) {
+        ring.position(HEADER_SIZE);
+        src.limit(src.position() + n - first);
+        ring.put(src);
+        src.limit(limit);
+      }
+      publish(n);
+    }
+    return total;
+  }
+
+  /**
+   * Wait until some bytes can be written
+   * 
+   * @param len
+   *          the number of bytes to write
+   * @return the number of bytes can be written
+   * @throws IOException
+   *           if either side is closed or the
+   *           consumer does not read in time
+   */
+  private int waitForSpace(int len)
+    throws IOException {
+    long deadline = 0L;
+    for (int count = 0;; count++) {
+      if (isClosed) {
+        throw new IOException("Ring is closed.");
+      }
+      long free =
+        capacity - (position - otherPosition);
+      if (free > 0L) {
+        return (int) Math.min(free, len);
+      }
+      otherPosition =
+        getLongVolatile(address + READ_POS);
+      if (position - otherPosition < capacity) {
+        continue;
+      }
+      if ((getIntVolatile(address + FLAGS)
+        & CONSUMER_CLOSED) != 0) {
+        throw new IOException(
+          "Ring is closed by the consumer.");
+      }
+      if (count > NUM_YIELDS) {
+        long now = System.nanoTime();
+        if (deadline == 0L) {
+          deadline = now + TimeUnit.SECONDS
+            .toNanos(Constant.DATA_MAX_WAIT_TIME);
+        } else if (now > deadline) {
+          throw new IOException(
+            "Timeout in writing the ring.");
+        }
+      }
+      backOff(count);
+    }
+  }
+
+  private void publish(int n) {
+    position += n;
+    putOrderedLong(address + WRITE_POS, position);
+  }
+
+  /**
+   * Read up to len bytes, wait until there are
+   * bytes
+   * 
+   * @param bytes
+   *          the bytes
+   * @param off
+   *          the start index
+   * @param len
+   *          the number of bytes
+   * @return the number of bytes read, -1 if the
+   *         ring is closed
+   */
+  private synchronized int read(byte[] bytes,
+    int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    int n = waitForBytes(len);
+    if (n < 0) {
+      return -1;
+    }
+    int index = (int) (position & mask);
+    int first = Math.min(n, capacity - index);
+    ring.clear();
+    ring.position(HEADER_SIZE + index);
+    ring.get(bytes, off, first);
+    if (first < n) {
+      ring.position(HEADER_SIZE);
+      ring.get(bytes, off + first, n - first);
+    }
+    position += n;
+    putOrderedLong(address + READ_POS, position);
+    return n;
+  }
+
+  /**
+   * Wait until some bytes can be read
+   * 
+   * @param len
+   *          the number of bytes to read
+   * @return the number of bytes can be read, -1
+   *         if the ring is closed and empty
+   */
+  private int waitForBytes(int len) {
+    for (int count = 0;; count++) {
+      if (isClosed) {
+        return -1;
+      }
+      long available = otherPosition - position;
+      if (available > 0L) {
+        return (int) Math.min(available, len);
+      }
+      otherPosition =
+        getLongVolatile(address + WRITE_POS);
+      if (otherPosition > position) {
+        continue;
+      }
+      if ((getIntVolatile(address + FLAGS)
+        & PRODUCER_CLOSED) != 0) {
+        // Check again after seeing the flag
+        otherPosition =
+          getLongVolatile(address + WRITE_POS);
+        if (otherPosition == position) {
+          return -1;
+        }
+        continue;
+      }
+      backOff(count);
+    }
+  }
+
+  private static void backOff(int count) {
+    if (count < NUM_SPINS) {
+      // Spin
+    } else if (count < NUM_YIELDS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  /**
+   * Get the number of bytes can be read without
+   * waiting
+   * 
+   * @return the number of bytes
+   */
+  private synchronized int available() {
+    if (isUnmapped) {
+      return 0;
+    }
+    otherPosition =
+      getLongVolatile(address + WRITE_POS);
+    return (int) Math.min(Integer.MAX_VALUE,
+      otherPosition - position);
+  }
+
+  /**
+   * Close this side of the ring. A waiting
+   * thread returns first, then the ring is
+   * unmapped.
+   */
+  public void close() {
+    isClosed = true;
+    synchronized (this) {
+      if (isUnmapped) {
+        return;
+      }
+      isUnmapped = true;
+      if (isProducer) {
+        setFlag(PRODUCER_CLOSED);
+        // The consumer removes the file name once
+        // it opens the ring. If bytes are written,
+        // the consumer is told about the ring,
+        // wait for it before removing the file.
+        if (position > 0L) {
+          waitForConsumer();
+        }
+        file.delete();
+      } else {
+        setFlag(CONSUMER_CLOSED);
+      }
+      if (INVOKE_CLEANER != null) {
+        try {
+          INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Exception e) {
+          LOG.error("Fail to unmap the ring.", e);
+        }
+      }
+    }
+  }
+
+  private void setFlag(int flag) {
+    int flags;
+    do {
+      flags = getIntVolatile(address + FLAGS);
+    } while (!compareAndSwapInt(address + FLAGS,
+      flags, flags | flag));
+  }
+
+  private void waitForConsumer() {
+    long deadline = System.currentTimeMillis()
+      + Constant.CONNECT_MAX_WAIT_TIME;
+    while ((getIntVolatile(address + FLAGS)
+      & (CONSUMER_OPENED | CONSUMER_CLOSED)) == 0
+      && System.currentTimeMillis() < deadline) {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  private static long getAddress(
+    ByteBuffer buffer) {
+    try {
+      return (long) GET_LONG
+        .invokeExact((Object) buffer, ADDRESS_OFFSET);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static long getLongVolatile(
+    long address) {
+    try {
+      return (long) GET_LONG_VOLATILE
+        .invokeExact((Object) null, address);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static void putLongVolatile(
+    long address, long value) {
+    try {
+      PUT_LONG_VOLATILE.invokeExact((Object) null,
+        address, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static void putOrderedLong(
+    long address, long value) {
+    try {
+      PUT_ORDERED_LONG.invokeExact((Object) null,
+        address, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static int getIntVolatile(
+    long address) {
+    try {
+      return (int) GET_INT_VOLATILE
+        .invokeExact((Object) null, address);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static void putIntVolatile(
+    long address, int value) {
+    try {
+      PUT_INT_VOLATILE.invokeExact((Object) null,
+        address, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static boolean compareAndSwapInt(
+    long address, int expected, int value) {
+    try {
+      return (boolean) COMPARE_AND_SWAP_INT
+        .invokeExact((Object) null, address,
+          expected, value);
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  /*******************************************************
+   * The producer side of the ring. It is also a
+   * channel, so gathered buffers are copied into
+   * the ring directly.
+   ******************************************************/
+  public class ShmOutputStream extends OutputStream
+    implements GatheringByteChannel {
+
+    private final byte[] oneByte = new byte[1];
+
+    @Override
+    public void write(int b) throws IOException {
+      oneByte[0] = (byte) b;
+      ShmRing.this.write(oneByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len)
+      throws IOException {
+      ShmRing.this.write(b, off, len);
+    }
+
+    @Override
+    public int write(ByteBuffer src)
+      throws IOException {
+      return ShmRing.this.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs,
+      int offset, int length) throws IOException {
+      long numBytes = 0L;
+      for (int i = offset; i < offset
+        + length; i++) {
+        numBytes += ShmRing.this.write(srcs[i]);
+      }
+      return numBytes;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs)
+      throws IOException {
+      return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return !isClosed;
+    }
+
+    @Override
+    public void close() {
+      ShmRing.this.close();
+    }
+  }
+
+  /*******************************************************
+   * The consumer side of the ring
+   ******************************************************/
+  private class ShmInputStream extends InputStream {
+
+    private final byte[] oneByte = new byte[1];
+
+    @Override
+    public int read() {
+      int n = ShmRing.this.read(oneByte, 0, 1);
+      if (n < 0) {
+        return -1;
+      }
+      return oneByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      return ShmRing.this.read(b, off, len);
+    }
+
+    @Override
+    public int available() {
+      return ShmRing.this.available();
+    }
+
+    @Override
+    public void close() {
+      ShmRing.this.close();
+    }
+  }
+}
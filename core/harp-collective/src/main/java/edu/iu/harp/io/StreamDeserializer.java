@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+
+import java.io.IOException;
+
+/*******************************************************
+ * A DataInput reading a known number of bytes
+ * from the buffers of a ChunkPipeline. A buffer is
+ * given back to the producer as soon as it is
+ * read. The encoding is the same as Deserializer.
+ ******************************************************/
+public class StreamDeserializer
+  extends SegmentedDeserializer {
+
+  private final ChunkPipeline pipeline;
+
+  /**
+   * @param pipeline the pipeline to read
+   * @param length   the total number of bytes
+   */
+  public StreamDeserializer(ChunkPipeline pipeline,
+    long length) {
+    super(null, length);
+    this.pipeline = pipeline;
+  }
+
+  @Override
+  protected ByteArray nextSegment()
+    throws IOException {
+    ByteArray buffer = pipeline.takeFilled();
+    if (buffer == null) {
+      throw new IOException("Cannot read.");
+    }
+    return buffer;
+  }
+
+  @Override
+  protected void finishSegment(ByteArray segment) {
+    pipeline.putFree(segment);
+  }
+}
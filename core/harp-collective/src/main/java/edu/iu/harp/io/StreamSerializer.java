@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.io;
+
+import edu.iu.harp.resource.ByteArray;
+
+import java.io.IOException;
+
+/*******************************************************
+ * A DataOutput writing into the buffers of a
+ * ChunkPipeline. A buffer is handed to the
+ * consumer as soon as it is full. The encoding
+ * is the same as Serializer.
+ ******************************************************/
+public class StreamSerializer
+  extends SegmentedSerializer {
+
+  private final ChunkPipeline pipeline;
+
+  public StreamSerializer(ChunkPipeline pipeline) {
+    super(null);
+    this.pipeline = pipeline;
+  }
+
+  @Override
+  protected ByteArray nextSegment()
+    throws IOException {
+    return pipeline.takeFree();
+  }
+
+  @Override
+  protected void finishSegment(int offset,
+    int size) {
+    pipeline.putFilled(segment, size);
+  }
+}
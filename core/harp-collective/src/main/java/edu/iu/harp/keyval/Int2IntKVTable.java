@@ -61,14 +61,29 @@ class Int2IntKVPartitionCombiner
  * A KVTable manages Int2IntKVPartitions
  ******************************************************/
 public class Int2IntKVTable
-    extends KVTable<Int2IntKVPartition> {
+    extends KVTable<Int2IntKVPartition>
+    implements SparseKVTable {
 
   private final TypeIntCombiner valCombiner;
 
   public Int2IntKVTable(int tableID,
                         TypeIntCombiner combiner) {
+    this(tableID, combiner, 0);
+  }
+
+  /**
+   * Create a table which hashes the keys to a
+   * bounded number of partitions
+   *
+   * @param tableID    the table ID
+   * @param combiner   the value combiner
+   * @param numBuckets the number of partitions
+   */
+  public Int2IntKVTable(int tableID,
+                        TypeIntCombiner combiner, int numBuckets) {
     super(tableID,
-        new Int2IntKVPartitionCombiner(combiner));
+        new Int2IntKVPartitionCombiner(combiner),
+        numBuckets);
     this.valCombiner = combiner;
   }
 
@@ -144,6 +159,75 @@ public class Int2IntKVTable
    * @return the partition id
    */
   protected int getKVPartitionID(int key) {
+    int numBuckets = getNumBuckets();
+    if (numBuckets > 0) {
+      return KVBucket.getBucket(key, numBuckets);
+    }
     return key;
   }
+
+  /**
+   * Get the number of bytes to encode a value
+   */
+  @Override
+  public int getNumValBytes() {
+    return 4;
+  }
+
+  /**
+   * Combine two values stored in KVBucket
+   */
+  @Override
+  public long combineVal(long curVal, long newVal) {
+    return valCombiner.combine((int) curVal,
+        (int) newVal);
+  }
+
+  /**
+   * Split the key-value pairs into sorted buckets
+   */
+  @Override
+  public KVBucket[] getBuckets(int numBuckets) {
+    if (isEmpty()) {
+      return null;
+    }
+    int capacity = 0;
+    for (Partition<Int2IntKVPartition> partition :
+        getPartitions()) {
+      capacity += partition.get().size();
+    }
+    capacity = capacity / numBuckets + 1;
+    KVBucket[] buckets = new KVBucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new KVBucket(i, capacity);
+    }
+    for (Partition<Int2IntKVPartition> partition :
+        getPartitions()) {
+      ObjectIterator<Int2IntMap.Entry> iterator =
+          partition.get().getKVMap()
+              .int2IntEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2IntMap.Entry entry =
+            iterator.next();
+        int key = entry.getIntKey();
+        buckets[KVBucket.getBucket(key, numBuckets)]
+            .add(key, entry.getIntValue());
+      }
+    }
+    for (KVBucket bucket : buckets) {
+      bucket.sort();
+    }
+    return buckets;
+  }
+
+  /**
+   * Add the key-value pairs in a bucket
+   */
+  @Override
+  public void addBucket(KVBucket bucket) {
+    for (int i = 0; i < bucket.size(); i++) {
+      addKeyVal((int) bucket.getKey(i),
+          (int) bucket.getVal(i));
+    }
+  }
 }
@@ -61,14 +61,32 @@ class Int2LongKVPartitionCombiner
  * A KVTable manages Int2LongKVPartition
  ******************************************************/
 public class Int2LongKVTable
-  extends KVTable<Int2LongKVPartition> {
+  extends KVTable<Int2LongKVPartition>
+  implements SparseKVTable {
 
   private final TypeLongCombiner valCombiner;
 
   public Int2LongKVTable(int tableID,
     TypeLongCombiner combiner) {
+    this(tableID, combiner, 0);
+  }
+
+  /**
+   * Create a table which hashes the keys to a
+   * bounded number of partitions
+   * 
+   * @param tableID
+   *          the table ID
+   * @param combiner
+   *          the value combiner
+   * @param numBuckets
+   *          the number of partitions
+   */
+  public Int2LongKVTable(int tableID,
+    TypeLongCombiner combiner, int numBuckets) {
     super(tableID,
-      new Int2LongKVPartitionCombiner(combiner));
+      new Int2LongKVPartitionCombiner(combiner),
+      numBuckets);
     this.valCombiner = combiner;
   }
 
@@ -168,6 +186,75 @@ public class Int2LongKVTable
    * @return the partition id
    */
   protected int getKVPartitionID(int key) {
+    int numBuckets = getNumBuckets();
+    if (numBuckets > 0) {
+      return KVBucket.getBucket(key, numBuckets);
+    }
     return key;
   }
+
+  /**
+   * Get the number of bytes to encode a value
+   */
+  @Override
+  public int getNumValBytes() {
+    return 8;
+  }
+
+  /**
+   * Combine two values stored in KVBucket
+   */
+  @Override
+  public long combineVal(long curVal, long newVal) {
+    return valCombiner.combine(curVal,
+      newVal);
+  }
+
+  /**
+   * Split the key-value pairs into sorted buckets
+   */
+  @Override
+  public KVBucket[] getBuckets(int numBuckets) {
+    if (isEmpty()) {
+      return null;
+    }
+    int capacity = 0;
+    for (Partition<Int2LongKVPartition> partition :
+      getPartitions()) {
+      capacity += partition.get().size();
+    }
+    capacity = capacity / numBuckets + 1;
+    KVBucket[] buckets = new KVBucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new KVBucket(i, capacity);
+    }
+    for (Partition<Int2LongKVPartition> partition :
+      getPartitions()) {
+      ObjectIterator<Int2LongMap.Entry> iterator =
+        partition.get().getKVMap()
+          .int2LongEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Int2LongMap.Entry entry =
+          iterator.next();
+        int key = entry.getIntKey();
+        buckets[KVBucket.getBucket(key, numBuckets)]
+          .add(key, entry.getLongValue());
+      }
+    }
+    for (KVBucket bucket : buckets) {
+      bucket.sort();
+    }
+    return buckets;
+  }
+
+  /**
+   * Add the key-value pairs in a bucket
+   */
+  @Override
+  public void addBucket(KVBucket bucket) {
+    for (int i = 0; i < bucket.size(); i++) {
+      addKeyVal((int) bucket.getKey(i),
+        bucket.getVal(i));
+    }
+  }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.keyval;
+
+import edu.iu.harp.resource.ByteArray;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.function.LongBinaryOperator;
+
+/*******************************************************
+ * KVBucket packs the key-value pairs of a bucket
+ * into two primitive arrays sorted by key. Int
+ * keys are widened to long, values are stored as
+ * raw long bits (doubles by their bit pattern).
+ * Buckets are merged by sort-merge and encoded to
+ * a ByteArray, optionally with the keys
+ * delta-encoded as variable-length integers.
+ ******************************************************/
+public class KVBucket {
+
+  /** Header: size, value bytes, delta flag */
+  private static final int HEADER_SIZE = 6;
+
+  private final int bucketID;
+  private long[] keys;
+  private long[] vals;
+  private int size;
+
+  public KVBucket(int bucketID, int capacity) {
+    this.bucketID = bucketID;
+    keys = new long[Math.max(capacity, 1)];
+    vals = new long[keys.length];
+    size = 0;
+  }
+
+  /**
+   * Get the bucket of a key. Keys are mixed first,
+   * so that consecutive keys spread over the
+   * buckets.
+   * 
+   * @param key
+   *          the key
+   * @param numBuckets
+   *          the number of buckets
+   * @return the bucket ID
+   */
+  public static int getBucket(long key,
+    int numBuckets) {
+    // The finalizer of MurmurHash3
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) Long.remainderUnsigned(h,
+      numBuckets);
+  }
+
+  public int getBucketID() {
+    return bucketID;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getKey(int i) {
+    return keys[i];
+  }
+
+  public long getVal(int i) {
+    return vals[i];
+  }
+
+  /**
+   * Append a key-value pair
+   * 
+   * @param key
+   *          the key
+   * @param val
+   *          the value bits
+   */
+  public void add(long key, long val) {
+    if (size == keys.length) {
+      keys = LongArrays.grow(keys, size + 1);
+      vals = LongArrays.grow(vals, size + 1);
+    }
+    keys[size] = key;
+    vals[size] = val;
+    size++;
+  }
+
+  /**
+   * Sort the pairs by key, the keys added must be
+   * unique
+   */
+  public void sort() {
+    if (size == keys.length) {
+      LongArrays.quickSort(keys, vals);
+    } else {
+      keys = LongArrays.trim(keys, size);
+      vals = LongArrays.trim(vals, size);
+      LongArrays.quickSort(keys, vals);
+    }
+  }
+
+  /**
+   * Merge two sorted buckets, the values of the
+   * same key are combined
+   * 
+   * @param b1
+   *          a sorted bucket
+   * @param b2
+   *          a sorted bucket
+   * @param combiner
+   *          combines the value bits
+   * @return the merged bucket
+   */
+  public static KVBucket merge(KVBucket b1,
+    KVBucket b2, LongBinaryOperator combiner) {
+    KVBucket bucket =
+      new KVBucket(b1.bucketID, b1.size + b2.size);
+    long[] keys = bucket.keys;
+    long[] vals = bucket.vals;
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < b1.size && j < b2.size) {
+      long key1 = b1.keys[i];
+      long key2 = b2.keys[j];
+      if (key1 < key2) {
+        keys[k] = key1;
+        vals[k++] = b1.vals[i++];
+      } else if (key1 > key2) {
+        keys[k] = key2;
+        vals[k++] = b2.vals[j++];
+      } else {
+        keys[k] = key1;
+        vals[k++] = combiner
+          .applyAsLong(b1.vals[i++], b2.vals[j++]);
+      }
+    }
+    while (i < b1.size) {
+      keys[k] = b1.keys[i];
+      vals[k++] = b1.vals[i++];
+    }
+    while (j < b2.size) {
+      keys[k] = b2.keys[j];
+      vals[k++] = b2.vals[j++];
+    }
+    bucket.size = k;
+    return bucket;
+  }
+
+  /**
+   * Merge sorted buckets pairwise, log(n) rounds
+   * 
+   * @param buckets
+   *          the sorted buckets, reused
+   * @param num
+   *          the number of buckets
+   * @param combiner
+   *          combines the value bits
+   * @return the merged bucket
+   */
+  public static KVBucket mergeAll(
+    KVBucket[] buckets, int num,
+    LongBinaryOperator combiner) {
+    for (int step = 1; step < num; step <<= 1) {
+      for (int i = 0; i + step < num; i +=
+        step << 1) {
+        buckets[i] = merge(buckets[i],
+          buckets[i + step], combiner);
+        buckets[i + step] = null;
+      }
+    }
+    return buckets[0];
+  }
+
+  /**
+   * Get the number of bytes of the encoded bucket
+   * 
+   * @param numValBytes
+   *          4 or 8 bytes per value
+   * @param isDelta
+   *          encode key deltas as varints
+   * @return the number of bytes
+   */
+  public int getNumEncodeBytes(int numValBytes,
+    boolean isDelta) {
+    long numBytes =
+      HEADER_SIZE + (long) size * numValBytes;
+    if (isDelta) {
+      long prev = 0L;
+      for (int i = 0; i < size; i++) {
+        numBytes += getVarLongSize(keys[i] - prev);
+        prev = keys[i];
+      }
+    } else {
+      numBytes += (long) size * 8;
+    }
+    return (int) numBytes;
+  }
+
+  private static int getVarLongSize(long v) {
+    int numBytes = 1;
+    while ((v & ~0x7FL) != 0L) {
+      v >>>= 7;
+      numBytes++;
+    }
+    return numBytes;
+  }
+
+  /**
+   * Encode the sorted bucket to a ByteArray from
+   * the pool
+   * 
+   * @param numValBytes
+   *          4 or 8 bytes per value
+   * @param isDelta
+   *          encode key deltas as varints
+   * @return the ByteArray, null if failed
+   */
+  public ByteArray encode(int numValBytes,
+    boolean isDelta) {
+    int numBytes =
+      getNumEncodeBytes(numValBytes, isDelta);
+    ByteArray array = ByteArray.create(numBytes,
+      false);
+    if (array == null) {
+      return null;
+    }
+    byte[] bytes = array.get();
+    int pos = array.start();
+    pos = putLong(bytes, pos, size, 4);
+    bytes[pos++] = (byte) numValBytes;
+    bytes[pos++] = (byte) (isDelta ? 1 : 0);
+    if (isDelta) {
+      // Sorted keys, the deltas are taken as
+      // unsigned and may wrap around
+      long prev = 0L;
+      for (int i = 0; i < size; i++) {
+        long v = keys[i] - prev;
+        prev = keys[i];
+        while ((v & ~0x7FL) != 0L) {
+          bytes[pos++] = (byte) ((v & 0x7F) | 0x80);
+          v >>>= 7;
+        }
+        bytes[pos++] = (byte) v;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        pos = putLong(bytes, pos, keys[i], 8);
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      pos = putLong(bytes, pos, vals[i],
+        numValBytes);
+    }
+    return array;
+  }
+
+  /**
+   * Decode a bucket from a ByteArray
+   * 
+   * @param bucketID
+   *          the bucket ID
+   * @param array
+   *          the encoded bucket
+   * @return the bucket, sorted if it was sorted
+   *         when encoded
+   */
+  public static KVBucket decode(int bucketID,
+    ByteArray array) {
+    byte[] bytes = array.get();
+    int pos = array.start();
+    int size = (int) getLong(bytes, pos, 4);
+    pos += 4;
+    int numValBytes = bytes[pos++];
+    boolean isDelta = bytes[pos++] != 0;
+    KVBucket bucket = new KVBucket(bucketID, size);
+    long[] keys = bucket.keys;
+    long[] vals = bucket.vals;
+    if (isDelta) {
+      long prev = 0L;
+      for (int i = 0; i < size; i++) {
+        long v = 0L;
+        int shift = 0;
+        byte b;
+        do {
+          b = bytes[pos++];
+          v |= (long) (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        prev += v;
+        keys[i] = prev;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        keys[i] = getLong(bytes, pos, 8);
+        pos += 8;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      vals[i] = getLong(bytes, pos, numValBytes);
+      pos += numValBytes;
+    }
+    bucket.size = size;
+    return bucket;
+  }
+
+  private static int putLong(byte[] bytes,
+    int pos, long v, int numBytes) {
+    for (int i = (numBytes - 1) * 8; i >= 0; i -=
+      8) {
+      bytes[pos++] = (byte) (v >>> i);
+    }
+    return pos;
+  }
+
+  /** Read big-endian, 4 bytes are sign-extended */
+  private static long getLong(byte[] bytes,
+    int pos, int numBytes) {
+    long v = bytes[pos];
+    for (int i = 1; i < numBytes; i++) {
+      v = (v << 8) | (bytes[pos + i] & 0xFF);
+    }
+    return v;
+  }
+}
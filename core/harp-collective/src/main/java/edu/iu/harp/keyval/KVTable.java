@@ -25,8 +25,31 @@ import edu.iu.harp.partition.Table;
 public abstract class KVTable<P extends KVPartition>
   extends Table<P> {
 
+  /**
+   * The number of buckets the keys are hashed to,
+   * 0 if the keys are used as partition IDs
+   */
+  private final int numBuckets;
+
   public KVTable(int tableID,
     PartitionCombiner<P> combiner) {
+    this(tableID, combiner, 0);
+  }
+
+  public KVTable(int tableID,
+    PartitionCombiner<P> combiner,
+    int numBuckets) {
     super(tableID, combiner);
+    this.numBuckets = numBuckets;
+  }
+
+  /**
+   * Get the number of buckets
+   * 
+   * @return the number of buckets, 0 if the keys
+   *         are used as partition IDs
+   */
+  public int getNumBuckets() {
+    return numBuckets;
   }
 }
@@ -17,6 +17,7 @@
 package edu.iu.harp.keyval;
 
 import edu.iu.harp.resource.Writable;
+import edu.iu.harp.resource.WritableRegistry;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
@@ -220,12 +221,12 @@ public abstract class Key2ValKVPartition<K extends Key, V extends Value>
   public int getNumWriteBytes() {
     // mapSize
     int size = 4;
-    // kClass name
+    // kClass
     size +=
-      (this.kClass.getName().length() * 2 + 4);
-    // vClass name
+      WritableRegistry.getNumClassBytes(this.kClass);
+    // vClass
     size +=
-      (this.vClass.getName().length() * 2 + 4);
+      WritableRegistry.getNumClassBytes(this.vClass);
     // Key + each array size
     ObjectIterator<Object2ObjectMap.Entry<K, V>> iterator =
       this.kvMap.object2ObjectEntrySet()
@@ -246,8 +247,8 @@ public abstract class Key2ValKVPartition<K extends Key, V extends Value>
   public void write(DataOutput out)
     throws IOException {
     out.writeInt(this.kvMap.size());
-    out.writeUTF(this.kClass.getName());
-    out.writeUTF(this.vClass.getName());
+    WritableRegistry.writeClass(out, this.kClass);
+    WritableRegistry.writeClass(out, this.vClass);
     ObjectIterator<Object2ObjectMap.Entry<K, V>> iterator =
       this.kvMap.object2ObjectEntrySet()
         .fastIterator();
@@ -273,9 +274,9 @@ public abstract class Key2ValKVPartition<K extends Key, V extends Value>
     }
     try {
       this.kClass =
-        Writable.forClass(in.readUTF());
+        WritableRegistry.readClass(in);
       this.vClass =
-        Writable.forClass(in.readUTF());
+        WritableRegistry.readClass(in);
       for (int i = 0; i < size; i++) {
         K key = null;
         V val = null;
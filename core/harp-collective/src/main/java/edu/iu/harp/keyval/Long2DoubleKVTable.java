@@ -62,15 +62,32 @@ class Long2DoubleKVPartitionCombiner extends
  * A KVTable manages Long2DoubleKVPartition
  ******************************************************/
 public class Long2DoubleKVTable
-  extends KVTable<Long2DoubleKVPartition> {
+  extends KVTable<Long2DoubleKVPartition>
+  implements SparseKVTable {
 
   private final TypeDoubleCombiner valCombiner;
 
   public Long2DoubleKVTable(int tableID,
     TypeDoubleCombiner combiner) {
+    this(tableID, combiner, 0);
+  }
+
+  /**
+   * Create a table which hashes the keys to a
+   * bounded number of partitions
+   * 
+   * @param tableID
+   *          the table ID
+   * @param combiner
+   *          the value combiner
+   * @param numBuckets
+   *          the number of partitions
+   */
+  public Long2DoubleKVTable(int tableID,
+    TypeDoubleCombiner combiner, int numBuckets) {
     super(tableID,
-      new Long2DoubleKVPartitionCombiner(
-        combiner));
+      new Long2DoubleKVPartitionCombiner(combiner),
+      numBuckets);
     this.valCombiner = combiner;
   }
 
@@ -152,6 +169,77 @@ public class Long2DoubleKVTable
    * @return the partition id
    */
   private int getKVPartitionID(long key) {
+    int numBuckets = getNumBuckets();
+    if (numBuckets > 0) {
+      return KVBucket.getBucket(key, numBuckets);
+    }
     return (int) (key);
   }
+
+  /**
+   * Get the number of bytes to encode a value
+   */
+  @Override
+  public int getNumValBytes() {
+    return 8;
+  }
+
+  /**
+   * Combine two values stored in KVBucket
+   */
+  @Override
+  public long combineVal(long curVal, long newVal) {
+    return Double.doubleToRawLongBits(valCombiner
+      .combine(Double.longBitsToDouble(curVal),
+        Double.longBitsToDouble(newVal)));
+  }
+
+  /**
+   * Split the key-value pairs into sorted buckets
+   */
+  @Override
+  public KVBucket[] getBuckets(int numBuckets) {
+    if (isEmpty()) {
+      return null;
+    }
+    int capacity = 0;
+    for (Partition<Long2DoubleKVPartition> partition :
+      getPartitions()) {
+      capacity += partition.get().size();
+    }
+    capacity = capacity / numBuckets + 1;
+    KVBucket[] buckets = new KVBucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new KVBucket(i, capacity);
+    }
+    for (Partition<Long2DoubleKVPartition> partition :
+      getPartitions()) {
+      ObjectIterator<Long2DoubleMap.Entry> iterator =
+        partition.get().getKVMap()
+          .long2DoubleEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2DoubleMap.Entry entry =
+          iterator.next();
+        long key = entry.getLongKey();
+        buckets[KVBucket.getBucket(key, numBuckets)]
+          .add(key, Double.doubleToRawLongBits(
+            entry.getDoubleValue()));
+      }
+    }
+    for (KVBucket bucket : buckets) {
+      bucket.sort();
+    }
+    return buckets;
+  }
+
+  /**
+   * Add the key-value pairs in a bucket
+   */
+  @Override
+  public void addBucket(KVBucket bucket) {
+    for (int i = 0; i < bucket.size(); i++) {
+      addKeyVal(bucket.getKey(i),
+        Double.longBitsToDouble(bucket.getVal(i)));
+    }
+  }
 }
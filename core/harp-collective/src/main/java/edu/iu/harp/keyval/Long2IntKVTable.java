@@ -61,14 +61,32 @@ class Long2IntKVPartitionCombiner
  * A KVTable manages Long2IntKVPartition
  ******************************************************/
 public class Long2IntKVTable
-  extends KVTable<Long2IntKVPartition> {
+  extends KVTable<Long2IntKVPartition>
+  implements SparseKVTable {
 
   private final TypeIntCombiner valCombiner;
 
   public Long2IntKVTable(int tableID,
     TypeIntCombiner combiner) {
+    this(tableID, combiner, 0);
+  }
+
+  /**
+   * Create a table which hashes the keys to a
+   * bounded number of partitions
+   * 
+   * @param tableID
+   *          the table ID
+   * @param combiner
+   *          the value combiner
+   * @param numBuckets
+   *          the number of partitions
+   */
+  public Long2IntKVTable(int tableID,
+    TypeIntCombiner combiner, int numBuckets) {
     super(tableID,
-      new Long2IntKVPartitionCombiner(combiner));
+      new Long2IntKVPartitionCombiner(combiner),
+      numBuckets);
     this.valCombiner = combiner;
   }
 
@@ -150,6 +168,75 @@ public class Long2IntKVTable
    * @return the partition id
    */
   private int getKVPartitionID(long key) {
+    int numBuckets = getNumBuckets();
+    if (numBuckets > 0) {
+      return KVBucket.getBucket(key, numBuckets);
+    }
     return (int) key;
   }
+
+  /**
+   * Get the number of bytes to encode a value
+   */
+  @Override
+  public int getNumValBytes() {
+    return 4;
+  }
+
+  /**
+   * Combine two values stored in KVBucket
+   */
+  @Override
+  public long combineVal(long curVal, long newVal) {
+    return valCombiner.combine((int) curVal,
+      (int) newVal);
+  }
+
+  /**
+   * Split the key-value pairs into sorted buckets
+   */
+  @Override
+  public KVBucket[] getBuckets(int numBuckets) {
+    if (isEmpty()) {
+      return null;
+    }
+    int capacity = 0;
+    for (Partition<Long2IntKVPartition> partition :
+      getPartitions()) {
+      capacity += partition.get().size();
+    }
+    capacity = capacity / numBuckets + 1;
+    KVBucket[] buckets = new KVBucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new KVBucket(i, capacity);
+    }
+    for (Partition<Long2IntKVPartition> partition :
+      getPartitions()) {
+      ObjectIterator<Long2IntMap.Entry> iterator =
+        partition.get().getKVMap()
+          .long2IntEntrySet().fastIterator();
+      while (iterator.hasNext()) {
+        Long2IntMap.Entry entry =
+          iterator.next();
+        long key = entry.getLongKey();
+        buckets[KVBucket.getBucket(key, numBuckets)]
+          .add(key, entry.getIntValue());
+      }
+    }
+    for (KVBucket bucket : buckets) {
+      bucket.sort();
+    }
+    return buckets;
+  }
+
+  /**
+   * Add the key-value pairs in a bucket
+   */
+  @Override
+  public void addBucket(KVBucket bucket) {
+    for (int i = 0; i < bucket.size(); i++) {
+      addKeyVal(bucket.getKey(i),
+        (int) bucket.getVal(i));
+    }
+  }
 }
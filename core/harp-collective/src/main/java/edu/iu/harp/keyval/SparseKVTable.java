@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.keyval;
+
+/*******************************************************
+ * A KVTable with primitive keys and values, which
+ * can be reduced and regrouped as packed sorted
+ * buckets instead of partition Writables.
+ ******************************************************/
+public interface SparseKVTable {
+
+  /**
+   * Get the number of bytes to encode a value
+   * 
+   * @return 4 or 8
+   */
+  int getNumValBytes();
+
+  /**
+   * Combine two values in the bits stored in
+   * KVBucket
+   * 
+   * @param curVal
+   *          the current value
+   * @param newVal
+   *          the new value
+   * @return the combined value
+   */
+  long combineVal(long curVal, long newVal);
+
+  /**
+   * Split the key-value pairs into buckets by the
+   * hash of the keys, each bucket is sorted
+   * 
+   * @param numBuckets
+   *          the number of buckets
+   * @return the buckets, null if empty
+   */
+  KVBucket[] getBuckets(int numBuckets);
+
+  /**
+   * Add the key-value pairs in a bucket, the
+   * values of existing keys are combined
+   * 
+   * @param bucket
+   *          the bucket
+   */
+  void addBucket(KVBucket bucket);
+}
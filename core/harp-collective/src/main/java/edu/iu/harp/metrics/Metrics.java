@@ -0,0 +1,518 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.metrics;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*******************************************************
+ * The registry of communication metrics. It
+ * records per operation (context name and
+ * operation name) the Data sent and received,
+ * the encode and decode time, the wait time in
+ * DataMap and the queue depth; per worker the
+ * Data sent and received; per resource pool the
+ * hits and misses.
+ * 
+ * Recording is disabled by default, every hook
+ * checks isEnabled() first, so the overhead is
+ * one volatile read. The metrics are pulled with
+ * the getters or dumped as JSON or CSV.
+ ******************************************************/
+public class Metrics {
+
+  private static final Logger LOG =
+    Logger.getLogger(Metrics.class);
+
+  /** Set to true to enable the metrics */
+  public static final String METRICS =
+    "harp.metrics";
+
+  private static volatile boolean enabled =
+    Boolean.parseBoolean(
+      System.getProperty(METRICS, "false"));
+
+  private static volatile Metrics instance = null;
+
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, OperationMetrics>> operations;
+  private final ConcurrentHashMap<Integer, PeerMetrics> peers;
+  private final ConcurrentHashMap<String, PoolMetrics> pools;
+
+  private Metrics() {
+    operations = new ConcurrentHashMap<>();
+    peers = new ConcurrentHashMap<>();
+    pools = new ConcurrentHashMap<>();
+  }
+
+  public static Metrics get() {
+    if (instance != null) {
+      return instance;
+    } else {
+      return create();
+    }
+  }
+
+  private static synchronized Metrics create() {
+    if (instance == null) {
+      instance = new Metrics();
+    }
+    return instance;
+  }
+
+  /**
+   * Check if the metrics are recorded
+   * 
+   * @return true if enabled
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enable or disable the metrics
+   * 
+   * @param isEnabled
+   *          true to record the metrics
+   */
+  public static void setEnabled(boolean isEnabled) {
+    enabled = isEnabled;
+  }
+
+  /**
+   * Get the metrics of an operation, created if
+   * not exists
+   * 
+   * @param contextName
+   *          the name of the context
+   * @param operationName
+   *          the name of the operation, can be
+   *          null
+   * @return the metrics of the operation
+   */
+  public OperationMetrics getOperation(
+    String contextName, String operationName) {
+    if (contextName == null) {
+      contextName = "";
+    }
+    if (operationName == null) {
+      operationName = "";
+    }
+    ConcurrentHashMap<String, OperationMetrics> opMap =
+      operations.get(contextName);
+    if (opMap == null) {
+      opMap = operations.computeIfAbsent(
+        contextName, k -> new ConcurrentHashMap<>());
+    }
+    OperationMetrics metrics =
+      opMap.get(operationName);
+    if (metrics == null) {
+      metrics = opMap.computeIfAbsent(
+        operationName, k -> new OperationMetrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Get the metrics of a worker, created if not
+   * exists
+   * 
+   * @param workerID
+   *          the worker ID
+   * @return the metrics of the worker
+   */
+  public PeerMetrics getPeer(int workerID) {
+    PeerMetrics metrics = peers.get(workerID);
+    if (metrics == null) {
+      metrics = peers.computeIfAbsent(workerID,
+        k -> new PeerMetrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Get the metrics of a pool, created if not
+   * exists
+   * 
+   * @param poolName
+   *          the name of the pool
+   * @return the metrics of the pool
+   */
+  public PoolMetrics getPool(String poolName) {
+    PoolMetrics metrics = pools.get(poolName);
+    if (metrics == null) {
+      metrics = pools.computeIfAbsent(poolName,
+        k -> new PoolMetrics());
+    }
+    return metrics;
+  }
+
+  /**
+   * Record a Data sent
+   * 
+   * @param contextName
+   *          the name of the context
+   * @param operationName
+   *          the name of the operation
+   * @param destID
+   *          the destination worker ID
+   * @param numBytes
+   *          the number of bytes sent
+   */
+  public void recordSent(String contextName,
+    String operationName, int destID,
+    long numBytes) {
+    OperationMetrics op =
+      getOperation(contextName, operationName);
+    op.numSent.increment();
+    op.bytesSent.add(numBytes);
+    PeerMetrics peer = getPeer(destID);
+    peer.numSent.increment();
+    peer.bytesSent.add(numBytes);
+  }
+
+  /**
+   * Record a Data received
+   * 
+   * @param contextName
+   *          the name of the context
+   * @param operationName
+   *          the name of the operation
+   * @param sourceID
+   *          the source worker ID
+   * @param numBytes
+   *          the number of bytes received
+   */
+  public void recordReceived(String contextName,
+    String operationName, int sourceID,
+    long numBytes) {
+    OperationMetrics op =
+      getOperation(contextName, operationName);
+    op.numReceived.increment();
+    op.bytesReceived.add(numBytes);
+    PeerMetrics peer = getPeer(sourceID);
+    peer.numReceived.increment();
+    peer.bytesReceived.add(numBytes);
+  }
+
+  public void recordEncode(String contextName,
+    String operationName, long nanos) {
+    OperationMetrics op =
+      getOperation(contextName, operationName);
+    op.numEncoded.increment();
+    op.encodeNanos.add(nanos);
+  }
+
+  public void recordDecode(String contextName,
+    String operationName, long nanos) {
+    OperationMetrics op =
+      getOperation(contextName, operationName);
+    op.numDecoded.increment();
+    op.decodeNanos.add(nanos);
+  }
+
+  /**
+   * Record a wait for Data
+   * 
+   * @param contextName
+   *          the name of the context
+   * @param operationName
+   *          the name of the operation
+   * @param nanos
+   *          the wait time
+   * @param isTimeout
+   *          true if no Data is got
+   */
+  public void recordWait(String contextName,
+    String operationName, long nanos,
+    boolean isTimeout) {
+    OperationMetrics op =
+      getOperation(contextName, operationName);
+    op.numWaits.increment();
+    op.waitNanos.add(nanos);
+    if (isTimeout) {
+      op.numTimeouts.increment();
+    }
+  }
+
+  public void recordQueueDepth(String contextName,
+    String operationName, int depth) {
+    getOperation(contextName, operationName)
+      .maxQueueDepth
+      .accumulateAndGet(depth, Math::max);
+  }
+
+  public void recordPool(String poolName,
+    boolean isHit) {
+    PoolMetrics pool = getPool(poolName);
+    if (isHit) {
+      pool.numHits.increment();
+    } else {
+      pool.numMisses.increment();
+    }
+  }
+
+  /**
+   * Get the metrics of the operations
+   * 
+   * @return a sorted map from context name and
+   *         operation name joined by "/" to the
+   *         metrics
+   */
+  public Map<String, OperationMetrics>
+    getOperations() {
+    Map<String, OperationMetrics> map =
+      new TreeMap<>();
+    for (Map.Entry<String, ConcurrentHashMap<String, OperationMetrics>> entry : operations
+      .entrySet()) {
+      for (Map.Entry<String, OperationMetrics> opEntry : entry
+        .getValue().entrySet()) {
+        map.put(entry.getKey() + "/"
+          + opEntry.getKey(), opEntry.getValue());
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Get the metrics of the workers
+   * 
+   * @return a sorted map from worker ID to the
+   *         metrics
+   */
+  public Map<Integer, PeerMetrics> getPeers() {
+    return new TreeMap<>(peers);
+  }
+
+  /**
+   * Get the metrics of the pools
+   * 
+   * @return a sorted map from pool name to the
+   *         metrics
+   */
+  public Map<String, PoolMetrics> getPools() {
+    return new TreeMap<>(pools);
+  }
+
+  /**
+   * Remove all the metrics
+   */
+  public void reset() {
+    operations.clear();
+    peers.clear();
+    pools.clear();
+  }
+
+  /**
+   * Dump the metrics as JSON
+   * 
+   * @return the JSON string
+   */
+  public String toJSON() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"operations\":[");
+    boolean isFirst = true;
+    for (Map.Entry<String, ConcurrentHashMap<String, OperationMetrics>> entry : new TreeMap<>(
+      operations).entrySet()) {
+      for (Map.Entry<String, OperationMetrics> opEntry : new TreeMap<>(
+        entry.getValue()).entrySet()) {
+        OperationMetrics op = opEntry.getValue();
+        sb.append(isFirst ? "" : ",")
+          .append("{\"context\":");
+        appendString(sb, entry.getKey());
+        sb.append(",\"operation\":");
+        appendString(sb, opEntry.getKey());
+        sb.append(",\"sent\":").append(op.getNumSent())
+          .append(",\"bytesSent\":")
+          .append(op.getBytesSent())
+          .append(",\"received\":")
+          .append(op.getNumReceived())
+          .append(",\"bytesReceived\":")
+          .append(op.getBytesReceived())
+          .append(",\"encoded\":")
+          .append(op.getNumEncoded())
+          .append(",\"encodeNanos\":")
+          .append(op.getEncodeNanos())
+          .append(",\"decoded\":")
+          .append(op.getNumDecoded())
+          .append(",\"decodeNanos\":")
+          .append(op.getDecodeNanos())
+          .append(",\"waits\":")
+          .append(op.getNumWaits())
+          .append(",\"timeouts\":")
+          .append(op.getNumTimeouts())
+          .append(",\"waitNanos\":")
+          .append(op.getWaitNanos())
+          .append(",\"maxQueueDepth\":")
+          .append(op.getMaxQueueDepth()).append('}');
+        isFirst = false;
+      }
+    }
+    sb.append("],\"peers\":[");
+    isFirst = true;
+    for (Map.Entry<Integer, PeerMetrics> entry : getPeers()
+      .entrySet()) {
+      PeerMetrics peer = entry.getValue();
+      sb.append(isFirst ? "" : ",")
+        .append("{\"worker\":")
+        .append(entry.getKey()).append(",\"sent\":")
+        .append(peer.getNumSent())
+        .append(",\"bytesSent\":")
+        .append(peer.getBytesSent())
+        .append(",\"received\":")
+        .append(peer.getNumReceived())
+        .append(",\"bytesReceived\":")
+        .append(peer.getBytesReceived()).append('}');
+      isFirst = false;
+    }
+    sb.append("],\"pools\":[");
+    isFirst = true;
+    for (Map.Entry<String, PoolMetrics> entry : getPools()
+      .entrySet()) {
+      PoolMetrics pool = entry.getValue();
+      sb.append(isFirst ? "" : ",")
+        .append("{\"pool\":");
+      appendString(sb, entry.getKey());
+      sb.append(",\"hits\":")
+        .append(pool.getNumHits())
+        .append(",\"misses\":")
+        .append(pool.getNumMisses()).append('}');
+      isFirst = false;
+    }
+    sb.append("]}");
+    return sb.toString();
+  }
+
+  private static void appendString(
+    StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x",
+          (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+
+  /**
+   * Dump the metrics as CSV, one line per
+   * operation, worker or pool. The first column
+   * is the kind of the line.
+   * 
+   * @return the CSV string
+   */
+  public String toCSV() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("kind,name,sent,bytesSent,received,"
+      + "bytesReceived,encoded,encodeNanos,"
+      + "decoded,decodeNanos,waits,timeouts,"
+      + "waitNanos,maxQueueDepth,hits,misses\n");
+    for (Map.Entry<String, OperationMetrics> entry : getOperations()
+      .entrySet()) {
+      OperationMetrics op = entry.getValue();
+      sb.append("operation,");
+      appendCSV(sb, entry.getKey());
+      sb.append(',').append(op.getNumSent())
+        .append(',').append(op.getBytesSent())
+        .append(',').append(op.getNumReceived())
+        .append(',').append(op.getBytesReceived())
+        .append(',').append(op.getNumEncoded())
+        .append(',').append(op.getEncodeNanos())
+        .append(',').append(op.getNumDecoded())
+        .append(',').append(op.getDecodeNanos())
+        .append(',').append(op.getNumWaits())
+        .append(',').append(op.getNumTimeouts())
+        .append(',').append(op.getWaitNanos())
+        .append(',').append(op.getMaxQueueDepth())
+        .append(",,\n");
+    }
+    for (Map.Entry<Integer, PeerMetrics> entry : getPeers()
+      .entrySet()) {
+      PeerMetrics peer = entry.getValue();
+      sb.append("peer,").append(entry.getKey())
+        .append(',').append(peer.getNumSent())
+        .append(',').append(peer.getBytesSent())
+        .append(',').append(peer.getNumReceived())
+        .append(',').append(peer.getBytesReceived())
+        .append(",,,,,,,,,,\n");
+    }
+    for (Map.Entry<String, PoolMetrics> entry : getPools()
+      .entrySet()) {
+      PoolMetrics pool = entry.getValue();
+      sb.append("pool,");
+      appendCSV(sb, entry.getKey());
+      sb.append(",,,,,,,,,,,,,")
+        .append(pool.getNumHits()).append(',')
+        .append(pool.getNumMisses()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private static void appendCSV(StringBuilder sb,
+    String s) {
+    if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0
+      || s.indexOf('\n') >= 0) {
+      sb.append('"').append(s.replace("\"", "\"\""))
+        .append('"');
+    } else {
+      sb.append(s);
+    }
+  }
+
+  /**
+   * Write the metrics to a directory as
+   * metrics-[name].json and metrics-[name].csv
+   * 
+   * @param dir
+   *          the directory
+   * @param name
+   *          the name of the files, e.g. the
+   *          worker ID
+   * @return true if succeeded, false otherwise
+   */
+  public boolean write(String dir, String name) {
+    try {
+      Path path = Paths.get(dir);
+      Files.createDirectories(path);
+      Files.write(
+        path.resolve("metrics-" + name + ".json"),
+        toJSON().getBytes(StandardCharsets.UTF_8));
+      Files.write(
+        path.resolve("metrics-" + name + ".csv"),
+        toCSV().getBytes(StandardCharsets.UTF_8));
+      return true;
+    } catch (IOException e) {
+      LOG.error("Fail to write metrics to " + dir,
+        e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*******************************************************
+ * The counters of the Data of an operation under
+ * a context
+ ******************************************************/
+public class OperationMetrics {
+
+  final LongAdder numSent = new LongAdder();
+  final LongAdder bytesSent = new LongAdder();
+  final LongAdder numReceived = new LongAdder();
+  final LongAdder bytesReceived =
+    new LongAdder();
+  final LongAdder numEncoded = new LongAdder();
+  final LongAdder encodeNanos = new LongAdder();
+  final LongAdder numDecoded = new LongAdder();
+  final LongAdder decodeNanos = new LongAdder();
+  final LongAdder numWaits = new LongAdder();
+  final LongAdder numTimeouts = new LongAdder();
+  final LongAdder waitNanos = new LongAdder();
+  final AtomicLong maxQueueDepth =
+    new AtomicLong();
+
+  public long getNumSent() {
+    return numSent.sum();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  public long getNumReceived() {
+    return numReceived.sum();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  public long getNumEncoded() {
+    return numEncoded.sum();
+  }
+
+  /**
+   * Get the time of encoding the bodies, a
+   * streamed body is encoded while it is sent
+   * and not counted
+   * 
+   * @return the time in nanoseconds
+   */
+  public long getEncodeNanos() {
+    return encodeNanos.sum();
+  }
+
+  public long getNumDecoded() {
+    return numDecoded.sum();
+  }
+
+  public long getDecodeNanos() {
+    return decodeNanos.sum();
+  }
+
+  /**
+   * Get the number of waits in
+   * DataMap.waitAndGetData
+   * 
+   * @return the number of waits
+   */
+  public long getNumWaits() {
+    return numWaits.sum();
+  }
+
+  /**
+   * Get the number of waits without Data
+   * 
+   * @return the number of timeouts
+   */
+  public long getNumTimeouts() {
+    return numTimeouts.sum();
+  }
+
+  public long getWaitNanos() {
+    return waitNanos.sum();
+  }
+
+  /**
+   * Get the largest number of Data queued in the
+   * DataMap
+   * 
+   * @return the queue depth
+   */
+  public long getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*******************************************************
+ * The counters of the Data sent to and received
+ * from a worker
+ ******************************************************/
+public class PeerMetrics {
+
+  final LongAdder numSent = new LongAdder();
+  final LongAdder bytesSent = new LongAdder();
+  final LongAdder numReceived = new LongAdder();
+  final LongAdder bytesReceived =
+    new LongAdder();
+
+  public long getNumSent() {
+    return numSent.sum();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  public long getNumReceived() {
+    return numReceived.sum();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*******************************************************
+ * The hits and misses of a resource pool. A hit
+ * reuses a released array or writable, a miss
+ * creates a new one.
+ ******************************************************/
+public class PoolMetrics {
+
+  final LongAdder numHits = new LongAdder();
+  final LongAdder numMisses = new LongAdder();
+
+  public long getNumHits() {
+    return numHits.sum();
+  }
+
+  public long getNumMisses() {
+    return numMisses.sum();
+  }
+
+  /**
+   * Get the rate of the hits
+   * 
+   * @return the hit rate, 0 if nothing is got
+   */
+  public double getHitRate() {
+    long hits = numHits.sum();
+    long total = hits + numMisses.sum();
+    return total == 0L ? 0.0
+      : (double) hits / total;
+  }
+}
@@ -0,0 +1,4 @@
+/**
+ * harp communication metrics
+ */
+package edu.iu.harp.metrics;
\ No newline at end of file
@@ -63,8 +63,8 @@ public final class Partition<P extends Simple>
    * bytes of encoded partition body data
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return 4 + partition.getNumEnocdeBytes();
+  public long getNumEnocdeBytes() {
+    return 4L + partition.getNumEnocdeBytes();
   }
 
   /**
@@ -17,6 +17,7 @@
 package edu.iu.harp.partition;
 
 import edu.iu.harp.client.DataSender;
+import edu.iu.harp.collective.CommPlan;
 import edu.iu.harp.collective.Communication;
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.Data;
@@ -24,6 +25,7 @@ import edu.iu.harp.io.DataMap;
 import edu.iu.harp.io.DataType;
 import edu.iu.harp.io.DataUtil;
 import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.resource.IntArray;
 import edu.iu.harp.resource.Simple;
 import edu.iu.harp.resource.Transferable;
 import edu.iu.harp.resource.Writable;
@@ -32,8 +34,10 @@ import edu.iu.harp.util.PartitionSet;
 import edu.iu.harp.worker.WorkerInfo;
 import edu.iu.harp.worker.Workers;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.apache.log4j.Logger;
 
@@ -62,7 +66,16 @@ public class PartitionUtil {
     for (int i = 0; i < numRecvPartitions; ) {
       Data data = IOUtil.waitAndGet(dataMap,
           contextName, operationName);
-      if (data != null) {
+      if (data != null
+          && data.getPartitionID() == CommPlan.STALE_PLAN) {
+        LOG.error("Worker " + data.getWorkerID()
+            + " cannot use the plan of "
+            + operationName);
+        data.release();
+        DataUtil
+            .releaseTransList(recvPartitionList);
+        return false;
+      } else if (data != null) {
         data.releaseHeadArray();
         data.releaseBodyArray();
         recvPartitionList.addAll(data.getBody());
@@ -159,51 +172,34 @@ public class PartitionUtil {
         workerParCounts[workerID]++;
       }
     }
-    // Send and receive partition distribution
-    int[] sendOrder = createSendOrder(workers);
-    for (int i = 0; i < sendOrder.length; i++) {
-      PartitionCount pCount =
-          Writable.create(PartitionCount.class);
-      pCount.setWorkerID(selfID);
-      pCount.setPartitionCount(
-          workerParCounts[sendOrder[i]]);
-      if (sendOrder[i] != selfID) {
-        List<Transferable> commList =
-            new LinkedList<>();
-        // Send
-        commList.add(pCount);
-        Data data = new Data(DataType.SIMPLE_LIST,
-            contextName, selfID, commList,
-            DataUtil.getNumTransListBytes(commList),
-            operationName);
-        DataSender sender =
-            new DataSender(data, sendOrder[i],
-                workers, Constant.SEND_DECODE);
-        sender.execute();
-        data.release();
-      } else {
-        recvPCounts.add(pCount);
+    // Send and receive partition distribution,
+    // zero counts are not sent
+    IntArrayList[] sendCounts =
+        new IntArrayList[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      if (workerParCounts[i] > 0 || i == selfID) {
+        sendCounts[i] = new IntArrayList(1);
+        sendCounts[i].add(workerParCounts[i]);
       }
     }
     workerParCounts = null;
-    // Receive
-    boolean isFailed = false;
-    for (int i = 1; i < numWorkers; i++) {
-      Data data = IOUtil.waitAndGet(dataMap,
-          contextName, operationName);
-      if (data != null) {
-        data.releaseHeadArray();
-        data.releaseBodyArray();
-        recvPCounts.addAll(data.getBody());
-      } else {
-        DataUtil.releaseTransList(recvPCounts);
-        isFailed = true;
-        break;
+    IntArrayList[] recvCounts = alltoall(
+        contextName, operationName, sendCounts,
+        dataMap, workers);
+    if (recvCounts == null) {
+      return false;
+    }
+    for (int i = 0; i < numWorkers; i++) {
+      if (!recvCounts[i].isEmpty()) {
+        PartitionCount pCount =
+            Writable.create(PartitionCount.class);
+        pCount.setWorkerID(i);
+        pCount.setPartitionCount(
+            recvCounts[i].getInt(0));
+        recvPCounts.add(pCount);
       }
     }
-    dataMap.cleanOperationData(contextName,
-        operationName);
-    return !isFailed;
+    return true;
   }
 
   public static <P extends Simple> boolean rotatePartitionCount(String contextName,
@@ -420,6 +416,294 @@ public class PartitionUtil {
     return isSuccess;
   }
 
+  /**
+   * Exchange int lists between all the workers
+   * with Bruck's algorithm. In step k, each worker
+   * sends to the worker 2^k ahead the blocks whose
+   * distance to their destinations has bit k set,
+   * and receives from the worker 2^k behind. Each
+   * worker sends ceil(log2(P)) messages instead of
+   * P - 1, and a block is forwarded at most
+   * ceil(log2(P)) times.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param sendLists     the lists to send, indexed by the
+   *                      worker ID, null if nothing to send
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return the lists received, indexed by the
+   *         source worker ID, null if failed
+   */
+  public static IntArrayList[] alltoall(String contextName,
+                    String operationName,
+                    IntArrayList[] sendLists,
+                    DataMap dataMap, Workers workers) {
+    int selfID = workers.getSelfID();
+    int numWorkers = workers.getNumWorkers();
+    IntArrayList[] recvLists =
+        new IntArrayList[numWorkers];
+    // Blocks in (source, destination, size, ints)
+    IntArrayList blocks = new IntArrayList();
+    for (int i = 0; i < numWorkers; i++) {
+      recvLists[i] = new IntArrayList();
+      if (sendLists[i] != null) {
+        if (i == selfID) {
+          recvLists[i].addAll(sendLists[i]);
+        } else if (!sendLists[i].isEmpty()) {
+          blocks.add(selfID);
+          blocks.add(i);
+          blocks.add(sendLists[i].size());
+          blocks.addAll(sendLists[i]);
+        }
+      }
+    }
+    Int2ObjectOpenHashMap<Data> cachedDataMap =
+        new Int2ObjectOpenHashMap<>();
+    boolean isFailed = false;
+    for (int step = 0, dist = 1; dist < numWorkers;
+         step++, dist <<= 1) {
+      IntArrayList sendBlocks = new IntArrayList();
+      IntArrayList keptBlocks = new IntArrayList();
+      for (int i = 0; i < blocks.size(); ) {
+        int destID = blocks.getInt(i + 1);
+        int length = blocks.getInt(i + 2) + 3;
+        if ((((destID - selfID + numWorkers)
+            % numWorkers) & dist) != 0) {
+          sendBlocks.addElements(sendBlocks.size(),
+              blocks.elements(), i, length);
+        } else {
+          keptBlocks.addElements(keptBlocks.size(),
+              blocks.elements(), i, length);
+        }
+        i += length;
+      }
+      // Always send, the receiver waits for a
+      // message in every step
+      List<Transferable> commList =
+          new LinkedList<>();
+      commList.add(new IntArray(
+          sendBlocks.elements(), 0, sendBlocks.size()));
+      Data data = new Data(DataType.SIMPLE_LIST,
+          contextName, selfID, commList,
+          DataUtil.getNumTransListBytes(commList),
+          operationName, step);
+      DataSender sender = new DataSender(data,
+          (selfID + dist) % numWorkers, workers,
+          Constant.SEND_DECODE);
+      sender.execute();
+      // The array is not from the pool
+      data.releaseHeadArray();
+      data.releaseBodyArray();
+      // Receive
+      Data recvData = cachedDataMap.remove(step);
+      while (recvData == null) {
+        Data nextData = IOUtil.waitAndGet(dataMap,
+            contextName, operationName);
+        if (nextData == null) {
+          break;
+        }
+        nextData.releaseHeadArray();
+        nextData.releaseBodyArray();
+        if (nextData.getPartitionID() == step) {
+          recvData = nextData;
+        } else {
+          cachedDataMap.put(
+              nextData.getPartitionID(), nextData);
+        }
+      }
+      if (recvData == null) {
+        isFailed = true;
+        break;
+      }
+      IntArray recvBlocks =
+          (IntArray) recvData.getBody().get(0);
+      keptBlocks.addElements(keptBlocks.size(),
+          recvBlocks.get(), recvBlocks.start(),
+          recvBlocks.size());
+      recvData.release();
+      blocks = keptBlocks;
+    }
+    for (Data data : cachedDataMap.values()) {
+      data.release();
+    }
+    dataMap.cleanOperationData(contextName,
+        operationName);
+    if (isFailed) {
+      return null;
+    }
+    // All the blocks are at their destinations
+    for (int i = 0; i < blocks.size(); ) {
+      int srcID = blocks.getInt(i);
+      int length = blocks.getInt(i + 2);
+      recvLists[srcID].addElements(
+          recvLists[srcID].size(), blocks.elements(),
+          i + 3, length);
+      i += length + 3;
+    }
+    return recvLists;
+  }
+
+  /**
+   * Route partitions from the workers sending
+   * them to the workers receiving them without a
+   * master. The route of a partition ID is made on
+   * its home worker, the ID modulo the number of
+   * workers. The workers send the IDs to the home
+   * workers, and get back the routes and the
+   * receive counts, both in an alltoall. A worker
+   * processes the IDs of its home partitions only.
+   *
+   * @param contextName   the name of the context
+   * @param operationName the name of the operation
+   * @param senderIDs     the IDs of the partitions this worker
+   *                      sends
+   * @param receiverIDs   the IDs of the partitions this worker
+   *                      receives
+   * @param partitioner   the receiver of the partitions no
+   *                      worker receives, can be null
+   * @param routes        partition ID to the receiver worker
+   *                      IDs, of the partitions this worker
+   *                      sends
+   * @param dataMap       the DataMap
+   * @param workers       the Workers
+   * @return the number of partitions to receive,
+   *         FAIL_TO_REGROUP_PARTITION_SET if failed
+   */
+  public static int exchangeRoutes(String contextName,
+                    String operationName,
+                    IntCollection senderIDs,
+                    IntCollection receiverIDs,
+                    Partitioner partitioner,
+                    Int2ObjectOpenHashMap<IntArrayList> routes,
+                    DataMap dataMap, Workers workers) {
+    int numWorkers = workers.getNumWorkers();
+    // Send (kind, partition ID) to the home
+    // workers, kind 0 for senders, 1 for receivers
+    IntArrayList[] sendLists =
+        new IntArrayList[numWorkers];
+    addHomeIDs(sendLists, senderIDs, 0);
+    addHomeIDs(sendLists, receiverIDs, 1);
+    IntArrayList[] recvLists = alltoall(contextName,
+        operationName + ".home", sendLists, dataMap,
+        workers);
+    if (recvLists == null) {
+      return FAIL_TO_REGROUP_PARTITION_SET;
+    }
+    Int2ObjectOpenHashMap<IntArrayList> sendersMap =
+        new Int2ObjectOpenHashMap<>();
+    Int2ObjectOpenHashMap<IntArrayList> receiversMap =
+        new Int2ObjectOpenHashMap<>();
+    for (int workerID = 0; workerID < numWorkers;
+         workerID++) {
+      IntArrayList recvList = recvLists[workerID];
+      for (int i = 0; i < recvList.size(); i += 2) {
+        Int2ObjectOpenHashMap<IntArrayList> map =
+            recvList.getInt(i) == 0 ? sendersMap
+                : receiversMap;
+        int partitionID = recvList.getInt(i + 1);
+        IntArrayList workerIDs = map.get(partitionID);
+        if (workerIDs == null) {
+          workerIDs = new IntArrayList();
+          map.put(partitionID, workerIDs);
+        }
+        workerIDs.add(workerID);
+      }
+    }
+    // Send (receive count, (partition ID, number of
+    // receivers, receiver IDs)...) back
+    int[] recvCounts = new int[numWorkers];
+    sendLists = new IntArrayList[numWorkers];
+    for (Int2ObjectMap.Entry<IntArrayList> entry : sendersMap
+        .int2ObjectEntrySet()) {
+      int partitionID = entry.getIntKey();
+      IntArrayList senders = entry.getValue();
+      IntArrayList receivers =
+          receiversMap.get(partitionID);
+      if (receivers == null && partitioner != null) {
+        int workerID =
+            partitioner.getWorkerID(partitionID);
+        if (workerID != Constant.UNKNOWN_WORKER_ID) {
+          receivers = new IntArrayList();
+          receivers.add(workerID);
+        }
+      }
+      if (receivers == null) {
+        continue;
+      }
+      for (int senderID : senders) {
+        if (sendLists[senderID] == null) {
+          sendLists[senderID] = new IntArrayList();
+          sendLists[senderID].add(0);
+        }
+        sendLists[senderID].add(partitionID);
+        sendLists[senderID].add(receivers.size());
+        sendLists[senderID].addAll(receivers);
+      }
+      for (int receiverID : receivers) {
+        recvCounts[receiverID] += senders.size();
+      }
+    }
+    for (int workerID = 0; workerID < numWorkers;
+         workerID++) {
+      if (recvCounts[workerID] > 0) {
+        if (sendLists[workerID] == null) {
+          sendLists[workerID] = new IntArrayList();
+          sendLists[workerID].add(0);
+        }
+        sendLists[workerID].set(0,
+            recvCounts[workerID]);
+      }
+    }
+    recvLists = alltoall(contextName,
+        operationName + ".route", sendLists, dataMap,
+        workers);
+    if (recvLists == null) {
+      return FAIL_TO_REGROUP_PARTITION_SET;
+    }
+    int numRecvPartitions = 0;
+    for (IntArrayList recvList : recvLists) {
+      if (recvList.isEmpty()) {
+        continue;
+      }
+      numRecvPartitions += recvList.getInt(0);
+      for (int i = 1; i < recvList.size(); ) {
+        int partitionID = recvList.getInt(i);
+        int numReceivers = recvList.getInt(i + 1);
+        IntArrayList receivers =
+            new IntArrayList(numReceivers);
+        receivers.addElements(0, recvList.elements(),
+            i + 2, numReceivers);
+        routes.put(partitionID, receivers);
+        i += numReceivers + 2;
+      }
+    }
+    return numRecvPartitions;
+  }
+
+  /**
+   * Add (kind, partition ID) to the list of the
+   * home worker of each partition ID
+   *
+   * @param sendLists    the lists indexed by worker ID
+   * @param partitionIDs the partition IDs
+   * @param kind         the kind of the IDs
+   */
+  private static void addHomeIDs(
+      IntArrayList[] sendLists,
+      IntCollection partitionIDs, int kind) {
+    int numWorkers = sendLists.length;
+    for (int partitionID : partitionIDs) {
+      int homeID =
+          Math.floorMod(partitionID, numWorkers);
+      if (sendLists[homeID] == null) {
+        sendLists[homeID] = new IntArrayList();
+      }
+      sendLists[homeID].add(kind);
+      sendLists[homeID].add(partitionID);
+    }
+  }
+
   /**
    * Define the order of workers to send.
    *
@@ -17,26 +17,47 @@
 package edu.iu.harp.resource;
 
 import edu.iu.harp.io.Constant;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import edu.iu.harp.metrics.Metrics;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import org.apache.log4j.Logger;
 
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /*******************************************************
  * The abstract class of pools. An ArrayPool is
  * used for caching arrays. The arrays, which were
  * allocated before and are no longer used, will
  * be cached for reuse.
+ * 
+ * The pool does not lock. Each thread keeps a
+ * small magazine of released arrays for each
+ * size, and the shared free queues are lock-free.
+ * Tracking in-use arrays can be turned off, then
+ * releasing an array not from the pool or
+ * releasing an array twice is not detected.
  ******************************************************/
 public abstract class ArrayPool<T> {
 
   private static final Logger LOG =
     Logger.getLogger(ArrayPool.class);
-  /* A map from size to ArrayStore */
-  private Int2ObjectOpenHashMap<ArrayStore> arrayMap;
+  /* Stores of the power of 2 sizes */
+  private final AtomicReferenceArray<ArrayStore> arrayStores;
+  /* A map from other sizes to ArrayStore */
+  private final ConcurrentHashMap<Integer, ArrayStore> arrayMap;
+  /* If in-use arrays are tracked */
+  private final boolean isTracked;
+  /*
+   * Magazines from an older generation are
+   * dropped after clean
+   */
+  private final AtomicInteger generation;
+  private final ThreadLocal<Magazine> magazines;
 
   /**
    * ArrayStore is used for buffering Arrays.
@@ -45,17 +66,69 @@ public abstract class ArrayPool<T> {
    * Arrays. inUseSet stores in-use arrays.
    */
   private class ArrayStore {
-    private LinkedList<T> freeQueue;
-    private HashSet<T> inUseSet;
+    private final ConcurrentLinkedQueue<T> freeQueue;
+    private final Set<T> inUseSet;
 
     private ArrayStore() {
-      freeQueue = new LinkedList<>();
-      inUseSet = new HashSet<>();
+      freeQueue = new ConcurrentLinkedQueue<>();
+      // Arrays are hashed by identity
+      inUseSet = isTracked
+        ? ConcurrentHashMap.newKeySet() : null;
+    }
+  }
+
+  /**
+   * Magazine holds the arrays released by one
+   * thread, which are reused by the same thread
+   * first.
+   */
+  private class Magazine {
+    private final int generation;
+    private final Int2ObjectOpenHashMap<ArrayDeque<T>> arrays;
+
+    private Magazine(int generation) {
+      this.generation = generation;
+      this.arrays = new Int2ObjectOpenHashMap<>();
+    }
+
+    private T poll(int size) {
+      ArrayDeque<T> queue = arrays.get(size);
+      return queue == null ? null : queue.poll();
+    }
+
+    private boolean offer(int size, T array) {
+      ArrayDeque<T> queue = arrays.get(size);
+      if (queue == null) {
+        queue =
+          new ArrayDeque<>(Constant.MAGAZINE_SIZE);
+        arrays.put(size, queue);
+      }
+      if (queue.size() < Constant.MAGAZINE_SIZE) {
+        queue.push(array);
+        return true;
+      } else {
+        return false;
+      }
     }
   }
 
   public ArrayPool() {
-    arrayMap = new Int2ObjectOpenHashMap<>();
+    this(true);
+  }
+
+  /**
+   * @param isTracked
+   *          if in-use arrays are tracked
+   */
+  public ArrayPool(boolean isTracked) {
+    this.arrayStores =
+      new AtomicReferenceArray<>(Integer.SIZE);
+    this.arrayMap = new ConcurrentHashMap<>();
+    this.isTracked = isTracked;
+    this.generation = new AtomicInteger(0);
+    this.magazines = ThreadLocal
+      .withInitial(() -> new Magazine(
+        generation.get()));
   }
 
   /**
@@ -99,6 +172,59 @@ public abstract class ArrayPool<T> {
    */
   protected abstract int getLength(T array);
 
+  /**
+   * Get the ArrayStore of the size
+   * 
+   * @param size
+   *          the size of the arrays
+   * @param create
+   *          create the store if it doesn't exist
+   * @return the ArrayStore, null if it doesn't
+   *         exist and is not created
+   */
+  private ArrayStore getArrayStore(int size,
+    boolean create) {
+    if (Integer.bitCount(size) == 1) {
+      int index =
+        Integer.numberOfTrailingZeros(size);
+      ArrayStore arrayStore =
+        arrayStores.get(index);
+      if (arrayStore == null && create) {
+        arrayStores.compareAndSet(index, null,
+          new ArrayStore());
+        arrayStore = arrayStores.get(index);
+      }
+      return arrayStore;
+    } else if (create) {
+      return arrayMap.computeIfAbsent(size,
+        k -> new ArrayStore());
+    } else {
+      return arrayMap.get(size);
+    }
+  }
+
+  /**
+   * Get the magazine of the current thread if
+   * arrays of the size can be cached in it
+   * 
+   * @param size
+   *          the size of the arrays
+   * @return the magazine, null if the arrays are
+   *         too large
+   */
+  private Magazine getMagazine(int size) {
+    if (size > Constant.MAX_MAGAZINE_ARRAY_SIZE) {
+      return null;
+    }
+    Magazine magazine = magazines.get();
+    int current = generation.get();
+    if (magazine.generation != current) {
+      magazine = new Magazine(current);
+      magazines.set(magazine);
+    }
+    return magazine;
+  }
+
   /**
    * If approximate is false, get an array of
    * required size. else, get an array of adjusted
@@ -110,8 +236,7 @@ public abstract class ArrayPool<T> {
    * @param approximate
    * @return an array
    */
-  synchronized T getArray(int size,
-    boolean approximate) {
+  T getArray(int size, boolean approximate) {
     int originSize = size;
     if (originSize <= 0) {
       return null;
@@ -122,24 +247,22 @@ public abstract class ArrayPool<T> {
       return null;
     }
     ArrayStore arrayStore =
-      arrayMap.get(adjustSize);
-    if (arrayStore == null) {
-      arrayStore = new ArrayStore();
-      arrayMap.put(adjustSize, arrayStore);
+      getArrayStore(adjustSize, true);
+    T array = null;
+    Magazine magazine = getMagazine(adjustSize);
+    if (magazine != null) {
+      array = magazine.poll(adjustSize);
     }
-    if (arrayStore.freeQueue.isEmpty()) {
+    if (array == null) {
+      array = arrayStore.freeQueue.poll();
+    }
+    if (Metrics.isEnabled()) {
+      Metrics.get().recordPool(
+        getClass().getSimpleName(), array != null);
+    }
+    if (array == null) {
       try {
-        T array = createNewArray(adjustSize);
-        arrayStore.inUseSet.add(array);
-        // LOG
-        // .info("Create a new array with original
-        // size: "
-        // + originSize
-        // + ", adjusted size: "
-        // + adjustSize
-        // + ", with type: "
-        // + array.getClass().getName());
-        return array;
+        array = createNewArray(adjustSize);
       } catch (Throwable t) {
         LOG.error(
           "Cannot create array with size "
@@ -151,18 +274,11 @@ public abstract class ArrayPool<T> {
           t);
         return null;
       }
-    } else {
-      T array =
-        arrayStore.freeQueue.removeFirst();
+    }
+    if (isTracked) {
       arrayStore.inUseSet.add(array);
-      // LOG
-      // .info("Get an existing array with
-      // adjusted size: "
-      // + adjustSize
-      // + ", with type "
-      // + array.getClass().getName());
-      return array;
     }
+    return array;
   }
 
   /**
@@ -174,36 +290,26 @@ public abstract class ArrayPool<T> {
    *          the array to release
    * @return true if succeeded, false if failed.
    */
-  synchronized boolean releaseArray(T array) {
+  boolean releaseArray(T array) {
     if (array == null) {
       return false;
     }
     int size = getLength(array);
-    ArrayStore arrayStore = arrayMap.get(size);
+    ArrayStore arrayStore =
+      getArrayStore(size, false);
     if (arrayStore == null) {
-      // LOG
-      // .info("Fail to release an array with
-      // size: "
-      // + size
-      // + ", with type "
-      // + array.getClass().getName()
-      // + ". no such store.");
       return false;
-    } else {
-      if (arrayStore.inUseSet.remove(array)) {
-        arrayStore.freeQueue.add(array);
-        return true;
-      } else {
-        // LOG
-        // .info("Fail to release an array with
-        // size: "
-        // + size
-        // + ", with type "
-        // + array.getClass().getName()
-        // + ". no such an array.");
-        return false;
-      }
     }
+    if (isTracked
+      && !arrayStore.inUseSet.remove(array)) {
+      return false;
+    }
+    Magazine magazine = getMagazine(size);
+    if (magazine == null
+      || !magazine.offer(size, array)) {
+      arrayStore.freeQueue.offer(array);
+    }
+    return true;
   }
 
   /**
@@ -214,44 +320,58 @@ public abstract class ArrayPool<T> {
    *          the array to be freed
    * @return true if succeeded, false if failed
    */
-  synchronized boolean freeArray(T array) {
+  boolean freeArray(T array) {
     int size = getLength(array);
-    // LOG.info("Free an array with size: " + size
-    // + ", with type "
-    // + array.getClass().getName());
-    ArrayStore arrayStore = arrayMap.get(size);
+    ArrayStore arrayStore =
+      getArrayStore(size, false);
     if (arrayStore == null) {
       return false;
-    } else {
+    } else if (isTracked) {
       return arrayStore.inUseSet.remove(array);
+    } else {
+      return true;
     }
   }
 
   /**
    * Clean all arrays in freeQueue, namely remove
-   * all not-in-use arrays.
+   * all not-in-use arrays. The magazines are
+   * dropped when the threads use them next time.
    */
-  synchronized void clean() {
+  void clean() {
+    generation.incrementAndGet();
+    for (int i = 0; i < arrayStores.length(); i++) {
+      ArrayStore store = arrayStores.get(i);
+      if (store != null) {
+        store.freeQueue.clear();
+      }
+    }
     for (ArrayStore store : arrayMap.values()) {
       store.freeQueue.clear();
     }
   }
 
   /**
-   * Logging the usage of the arrays.
+   * Logging the usage of the arrays. Arrays
+   * cached in the magazines are not counted.
    */
-  synchronized void log() {
-    ObjectIterator<Int2ObjectMap.Entry<ArrayStore>> iterator =
-      arrayMap.int2ObjectEntrySet()
-        .fastIterator();
-    while (iterator.hasNext()) {
-      Int2ObjectMap.Entry<ArrayStore> entry =
-        iterator.next();
-      LOG.info(this + ": size="
-        + entry.getIntKey() + ", use="
-        + entry.getValue().inUseSet.size()
-        + ", released="
-        + entry.getValue().freeQueue.size());
+  void log() {
+    for (int i = 0; i < arrayStores.length(); i++) {
+      ArrayStore store = arrayStores.get(i);
+      if (store != null) {
+        log(1 << i, store);
+      }
+    }
+    for (Map.Entry<Integer, ArrayStore> entry : arrayMap
+      .entrySet()) {
+      log(entry.getKey(), entry.getValue());
     }
   }
+
+  private void log(int size, ArrayStore store) {
+    LOG.info(this + ": size=" + size + ", use="
+      + (isTracked ? store.inUseSet.size()
+        : "untracked")
+      + ", released=" + store.freeQueue.size());
+  }
 }
@@ -39,9 +39,9 @@ public final class ByteArray
    * data.
    */
   @Override
-  public int getNumEnocdeBytes() {
+  public long getNumEnocdeBytes() {
     // array type, array length, array body
-    return size + 5;
+    return size + 5L;
   }
 
   /**
@@ -25,6 +25,10 @@ public class BytesPool extends ArrayPool<byte[]> {
     super();
   }
 
+  public BytesPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a byte array of the size
    */
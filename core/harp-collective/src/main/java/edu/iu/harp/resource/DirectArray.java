@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.SegmentedSerializer;
+import edu.iu.harp.io.Serializer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*******************************************************
+ * The abstract class of arrays stored in direct
+ * ByteBuffers, off the Java heap. The buffer is in
+ * big-endian order, so the encoded body is the
+ * buffer content and can be sent without
+ * copying.
+ ******************************************************/
+public abstract class DirectArray
+  extends Simple {
+  /** The buffer, elements start from 0 */
+  protected ByteBuffer buffer = null;
+  /** Number of elements, -1 by default */
+  protected int size = -1;
+
+  public DirectArray(ByteBuffer buffer,
+    int size) {
+    this.buffer = buffer;
+    this.size = size;
+  }
+
+  /**
+   * Get the buffer
+   * 
+   * @return the buffer
+   */
+  public ByteBuffer get() {
+    return buffer;
+  }
+
+  /**
+   * Get the number of elements
+   * 
+   * @return the number of elements
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the number of bytes of an element
+   * 
+   * @return the number of bytes of an element
+   */
+  protected abstract int getElementBytes();
+
+  /**
+   * Get the DataType used in encoding
+   * 
+   * @return the DataType
+   */
+  protected abstract byte getDataType();
+
+  /**
+   * Get the number of Bytes of encoded data. One
+   * byte for storing DataType, four bytes for
+   * storing the size, and the bytes of the
+   * elements.
+   */
+  @Override
+  public long getNumEnocdeBytes() {
+    return 5L + (long) size * getElementBytes();
+  }
+
+  /**
+   * Get a view of the bytes of the elements
+   * 
+   * @return the view
+   */
+  public ByteBuffer getBody() {
+    ByteBuffer body = buffer.duplicate();
+    body.clear();
+    body.limit(size * getElementBytes());
+    return body;
+  }
+
+  /**
+   * Encode the array as DataOutput. The elements
+   * are written in bulk.
+   */
+  @Override
+  public void encode(DataOutput out)
+    throws IOException {
+    out.writeByte(getDataType());
+    out.writeInt(size);
+    ByteBuffer body = getBody();
+    if (out instanceof SegmentedSerializer) {
+      ((SegmentedSerializer) out).write(body);
+    } else if (out instanceof Serializer) {
+      ((Serializer) out).write(body);
+    } else {
+      byte[] bytes = new byte[Math.min(
+        Constant.BUFFER_SIZE, body.remaining())];
+      while (body.hasRemaining()) {
+        int len =
+          Math.min(bytes.length, body.remaining());
+        body.get(bytes, 0, len);
+        out.write(bytes, 0, len);
+      }
+    }
+  }
+
+  /**
+   * Get a buffer from the ResourcePool
+   * 
+   * @param numBytes
+   *          the number of bytes required
+   * @param approximate
+   * @return the buffer, null if failed
+   */
+  static ByteBuffer createBuffer(long numBytes,
+    boolean approximate) {
+    if (numBytes > 0L
+      && numBytes <= Constant.MAX_ARRAY_SIZE) {
+      ByteBuffer buffer =
+        ResourcePool.get().getDirectBuffersPool()
+          .getArray((int) numBytes, approximate);
+      if (buffer != null) {
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+      }
+      return buffer;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Release the buffer to the ResourcePool
+   */
+  @Override
+  public void release() {
+    ResourcePool.get().getDirectBuffersPool()
+      .releaseArray(buffer);
+    this.reset();
+  }
+
+  /**
+   * Free the buffer from the ResourcePool
+   */
+  @Override
+  public void free() {
+    ResourcePool.get().getDirectBuffersPool()
+      .freeArray(buffer);
+    this.reset();
+  }
+
+  /**
+   * Reset the array
+   */
+  protected void reset() {
+    buffer = null;
+    size = -1;
+  }
+}
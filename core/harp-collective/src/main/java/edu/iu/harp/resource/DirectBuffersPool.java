@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import java.nio.ByteBuffer;
+
+/*******************************************************
+ * A pool used for caching direct ByteBuffers,
+ * which are off the Java heap. A ByteBuffer is
+ * hashed by its content, so in-use buffers are
+ * not tracked.
+ ******************************************************/
+public class DirectBuffersPool
+  extends ArrayPool<ByteBuffer> {
+
+  public DirectBuffersPool() {
+    super(false);
+  }
+
+  /**
+   * Allocate a direct buffer of the size
+   */
+  @Override
+  protected ByteBuffer createNewArray(int size) {
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  /**
+   * Get the capacity of the buffer
+   */
+  @Override
+  protected int getLength(ByteBuffer buffer) {
+    return buffer.capacity();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import edu.iu.harp.io.DataType;
+
+import java.nio.ByteBuffer;
+
+/*******************************************************
+ * An array of float values in a direct ByteBuffer
+ ******************************************************/
+public final class DirectFloatArray
+  extends DirectArray {
+
+  public DirectFloatArray(ByteBuffer buffer, int size) {
+    super(buffer, size);
+  }
+
+  @Override
+  protected int getElementBytes() {
+    return 4;
+  }
+
+  @Override
+  protected byte getDataType() {
+    return DataType.DIRECT_FLOAT_ARRAY;
+  }
+
+  /**
+   * Get the value at the index
+   * 
+   * @param i
+   *          the index
+   * @return the value
+   */
+  public float get(int i) {
+    return buffer.getFloat(i << 2);
+  }
+
+  /**
+   * Set the value at the index
+   * 
+   * @param i
+   *          the index
+   * @param value
+   *          the value
+   */
+  public void set(int i, float value) {
+    buffer.putFloat(i << 2, value);
+  }
+
+  /**
+   * Create an array. The buffer is from the
+   * ResourcePool.
+   * 
+   * @param len
+   * @param approximate
+   * @return the array, null if failed
+   */
+  public static DirectFloatArray create(int len,
+    boolean approximate) {
+    ByteBuffer buffer =
+      createBuffer((long) len * 4, approximate);
+    if (buffer != null) {
+      return new DirectFloatArray(buffer, len);
+    } else {
+      return null;
+    }
+  }
+}
@@ -40,8 +40,8 @@ public final class DoubleArray
    * the data.
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return size * 8 + 5;
+  public long getNumEnocdeBytes() {
+    return size * 8L + 5;
   }
 
   /**
@@ -26,6 +26,10 @@ public class DoublesPool
     super();
   }
 
+  public DoublesPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a double array of the size
    */
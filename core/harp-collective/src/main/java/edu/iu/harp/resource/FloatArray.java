@@ -40,8 +40,8 @@ public final class FloatArray
    * the data.
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return size * 4 + 5;
+  public long getNumEnocdeBytes() {
+    return size * 4L + 5;
   }
 
   /**
@@ -26,6 +26,10 @@ public class FloatsPool
     super();
   }
 
+  public FloatsPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a float array of the size
    */
@@ -39,8 +39,8 @@ public final class IntArray extends Array<int[]> {
    * the data.
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return this.size * 4 + 5;
+  public long getNumEnocdeBytes() {
+    return this.size * 4L + 5;
   }
 
   /**
@@ -25,6 +25,10 @@ public class IntsPool extends ArrayPool<int[]> {
     super();
   }
 
+  public IntsPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a int array of the size
    */
@@ -39,8 +39,8 @@ public final class LongArray
    * the data.
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return size * 8 + 5;
+  public long getNumEnocdeBytes() {
+    return size * 8L + 5;
   }
 
   /**
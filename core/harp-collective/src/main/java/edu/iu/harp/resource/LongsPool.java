@@ -25,6 +25,10 @@ public class LongsPool extends ArrayPool<long[]> {
     super();
   }
 
+  public LongsPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a long-type array of the size
    */
@@ -16,9 +16,17 @@
 
 package edu.iu.harp.resource;
 
+import edu.iu.harp.io.Constant;
+
+/*******************************************************
+ * The pools of arrays and writables. In-use
+ * resources are tracked unless the system
+ * property Constant.POOL_TRACKING is false.
+ ******************************************************/
 public class ResourcePool {
 
-  private static ResourcePool instance = null;
+  private static volatile ResourcePool instance =
+    null;
 
   private final BytesPool byteArrays;
   private final ShortsPool shortArrays;
@@ -27,15 +35,20 @@ public class ResourcePool {
   private final LongsPool longArrays;
   private final DoublesPool doubleArrays;
   private final WritablePool writables;
+  private final DirectBuffersPool directBuffers;
 
   private ResourcePool() {
-    byteArrays = new BytesPool();
-    shortArrays = new ShortsPool();
-    intArrays = new IntsPool();
-    floatArrays = new FloatsPool();
-    longArrays = new LongsPool();
-    doubleArrays = new DoublesPool();
-    writables = new WritablePool();
+    boolean isTracked = Boolean.parseBoolean(
+      System.getProperty(Constant.POOL_TRACKING,
+        "true"));
+    byteArrays = new BytesPool(isTracked);
+    shortArrays = new ShortsPool(isTracked);
+    intArrays = new IntsPool(isTracked);
+    floatArrays = new FloatsPool(isTracked);
+    longArrays = new LongsPool(isTracked);
+    doubleArrays = new DoublesPool(isTracked);
+    writables = new WritablePool(isTracked);
+    directBuffers = new DirectBuffersPool();
   }
 
   public static ResourcePool get() {
@@ -82,6 +95,10 @@ public class ResourcePool {
     return writables;
   }
 
+  DirectBuffersPool getDirectBuffersPool() {
+    return directBuffers;
+  }
+
   public void clean() {
     byteArrays.clean();
     shortArrays.clean();
@@ -90,6 +107,7 @@ public class ResourcePool {
     longArrays.clean();
     doubleArrays.clean();
     writables.clean();
+    directBuffers.clean();
   }
 
   public void log() {
@@ -100,5 +118,6 @@ public class ResourcePool {
     longArrays.log();
     doubleArrays.log();
     writables.log();
+    directBuffers.log();
   }
 }
@@ -39,8 +39,8 @@ public final class ShortArray
    * the data.
    */
   @Override
-  public int getNumEnocdeBytes() {
-    return size * 2 + 5;
+  public long getNumEnocdeBytes() {
+    return size * 2L + 5;
   }
 
   /**
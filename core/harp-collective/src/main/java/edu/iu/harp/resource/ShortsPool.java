@@ -26,6 +26,10 @@ public class ShortsPool
     super();
   }
 
+  public ShortsPool(boolean isTracked) {
+    super(isTracked);
+  }
+
   /**
    * New a short-type array of the size
    */
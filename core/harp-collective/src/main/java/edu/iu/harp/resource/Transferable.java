@@ -26,11 +26,14 @@ import java.io.IOException;
 public abstract class Transferable {
 
   /**
-   * Get the number of Bytes of encoded data.
+   * Get the number of Bytes of encoded data. It
+   * is a long since the data can be larger than
+   * 2 GB, subclasses overriding the former int
+   * version must change the return type.
    * 
    * @return number of bytes
    */
-  public abstract int getNumEnocdeBytes();
+  public abstract long getNumEnocdeBytes();
 
   /**
    * Encode the data as DataOutPut
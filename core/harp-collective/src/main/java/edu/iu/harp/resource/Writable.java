@@ -21,8 +21,6 @@ import edu.iu.harp.io.DataType;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 /*******************************************************
  * ByteArray class for managing writable objects.
@@ -33,9 +31,10 @@ public abstract class Writable extends Simple {
    * Get the number of Bytes of encoded data.
    */
   @Override
-  public final int getNumEnocdeBytes() {
-    return 1
-      + this.getClass().getName().length() * 2 + 4
+  public final long getNumEnocdeBytes() {
+    return 1L
+      + WritableRegistry
+        .getNumClassBytes(this.getClass())
       + getNumWriteBytes();
   }
 
@@ -46,29 +45,20 @@ public abstract class Writable extends Simple {
   public final void encode(DataOutput out)
     throws IOException {
     out.writeByte(DataType.WRITABLE);
-    out.writeUTF(this.getClass().getName());
+    WritableRegistry.writeClass(out,
+      this.getClass());
     this.write(out);
   }
 
   /**
-   * Get a new instance of the class
+   * Get a new instance of the class, the factory
+   * of the class is cached in WritableRegistry
    * 
    * @return new instance
    */
   public final static <W extends Writable> W
     newInstance(Class<W> clazz) {
-    try {
-      Constructor<W> constructor =
-        clazz.getConstructor();
-      return constructor.newInstance();
-    } catch (InstantiationException |
-      IllegalAccessException |
-      IllegalArgumentException |
-      InvocationTargetException |
-      NoSuchMethodException |
-      SecurityException e) {
-      return null;
-    }
+    return WritableRegistry.newInstance(clazz);
   }
 
   /**
@@ -92,11 +82,7 @@ public abstract class Writable extends Simple {
    */
   public final static <W extends Writable>
     Class<W> forClass(String className) {
-    try {
-      return (Class<W>) Class.forName(className);
-    } catch (ClassNotFoundException e) {
-      return null;
-    }
+    return WritableRegistry.forName(className);
   }
 
   /**
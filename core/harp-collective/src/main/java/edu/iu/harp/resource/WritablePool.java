@@ -16,16 +16,22 @@
 
 package edu.iu.harp.resource;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.metrics.Metrics;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayDeque;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*******************************************************
- * A pool used for caching writable objects
+ * A pool used for caching writable objects. Like
+ * ArrayPool, each thread keeps a small magazine of
+ * released writables for each class, and the
+ * shared free queues are lock-free.
  ******************************************************/
 public class WritablePool {
 
@@ -33,35 +39,133 @@ public class WritablePool {
     Logger.getLogger(WritablePool.class);
 
   /** A map from ref to writable objects */
-  private Object2ObjectOpenHashMap<Class<? extends Writable>, WritableStore> writableMap;
+  private final ConcurrentHashMap<Class<? extends Writable>, WritableStore> writableMap;
+  /* If in-use writables are tracked */
+  private final boolean isTracked;
+  private final AtomicInteger generation;
+  private final ThreadLocal<Magazine> magazines;
 
   /**
    * WritableStore is used for buffering
    * writables. freeQueue stores not-in-use
    * writables, which can be used as required to
-   * avoid reallocating writables. inUseMap stores
-   * in-use writables.
+   * avoid reallocating writables. inUseMap
+   * stores in-use writables.
    */
   private class WritableStore {
-    private IdentityHashMap<Writable, Object> inUseMap;
-    private LinkedList<Writable> freeQueue;
+    private final ConcurrentHashMap<IdentityKey, Writable> inUseMap;
+    private final ConcurrentLinkedQueue<Writable> freeQueue;
 
     private WritableStore() {
-      inUseMap = new IdentityHashMap<>();
-      freeQueue = new LinkedList<>();
+      inUseMap =
+        isTracked ? new ConcurrentHashMap<>() : null;
+      freeQueue = new ConcurrentLinkedQueue<>();
+    }
+
+    private void addInUse(Writable obj) {
+      inUseMap.put(new IdentityKey(obj), obj);
+    }
+
+    private boolean removeInUse(Writable obj) {
+      return inUseMap
+        .remove(new IdentityKey(obj)) != null;
+    }
+
+    private int getNumInUse() {
+      return inUseMap.size();
     }
   }
 
-  /*
-   * Dummy value to associate with an Object in
-   * the backing Map
+  /**
+   * Writables may override hashCode and equals,
+   * in-use writables are tracked by identity.
    */
-  private static final Object PRESENT =
-    new Object();
+  private static final class IdentityKey {
+    private final Writable obj;
+
+    private IdentityKey(Writable obj) {
+      this.obj = obj;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(obj);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof IdentityKey
+        && ((IdentityKey) other).obj == obj;
+    }
+  }
+
+  /**
+   * Magazine holds the writables released by one
+   * thread, which are reused by the same thread
+   * first.
+   */
+  private class Magazine {
+    private final int generation;
+    private final IdentityHashMap<Class<?>, ArrayDeque<Writable>> writables;
+
+    private Magazine(int generation) {
+      this.generation = generation;
+      this.writables = new IdentityHashMap<>();
+    }
+
+    private Writable poll(Class<?> clazz) {
+      ArrayDeque<Writable> queue =
+        writables.get(clazz);
+      return queue == null ? null : queue.poll();
+    }
+
+    private boolean offer(Writable obj) {
+      ArrayDeque<Writable> queue =
+        writables.get(obj.getClass());
+      if (queue == null) {
+        queue =
+          new ArrayDeque<>(Constant.MAGAZINE_SIZE);
+        writables.put(obj.getClass(), queue);
+      }
+      if (queue.size() < Constant.MAGAZINE_SIZE) {
+        queue.push(obj);
+        return true;
+      } else {
+        return false;
+      }
+    }
+  }
 
   public WritablePool() {
-    writableMap =
-      new Object2ObjectOpenHashMap<>();
+    this(true);
+  }
+
+  /**
+   * @param isTracked
+   *          if in-use writables are tracked
+   */
+  public WritablePool(boolean isTracked) {
+    this.writableMap = new ConcurrentHashMap<>();
+    this.isTracked = isTracked;
+    this.generation = new AtomicInteger(0);
+    this.magazines = ThreadLocal
+      .withInitial(() -> new Magazine(
+        generation.get()));
+  }
+
+  /**
+   * Get the magazine of the current thread
+   * 
+   * @return the magazine
+   */
+  private Magazine getMagazine() {
+    Magazine magazine = magazines.get();
+    int current = generation.get();
+    if (magazine.generation != current) {
+      magazine = new Magazine(current);
+      magazines.set(magazine);
+    }
+    return magazine;
   }
 
   /**
@@ -73,30 +177,28 @@ public class WritablePool {
    * @param clazz
    * @return
    */
-  synchronized <W extends Writable> W
+  <W extends Writable> W
     getWritable(Class<W> clazz) {
-    WritableStore writableStore =
-      writableMap.get(clazz);
-    if (writableStore == null) {
-      writableStore = new WritableStore();
-      writableMap.put(clazz, writableStore);
-    }
-    if (!writableStore.freeQueue.isEmpty()) {
-      Writable obj =
-        writableStore.freeQueue.removeFirst();
-      writableStore.inUseMap.put(obj, PRESENT);
-      // LOG.info("Get existing object "
-      // + className + ".");
-      return (W) obj;
-    } else {
+    WritableStore writableStore = writableMap
+      .computeIfAbsent(clazz,
+        k -> new WritableStore());
+    Writable obj = getMagazine().poll(clazz);
+    if (obj == null) {
+      obj = writableStore.freeQueue.poll();
+    }
+    if (Metrics.isEnabled()) {
+      Metrics.get().recordPool(
+        getClass().getSimpleName(), obj != null);
+    }
+    if (obj == null) {
       // LOG.info("Create a new object " +
       // className + ".");
-      W obj = Writable.newInstance(clazz);
-      if (obj != null) {
-        writableStore.inUseMap.put(obj, PRESENT);
-      }
-      return obj;
+      obj = Writable.newInstance(clazz);
+    }
+    if (obj != null && isTracked) {
+      writableStore.addInUse(obj);
     }
+    return clazz.cast(obj);
   }
 
   /**
@@ -107,7 +209,7 @@ public class WritablePool {
    * @param obj
    * @return
    */
-  synchronized <W extends Writable> boolean
+  <W extends Writable> boolean
     releaseWritable(W obj) {
     if (obj == null) {
       return false;
@@ -117,17 +219,17 @@ public class WritablePool {
     if (writableStore == null) {
       return false;
     }
-    Object rmObject =
-      writableStore.inUseMap.remove(obj);
-    if (rmObject == null) {
+    if (isTracked
+      && !writableStore.removeInUse(obj)) {
       return false;
-    } else {
-      obj.clear();
-      writableStore.freeQueue.add(obj);
-      // LOG.info("Release object "
-      // + obj.getClass().getName() + ".");
-      return true;
     }
+    obj.clear();
+    if (!getMagazine().offer(obj)) {
+      writableStore.freeQueue.offer(obj);
+    }
+    // LOG.info("Release object "
+    // + obj.getClass().getName() + ".");
+    return true;
   }
 
   /**
@@ -138,7 +240,7 @@ public class WritablePool {
    *          the writable to remove
    * @return true if succeeded, false if failed
    */
-  public synchronized <W extends Writable> boolean
+  public <W extends Writable> boolean
     freeWritable(W obj) {
     if (obj == null) {
       return false;
@@ -148,9 +250,8 @@ public class WritablePool {
     if (writableStore == null) {
       return false;
     }
-    Object rmObject =
-      writableStore.inUseMap.remove(obj);
-    if (rmObject == null) {
+    if (isTracked
+      && !writableStore.removeInUse(obj)) {
       return false;
     } else {
       obj.clear();
@@ -160,9 +261,12 @@ public class WritablePool {
 
   /**
    * Clean all writables in freeQueue, namely
-   * remove all not-in-use writables.
+   * remove all not-in-use writables. The
+   * magazines are dropped when the threads use
+   * them next time.
    */
-  public synchronized void clean() {
+  public void clean() {
+    generation.incrementAndGet();
     for (WritableStore store : writableMap
       .values()) {
       store.freeQueue.clear();
@@ -171,19 +275,19 @@ public class WritablePool {
 
   /**
    * Logging the usage of the writables.
+   * Writables cached in the magazines are not
+   * counted.
    */
-  synchronized void log() {
-    ObjectIterator<Object2ObjectMap.Entry<Class<? extends Writable>, WritableStore>> iterator =
-      writableMap.object2ObjectEntrySet()
-        .fastIterator();
-    while (iterator.hasNext()) {
-      Object2ObjectMap.Entry<Class<? extends Writable>, WritableStore> entry =
-        iterator.next();
-      LOG.info(
-        "class: " + entry.getKey() + ", use="
-          + entry.getValue().inUseMap.size()
-          + ", released="
-          + entry.getValue().freeQueue.size());
+  void log() {
+    for (Map.Entry<Class<? extends Writable>, WritableStore> entry : writableMap
+      .entrySet()) {
+      LOG.info("class: " + entry.getKey()
+        + ", use="
+        + (isTracked
+          ? entry.getValue().getNumInUse()
+          : "untracked")
+        + ", released="
+        + entry.getValue().freeQueue.size());
     }
   }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.resource;
+
+import edu.iu.harp.util.Ack;
+import edu.iu.harp.util.Barrier;
+import edu.iu.harp.util.Join;
+import edu.iu.harp.util.PartitionCount;
+import edu.iu.harp.util.PartitionSet;
+import org.apache.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*******************************************************
+ * A job-wide registry of Writable classes.
+ * 
+ * A registered class is encoded as a 4-byte
+ * class ID instead of its class name. The ID is
+ * derived from the class name and always
+ * negative, so every worker computes the same ID
+ * without coordination, and a decoder can tell
+ * it from the non-negative length of a class
+ * name written for an unregistered class. Every
+ * worker of a job must register the same
+ * classes.
+ * 
+ * Factories of all Writable classes are cached
+ * here, so creating an instance does not look up
+ * the constructor reflectively.
+ ******************************************************/
+public class WritableRegistry {
+
+  private static final Logger LOG =
+    Logger.getLogger(WritableRegistry.class);
+
+  /** The class ID of unregistered classes */
+  private static final int NO_ID = 0;
+
+  private static final ConcurrentHashMap<Integer, Entry> idMap =
+    new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<Class<?>, Entry> classMap =
+    new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Class<? extends Writable>> nameMap =
+    new ConcurrentHashMap<>();
+
+  /**
+   * The cached information of a Writable class
+   */
+  private static class Entry {
+    private final Class<? extends Writable> clazz;
+    private final int classID;
+    private final Supplier<? extends Writable> factory;
+
+    private Entry(Class<? extends Writable> clazz,
+      int classID,
+      Supplier<? extends Writable> factory) {
+      this.clazz = clazz;
+      this.classID = classID;
+      this.factory = factory;
+    }
+  }
+
+  static {
+    register(Ack.class);
+    register(Barrier.class);
+    register(Join.class);
+    register(PartitionCount.class);
+    register(PartitionSet.class);
+  }
+
+  /**
+   * Register a Writable class, the instances are
+   * created with its public no-arg constructor
+   * 
+   * @param clazz the Writable class
+   * @return true if the class is registered
+   */
+  public static <W extends Writable> boolean
+    register(Class<W> clazz) {
+    Supplier<W> factory = createFactory(clazz);
+    if (factory == null) {
+      return false;
+    }
+    return register(clazz, factory);
+  }
+
+  /**
+   * Register a Writable class with the factory
+   * creating its instances
+   * 
+   * @param clazz the Writable class
+   * @param factory the factory
+   * @return true if the class is registered
+   */
+  public static <W extends Writable> boolean
+    register(Class<W> clazz, Supplier<W> factory) {
+    Entry entry = new Entry(clazz,
+      getClassID(clazz.getName()), factory);
+    Entry oldEntry =
+      idMap.putIfAbsent(entry.classID, entry);
+    if (oldEntry != null) {
+      if (oldEntry.clazz != clazz) {
+        LOG.error("Class " + clazz.getName()
+          + " has the same ID as "
+          + oldEntry.clazz.getName()
+          + ", it is encoded with the class name.");
+        return false;
+      }
+      idMap.put(entry.classID, entry);
+    }
+    classMap.put(clazz, entry);
+    nameMap.put(clazz.getName(), clazz);
+    return true;
+  }
+
+  /**
+   * Check if a Writable class is registered
+   * 
+   * @param clazz the Writable class
+   * @return true if the class is registered
+   */
+  public static boolean
+    isRegistered(Class<? extends Writable> clazz) {
+    return getEntry(clazz).classID != NO_ID;
+  }
+
+  /**
+   * Get the class ID derived from the class name
+   * 
+   * @param className the class name
+   * @return the class ID
+   */
+  static int getClassID(String className) {
+    return className.hashCode()
+      | Integer.MIN_VALUE;
+  }
+
+  /**
+   * Create a new instance of the class
+   * 
+   * @param clazz the Writable class
+   * @return the new instance, or null if failed
+   */
+  static <W extends Writable> W
+    newInstance(Class<W> clazz) {
+    Entry entry = getEntry(clazz);
+    if (entry.factory == null) {
+      return null;
+    }
+    return clazz.cast(entry.factory.get());
+  }
+
+  /**
+   * Get the Writable class with the class name
+   * 
+   * @param className the class name
+   * @return the class, or null if not found
+   */
+  @SuppressWarnings("unchecked")
+  static <W extends Writable> Class<W>
+    forName(String className) {
+    Class<? extends Writable> clazz =
+      nameMap.get(className);
+    if (clazz == null) {
+      try {
+        clazz = Class.forName(className)
+          .asSubclass(Writable.class);
+      } catch (ClassNotFoundException
+        | ClassCastException e) {
+        LOG.error("Fail to find writable class "
+          + className, e);
+        return null;
+      }
+      nameMap.putIfAbsent(className, clazz);
+    }
+    return (Class<W>) clazz;
+  }
+
+  /**
+   * Get the number of bytes used to encode the
+   * class
+   * 
+   * @param clazz the Writable class
+   * @return the number of bytes
+   */
+  public static int
+    getNumClassBytes(Class<? extends Writable> clazz) {
+    if (isRegistered(clazz)) {
+      return 4;
+    } else {
+      return clazz.getName().length() * 2 + 4;
+    }
+  }
+
+  /**
+   * Write the class ID of a registered class, or
+   * the class name of an unregistered class
+   * 
+   * @param out the DataOutput
+   * @param clazz the Writable class
+   * @throws IOException
+   */
+  public static void writeClass(DataOutput out,
+    Class<? extends Writable> clazz)
+    throws IOException {
+    int classID = getEntry(clazz).classID;
+    if (classID != NO_ID) {
+      out.writeInt(classID);
+    } else {
+      String className = clazz.getName();
+      out.writeInt(className.length());
+      for (int i = 0; i < className.length(); i++) {
+        out.writeChar(className.charAt(i));
+      }
+    }
+  }
+
+  /**
+   * Read a class written by writeClass
+   * 
+   * @param in the DataInput
+   * @return the class, or null if not found
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked")
+  public static <W extends Writable> Class<W>
+    readClass(DataInput in) throws IOException {
+    int head = in.readInt();
+    if (head < 0) {
+      Entry entry = idMap.get(head);
+      if (entry == null) {
+        LOG.error(
+          "Fail to find writable class with ID "
+            + head);
+        return null;
+      }
+      return (Class<W>) entry.clazz;
+    } else {
+      char[] chars = new char[head];
+      for (int i = 0; i < head; i++) {
+        chars[i] = in.readChar();
+      }
+      return forName(new String(chars));
+    }
+  }
+
+  /**
+   * Get the cached entry of a class, an
+   * unregistered class gets an entry without ID
+   * 
+   * @param clazz the Writable class
+   * @return the entry
+   */
+  private static Entry
+    getEntry(Class<? extends Writable> clazz) {
+    Entry entry = classMap.get(clazz);
+    if (entry == null) {
+      entry = new Entry(clazz, NO_ID,
+        createFactory(clazz));
+      Entry oldEntry =
+        classMap.putIfAbsent(clazz, entry);
+      if (oldEntry != null) {
+        entry = oldEntry;
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Create a factory calling the public no-arg
+   * constructor of the class
+   * 
+   * @param clazz the Writable class
+   * @return the factory, or null if failed
+   */
+  private static <W extends Writable> Supplier<W>
+    createFactory(Class<W> clazz) {
+    final MethodHandle constructor;
+    try {
+      constructor = MethodHandles.publicLookup()
+        .findConstructor(clazz,
+          MethodType.methodType(void.class));
+    } catch (NoSuchMethodException
+      | IllegalAccessException e) {
+      LOG.error("Fail to find the constructor of "
+        + clazz.getName(), e);
+      return null;
+    }
+    return () -> {
+      try {
+        return clazz.cast(constructor.invoke());
+      } catch (Throwable t) {
+        LOG.error("Fail to create an instance of "
+          + clazz.getName(), t);
+        return null;
+      }
+    };
+  }
+}
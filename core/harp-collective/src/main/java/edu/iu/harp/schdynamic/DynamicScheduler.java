@@ -148,7 +148,8 @@ public class DynamicScheduler<I, O, T extends Task<I, O>> {
         threads = new Thread[numTaskMonitors];
         int i = 0;
         for (TaskMonitor<I, O, T> monitor : taskMonitors) {
-          threads[i] = new Thread(monitor);
+          threads[i] = new Thread(ThreadPlacement
+            .get().wrap(monitor, i, numTaskMonitors));
           threads[i].start();
           i++;
         }
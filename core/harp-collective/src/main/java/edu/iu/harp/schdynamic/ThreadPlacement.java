@@ -0,0 +1,555 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.schdynamic;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*******************************************************
+ * Place scheduler and receiver threads on CPUs.
+ * The policies are "none", "compact" (thread i on
+ * the i-th CPU, sockets filled one by one),
+ * "scatter" (threads spread over the sockets) and
+ * "socket" (threads split into one group per
+ * socket, each group on all the CPUs of its
+ * socket). Receivers are spread over the sockets.
+ * 
+ * The topology is read from Linux sysfs. Pinning
+ * uses the OpenHFT affinity library when it is on
+ * the classpath, otherwise threads are not
+ * pinned. Memory first touched by a pinned thread
+ * is allocated on its socket, allocate() builds
+ * the data of a task in a thread placed as the
+ * task thread.
+ ******************************************************/
+public class ThreadPlacement {
+
+  protected static final Logger LOG =
+    Logger.getLogger(ThreadPlacement.class);
+
+  /** Placement policies */
+  public static final String NONE = "none";
+  public static final String COMPACT = "compact";
+  public static final String SCATTER = "scatter";
+  public static final String SOCKET = "socket";
+
+  private static final String CPU_DIR =
+    "/sys/devices/system/cpu";
+  private static final String AFFINITY_CLASS =
+    "net.openhft.affinity.Affinity";
+
+  private static final Method SET_AFFINITY =
+    findSetAffinity();
+
+  private static volatile ThreadPlacement placement =
+    new ThreadPlacement(NONE, 0, new int[0],
+      new int[0], new int[0]);
+
+  private final String policy;
+  /** CPUs in the order used by thread indices */
+  private final int[] slots;
+  /** CPUs of each socket */
+  private final BitSet[] socketCPUs;
+
+  /**
+   * Create the placement on a topology
+   * 
+   * @param policy
+   *          the placement policy
+   * @param threadsPerCore
+   *          the number of hardware threads used
+   *          on each core, 0 for all
+   * @param cpus
+   *          the CPU IDs
+   * @param sockets
+   *          the socket of each CPU
+   * @param cores
+   *          the core of each CPU in its socket
+   */
+  ThreadPlacement(String policy,
+    int threadsPerCore, int[] cpus, int[] sockets,
+    int[] cores) {
+    int numCPUs = cpus.length;
+    // Rank of the CPU among the hardware threads
+    // of its core and of the core in its socket
+    int[] ranks = new int[numCPUs];
+    int[] coreRanks = new int[numCPUs];
+    int numSockets = 0;
+    for (int i = 0; i < numCPUs; i++) {
+      numSockets = Math.max(numSockets, sockets[i] + 1);
+      for (int j = 0; j < numCPUs; j++) {
+        if (sockets[j] == sockets[i]) {
+          if (cores[j] == cores[i] && cpus[j] < cpus[i]) {
+            ranks[i]++;
+          } else if (cores[j] < cores[i]
+            && isFirstThread(j, cpus, sockets, cores)) {
+            coreRanks[i]++;
+          }
+        }
+      }
+    }
+    Integer[] order = new Integer[numCPUs];
+    for (int i = 0; i < numCPUs; i++) {
+      order[i] = i;
+    }
+    if (SCATTER.equals(policy)) {
+      // Cores first, then their other threads
+      Arrays.sort(order, (a, b) -> ranks[a] != ranks[b]
+        ? Integer.compare(ranks[a], ranks[b])
+        : coreRanks[a] != coreRanks[b]
+          ? Integer.compare(coreRanks[a], coreRanks[b])
+          : Integer.compare(sockets[a], sockets[b]));
+    } else {
+      Arrays.sort(order, (a, b) -> sockets[a] != sockets[b]
+        ? Integer.compare(sockets[a], sockets[b])
+        : coreRanks[a] != coreRanks[b]
+          ? Integer.compare(coreRanks[a], coreRanks[b])
+          : Integer.compare(ranks[a], ranks[b]));
+    }
+    IntArrayList slotList = new IntArrayList();
+    socketCPUs = new BitSet[numSockets];
+    for (int i = 0; i < numSockets; i++) {
+      socketCPUs[i] = new BitSet();
+    }
+    for (int i : order) {
+      if (threadsPerCore <= 0
+        || ranks[i] < threadsPerCore) {
+        slotList.add(cpus[i]);
+        socketCPUs[sockets[i]].set(cpus[i]);
+      }
+    }
+    slots = slotList.toIntArray();
+    this.policy = slots.length == 0
+      || !(COMPACT.equals(policy)
+        || SCATTER.equals(policy)
+        || SOCKET.equals(policy)) ? NONE : policy;
+  }
+
+  private static boolean isFirstThread(int i,
+    int[] cpus, int[] sockets, int[] cores) {
+    for (int j = 0; j < cpus.length; j++) {
+      if (sockets[j] == sockets[i]
+        && cores[j] == cores[i] && cpus[j] < cpus[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the placement used by the schedulers and
+   * the receivers
+   * 
+   * @return the placement
+   */
+  public static ThreadPlacement get() {
+    return placement;
+  }
+
+  /**
+   * Set the placement with the topology of this
+   * node. Threads started before are not moved.
+   * 
+   * @param policy
+   *          the placement policy
+   * @param threadsPerCore
+   *          the number of hardware threads used
+   *          on each core, 0 for all
+   * @return the placement
+   */
+  public static ThreadPlacement configure(
+    String policy, int threadsPerCore) {
+    ThreadPlacement newPlacement;
+    if (policy == null || NONE.equals(policy)) {
+      newPlacement = new ThreadPlacement(NONE, 0,
+        new int[0], new int[0], new int[0]);
+    } else {
+      newPlacement =
+        readTopology(policy, threadsPerCore);
+      if (newPlacement.isEnabled()
+        && SET_AFFINITY == null) {
+        LOG.info("No " + AFFINITY_CLASS
+          + " on the classpath,"
+          + " threads are not pinned.");
+      }
+    }
+    LOG.info("Thread placement: "
+      + newPlacement.policy + ", CPUs: "
+      + Arrays.toString(newPlacement.slots)
+      + ", sockets: "
+      + newPlacement.socketCPUs.length);
+    placement = newPlacement;
+    return newPlacement;
+  }
+
+  /**
+   * Read the CPUs allowed for this process and
+   * their sockets and cores
+   */
+  private static ThreadPlacement readTopology(
+    String policy, int threadsPerCore) {
+    int[] cpus = null;
+    String allowed =
+      readStatus("/proc/self/status",
+        "Cpus_allowed_list:");
+    if (allowed != null) {
+      cpus = parseCPUList(allowed);
+    }
+    if (cpus == null || cpus.length == 0) {
+      cpus = parseCPUList(
+        readLine(CPU_DIR + "/online"));
+    }
+    if (cpus == null || cpus.length == 0) {
+      cpus = new int[Runtime.getRuntime()
+        .availableProcessors()];
+      for (int i = 0; i < cpus.length; i++) {
+        cpus[i] = i;
+      }
+    }
+    int[] sockets = new int[cpus.length];
+    int[] cores = new int[cpus.length];
+    for (int i = 0; i < cpus.length; i++) {
+      String dir =
+        CPU_DIR + "/cpu" + cpus[i] + "/topology/";
+      sockets[i] = parseInt(
+        readLine(dir + "physical_package_id"), 0);
+      cores[i] =
+        parseInt(readLine(dir + "core_id"), cpus[i]);
+    }
+    // Socket IDs may not start from 0
+    int[] socketIDs =
+      Arrays.stream(sockets).distinct().sorted()
+        .toArray();
+    for (int i = 0; i < sockets.length; i++) {
+      sockets[i] =
+        Arrays.binarySearch(socketIDs, sockets[i]);
+    }
+    return new ThreadPlacement(policy,
+      threadsPerCore, cpus, sockets, cores);
+  }
+
+  /**
+   * Parse a CPU list like "0-3,8,10-11"
+   * 
+   * @param list
+   *          the CPU list
+   * @return the CPU IDs, null if failed
+   */
+  static int[] parseCPUList(String list) {
+    if (list == null) {
+      return null;
+    }
+    IntArrayList cpus = new IntArrayList();
+    try {
+      for (String range : list.trim().split(",")) {
+        if (range.isEmpty()) {
+          continue;
+        }
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+          cpus.add(Integer.parseInt(range.trim()));
+        } else {
+          int start = Integer.parseInt(
+            range.substring(0, dash).trim());
+          int end = Integer.parseInt(
+            range.substring(dash + 1).trim());
+          for (int i = start; i <= end; i++) {
+            cpus.add(i);
+          }
+        }
+      }
+    } catch (NumberFormatException e) {
+      LOG.error("Fail to parse CPU list " + list,
+        e);
+      return null;
+    }
+    return cpus.toIntArray();
+  }
+
+  private static String readLine(String path) {
+    File file = new File(path);
+    if (!file.canRead()) {
+      return null;
+    }
+    try {
+      List<String> lines = Files.readAllLines(
+        file.toPath(), StandardCharsets.UTF_8);
+      return lines.isEmpty() ? null : lines.get(0);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static String readStatus(String path,
+    String key) {
+    File file = new File(path);
+    if (!file.canRead()) {
+      return null;
+    }
+    try {
+      for (String line : Files.readAllLines(
+        file.toPath(), StandardCharsets.UTF_8)) {
+        if (line.startsWith(key)) {
+          return line.substring(key.length());
+        }
+      }
+    } catch (Exception e) {
+    }
+    return null;
+  }
+
+  private static int parseInt(String str,
+    int defaultValue) {
+    try {
+      return Integer.parseInt(str.trim());
+    } catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  private static Method findSetAffinity() {
+    try {
+      return Class.forName(AFFINITY_CLASS)
+        .getMethod("setAffinity", BitSet.class);
+    } catch (Throwable t) {
+      return null;
+    }
+  }
+
+  /**
+   * Check if threads are placed
+   * 
+   * @return true if the policy is not none
+   */
+  public boolean isEnabled() {
+    return !NONE.equals(policy);
+  }
+
+  /**
+   * Get the placement policy
+   * 
+   * @return the policy
+   */
+  public String getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Get the number of sockets
+   * 
+   * @return the number of sockets
+   */
+  public int getNumSockets() {
+    return socketCPUs.length;
+  }
+
+  /**
+   * Get the socket of a thread in a group
+   * 
+   * @param index
+   *          the index of the thread
+   * @param numThreads
+   *          the number of threads in the group
+   * @return the socket, -1 if not placed or the
+   *         thread can run on all the sockets
+   */
+  public int getSocket(int index, int numThreads) {
+    if (!isEnabled()) {
+      return -1;
+    }
+    if (SOCKET.equals(policy)) {
+      return getSocketGroup(index, numThreads);
+    }
+    int cpu = slots[index % slots.length];
+    for (int i = 0; i < socketCPUs.length; i++) {
+      if (socketCPUs[i].get(cpu)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Split the threads into consecutive groups,
+   * one per socket
+   */
+  private int getSocketGroup(int index,
+    int numThreads) {
+    int numSockets = socketCPUs.length;
+    if (numThreads < numSockets) {
+      return index % numSockets;
+    }
+    return (int) ((long) (index % numThreads)
+      * numSockets / numThreads);
+  }
+
+  /**
+   * Get the CPUs of a thread in a group
+   * 
+   * @param index
+   *          the index of the thread
+   * @param numThreads
+   *          the number of threads in the group
+   * @return the CPUs, null if not placed
+   */
+  public BitSet getCPUs(int index, int numThreads) {
+    if (!isEnabled()) {
+      return null;
+    }
+    if (SOCKET.equals(policy)) {
+      return (BitSet) socketCPUs[getSocketGroup(
+        index, numThreads)].clone();
+    }
+    BitSet cpus = new BitSet();
+    cpus.set(slots[index % slots.length]);
+    return cpus;
+  }
+
+  /**
+   * Get the CPUs of a receiver thread
+   * 
+   * @param index
+   *          the index of the receiver
+   * @return the CPUs, null if not placed
+   */
+  public BitSet getReceiverCPUs(int index) {
+    if (!isEnabled()) {
+      return null;
+    }
+    return (BitSet) socketCPUs[index
+      % socketCPUs.length].clone();
+  }
+
+  /**
+   * Pin the current thread as a thread in a group
+   * 
+   * @param index
+   *          the index of the thread
+   * @param numThreads
+   *          the number of threads in the group
+   * @return true if pinned
+   */
+  public boolean place(int index, int numThreads) {
+    return setAffinity(getCPUs(index, numThreads));
+  }
+
+  /**
+   * Pin the current thread as a receiver
+   * 
+   * @param index
+   *          the index of the receiver
+   * @return true if pinned
+   */
+  public boolean placeReceiver(int index) {
+    return setAffinity(getReceiverCPUs(index));
+  }
+
+  private static boolean setAffinity(BitSet cpus) {
+    if (cpus == null || SET_AFFINITY == null) {
+      return false;
+    }
+    try {
+      SET_AFFINITY.invoke(null, cpus);
+      return true;
+    } catch (Exception e) {
+      LOG.error("Fail to set affinity " + cpus, e);
+      return false;
+    }
+  }
+
+  /**
+   * Wrap a runnable to be placed as a thread in a
+   * group when it runs
+   * 
+   * @param runnable
+   *          the runnable
+   * @param index
+   *          the index of the thread
+   * @param numThreads
+   *          the number of threads in the group
+   * @return the runnable to run in the thread
+   */
+  public Runnable wrap(Runnable runnable,
+    int index, int numThreads) {
+    if (!isEnabled()) {
+      return runnable;
+    }
+    return () -> {
+      place(index, numThreads);
+      runnable.run();
+    };
+  }
+
+  /**
+   * Wrap a runnable to be placed as a receiver
+   * 
+   * @param runnable
+   *          the runnable
+   * @param index
+   *          the index of the receiver
+   * @return the runnable to run in the thread
+   */
+  public Runnable wrapReceiver(Runnable runnable,
+    int index) {
+    if (!isEnabled()) {
+      return runnable;
+    }
+    return () -> {
+      placeReceiver(index);
+      runnable.run();
+    };
+  }
+
+  /**
+   * Create data in a thread placed as a thread in
+   * a group, so that the memory first touched is
+   * on the socket of that thread
+   * 
+   * @param index
+   *          the index of the thread
+   * @param numThreads
+   *          the number of threads in the group
+   * @param supplier
+   *          creates and initializes the data
+   * @return the data, null if failed
+   */
+  public <A> A allocate(int index, int numThreads,
+    Supplier<A> supplier) {
+    if (!isEnabled() || SET_AFFINITY == null) {
+      return supplier.get();
+    }
+    Object[] result = new Object[1];
+    Thread thread = new Thread(wrap(() -> {
+      result[0] = supplier.get();
+    }, index, numThreads));
+    thread.start();
+    ComputeUtil.joinThread(thread);
+    @SuppressWarnings("unchecked")
+    A data = (A) result[0];
+    return data;
+  }
+}
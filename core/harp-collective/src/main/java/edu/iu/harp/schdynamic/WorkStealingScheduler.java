@@ -0,0 +1,577 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.iu.harp.schdynamic;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.log4j.Logger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*******************************************************
+ * A dynamic scheduler with work stealing. Each
+ * task thread has its own input deque, it takes
+ * inputs from the head of its own deque and steals
+ * from the tail of a random deque when its own is
+ * empty. Inputs are spread over the deques on
+ * submission, submitAll adds one block per deque.
+ * Null outputs are counted instead of queued.
+ * 
+ * It follows the contract of DynamicScheduler:
+ * inputs submitted before start are counted at
+ * start, pause finishes the queued inputs,
+ * pauseNow keeps them for the next start and stop
+ * finishes them and stops the threads.
+ ******************************************************/
+public class WorkStealingScheduler<I, O, T extends Task<I, O>> {
+
+  protected static final Logger LOG =
+    Logger.getLogger(WorkStealingScheduler.class);
+
+  private static final int RUNNING = 0;
+  private static final int PAUSE = 1;
+  private static final int PAUSE_NOW = 2;
+  private static final int STOP = 3;
+
+  /**
+   * Nanoseconds to wait for outputs before
+   * checking again, only one waiter is woken up
+   */
+  private static final long WAIT_NANOS = 100000L;
+
+  private final List<T> tasks;
+  private final ObjectArrayList<Worker> workers;
+  private final int numWorkers;
+  /** Submissions share the read lock */
+  private final ReentrantReadWriteLock lock;
+  private final Semaphore barrier1;
+  private final ConcurrentLinkedQueue<O> outputQueue;
+  /** Outputs not consumed and inputs counted */
+  private final AtomicInteger numPending;
+  /** Inputs queued when not running */
+  private final AtomicInteger numHeld;
+  private final AtomicInteger numNullOutputs;
+  private final AtomicInteger numErrors;
+  private final AtomicInteger numWaiting;
+  private final AtomicInteger numSearching;
+  private final AtomicInteger nextWorker;
+  private volatile int state;
+  private final AtomicReference<Thread> outputWaiter;
+  private boolean isRunning;
+  private boolean isPausing;
+  private Thread[] threads;
+
+  public WorkStealingScheduler(List<T> tasks) {
+    this.tasks = tasks;
+    numWorkers = tasks.size();
+    workers = new ObjectArrayList<>(numWorkers);
+    for (int i = 0; i < numWorkers; i++) {
+      workers.add(new Worker(i, tasks.get(i)));
+    }
+    lock = new ReentrantReadWriteLock();
+    barrier1 = new Semaphore(0);
+    outputQueue = new ConcurrentLinkedQueue<>();
+    numPending = new AtomicInteger(0);
+    numHeld = new AtomicInteger(0);
+    numNullOutputs = new AtomicInteger(0);
+    numErrors = new AtomicInteger(0);
+    numWaiting = new AtomicInteger(0);
+    numSearching = new AtomicInteger(0);
+    nextWorker = new AtomicInteger(0);
+    state = RUNNING;
+    outputWaiter = new AtomicReference<>(null);
+    isRunning = false;
+    isPausing = false;
+    threads = null;
+  }
+
+  /**
+   * Get the list of tasks
+   * 
+   * @return the list of tasks
+   */
+  public List<T> getTasks() {
+    return tasks;
+  }
+
+  /**
+   * Submit the input
+   * 
+   * @param input
+   *          the input
+   */
+  public void submit(I input) {
+    if (input == null) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      int id = Math.floorMod(
+        nextWorker.getAndIncrement(), numWorkers);
+      count(1);
+      workers.get(id).deque.addLast(input);
+      // A worker looking for inputs finds it
+      // before waiting
+      if (numSearching.get() == 0) {
+        signal(id, 1);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Submit a collection of inputs
+   * 
+   * @param inputs
+   *          a collection of inputs
+   */
+  public void submitAll(Collection<I> inputs) {
+    List<I> list = new ObjectArrayList<>(inputs.size());
+    for (I input : inputs) {
+      if (input != null) {
+        list.add(input);
+      }
+    }
+    submitBlocks(list);
+  }
+
+  /**
+   * Submit an array of inputs
+   * 
+   * @param inputs
+   *          an aray of inputs
+   */
+  public void submitAll(I[] inputs) {
+    List<I> list = new ObjectArrayList<>(inputs.length);
+    for (int i = 0; i < inputs.length; i++) {
+      if (inputs[i] != null) {
+        list.add(inputs[i]);
+      }
+    }
+    submitBlocks(list);
+  }
+
+  /**
+   * Split the inputs into one block per worker
+   * and add each block with one operation
+   * 
+   * @param inputs
+   *          the inputs without null
+   */
+  private void submitBlocks(List<I> inputs) {
+    int size = inputs.size();
+    if (size == 0) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      int numBlocks = Math.min(size, numWorkers);
+      int first = Math.floorMod(
+        nextWorker.getAndAdd(numBlocks), numWorkers);
+      count(size);
+      for (int i = 0; i < numBlocks; i++) {
+        int start = (int) ((long) size * i / numBlocks);
+        int end =
+          (int) ((long) size * (i + 1) / numBlocks);
+        workers.get((first + i) % numWorkers).deque
+          .addAll(inputs.subList(start, end));
+      }
+      signal(first, numBlocks);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Count the inputs as pending if running, held
+   * otherwise. Called under the read lock.
+   */
+  private void count(int numInputs) {
+    if (isRunning) {
+      numPending.addAndGet(numInputs);
+    } else {
+      numHeld.addAndGet(numInputs);
+    }
+  }
+
+  /**
+   * Wake up waiting workers after adding inputs,
+   * the workers with new inputs first
+   * 
+   * @param first
+   *          the first worker with new inputs
+   * @param count
+   *          the number of workers to wake up
+   */
+  private void signal(int first, int count) {
+    for (int i = 0; i < numWorkers && count > 0
+      && numWaiting.get() > 0; i++) {
+      Worker worker =
+        workers.get((first + i) % numWorkers);
+      // Count the worker as searching for the
+      // next submission, wake it up once
+      if (worker.isWaiting.get() && worker.isWaiting
+        .compareAndSet(true, false)) {
+        numWaiting.decrementAndGet();
+        numSearching.incrementAndGet();
+        LockSupport.unpark(worker.thread);
+        count--;
+      }
+    }
+  }
+
+  /**
+   * Change the state and wake up all the workers
+   */
+  private void setState(int newState) {
+    state = newState;
+    for (Worker worker : workers) {
+      if (worker.thread != null) {
+        LockSupport.unpark(worker.thread);
+      }
+    }
+  }
+
+  /**
+   * Start scheduling
+   */
+  public void start() {
+    lock.writeLock().lock();
+    try {
+      if (!isRunning) {
+        isRunning = true;
+        numPending.addAndGet(numHeld.getAndSet(0));
+        state = RUNNING;
+        if (isPausing) {
+          isPausing = false;
+          for (Worker worker : workers) {
+            worker.barrier2.release();
+          }
+        } else {
+          threads = new Thread[numWorkers];
+          for (int i = 0; i < numWorkers; i++) {
+            threads[i] = new Thread(ThreadPlacement
+              .get().wrap(workers.get(i), i, numWorkers));
+            workers.get(i).thread = threads[i];
+            threads[i].start();
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Pause the task
+   */
+  public void pause() {
+    pause(PAUSE);
+  }
+
+  /**
+   * Pause the task immediately
+   */
+  public void pauseNow() {
+    pause(PAUSE_NOW);
+  }
+
+  /**
+   * Pause the workers and move the inputs left
+   * from pending to held
+   * 
+   * @param pauseState
+   *          PAUSE or PAUSE_NOW
+   */
+  private void pause(int pauseState) {
+    lock.writeLock().lock();
+    try {
+      if (isRunning && !isPausing) {
+        isRunning = false;
+        isPausing = true;
+        setState(pauseState);
+        ComputeUtil.acquire(barrier1, numWorkers);
+        int numLeft = 0;
+        for (Worker worker : workers) {
+          numLeft += worker.deque.size();
+        }
+        numPending.addAndGet(-numLeft);
+        numHeld.addAndGet(numLeft);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Clean the input queue
+   */
+  public void cleanInputQueue() {
+    lock.writeLock().lock();
+    try {
+      if (isPausing || !isRunning) {
+        for (Worker worker : workers) {
+          worker.deque.clear();
+        }
+        numHeld.set(0);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Stop submission Send stop signal to the
+   * workers, they stop after the inputs left are
+   * done
+   */
+  public void stop() {
+    lock.writeLock().lock();
+    try {
+      if (isPausing) {
+        start();
+      }
+      if (isRunning) {
+        isRunning = false;
+        setState(STOP);
+        for (int i = 0; i < numWorkers; i++) {
+          ComputeUtil.joinThread(threads[i]);
+          workers.get(i).thread = null;
+        }
+        threads = null;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Blocked and wait for outputs Invoke as
+   * while(hasOutput()) { waitForOutput(); }
+   * 
+   * @return the output
+   */
+  public O waitForOutput() {
+    while (numPending.get() > 0) {
+      O output = outputQueue.poll();
+      if (output != null) {
+        numPending.decrementAndGet();
+        return output;
+      }
+      if (takeNullOutput()) {
+        numPending.decrementAndGet();
+        return null;
+      }
+      // Check again after registering, workers
+      // wake up the waiter after adding outputs
+      outputWaiter.set(Thread.currentThread());
+      if (outputQueue.isEmpty()
+        && numNullOutputs.get() == 0) {
+        LockSupport.parkNanos(this, WAIT_NANOS);
+      }
+      outputWaiter.set(null);
+    }
+    return null;
+  }
+
+  /**
+   * Take a null output if there is one
+   * 
+   * @return true if taken
+   */
+  private boolean takeNullOutput() {
+    int count = numNullOutputs.get();
+    while (count > 0) {
+      if (numNullOutputs.compareAndSet(count,
+        count - 1)) {
+        return true;
+      }
+      count = numNullOutputs.get();
+    }
+    return false;
+  }
+
+  /**
+   * Check if has a new output
+   * 
+   * @return true if has a new output, false
+   *         otherwise
+   */
+  public boolean hasOutput() {
+    return numPending.get() > 0;
+  }
+
+  /**
+   * Check if has errors or not
+   * 
+   * @return true if has errors, false otherwise
+   */
+  public boolean hasError() {
+    return numErrors.getAndSet(0) > 0;
+  }
+
+  /*******************************************************
+   * A task thread with its own input deque
+   ******************************************************/
+  private class Worker implements Runnable {
+
+    private final int id;
+    private final T taskObject;
+    private final ConcurrentLinkedDeque<I> deque;
+    private final Semaphore barrier2;
+    private volatile Thread thread;
+    private final AtomicBoolean isWaiting;
+    private int seed;
+
+    private Worker(int id, T task) {
+      this.id = id;
+      taskObject = task;
+      deque = new ConcurrentLinkedDeque<>();
+      barrier2 = new Semaphore(0);
+      thread = null;
+      isWaiting = new AtomicBoolean(false);
+      seed = id * 0x9E3779B9 + 1;
+    }
+
+    /**
+     * Take an input from the own deque or steal
+     * one from others
+     * 
+     * @return the input, null if no input
+     */
+    private I take() {
+      I input = deque.pollFirst();
+      if (input != null || numWorkers == 1) {
+        return input;
+      }
+      // Xorshift for the first victim
+      seed ^= seed << 13;
+      seed ^= seed >>> 17;
+      seed ^= seed << 5;
+      int first = Math.floorMod(seed, numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+        int victim = (first + i) % numWorkers;
+        if (victim != id) {
+          input = workers.get(victim).deque.pollLast();
+          if (input != null) {
+            return input;
+          }
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Wait until inputs are added or the state
+     * changes
+     * 
+     * @param oldState
+     *          the state seen before waiting
+     */
+    private void await(int oldState) {
+      isWaiting.set(true);
+      numWaiting.incrementAndGet();
+      numSearching.decrementAndGet();
+      // Submissions and state changes check the
+      // counters after their updates
+      if (state == oldState && isEmpty()) {
+        LockSupport.park(this);
+      }
+      // Not woken up by a submission
+      if (isWaiting.compareAndSet(true, false)) {
+        numWaiting.decrementAndGet();
+        numSearching.incrementAndGet();
+      }
+    }
+
+    private boolean isEmpty() {
+      for (Worker worker : workers) {
+        if (!worker.deque.isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Run the input and add the output
+     */
+    private void process(I input) {
+      O output = null;
+      boolean isFailed = false;
+      try {
+        output = taskObject.run(input);
+      } catch (Exception e) {
+        output = null;
+        isFailed = true;
+        LOG.error("Error when processing input", e);
+      }
+      if (isFailed) {
+        numErrors.incrementAndGet();
+      }
+      if (output == null) {
+        numNullOutputs.incrementAndGet();
+      } else {
+        outputQueue.add(output);
+      }
+      if (outputWaiter.get() != null) {
+        Thread waiter = outputWaiter.getAndSet(null);
+        if (waiter != null) {
+          LockSupport.unpark(waiter);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      numSearching.incrementAndGet();
+      while (true) {
+        int curState = state;
+        if (curState == PAUSE_NOW) {
+          barrier1.release();
+          ComputeUtil.acquire(barrier2);
+          continue;
+        }
+        I input = take();
+        if (input != null) {
+          numSearching.decrementAndGet();
+          process(input);
+          numSearching.incrementAndGet();
+        } else if (curState == PAUSE) {
+          // No more submission when pausing
+          barrier1.release();
+          ComputeUtil.acquire(barrier2);
+        } else if (curState == STOP) {
+          break;
+        } else {
+          await(curState);
+        }
+      }
+      numSearching.decrementAndGet();
+    }
+  }
+}
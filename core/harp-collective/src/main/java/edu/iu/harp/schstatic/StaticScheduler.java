@@ -18,6 +18,7 @@ package edu.iu.harp.schstatic;
 
 import edu.iu.harp.schdynamic.ComputeUtil;
 import edu.iu.harp.schdynamic.Input;
+import edu.iu.harp.schdynamic.ThreadPlacement;
 import org.apache.log4j.Logger;
 
 import java.util.List;
@@ -94,7 +95,8 @@ public class StaticScheduler<I, O, T extends Task<I, O>> {
         threads = new Thread[numTaskMonitors];
         int i = 0;
         for (TaskMonitor<I, O, T> monitor : taskMonitors) {
-          threads[i] = new Thread(monitor);
+          threads[i] = new Thread(ThreadPlacement
+            .get().wrap(monitor, i, numTaskMonitors));
           monitor.start();
           threads[i].start();
           i++;
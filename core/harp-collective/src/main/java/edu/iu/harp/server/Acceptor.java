@@ -18,7 +18,10 @@ package edu.iu.harp.server;
 
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.Deserializer;
 import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.io.ShmRing;
 import edu.iu.harp.worker.Workers;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -44,6 +47,14 @@ public class Acceptor implements Runnable {
 
   private InputStream in;
 
+  /**
+   * Read the first command from the connection
+   */
+  public Acceptor(ServerConn conn,
+                  EventQueue queue, DataMap map, Workers w) {
+    this(conn, queue, map, w, Constant.UNKNOWN_CMD);
+  }
+
   public Acceptor(ServerConn conn,
                   EventQueue queue, DataMap map, Workers w,
                   byte command) {
@@ -75,9 +86,14 @@ public class Acceptor implements Runnable {
     // All commands should use positive byte
     // integer 0 ~ 127
     try {
+      if (commandType == Constant.UNKNOWN_CMD) {
+        commandType = (byte) in.read();
+      }
       do {
         if (commandType == Constant.CONNECTION_END) {
           break;
+        } else if (commandType == Constant.SHM_CONNECT) {
+          openRing();
         } else if (commandType == Constant.SEND) {
           DataReceiver receiver =
             new DataReceiver(selfID, conn,
@@ -89,6 +105,12 @@ public class Acceptor implements Runnable {
               eventQueue, dataMap,
               Constant.SEND_DECODE);
           receiver.run();
+        } else if (commandType == Constant.SEND_STREAM) {
+          DataReceiver receiver =
+            new DataReceiver(selfID, conn,
+              eventQueue, dataMap,
+              Constant.SEND_STREAM);
+          receiver.run();
         } else if (commandType == Constant.CHAIN_BCAST) {
           Receiver receiver =
             new DataChainBcastReceiver(selfID,
@@ -130,4 +152,36 @@ public class Acceptor implements Runnable {
       }
     }
   }
+
+  /**
+   * Continue reading from the shared-memory ring
+   * named in the SHM_CONNECT frame, or stay on
+   * the socket if the ring cannot be opened. The
+   * client waits for the answer.
+   *
+   * @throws IOException
+   */
+  private void openRing() throws IOException {
+    byte[] opBytes = new byte[4];
+    IOUtil.receiveBytes(in, opBytes, 0, 4);
+    int headSize =
+      new Deserializer(opBytes, 0, 4).readInt();
+    byte[] headBytes = new byte[headSize];
+    IOUtil.receiveBytes(in, headBytes, 0,
+      headSize);
+    String path = new Deserializer(headBytes, 0,
+      headSize).readUTF();
+    ShmRing ring = null;
+    try {
+      ring = ShmRing.open(path);
+    } catch (IOException e) {
+      LOG.error("Fail to open shared-memory ring "
+        + path + ", stay on the socket", e);
+      conn.writeByte(Constant.SHM_REJECTED);
+      return;
+    }
+    in = ring.getInputStream();
+    conn.setInputStream(in);
+    conn.writeByte(Constant.SHM_ACCEPTED);
+  }
 }
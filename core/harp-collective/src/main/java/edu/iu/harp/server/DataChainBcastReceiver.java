@@ -176,15 +176,18 @@ public class DataChainBcastReceiver
     // Prepare body array
     Data data = new Data(headArray);
     data.decodeHeadArray();
-    ByteArray bodyArray = data.getBodyArray();
+    ByteArray[] bodySegments =
+      data.getBodySegments();
     // Receive and forward body array
-    if (bodyArray != null) {
+    if (bodySegments != null) {
       try {
-        receiveBytes(in, out, bodyArray.get(),
-          bodyArray.start(), bodyArray.size());
+        for (ByteArray segment : bodySegments) {
+          receiveBytes(in, out, segment.get(),
+            segment.start(), segment.size());
+        }
       } catch (Exception e) {
         headArray.release();
-        bodyArray.release();
+        DataUtil.releaseSegments(bodySegments);
         if (nextConn != null) {
           nextConn.free();
           nextConn = null;
@@ -199,6 +202,57 @@ public class DataChainBcastReceiver
     return data;
   }
 
+  /**
+   * Forward a fully received message to the next
+   * worker in the chain. Used by the NIO
+   * transport, which receives a whole message
+   * before handing it off.
+   * 
+   * @param workers
+   *          the Workers
+   * @param commandType
+   *          the command to forward with
+   * @param opArray
+   *          the operation array
+   * @param headArray
+   *          the head array
+   * @param bodySegments
+   *          the body segments, can be null
+   * @param sourceID
+   *          the worker which started the chain
+   * @throws IOException
+   */
+  static void forwardData(Workers workers,
+    byte commandType, ByteArray opArray,
+    ByteArray headArray, ByteArray[] bodySegments,
+    int sourceID) throws IOException {
+    final WorkerInfo next = workers.getNextInfo();
+    if (sourceID == next.getID()) {
+      return;
+    }
+    Connection nextConn = Connection.create(
+      next.getNode(), next.getPort(), true);
+    if (nextConn == null) {
+      throw new IOException(
+        "Cannot create the next connection.");
+    }
+    OutputStream out = nextConn.getOutputStream();
+    try {
+      out.write(commandType);
+      IOUtil.sendBytes(out, opArray.get(),
+        opArray.start(), opArray.size());
+      IOUtil.sendBytes(out, headArray.get(),
+        headArray.start(), headArray.size());
+      if (bodySegments != null) {
+        IOUtil.sendSegments(out, bodySegments);
+      }
+    } catch (IOException e) {
+      nextConn.free();
+      throw e;
+    }
+    nextConn.release();
+  }
+
   /**
    * Receive bytes data and process
    * 
@@ -145,15 +145,15 @@ public class DataMSTBcastReceiver
     // Prepare and receive body array
     Data data = new Data(headArray);
     data.decodeHeadArray();
-    ByteArray bodyArray = data.getBodyArray();
-    if (bodyArray != null) {
+    ByteArray[] bodySegments =
+      data.getBodySegments();
+    if (bodySegments != null) {
       try {
-        IOUtil.receiveBytes(in, bodyArray.get(),
-          bodyArray.start(), bodyArray.size());
+        IOUtil.receiveSegments(in, bodySegments);
       } catch (Exception e) {
         opArray.release();
         headArray.release();
-        bodyArray.release();
+        DataUtil.releaseSegments(bodySegments);
         throw e;
       }
     }
@@ -161,14 +161,15 @@ public class DataMSTBcastReceiver
       // Try to send out,
       // Be careful about the exceptions
       try {
-        sendDataInMST(opArray.get(),
+        sendDataInMST(selfID, workers,
+          getCommandType(), opArray.get(),
           opArray.size(), headArray.get(),
-          headArray.size(), bodyArray.get(),
-          bodyArray.size(), left, right);
+          headArray.size(), bodySegments, left,
+          right);
       } catch (Exception e) {
         opArray.release();
         headArray.release();
-        bodyArray.release();
+        DataUtil.releaseSegments(bodySegments);
         throw e;
       }
     }
@@ -178,8 +179,15 @@ public class DataMSTBcastReceiver
   }
 
   /**
-   * Send the data in MST method
+   * Send the data in MST method. Shared by the
+   * blocking receiver and the NIO transport.
    * 
+   * @param selfID
+   *          the ID of this worker
+   * @param workers
+   *          the Workers
+   * @param commandType
+   *          the command to forward with
    * @param opBytes
    *          the operation array
    * @param opArrSize
@@ -188,20 +196,20 @@ public class DataMSTBcastReceiver
    *          the head array
    * @param headArrSize
    *          the size of the head array
-   * @param bodyBytes
-   *          the body array
-   * @param bodyArrSize
-   *          the size of body array
+   * @param bodySegments
+   *          the body segments, can be null
    * @param left
    *          the left worker
    * @param right
    *          the right worker
    * @throws IOException
    */
-  private void sendDataInMST(byte[] opBytes,
+  static void sendDataInMST(int selfID,
+    Workers workers, byte commandType,
+    byte[] opBytes,
     int opArrSize, byte[] headBytes,
-    int headArrSize, byte[] bodyBytes,
-    int bodyArrSize, int left, int right)
+    int headArrSize, ByteArray[] bodySegments,
+    int left, int right)
     throws IOException {
     // Send data to other nodes
     int middle = (left + right) / 2;
@@ -247,15 +255,17 @@ public class DataMSTBcastReceiver
           // Send head and body array
           if (out != null) {
             try {
-              out.write(getCommandType());
+              out.write(commandType);
               IOUtil.sendBytes(out, opBytes, 0,
                 opArrSize);
               if (headArrSize > 0) {
                 IOUtil.sendBytes(out, headBytes,
                   0, headArrSize);
               }
-              IOUtil.sendBytes(out, bodyBytes, 0,
-                bodyArrSize);
+              if (bodySegments != null) {
+                IOUtil.sendSegments(out,
+                  bodySegments);
+              }
               destConn.release();
             } catch (Exception e) {
               destConn.free();
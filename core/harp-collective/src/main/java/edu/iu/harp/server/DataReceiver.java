@@ -17,18 +17,25 @@
 package edu.iu.harp.server;
 
 import edu.iu.harp.client.EventType;
+import edu.iu.harp.io.ChunkPipeline;
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.Data;
 import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataStatus;
+import edu.iu.harp.io.DataType;
 import edu.iu.harp.io.DataUtil;
 import edu.iu.harp.io.Deserializer;
 import edu.iu.harp.io.EventQueue;
 import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.io.StreamDeserializer;
 import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.Transferable;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Future;
 
 /*******************************************************
  * The actual receiver for receiving the data.
@@ -54,6 +61,15 @@ public class DataReceiver extends Receiver {
   protected void handleData(final ServerConn conn)
     throws Exception {
     InputStream in = conn.getInputDtream();
+    if (this
+      .getCommandType() == Constant.SEND_STREAM) {
+      // The body is already decoded
+      DataUtil.addDataToQueueOrMap(selfID,
+        this.getEventQueue(),
+        EventType.MESSAGE_EVENT,
+        this.getDataMap(), receiveStream(in));
+      return;
+    }
     // Receive data
     Data data = receiveData(in);
     if (this
@@ -71,15 +87,16 @@ public class DataReceiver extends Receiver {
   }
 
   /**
-   * Receive the Data
-   * 
+   * Receive the op array and the head array
+   *
    * @param in
    *          the InputStream
-   * @return the Data received
+   * @return the head array received
    * @throws Exception
    */
-  private Data receiveData(final InputStream in)
-    throws Exception {
+  private ByteArray
+    receiveHeadArray(final InputStream in)
+      throws Exception {
     // Read head array size and body array size
     int headArrSize = -1;
     ByteArray opArray = ByteArray.create(4, true);
@@ -114,23 +131,142 @@ public class DataReceiver extends Receiver {
     } else {
       throw new Exception("Null head array");
     }
+    return headArray;
+  }
+
+  /**
+   * Receive the Data
+   * 
+   * @param in
+   *          the InputStream
+   * @return the Data received
+   * @throws Exception
+   */
+  private Data receiveData(final InputStream in)
+    throws Exception {
+    ByteArray headArray = receiveHeadArray(in);
     // Prepare bytes from resource pool
     // Sending or receiving null array is allowed
     Data data = new Data(headArray);
     data.decodeHeadArray();
-    ByteArray bodyArray = data.getBodyArray();
-    if (bodyArray != null) {
+    ByteArray[] bodySegments =
+      data.getBodySegments();
+    if (bodySegments != null) {
       try {
-        IOUtil.receiveBytes(in, bodyArray.get(),
-          bodyArray.start(), bodyArray.size());
+        IOUtil.receiveSegments(in, bodySegments);
       } catch (Exception e) {
         LOG.error("Fail to receive body array",
           e);
         headArray.release();
-        bodyArray.release();
+        DataUtil.releaseSegments(bodySegments);
         throw e;
       }
     }
     return data;
   }
+
+  /**
+   * Receive the Data sent with SEND_STREAM. The
+   * body is read into a ring of buffers and
+   * decoded in another thread as the buffers are
+   * filled.
+   *
+   * @param in
+   *          the InputStream
+   * @return the decoded Data
+   * @throws Exception
+   */
+  private Data receiveStream(final InputStream in)
+    throws Exception {
+    Data head = new Data(receiveHeadArray(in));
+    if (head.decodeHeadArray(
+      false) != DataStatus.ENCODED_ARRAY_DECODED) {
+      head.release();
+      throw new Exception("Fail to decode head");
+    }
+    final long bodySize = head.getBodySize();
+    final boolean isPartitionList = head
+      .getBodyType() == DataType.PARTITION_LIST;
+    final ChunkPipeline pipeline =
+      new ChunkPipeline(
+        Constant.NUM_PIPELINE_BUFFERS,
+        Constant.PIPELINE_SIZE);
+    if (!pipeline.isValid()) {
+      head.release();
+      pipeline.release();
+      throw new Exception("Fail to create pipeline");
+    }
+    Future<List<Transferable>> decoder =
+      ChunkPipeline.submit(pipeline, () -> {
+        StreamDeserializer deserializer =
+          new StreamDeserializer(pipeline, bodySize);
+        List<Transferable> objs = DataUtil
+          .decodeTransList(deserializer,
+            isPartitionList);
+        if (objs == null) {
+          throw new IOException(
+            "Fail to decode the stream");
+        }
+        return objs;
+      });
+    List<Transferable> body = null;
+    try {
+      long numBytes = 0L;
+      while (numBytes < bodySize) {
+        ByteArray buffer = pipeline.takeFree();
+        int size = (int) Math.min(buffer.size(),
+          bodySize - numBytes);
+        IOUtil.receiveBytes(in, buffer.get(),
+          buffer.start(), size);
+        pipeline.putFilled(buffer, size);
+        numBytes += size;
+      }
+      pipeline.end();
+      body = decoder.get();
+    } catch (Exception e) {
+      LOG.error("Fail to receive the stream", e);
+      pipeline.fail();
+      try {
+        decoder.get();
+      } catch (Exception e1) {
+        // Already logged by the pipeline
+      }
+      pipeline.release();
+      head.release();
+      throw e;
+    }
+    pipeline.release();
+    Data data = createData(head, body);
+    head.release();
+    if (data.getBodyStatus() != DataStatus.DECODED) {
+      DataUtil.releaseTransList(body);
+      throw new Exception("Invalid stream data");
+    }
+    return data;
+  }
+
+  /**
+   * Create the Data with the fields of the head
+   * and the decoded body
+   */
+  private static Data createData(Data head,
+    List<Transferable> body) {
+    if (head.getPartitionID()
+      != Constant.UNKNOWN_PARTITION_ID) {
+      return new Data(head.getBodyType(),
+        head.getContextName(), head.getWorkerID(),
+        body, head.getBodySize(),
+        head.getOperationName(),
+        head.getPartitionID());
+    } else if (head.getOperationName() != null) {
+      return new Data(head.getBodyType(),
+        head.getContextName(), head.getWorkerID(),
+        body, head.getBodySize(),
+        head.getOperationName());
+    } else {
+      return new Data(head.getBodyType(),
+        head.getContextName(), head.getWorkerID(),
+        body, head.getBodySize());
+    }
+  }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.server;
+
+import edu.iu.harp.client.EventType;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.Deserializer;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.io.ShmRing;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/*******************************************************
+ * The state of a connection in the NioServer.
+ * Frames are read without blocking in four
+ * phases: command, op array, head array and body
+ * array. The head array and the body array are
+ * read directly into pooled ByteArrays, and the
+ * completed Data is handed over in the same way
+ * as DataReceiver, DataChainBcastReceiver and
+ * DataMSTBcastReceiver do. A SEND_STREAM body is
+ * read as a whole and decoded as SEND_DECODE. A
+ * connection moved to a shared-memory ring is
+ * read by a blocking Acceptor.
+ ******************************************************/
+class NioConn {
+
+  private static final Logger LOG =
+    Logger.getLogger(NioConn.class);
+
+  private static final int COMMAND = 0;
+  private static final int OP = 1;
+  private static final int HEAD = 2;
+  private static final int BODY = 3;
+
+  private final SocketChannel channel;
+  private final NioServer server;
+  private final int selfID;
+  private final EventQueue eventQueue;
+  private final DataMap dataMap;
+  private final Workers workers;
+
+  private final ByteBuffer commandBuffer;
+  private int phase;
+  private byte commandType;
+  private ByteArray opArray;
+  private ByteArray headArray;
+  private Data data;
+  private int segmentIndex;
+  private ByteBuffer buffer;
+
+  NioConn(SocketChannel channel, NioServer server,
+    int selfID, EventQueue queue, DataMap map,
+    Workers workers) {
+    this.channel = channel;
+    this.server = server;
+    this.selfID = selfID;
+    this.eventQueue = queue;
+    this.dataMap = map;
+    this.workers = workers;
+    this.commandBuffer = ByteBuffer.allocate(1);
+    resetFrame();
+  }
+
+  /**
+   * Read what is available on the channel and
+   * process every completed frame
+   *
+   * @return false if the connection should be
+   *         closed
+   * @throws Exception
+   */
+  boolean read() throws Exception {
+    while (true) {
+      int len = channel.read(buffer);
+      if (len < 0) {
+        if (phase != COMMAND) {
+          LOG.error("Connection closed in frame, "
+            + "command: " + commandType
+            + ", phase: " + phase);
+        }
+        return false;
+      }
+      if (buffer.hasRemaining()) {
+        // Wait for more bytes
+        return true;
+      }
+      if (!nextPhase()) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Move to the next phase after the current
+   * buffer is filled
+   *
+   * @return false if the connection should be
+   *         closed
+   * @throws Exception
+   */
+  private boolean nextPhase() throws Exception {
+    if (phase == COMMAND) {
+      commandType = commandBuffer.get(0);
+      int opArrSize = getOpArraySize(commandType);
+      if (commandType == Constant.SERVER_QUIT) {
+        server.requestStop();
+        return false;
+      } else if (commandType == Constant.CONNECTION_END) {
+        return false;
+      } else if (opArrSize < 0) {
+        LOG.info("Unknown command: " + commandType);
+        return false;
+      }
+      if (commandType != Constant.SEND
+        && commandType != Constant.SEND_DECODE
+        && commandType != Constant.SEND_STREAM
+        && commandType != Constant.SHM_CONNECT
+        && selfID == Constant.UNKNOWN_WORKER_ID) {
+        throw new Exception(
+          "Fail to initialize receiver.");
+      }
+      opArray = ByteArray.create(opArrSize, true);
+      setBuffer(opArray, OP);
+    } else if (phase == OP) {
+      int headArrSize =
+        new Deserializer(opArray).readInt();
+      headArray =
+        ByteArray.create(headArrSize, true);
+      if (headArray == null) {
+        throw new Exception("Null head array.");
+      }
+      setBuffer(headArray, HEAD);
+    } else if (phase == HEAD
+      && commandType == Constant.SHM_CONNECT) {
+      String path =
+        new Deserializer(headArray).readUTF();
+      ShmRing ring = null;
+      try {
+        ring = ShmRing.open(path);
+      } catch (IOException e) {
+        LOG.error("Fail to open shared-memory ring "
+          + path + ", stay on the socket", e);
+      }
+      if (ring != null) {
+        server.acceptRing(new Acceptor(
+          new ServerConn(ring.getInputStream(),
+            null),
+          eventQueue, dataMap, workers));
+      }
+      // The client waits for the answer before
+      // writing to the ring
+      ByteBuffer ack = ByteBuffer.wrap(new byte[] {
+        ring != null ? Constant.SHM_ACCEPTED
+          : Constant.SHM_REJECTED });
+      while (ack.hasRemaining()) {
+        channel.write(ack);
+      }
+      opArray.release();
+      headArray.release();
+      resetFrame();
+    } else if (phase == HEAD) {
+      // Prepare bytes from resource pool
+      // Sending or receiving null array is
+      // allowed
+      data = new Data(headArray);
+      data.decodeHeadArray();
+      ByteArray[] bodySegments =
+        data.getBodySegments();
+      if (bodySegments != null) {
+        segmentIndex = 0;
+        setBuffer(bodySegments[0], BODY);
+      } else {
+        handleData();
+      }
+    } else {
+      // Read the body segment by segment
+      ByteArray[] bodySegments =
+        data.getBodySegments();
+      segmentIndex++;
+      if (segmentIndex < bodySegments.length) {
+        setBuffer(bodySegments[segmentIndex],
+          BODY);
+      } else {
+        handleData();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the size of the op array following the
+   * command
+   *
+   * @param command
+   *          the command
+   * @return the size, -1 if the command is
+   *         unknown
+   */
+  private static int getOpArraySize(byte command) {
+    if (command == Constant.SEND
+      || command == Constant.SEND_DECODE
+      || command == Constant.SEND_STREAM
+      || command == Constant.SHM_CONNECT) {
+      // head array size
+      return 4;
+    } else if (command == Constant.CHAIN_BCAST
+      || command == Constant.CHAIN_BCAST_DECODE) {
+      // head array size, source ID
+      return 8;
+    } else if (command == Constant.MST_BCAST
+      || command == Constant.MST_BCAST_DECODE) {
+      // head array size, left, right
+      return 12;
+    } else if (command == Constant.SERVER_QUIT
+      || command == Constant.CONNECTION_END) {
+      return 0;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * Hand over the completed Data and get ready
+   * for the next frame
+   *
+   * @throws Exception
+   */
+  private void handleData() throws Exception {
+    if (commandType == Constant.SEND
+      || commandType == Constant.SEND_DECODE
+      || commandType == Constant.SEND_STREAM) {
+      opArray.release();
+      dispatch(data, commandType,
+        EventType.MESSAGE_EVENT);
+    } else {
+      // Forwarding uses blocking connections,
+      // so it is done out of the selector thread
+      (new NioForwarder(data, opArray,
+        commandType, this)).fork();
+    }
+    resetFrame();
+  }
+
+  /**
+   * Decode the data if required and add it to
+   * the event queue or the data map
+   *
+   * @param data
+   *          the Data
+   * @param command
+   *          the command received with the data
+   * @param eventType
+   *          the type of the event
+   */
+  void dispatch(Data data, byte command,
+    EventType eventType) {
+    if (command == Constant.SEND_DECODE
+      || command == Constant.SEND_STREAM
+      || command == Constant.CHAIN_BCAST_DECODE
+      || command == Constant.MST_BCAST_DECODE) {
+      (new Decoder(data, selfID, eventType,
+        eventQueue, dataMap)).fork();
+    } else {
+      DataUtil.addDataToQueueOrMap(selfID,
+        eventQueue, eventType, dataMap, data);
+    }
+  }
+
+  /**
+   * Get the ID of this worker
+   *
+   * @return the ID of this worker
+   */
+  int getSelfID() {
+    return this.selfID;
+  }
+
+  /**
+   * Get the Workers
+   *
+   * @return the Workers
+   */
+  Workers getWorkers() {
+    return this.workers;
+  }
+
+  private void setBuffer(ByteArray array,
+    int nextPhase) {
+    buffer = ByteBuffer.wrap(array.get(),
+      array.start(), array.size());
+    phase = nextPhase;
+  }
+
+  private void resetFrame() {
+    commandBuffer.clear();
+    buffer = commandBuffer;
+    phase = COMMAND;
+    opArray = null;
+    headArray = null;
+    data = null;
+    segmentIndex = 0;
+  }
+
+  /**
+   * Close the connection and release the arrays
+   * of the incomplete frame
+   */
+  void close() {
+    if (data != null) {
+      data.release();
+    } else if (headArray != null) {
+      headArray.release();
+    }
+    if (opArray != null) {
+      opArray.release();
+    }
+    resetFrame();
+    try {
+      channel.close();
+    } catch (IOException e) {
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.server;
+
+import edu.iu.harp.client.EventType;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.Deserializer;
+import edu.iu.harp.resource.ByteArray;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.RecursiveAction;
+
+/*******************************************************
+ * Forward a broadcast message received by the
+ * NioServer to the next workers in the chain or
+ * in the minimum spanning tree, then hand it over
+ * locally.
+ ******************************************************/
+class NioForwarder extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOG =
+    Logger.getLogger(NioForwarder.class);
+
+  private final Data data;
+  private final ByteArray opArray;
+  private final byte commandType;
+  private final NioConn conn;
+
+  NioForwarder(Data data, ByteArray opArray,
+    byte commandType, NioConn conn) {
+    this.data = data;
+    this.opArray = opArray;
+    this.commandType = commandType;
+    this.conn = conn;
+  }
+
+  /**
+   * The main computation performed by this task.
+   */
+  @Override
+  public void compute() {
+    ByteArray headArray = data.getHeadArray();
+    ByteArray[] bodySegments =
+      data.getBodySegments();
+    try {
+      Deserializer deserializer =
+        new Deserializer(opArray);
+      // Skip head array size
+      deserializer.readInt();
+      if (commandType == Constant.CHAIN_BCAST
+        || commandType == Constant.CHAIN_BCAST_DECODE) {
+        int sourceID = deserializer.readInt();
+        DataChainBcastReceiver.forwardData(
+          conn.getWorkers(), commandType, opArray,
+          headArray, bodySegments, sourceID);
+      } else {
+        int left = deserializer.readInt();
+        int right = deserializer.readInt();
+        if (left < right) {
+          DataMSTBcastReceiver.sendDataInMST(
+            conn.getSelfID(), conn.getWorkers(),
+            commandType, opArray.get(),
+            opArray.size(), headArray.get(),
+            headArray.size(), bodySegments, left,
+            right);
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("Fail to forward the data.", e);
+      opArray.release();
+      data.release();
+      return;
+    }
+    opArray.release();
+    conn.dispatch(data, commandType,
+      EventType.COLLECTIVE_EVENT);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.server;
+
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.schdynamic.ComputeUtil;
+import edu.iu.harp.schdynamic.ThreadPlacement;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*******************************************************
+ * A selector thread of the NioServer. It reads
+ * from all the connections registered to it and
+ * lets each NioConn decode its own frames.
+ ******************************************************/
+class NioReactor implements Runnable {
+
+  private static final Logger LOG =
+    Logger.getLogger(NioReactor.class);
+
+  private final NioServer server;
+  private final int selfID;
+  private final EventQueue eventQueue;
+  private final DataMap dataMap;
+  private final Workers workers;
+  private final Selector selector;
+  private final Thread thread;
+  /** Accepted channels waiting for registration */
+  private final ConcurrentLinkedQueue<SocketChannel> pending;
+  private volatile boolean draining;
+  private volatile boolean forceStopped;
+
+  NioReactor(NioServer server, int selfID,
+    EventQueue queue, DataMap map, Workers w,
+    int index) throws IOException {
+    this.server = server;
+    this.selfID = selfID;
+    this.eventQueue = queue;
+    this.dataMap = map;
+    this.workers = w;
+    this.selector = Selector.open();
+    this.pending = new ConcurrentLinkedQueue<>();
+    this.draining = false;
+    this.forceStopped = false;
+    this.thread = new Thread(ThreadPlacement
+      .get().wrapReceiver(this, index));
+    this.thread.setName("Harp-NIO-" + index);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Stop the reactor. Without force, the reactor
+   * exits once all its connections are closed by
+   * the clients.
+   *
+   * @param force
+   *          close the connections immediately
+   */
+  void stop(boolean force) {
+    if (force) {
+      forceStopped = true;
+    }
+    draining = true;
+    selector.wakeup();
+    ComputeUtil.joinThread(thread);
+  }
+
+  /**
+   * Hand over an accepted channel. Called from
+   * the accepting thread.
+   *
+   * @param channel
+   *          the accepted channel
+   */
+  void register(SocketChannel channel) {
+    pending.add(channel);
+    selector.wakeup();
+  }
+
+  /**
+   * The overridden run function for reading the
+   * messages from clients
+   */
+  @Override
+  public void run() {
+    while (!forceStopped) {
+      try {
+        selector.select(Constant.LONG_SLEEP);
+      } catch (IOException e) {
+        LOG.error("Exception on NIO reactor", e);
+        break;
+      }
+      registerPending();
+      Iterator<SelectionKey> iterator =
+        selector.selectedKeys().iterator();
+      while (iterator.hasNext()) {
+        SelectionKey key = iterator.next();
+        iterator.remove();
+        if (!key.isValid() || !key.isReadable()) {
+          continue;
+        }
+        NioConn conn = (NioConn) key.attachment();
+        boolean isOpen = false;
+        try {
+          isOpen = conn.read();
+        } catch (Exception e) {
+          LOG.error("Exception on NIO reactor.", e);
+        }
+        if (!isOpen) {
+          key.cancel();
+          conn.close();
+        }
+      }
+      if (draining && pending.isEmpty()
+        && selector.keys().isEmpty()) {
+        break;
+      }
+    }
+    // Close the rest of the connections
+    registerPending();
+    for (SelectionKey key : selector.keys()) {
+      ((NioConn) key.attachment()).close();
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      LOG.error("Fail to close the selector.", e);
+    }
+  }
+
+  /**
+   * Register the accepted channels to the
+   * selector
+   */
+  private void registerPending() {
+    SocketChannel channel = null;
+    while ((channel = pending.poll()) != null) {
+      NioConn conn = new NioConn(channel, server,
+        selfID, eventQueue, dataMap, workers);
+      try {
+        channel.register(selector,
+          SelectionKey.OP_READ, conn);
+      } catch (IOException e) {
+        LOG.error("Fail to register the channel.",
+          e);
+        conn.close();
+      }
+    }
+  }
+}
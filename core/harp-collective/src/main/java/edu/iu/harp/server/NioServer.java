@@ -0,0 +1,279 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.server;
+
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.io.IOUtil;
+import edu.iu.harp.schdynamic.ComputeUtil;
+import edu.iu.harp.schdynamic.ThreadPlacement;
+import edu.iu.harp.worker.Workers;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/*******************************************************
+ * The server for communication built on
+ * java.nio. One thread accepts connections and
+ * hands them to a small fixed number of
+ * NioReactors, each multiplexing many
+ * connections on one Selector. The wire protocol
+ * is the same as the one handled by Server and
+ * Acceptor, so the two servers are
+ * interchangeable.
+ ******************************************************/
+public class NioServer
+  implements Transport, Runnable {
+
+  private static final Logger LOG =
+    Logger.getLogger(NioServer.class);
+
+  private final Thread server;
+  private final NioReactor[] reactors;
+  private int nextReactor;
+  private volatile boolean stopped;
+  /** Acceptors reading shared-memory rings */
+  private final List<Acceptor> ringAcceptors;
+  private final List<Thread> ringThreads;
+
+  /**
+   * Cache necessary information since "workers"
+   * is global
+   */
+  private final String node;
+  private final int port;
+  /** Server socket channel */
+  private final ServerSocketChannel serverChannel;
+  private final Selector selector;
+
+  /**
+   * Initialization with the default number of IO
+   * threads
+   *
+   * @param node
+   *          the host
+   * @param port
+   *          the port
+   * @param queue
+   *          the EventQueue
+   * @param map
+   *          the DataMap
+   * @param workers
+   *          the Workers
+   * @throws Exception
+   */
+  public NioServer(String node, int port,
+    EventQueue queue, DataMap map,
+    Workers workers) throws Exception {
+    this(node, port, queue, map, workers,
+      Constant.NUM_IO_THREADS);
+  }
+
+  /**
+   * Initialization
+   *
+   * @param node
+   *          the host
+   * @param port
+   *          the port
+   * @param queue
+   *          the EventQueue
+   * @param map
+   *          the DataMap
+   * @param workers
+   *          the Workers
+   * @param numIOThreads
+   *          the number of selector threads
+   * @throws Exception
+   */
+  public NioServer(String node, int port,
+    EventQueue queue, DataMap map,
+    Workers workers, int numIOThreads)
+    throws Exception {
+    this.node = node;
+    this.port = port;
+    if (numIOThreads <= 0) {
+      numIOThreads = 1;
+    }
+    reactors = new NioReactor[numIOThreads];
+    nextReactor = 0;
+    stopped = false;
+    ringAcceptors = new ArrayList<>();
+    ringThreads = new ArrayList<>();
+    try {
+      serverChannel = ServerSocketChannel.open();
+      IOUtil.setServerSocketOptions(
+        serverChannel.socket());
+      serverChannel.socket()
+        .bind(new InetSocketAddress(node, port));
+      serverChannel.configureBlocking(false);
+      selector = Selector.open();
+      serverChannel.register(selector,
+        SelectionKey.OP_ACCEPT);
+      for (int i = 0; i < numIOThreads; i++) {
+        reactors[i] = new NioReactor(this,
+          workers.getSelfID(), queue, map,
+          workers, i);
+      }
+    } catch (Exception e) {
+      LOG.error("Error in starting receiver.", e);
+      throw new Exception(e);
+    }
+    server = new Thread(this);
+    server.setName("Harp-NIO-Server");
+    LOG.info("NIO server on " + this.node + " "
+      + this.port + " starts with "
+      + numIOThreads + " IO threads.");
+  }
+
+  /**
+   * Start the server
+   */
+  @Override
+  public void start() {
+    for (NioReactor reactor : reactors) {
+      reactor.start();
+    }
+    server.start();
+  }
+
+  /**
+   * Stop the server. Stop accepting, wait until
+   * the clients close their connections, then
+   * close the server
+   */
+  @Override
+  public void stop() {
+    this.stop(false);
+  }
+
+  @Override
+  public void stop(boolean force) {
+    requestStop();
+    ComputeUtil.joinThread(server);
+    for (NioReactor reactor : reactors) {
+      reactor.stop(force);
+    }
+    List<Thread> threads = null;
+    synchronized (ringThreads) {
+      if (force) {
+        for (Acceptor acceptor : ringAcceptors) {
+          acceptor.forceStop();
+        }
+      }
+      threads = new ArrayList<>(ringThreads);
+    }
+    for (Thread thread : threads) {
+      ComputeUtil.joinThread(thread);
+    }
+    try {
+      selector.close();
+      serverChannel.close();
+    } catch (IOException e) {
+      LOG.error("Fail to stop the server.", e);
+    }
+    LOG.info("NIO server on " + this.node + " "
+      + this.port + " is stopped.");
+  }
+
+  /**
+   * Stop accepting new connections. This is
+   * also invoked when a SERVER_QUIT command is
+   * received.
+   */
+  void requestStop() {
+    stopped = true;
+    selector.wakeup();
+  }
+
+  /**
+   * Read a connection moved to a shared-memory
+   * ring in its own thread, rings cannot be
+   * selected
+   *
+   * @param acceptor
+   *          the Acceptor reading the ring
+   */
+  void acceptRing(Acceptor acceptor) {
+    synchronized (ringThreads) {
+      Thread thread = new Thread(ThreadPlacement
+        .get().wrapReceiver(acceptor,
+          reactors.length + ringThreads.size()));
+      thread.setName(
+        "Harp-Ring-" + ringThreads.size());
+      ringAcceptors.add(acceptor);
+      ringThreads.add(thread);
+      thread.start();
+    }
+  }
+
+  /**
+   * The overridden run function for accepting
+   * connections from clients
+   */
+  @Override
+  public void run() {
+    while (!stopped) {
+      try {
+        selector.select();
+      } catch (IOException e) {
+        LOG.error("Exception on NIO server", e);
+        break;
+      }
+      Iterator<SelectionKey> iterator =
+        selector.selectedKeys().iterator();
+      while (iterator.hasNext()) {
+        SelectionKey key = iterator.next();
+        iterator.remove();
+        if (!key.isValid() || !key.isAcceptable()) {
+          continue;
+        }
+        SocketChannel channel = null;
+        try {
+          channel = serverChannel.accept();
+          if (channel == null) {
+            continue;
+          }
+          IOUtil.setSocketOptions(channel.socket());
+          channel.configureBlocking(false);
+        } catch (Exception e) {
+          LOG.error("Exception on NIO server", e);
+          if (channel != null) {
+            try {
+              channel.close();
+            } catch (IOException e1) {
+            }
+          }
+          continue;
+        }
+        // Spread connections over the reactors
+        reactors[nextReactor].register(channel);
+        nextReactor =
+          (nextReactor + 1) % reactors.length;
+      }
+    }
+  }
+}
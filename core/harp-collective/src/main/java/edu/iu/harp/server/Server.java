@@ -22,6 +22,7 @@ import edu.iu.harp.io.DataMap;
 import edu.iu.harp.io.EventQueue;
 import edu.iu.harp.io.IOUtil;
 import edu.iu.harp.schdynamic.ComputeUtil;
+import edu.iu.harp.schdynamic.ThreadPlacement;
 import edu.iu.harp.worker.Workers;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.apache.log4j.Logger;
@@ -37,7 +38,8 @@ import java.util.List;
 /*******************************************************
  * The server for communication
  ******************************************************/
-public class Server implements Runnable {
+public class Server
+        implements Transport, Runnable {
 
   private static final Logger LOG =
           Logger.getLogger(Server.class);
@@ -111,6 +113,7 @@ public class Server implements Runnable {
   /**
    * Start the server
    */
+  @Override
   public void start() {
     server.start();
   }
@@ -119,10 +122,12 @@ public class Server implements Runnable {
    * Stop the server. Close acceptorThreads and the
    * server
    */
+  @Override
   public void stop() {
     this.stop(false);
   }
 
+  @Override
   public void stop(boolean force){
     if(!force) {
       closeServer(this.node, this.port);
@@ -211,7 +216,8 @@ public class Server implements Runnable {
                 new Acceptor(conn, eventQueue, dataMap,
                         workers, commandType);
         acceptors.add(acceptor);
-        Thread thread = new Thread(acceptor);
+        Thread thread = new Thread(ThreadPlacement
+          .get().wrapReceiver(acceptor, threadNum));
         thread.setName("harp-thread-"+(threadNum++));
         thread.start();
         acceptorThreads.add(thread);
@@ -18,6 +18,7 @@ package edu.iu.harp.server;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 
 /*******************************************************
@@ -42,6 +43,31 @@ public class ServerConn {
     return this.in;
   }
 
+  /**
+   * Read from another stream, e.g. a
+   * shared-memory ring. The socket is kept open
+   * until the connection is closed.
+   * 
+   * @param in
+   *          the new InputStream
+   */
+  void setInputStream(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Write a byte back to the client
+   * 
+   * @param b
+   *          the byte
+   * @throws IOException
+   */
+  void writeByte(byte b) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(b);
+    out.flush();
+  }
+
   /**
    * Close the connection
    */
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.harp.server;
+
+/*******************************************************
+ * The receiving side of worker-to-worker
+ * communication. Implemented by the blocking
+ * thread-per-connection Server and by the
+ * selector-based NioServer.
+ ******************************************************/
+public interface Transport {
+
+  /**
+   * Start receiving
+   */
+  void start();
+
+  /**
+   * Stop receiving and wait for the open
+   * connections to be closed by the clients
+   */
+  void stop();
+
+  /**
+   * Stop receiving
+   *
+   * @param force
+   *          if true, close the open connections
+   *          without waiting for the clients
+   */
+  void stop(boolean force);
+}
@@ -19,10 +19,15 @@ package edu.iu.harp.worker;
 import edu.iu.harp.io.Constant;
 
 import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /*******************************************************
@@ -68,6 +73,11 @@ public class Workers extends Nodes {
    * Worker ID of the next worker
    */
   private int nextID;
+  /**
+   * Map from node to the IDs of the workers on
+   * it, in the order of the first worker ID
+   */
+  private volatile Map<String, List<Integer>> nodeWorkers;
   private final int initCapacity =
       Constant.NUM_THREADS;
 
@@ -118,6 +128,41 @@ public class Workers extends Nodes {
     this.setInitParams(getNodes(),getRackList(),selfID);
   }
 
+  /**
+   * Create a group of the workers
+   *
+   * @param nodes            the nodes of each rack
+   * @param nodeRackIDs      the rack IDs
+   * @param numPhysicalNodes the number of nodes
+   * @param workerInfos      the workers in the
+   *                         group
+   * @param rackWorkers      the workers of each
+   *                         rack
+   * @param selfID           this worker's id in
+   *                         the group
+   */
+  private Workers(Map<Integer, List<String>> nodes,
+                  LinkedList<Integer> nodeRackIDs,
+                  int numPhysicalNodes,
+                  Map<Integer, WorkerInfo> workerInfos,
+                  Map<Integer, List<Integer>> rackWorkers,
+                  int selfID) {
+    super(nodes, nodeRackIDs, numPhysicalNodes);
+    this.workerInfos = workerInfos;
+    this.rackWorkers = rackWorkers;
+    this.selfID = selfID;
+    this.masterID = 0;
+    this.masterInfo = workerInfos.get(masterID);
+    this.minID = 0;
+    this.maxID = workerInfos.size() - 1;
+    this.middleID = maxID / 2;
+    if (selfID >= 0 && selfID < maxID) {
+      this.nextID = selfID + 1;
+    } else {
+      this.nextID = 0;
+    }
+  }
+
   private void setInitParams(Map<Integer, List<String>> nodes,List<Integer> rackList,int selfID){
     this.workerInfos =
         new ConcurrentHashMap<>(initCapacity);
@@ -359,6 +404,137 @@ public class Workers extends Nodes {
     }
   }
 
+  /**
+   * Get the map from node to the IDs of the
+   * workers on it
+   *
+   * @return the map from node to worker IDs
+   */
+  private Map<String, List<Integer>> getNodeWorkers() {
+    Map<String, List<Integer>> map = nodeWorkers;
+    if (map == null) {
+      map = new LinkedHashMap<>();
+      for (int i = minID; i <= maxID; i++) {
+        WorkerInfo info = workerInfos.get(i);
+        if (info != null) {
+          map.computeIfAbsent(info.getNode(),
+              node -> new ArrayList<>()).add(i);
+        }
+      }
+      nodeWorkers = map;
+    }
+    return map;
+  }
+
+  /**
+   * Get the number of nodes the workers run on
+   *
+   * @return the number of nodes
+   */
+  public int getNumWorkerNodes() {
+    return getNodeWorkers().size();
+  }
+
+  /**
+   * Check if the workers are on more than one
+   * node and some node runs more than one of
+   * them
+   *
+   * @return true if yes, false otherwise
+   */
+  public boolean hasSharedNodes() {
+    int numNodes = getNumWorkerNodes();
+    return numNodes > 1
+        && numNodes < getNumWorkers();
+  }
+
+  /**
+   * Get the IDs of the workers on the same node
+   * as the worker
+   *
+   * @param workerID the worker
+   * @return the IDs of the workers on the node
+   */
+  public List<Integer> getNodeWorkerIDs(
+      int workerID) {
+    WorkerInfo info = workerInfos.get(workerID);
+    if (info == null) {
+      return new ArrayList<>();
+    }
+    return getNodeWorkers().get(info.getNode());
+  }
+
+  /**
+   * Get the leader of each node, the leader is
+   * the root worker on its node and the worker
+   * with the minimum ID on the other nodes
+   *
+   * @param rootID the root worker
+   * @return the IDs of the leaders
+   */
+  public List<Integer> getNodeLeaderIDs(
+      int rootID) {
+    WorkerInfo rootInfo =
+        workerInfos.get(rootID);
+    List<Integer> leaderIDs = new ArrayList<>();
+    for (Map.Entry<String, List<Integer>> entry : getNodeWorkers()
+        .entrySet()) {
+      if (rootInfo != null && entry.getKey()
+          .equals(rootInfo.getNode())) {
+        leaderIDs.add(rootID);
+      } else {
+        leaderIDs.add(entry.getValue().get(0));
+      }
+    }
+    return leaderIDs;
+  }
+
+  /**
+   * Get a group of the workers. The IDs in the
+   * group are the indices in the list, and this
+   * worker's ID is unknown if it is not in the
+   * list.
+   *
+   * @param workerIDs the IDs of the workers
+   * @return the group of the workers
+   */
+  public Workers getSubWorkers(
+      List<Integer> workerIDs) {
+    Map<Integer, List<String>> subNodes =
+        new HashMap<>();
+    LinkedList<Integer> subRackIDs =
+        new LinkedList<>();
+    Map<Integer, WorkerInfo> subWorkerInfos =
+        new ConcurrentHashMap<>(initCapacity);
+    Map<Integer, List<Integer>> subRackWorkers =
+        new ConcurrentHashMap<>(initCapacity);
+    Set<String> nodeSet = new HashSet<>();
+    int subSelfID = Constant.UNKNOWN_WORKER_ID;
+    for (int i = 0; i < workerIDs.size(); i++) {
+      int workerID = workerIDs.get(i);
+      WorkerInfo info = workerInfos.get(workerID);
+      int rackID = info.getRack();
+      subWorkerInfos.put(i, new WorkerInfo(i,
+          info.getNode(), info.getPort(), rackID));
+      if (!subRackWorkers.containsKey(rackID)) {
+        subRackWorkers.put(rackID,
+            new LinkedList<>());
+        subNodes.put(rackID, new LinkedList<>());
+        subRackIDs.add(rackID);
+      }
+      subRackWorkers.get(rackID).add(i);
+      if (nodeSet.add(info.getNode())) {
+        subNodes.get(rackID).add(info.getNode());
+      }
+      if (workerID == selfID) {
+        subSelfID = i;
+      }
+    }
+    return new Workers(subNodes, subRackIDs,
+        nodeSet.size(), subWorkerInfos,
+        subRackWorkers, subSelfID);
+  }
+
   @Override
   public String toString() {
     return "Workers{" +
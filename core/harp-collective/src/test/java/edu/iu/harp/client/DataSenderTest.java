@@ -0,0 +1,176 @@
+package edu.iu.harp.client;
+
+import edu.iu.harp.io.Compression;
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataStatus;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.DirectDoubleArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.server.Server;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class DataSenderTest {
+  private String fileName;
+
+  @Before
+  public void setUp() {
+    ClassLoader classLoader = getClass().getClassLoader();
+    fileName = new File(Objects.requireNonNull(
+        classLoader.getResource("test_nodes")).getFile()).getAbsolutePath();
+  }
+
+  private Data createData(String opName, int numPartitions, int size) {
+    List<Transferable> partitions = new ArrayList<>();
+    for (int i = 0; i < numPartitions; i++) {
+      int[] ints = new int[size];
+      for (int j = 0; j < size; j++) {
+        ints[j] = i + j;
+      }
+      partitions.add(new Partition<>(i, new IntArray(ints, 0, size)));
+    }
+    return new Data(DataType.PARTITION_LIST, "stream", 0, partitions,
+        DataUtil.getNumTransListBytes(partitions), opName);
+  }
+
+  private void checkData(Data data, int numPartitions, int size) {
+    Assert.assertNotNull(data);
+    data.releaseHeadArray();
+    data.releaseBodyArray();
+    Assert.assertEquals(DataStatus.DECODED, data.getBodyStatus());
+    Assert.assertEquals(numPartitions, data.getBody().size());
+    for (Transferable obj : data.getBody()) {
+      Partition<?> partition = (Partition<?>) obj;
+      IntArray array = (IntArray) partition.get();
+      Assert.assertEquals(size, array.size());
+      for (int j = 0; j < size; j++) {
+        Assert.assertEquals(partition.id() + j,
+            array.get()[array.start() + j]);
+      }
+    }
+    data.release();
+  }
+
+  @Test
+  public void testStreamedSend() throws Exception {
+    Workers workers =
+        new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    DataMap dataMap = new DataMap();
+    Server server = new Server(workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(), new EventQueue(), dataMap, workers);
+    server.start();
+    try {
+      // Larger than the pipeline size, the body is streamed
+      Data data = createData("stream", 8, 100000);
+      DataSender sender =
+          new DataSender(data, 0, workers, Constant.SEND_DECODE);
+      Assert.assertTrue(sender.isBodyStreamed(data));
+      Assert.assertTrue(sender.execute());
+      Assert.assertNull(data.getBodyArray());
+      data.release();
+      checkData(dataMap.waitAndGetData("stream", "stream", 10), 8, 100000);
+      // Small data is encoded to one array as before
+      data = createData("small", 2, 10);
+      sender = new DataSender(data, 0, workers, Constant.SEND_DECODE);
+      Assert.assertFalse(sender.isBodyStreamed(data));
+      Assert.assertTrue(sender.execute());
+      data.release();
+      checkData(dataMap.waitAndGetData("stream", "small", 10), 2, 10);
+    } finally {
+      ConnPool.get().clean();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testCompressedSend() throws Exception {
+    Workers workers =
+        new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    DataMap dataMap = new DataMap();
+    Server server = new Server(workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(), new EventQueue(), dataMap, workers);
+    server.start();
+    Compression.configure(Compression.NONE,
+        Compression.DEFAULT_THRESHOLD, "zip=delta");
+    try {
+      long numCompressed = Compression.getNumCompressed();
+      // Compressed instead of streamed
+      Data data = createData("zip", 8, 100000);
+      DataSender sender =
+          new DataSender(data, 0, workers, Constant.SEND_DECODE);
+      Assert.assertFalse(sender.isBodyStreamed(data));
+      Assert.assertTrue(sender.execute());
+      Assert.assertTrue(data.getBodyArray().size() * 2 < data.getBodySize());
+      data.release();
+      checkData(dataMap.waitAndGetData("stream", "zip", 10), 8, 100000);
+      Assert.assertEquals(numCompressed + 1, Compression.getNumCompressed());
+      Assert.assertTrue(Compression.getRatio() > 2.0);
+    } finally {
+      Compression.configure(Compression.NONE,
+          Compression.DEFAULT_THRESHOLD, null);
+      ConnPool.get().clean();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testGatheredSend() throws Exception {
+    Workers workers =
+        new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    DataMap dataMap = new DataMap();
+    Server server = new Server(workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(), new EventQueue(), dataMap, workers);
+    server.start();
+    try {
+      List<Transferable> partitions = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        DirectDoubleArray array = DirectDoubleArray.create(50000, false);
+        for (int j = 0; j < 50000; j++) {
+          array.set(j, i + j);
+        }
+        partitions.add(new Partition<>(i, array));
+      }
+      Data data = new Data(DataType.PARTITION_LIST, "gather", 0, partitions,
+          DataUtil.getNumTransListBytes(partitions), "gather");
+      DataSender sender =
+          new DataSender(data, 0, workers, Constant.SEND_DECODE);
+      Assert.assertTrue(sender.isBodyStreamed(data));
+      Assert.assertTrue(sender.execute());
+      Assert.assertNull(data.getBodyArray());
+      data.release();
+      Data recvData = dataMap.waitAndGetData("gather", "gather", 10);
+      Assert.assertNotNull(recvData);
+      recvData.releaseHeadArray();
+      recvData.releaseBodyArray();
+      Assert.assertEquals(4, recvData.getBody().size());
+      for (Transferable obj : recvData.getBody()) {
+        Partition<?> partition = (Partition<?>) obj;
+        DirectDoubleArray array = (DirectDoubleArray) partition.get();
+        Assert.assertEquals(50000, array.size());
+        for (int j = 0; j < 50000; j++) {
+          Assert.assertEquals(partition.id() + j, array.get(j), 0.0);
+        }
+      }
+      recvData.release();
+    } finally {
+      ConnPool.get().clean();
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package edu.iu.harp.client;
+
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.server.Server;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+public class SenderPoolTest {
+  private static final int NUM_WORKERS = 4;
+
+  private Workers createWorkers(int numWorkers, int selfID) {
+    Map<Integer, List<String>> nodes = new HashMap<>();
+    List<String> hosts = new ArrayList<>();
+    for (int i = 0; i < numWorkers; i++) {
+      hosts.add("127.0.0.1");
+    }
+    nodes.put(0, hosts);
+    LinkedList<Integer> rackIDs = new LinkedList<>();
+    rackIDs.add(0);
+    return new Workers(nodes, rackIDs, 1, selfID);
+  }
+
+  private Data createData(String opName, int value) {
+    List<Transferable> partitions = new ArrayList<>();
+    partitions.add(new Partition<>(value,
+        new IntArray(new int[]{value, value}, 0, 2)));
+    return new Data(DataType.PARTITION_LIST, "pool", 0, partitions,
+        DataUtil.getNumTransListBytes(partitions), opName);
+  }
+
+  @Test
+  public void testConcurrency() {
+    int concurrency = SenderPool.getConcurrency();
+    try {
+      SenderPool.setConcurrency(0);
+      Assert.assertEquals(1, SenderPool.getConcurrency());
+      SenderPool.setConcurrency(16);
+      Assert.assertEquals(16, SenderPool.getConcurrency());
+    } finally {
+      SenderPool.setConcurrency(concurrency);
+    }
+  }
+
+  @Test
+  public void testSend() throws Exception {
+    int concurrency = SenderPool.getConcurrency();
+    List<Server> servers = new ArrayList<>();
+    List<DataMap> dataMaps = new ArrayList<>();
+    try {
+      for (int i = 0; i < NUM_WORKERS; i++) {
+        Workers workers = createWorkers(NUM_WORKERS, i);
+        DataMap dataMap = new DataMap();
+        Server server = new Server(workers.getSelfInfo().getNode(),
+            workers.getSelfInfo().getPort(), new EventQueue(), dataMap,
+            workers);
+        server.start();
+        servers.add(server);
+        dataMaps.add(dataMap);
+      }
+      Workers workers = createWorkers(NUM_WORKERS, 0);
+      for (int numDests : new int[]{1, NUM_WORKERS}) {
+        SenderPool.setConcurrency(numDests);
+        // Two data to each of the other workers
+        List<Data> dataList = new ArrayList<>();
+        int[] destIDs = new int[2 * (NUM_WORKERS - 1)];
+        for (int i = 1; i < NUM_WORKERS; i++) {
+          dataList.add(createData("first" + numDests, i));
+          destIDs[dataList.size() - 1] = i;
+          dataList.add(createData("second" + numDests, -i));
+          destIDs[dataList.size() - 1] = i;
+        }
+        Assert.assertTrue(SenderPool.send(dataList, destIDs, workers,
+            Constant.SEND_DECODE));
+        for (int i = 1; i < NUM_WORKERS; i++) {
+          for (String opName : new String[]{"first", "second"}) {
+            Data data = dataMaps.get(i).waitAndGetData("pool",
+                opName + numDests, 10);
+            Assert.assertNotNull(data);
+            data.releaseHeadArray();
+            data.releaseBodyArray();
+            Partition<?> partition = (Partition<?>) data.getBody().get(0);
+            Assert.assertEquals(opName.equals("first") ? i : -i,
+                partition.id());
+            data.release();
+          }
+        }
+      }
+    } finally {
+      SenderPool.setConcurrency(concurrency);
+      ConnPool.get().clean();
+      for (Server server : servers) {
+        server.stop();
+      }
+    }
+  }
+}
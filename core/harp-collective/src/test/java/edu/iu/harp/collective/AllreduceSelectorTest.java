@@ -0,0 +1,45 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.combiner.DoubleArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.DoubleArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllreduceSelectorTest {
+
+  private static Table<DoubleArray> createTable(int size) {
+    Table<DoubleArray> table = new Table<>(0,
+        new DoubleArrCombiner(Operation.SUM));
+    table.addPartition(new Partition<>(0,
+        new DoubleArray(new double[size], 0, size)));
+    return table;
+  }
+
+  @Test
+  public void testSelect() {
+    AllreduceSelector selector = new AllreduceSelector();
+    long threshold = 1024L;
+    // The first call checks the layout
+    Assert.assertEquals(AllreduceCollective.AUTO, selector.select("ctx",
+        "op", AllreduceCollective.AUTO, threshold));
+    selector.record("ctx", "op", createTable(10), true);
+    Assert.assertEquals(AllreduceCollective.RECURSIVE_DOUBLING,
+        selector.select("ctx", "op", AllreduceCollective.AUTO, threshold));
+    // Other operations and explicit algorithms are not changed
+    Assert.assertEquals(AllreduceCollective.AUTO, selector.select("ctx",
+        "other", AllreduceCollective.AUTO, threshold));
+    Assert.assertEquals(AllreduceCollective.RING, selector.select("ctx",
+        "op", AllreduceCollective.RING, threshold));
+    // A large result goes back to the layout check
+    selector.record("ctx", "op", createTable(1000), true);
+    Assert.assertEquals(AllreduceCollective.AUTO, selector.select("ctx",
+        "op", AllreduceCollective.AUTO, threshold));
+    selector.record("ctx", "op", createTable(10), true);
+    selector.record("ctx", "op", createTable(10), false);
+    Assert.assertEquals(AllreduceCollective.AUTO, selector.select("ctx",
+        "op", AllreduceCollective.AUTO, threshold));
+  }
+}
@@ -0,0 +1,84 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.combiner.DoubleArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkedAllreduceCollectiveTest {
+  // Sizes smaller than the number of workers
+  // leave some chunks empty
+  private static final int[] SIZES = {1000, 7, 2};
+
+  private boolean allreduce(String algorithm, Workers workers,
+      DataMap dataMap) {
+    int numWorkers = workers.getNumWorkers();
+    int selfID = workers.getSelfID();
+    Table<DoubleArray> table =
+        new Table<>(0, new DoubleArrCombiner(Operation.SUM));
+    for (int i = 0; i < SIZES.length; i++) {
+      double[] doubles = new double[SIZES[i]];
+      for (int j = 0; j < doubles.length; j++) {
+        doubles[j] = selfID * j + i;
+      }
+      table.addPartition(
+          new Partition<>(i, new DoubleArray(doubles, 0, doubles.length)));
+    }
+    boolean isSuccess = AllreduceCollective.allreduce("chunked", algorithm,
+        table, dataMap, workers, algorithm, 0L);
+    if (!isSuccess) {
+      return false;
+    }
+    int sumIDs = numWorkers * (numWorkers - 1) / 2;
+    for (int i = 0; i < SIZES.length; i++) {
+      DoubleArray array = table.getPartition(i).get();
+      Assert.assertEquals(SIZES[i], array.size());
+      for (int j = 0; j < array.size(); j++) {
+        Assert.assertEquals((double) sumIDs * j + numWorkers * i,
+            array.get()[array.start() + j], 0.0);
+      }
+    }
+    return true;
+  }
+
+  private void runWorkers(String algorithm, int numWorkers) throws Exception {
+    LocalWorkers.run(numWorkers,
+        (workers, dataMap) -> allreduce(algorithm, workers, dataMap));
+  }
+
+  @Test
+  public void testChunkOffset() {
+    Assert.assertEquals(0, ChunkedAllreduceCollective.getChunkOffset(10, 0, 3));
+    Assert.assertEquals(3, ChunkedAllreduceCollective.getChunkOffset(10, 1, 3));
+    Assert.assertEquals(6, ChunkedAllreduceCollective.getChunkOffset(10, 2, 3));
+    Assert.assertEquals(10, ChunkedAllreduceCollective.getChunkOffset(10, 3, 3));
+    Assert.assertEquals(0, ChunkedAllreduceCollective.getChunkOffset(2, 1, 4));
+    Assert.assertEquals(Integer.MAX_VALUE, ChunkedAllreduceCollective
+        .getChunkOffset(Integer.MAX_VALUE, 4, 4));
+  }
+
+  @Test
+  public void testRing() throws Exception {
+    runWorkers(AllreduceCollective.RING, 3);
+  }
+
+  @Test
+  public void testRabenseifner() throws Exception {
+    runWorkers(AllreduceCollective.RABENSEIFNER, 4);
+  }
+
+  @Test
+  public void testRabenseifnerNonPowerOfTwo() throws Exception {
+    runWorkers(AllreduceCollective.RABENSEIFNER, 3);
+  }
+
+  @Test
+  public void testAuto() throws Exception {
+    runWorkers(AllreduceCollective.AUTO, 4);
+  }
+}
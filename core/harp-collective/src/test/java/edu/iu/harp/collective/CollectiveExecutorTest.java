@@ -0,0 +1,89 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.DataMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CollectiveExecutorTest {
+  @Test
+  public void testSameOperationInOrder() throws Exception {
+    CollectiveExecutor executor = new CollectiveExecutor(new DataMap());
+    List<Integer> order = new ArrayList<>();
+    CountDownLatch latch = new CountDownLatch(1);
+    CompletableFuture<Boolean> first =
+        executor.submit("context", "op", () -> {
+          try {
+            latch.await();
+          } catch (InterruptedException e) {
+            return false;
+          }
+          synchronized (order) {
+            order.add(1);
+          }
+          return true;
+        });
+    CompletableFuture<Boolean> second =
+        executor.submit("context", "op", () -> {
+          synchronized (order) {
+            order.add(2);
+          }
+          return true;
+        });
+    Thread.sleep(100);
+    Assert.assertFalse(second.isDone());
+    latch.countDown();
+    Assert.assertTrue(first.get(10, TimeUnit.SECONDS));
+    Assert.assertTrue(second.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, order.size());
+    Assert.assertEquals(1, (int) order.get(0));
+    Assert.assertEquals(2, (int) order.get(1));
+    Assert.assertTrue(executor.stop(10));
+  }
+
+  @Test
+  public void testDifferentOperationsOverlap() throws Exception {
+    CollectiveExecutor executor = new CollectiveExecutor(new DataMap());
+    CountDownLatch latch = new CountDownLatch(2);
+    // Each operation waits for the other one
+    CompletableFuture<Boolean> op1 = executor.submit("context", "op1", () -> {
+      latch.countDown();
+      try {
+        return latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        return false;
+      }
+    });
+    CompletableFuture<Boolean> op2 = executor.submit("context", "op2", () -> {
+      latch.countDown();
+      try {
+        return latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        return false;
+      }
+    });
+    Assert.assertTrue(op1.get(20, TimeUnit.SECONDS));
+    Assert.assertTrue(op2.get(20, TimeUnit.SECONDS));
+    Assert.assertTrue(executor.stop(10));
+  }
+
+  @Test
+  public void testFailedOperation() throws Exception {
+    CollectiveExecutor executor = new CollectiveExecutor(new DataMap());
+    CompletableFuture<Boolean> failed = executor.submit("context", "op", () -> {
+      throw new IllegalStateException("fail");
+    });
+    CompletableFuture<Boolean> next =
+        executor.submit("context", "op", () -> true);
+    Assert.assertFalse(failed.get(10, TimeUnit.SECONDS));
+    Assert.assertTrue(next.get(10, TimeUnit.SECONDS));
+    Assert.assertTrue(executor.stop(10));
+    Assert.assertFalse(executor.submit("context", "op", () -> true)
+        .get(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,174 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.example.DoubleArrPlus;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Partitioner;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.DoubleArray;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommPlanTest {
+  private static final int NUM_WORKERS = 3;
+  private static final int NUM_PARTITIONS = 6;
+  private static final int NUM_ITERATIONS = 3;
+
+  private Table<DoubleArray> createTable(int[] partitionIDs, double value) {
+    Table<DoubleArray> table = new Table<>(0, new DoubleArrPlus());
+    for (int partitionID : partitionIDs) {
+      table.addPartition(new Partition<>(partitionID,
+          new DoubleArray(new double[]{value, value}, 0, 2)));
+    }
+    return table;
+  }
+
+  private int[] getAllIDs() {
+    int[] ids = new int[NUM_PARTITIONS];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = i;
+    }
+    return ids;
+  }
+
+  private int[] getOwnedIDs(int workerID) {
+    return new int[]{workerID, workerID + NUM_WORKERS};
+  }
+
+  private boolean checkTable(Table<DoubleArray> table, int[] partitionIDs,
+      double value) {
+    if (table.getNumPartitions() != partitionIDs.length) {
+      return false;
+    }
+    for (int partitionID : partitionIDs) {
+      Partition<DoubleArray> partition = table.getPartition(partitionID);
+      if (partition == null || partition.get().get()[0] != value
+          || partition.get().get()[1] != value) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void testChecksum() {
+    Table<DoubleArray> table1 = createTable(new int[]{1, 2, 3}, 0);
+    Table<DoubleArray> table2 = createTable(new int[]{3, 1, 2}, 1);
+    Table<DoubleArray> table3 = createTable(new int[]{1, 2, 4}, 0);
+    Assert.assertEquals(CommPlan.getChecksum(table1),
+        CommPlan.getChecksum(table2));
+    Assert.assertTrue(CommPlan.getChecksum(table1)
+        != CommPlan.getChecksum(table3));
+    Assert.assertTrue(CommPlan.getChecksum(table1, table3)
+        != CommPlan.getChecksum(table3, table1));
+    CommPlan plan = new CommPlan();
+    Assert.assertFalse(plan.isPlanned());
+    plan.plan(new Table<?>[]{table1}, new Int2IntOpenHashMap(), 2);
+    Assert.assertTrue(plan.isPlanned());
+    Assert.assertTrue(plan.check("test", false, table2));
+    Assert.assertFalse(plan.check("test", false, table3));
+    // Planned for another kind of operation
+    Assert.assertFalse(plan.check("test", true, table2));
+    plan.reset();
+    Assert.assertFalse(plan.isPlanned());
+  }
+
+  @Test
+  public void testRegroup() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      CommPlan plan = new CommPlan();
+      for (int i = 0; i < NUM_ITERATIONS; i++) {
+        Table<DoubleArray> table = createTable(getAllIDs(), 1.0);
+        boolean isSuccess = RegroupCollective.regroupCombine("plan",
+            "regroup", table, new Partitioner(NUM_WORKERS), plan, dataMap,
+            workers);
+        dataMap.cleanOperationData("plan", "regroup");
+        if (!isSuccess || !plan.isPlanned() || !checkTable(table,
+            getOwnedIDs(workers.getSelfID()), NUM_WORKERS)) {
+          return false;
+        }
+        table.release();
+      }
+      // A changed layout is detected
+      Table<DoubleArray> table = createTable(new int[]{0, 1}, 1.0);
+      return !plan.check("regroup", false, table);
+    });
+  }
+
+  @Test
+  public void testStalePlanFailsOnAllWorkers() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      CommPlan plan = new CommPlan();
+      Table<DoubleArray> table = createTable(getAllIDs(), 1.0);
+      boolean isSuccess = RegroupCollective.regroupCombine("plan",
+          "regroup", table, new Partitioner(NUM_WORKERS), plan, dataMap,
+          workers);
+      dataMap.cleanOperationData("plan", "regroup");
+      table.release();
+      if (!isSuccess) {
+        return false;
+      }
+      // Only worker 0 changes its layout, the
+      // others fail without waiting for its data
+      table = workers.getSelfID() == 0
+          ? createTable(new int[]{0, 1}, 1.0)
+          : createTable(getAllIDs(), 1.0);
+      long start = System.currentTimeMillis();
+      isSuccess = RegroupCollective.regroupCombine("plan", "regroup",
+          table, new Partitioner(NUM_WORKERS), plan, dataMap, workers);
+      return !isSuccess && System.currentTimeMillis() - start < 30000L;
+    });
+  }
+
+  @Test
+  public void testPushPull() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      CommPlan pushPlan = new CommPlan();
+      CommPlan pullPlan = new CommPlan();
+      Table<DoubleArray> globalTable =
+          createTable(getOwnedIDs(workers.getSelfID()), 0.0);
+      for (int i = 1; i <= NUM_ITERATIONS; i++) {
+        Table<DoubleArray> localTable = createTable(getAllIDs(), 1.0);
+        boolean isSuccess = LocalGlobalSyncCollective.push("plan", "push",
+            localTable, globalTable, null, pushPlan, dataMap, workers);
+        dataMap.cleanOperationData("plan", "push");
+        if (!isSuccess || !checkTable(globalTable,
+            getOwnedIDs(workers.getSelfID()), i * NUM_WORKERS)) {
+          return false;
+        }
+        localTable.release();
+        localTable = createTable(getAllIDs(), 0.0);
+        isSuccess = LocalGlobalSyncCollective.pull("plan", "pull",
+            localTable, globalTable, false, pullPlan, dataMap, workers);
+        dataMap.cleanOperationData("plan", "pull");
+        if (!isSuccess
+            || !checkTable(localTable, getAllIDs(), i * NUM_WORKERS)) {
+          return false;
+        }
+        localTable.release();
+      }
+      return pushPlan.isPlanned() && pullPlan.isPlanned();
+    });
+  }
+
+  @Test
+  public void testJoin() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      CommPlan plan = new CommPlan();
+      Table<DoubleArray> staticTable =
+          createTable(getOwnedIDs(workers.getSelfID()), 0.0);
+      for (int i = 0; i < NUM_ITERATIONS; i++) {
+        Table<DoubleArray> dynamicTable = createTable(getAllIDs(), 1.0);
+        boolean isSuccess = GraphCollective.join("plan", "join",
+            dynamicTable, null, staticTable, plan, dataMap, workers);
+        dataMap.cleanOperationData("plan", "join");
+        if (!isSuccess || !checkTable(dynamicTable,
+            getOwnedIDs(workers.getSelfID()), NUM_WORKERS)) {
+          return false;
+        }
+        dynamicTable.release();
+      }
+      return plan.isPlanned();
+    });
+  }
+}
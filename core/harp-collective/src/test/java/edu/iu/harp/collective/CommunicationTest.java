@@ -0,0 +1,47 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.worker.Workers;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CommunicationTest {
+  private static final int NUM_WORKERS = 5;
+
+  private void runBarriers(String algorithm) throws Exception {
+    // Workers arrived at the first and the second barrier
+    AtomicInteger[] arrived = {new AtomicInteger(), new AtomicInteger()};
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      // The same operation twice, late workers
+      // leave the first barrier after early
+      // workers enter the second one
+      for (AtomicInteger count : arrived) {
+        Thread.sleep(20L * workers.getSelfID());
+        count.incrementAndGet();
+        if (!Communication.barrier("barrier", "sync", algorithm,
+            dataMap, workers)) {
+          return false;
+        }
+        if (count.get() != NUM_WORKERS) {
+          return false;
+        }
+      }
+      return true;
+    });
+  }
+
+  @Test
+  public void testDisseminationBarrier() throws Exception {
+    runBarriers(Communication.DISSEMINATION_BARRIER);
+  }
+
+  @Test
+  public void testTreeBarrier() throws Exception {
+    runBarriers(Communication.TREE_BARRIER);
+  }
+
+  @Test
+  public void testCentralBarrier() throws Exception {
+    runBarriers(Communication.CENTRAL_BARRIER);
+  }
+}
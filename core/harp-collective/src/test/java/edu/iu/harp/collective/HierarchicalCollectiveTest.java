@@ -0,0 +1,126 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.combiner.DoubleArrCombiner;
+import edu.iu.harp.combiner.Operation;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.DoubleArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class HierarchicalCollectiveTest {
+  // Two "nodes", both resolve to the loopback
+  private static final List<String> HOSTS = Arrays.asList("127.0.0.1",
+      "127.0.0.1", "localhost", "localhost", "localhost");
+  private static final int SIZE = 100;
+
+  private static Table<DoubleArray> createTable(int partitionID,
+      double value) {
+    Table<DoubleArray> table = new Table<>(0,
+        new DoubleArrCombiner(Operation.SUM));
+    double[] doubles = new double[SIZE];
+    Arrays.fill(doubles, value);
+    table.addPartition(new Partition<>(partitionID,
+        new DoubleArray(doubles, 0, SIZE)));
+    return table;
+  }
+
+  private static void assertPartition(Table<DoubleArray> table,
+      int partitionID, double value) {
+    DoubleArray array = table.getPartition(partitionID).get();
+    Assert.assertEquals(SIZE, array.size());
+    for (int i = 0; i < SIZE; i++) {
+      Assert.assertEquals(value, array.get()[array.start() + i], 0.0);
+    }
+  }
+
+  private void runWorkers(LocalWorkers.WorkerTask task) throws Exception {
+    LocalWorkers.run(HOSTS, (workers, dataMap) -> {
+      Assert.assertTrue(HierarchicalCollective.isApplicable(workers));
+      return task.run(workers, dataMap);
+    });
+  }
+
+  @Test
+  public void testBroadcast() throws Exception {
+    // The root is not the first worker on its node
+    runWorkers((workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      Table<DoubleArray> table = selfID == 3 ? createTable(7, 3.0)
+          : new Table<>(0,
+              new DoubleArrCombiner(Operation.SUM));
+      if (!HierarchicalCollective.broadcast("hier", "bcast", table, 3,
+          dataMap, workers)) {
+        return false;
+      }
+      assertPartition(table, 7, 3.0);
+      return true;
+    });
+  }
+
+  @Test
+  public void testScatterAllgatherBroadcast() throws Exception {
+    // The node of the root has three workers
+    runWorkers((workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      Table<DoubleArray> table = selfID == 3 ? createTable(7, 3.0)
+          : new Table<>(0,
+              new DoubleArrCombiner(Operation.SUM));
+      if (!HierarchicalCollective.broadcast("hier", "bcast", table, 3,
+          0L, dataMap, workers)) {
+        return false;
+      }
+      assertPartition(table, 7, 3.0);
+      return true;
+    });
+  }
+
+  @Test
+  public void testReduce() throws Exception {
+    runWorkers((workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      Table<DoubleArray> table = createTable(0, selfID);
+      if (!HierarchicalCollective.reduce("hier", "reduce", table, 1,
+          dataMap, workers)) {
+        return false;
+      }
+      if (selfID == 1) {
+        assertPartition(table, 0, 0 + 1 + 2 + 3 + 4);
+      }
+      return true;
+    });
+  }
+
+  @Test
+  public void testAllreduce() throws Exception {
+    runWorkers((workers, dataMap) -> {
+      Table<DoubleArray> table = createTable(0, workers.getSelfID());
+      if (!HierarchicalCollective.allreduce("hier", "allreduce", table,
+          dataMap, workers, AllreduceCollective.AUTO, 0L)) {
+        return false;
+      }
+      assertPartition(table, 0, 0 + 1 + 2 + 3 + 4);
+      return true;
+    });
+  }
+
+  @Test
+  public void testAllgather() throws Exception {
+    runWorkers((workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      Table<DoubleArray> table = createTable(selfID, selfID);
+      if (!HierarchicalCollective.allgather("hier", "allgather", table,
+          dataMap, workers)) {
+        return false;
+      }
+      Assert.assertEquals(HOSTS.size(), table.getNumPartitions());
+      for (int i = 0; i < HOSTS.size(); i++) {
+        assertPartition(table, i, i);
+      }
+      return true;
+    });
+  }
+}
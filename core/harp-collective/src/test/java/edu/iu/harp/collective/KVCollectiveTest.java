@@ -0,0 +1,134 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.keyval.KVBucket;
+import edu.iu.harp.keyval.Long2DoubleKVTable;
+import edu.iu.harp.keyval.Long2DoubleKVPartition;
+import edu.iu.harp.keyval.TypeDoubleCombiner;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.server.Server;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class KVCollectiveTest {
+  private static final int NUM_WORKERS = 3;
+  private static final int NUM_KEYS = 200;
+  private static final int NUM_BUCKETS = 8;
+
+  private Workers createWorkers(int selfID) {
+    List<String> hosts = new ArrayList<>();
+    for (int i = 0; i < NUM_WORKERS; i++) {
+      hosts.add("127.0.0.1");
+    }
+    Map<Integer, List<String>> nodes = new HashMap<>();
+    nodes.put(0, hosts);
+    LinkedList<Integer> rackIDs = new LinkedList<>();
+    rackIDs.add(0);
+    return new Workers(nodes, rackIDs, NUM_WORKERS, selfID);
+  }
+
+  // Worker w holds keys w, w + 1, ... w + NUM_KEYS - 1
+  // spread out, each with value 1
+  private static long getKey(int i) {
+    return (i - NUM_KEYS) * 1000003L;
+  }
+
+  private static int countWorkers(int i) {
+    int count = 0;
+    for (int w = 0; w < NUM_WORKERS; w++) {
+      if (i >= w && i < w + NUM_KEYS) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void run(boolean isAllreduce, boolean isDelta)
+      throws Exception {
+    List<Server> servers = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_WORKERS);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < NUM_WORKERS; i++) {
+        Workers workers = createWorkers(i);
+        DataMap dataMap = new DataMap();
+        Server server = new Server(workers.getSelfInfo().getNode(),
+            workers.getSelfInfo().getPort(), new EventQueue(), dataMap,
+            workers);
+        server.start();
+        servers.add(server);
+        final int selfID = i;
+        results.add(executor.submit(() -> {
+          Long2DoubleKVTable table =
+              new Long2DoubleKVTable(0, new TypeDoubleCombiner());
+          for (int k = selfID; k < selfID + NUM_KEYS; k++) {
+            table.addKeyVal(getKey(k), 1.0);
+          }
+          boolean isSuccess = isAllreduce
+              ? KVCollective.allreduce("kv", "sparse", table,
+                  NUM_BUCKETS, isDelta, dataMap, workers)
+              : KVCollective.regroup("kv", "sparse", table,
+                  NUM_BUCKETS, isDelta, dataMap, workers);
+          if (!isSuccess) {
+            return false;
+          }
+          int numKeys = 0;
+          for (Partition<Long2DoubleKVPartition> partition : table
+              .getPartitions()) {
+            numKeys += partition.get().size();
+          }
+          int expected = 0;
+          for (int k = 0; k < NUM_KEYS + NUM_WORKERS - 1; k++) {
+            long key = getKey(k);
+            boolean isOwned = isAllreduce || KVBucket
+                .getBucket(key, NUM_BUCKETS) % NUM_WORKERS == selfID;
+            if (isOwned) {
+              expected++;
+              if (table.getVal(key) != countWorkers(k)) {
+                return false;
+              }
+            }
+          }
+          return numKeys == expected;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get(60, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+      ConnPool.get().clean();
+      for (Server server : servers) {
+        server.stop();
+      }
+    }
+  }
+
+  @Test
+  public void testAllreduce() throws Exception {
+    run(true, false);
+  }
+
+  @Test
+  public void testAllreduceDelta() throws Exception {
+    run(true, true);
+  }
+
+  @Test
+  public void testRegroup() throws Exception {
+    run(false, true);
+  }
+}
@@ -0,0 +1,111 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.server.Server;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a task on a group of workers inside one
+ * JVM, each worker with its own server on the
+ * loopback.
+ */
+public class LocalWorkers {
+
+  public interface WorkerTask {
+    boolean run(Workers workers, DataMap dataMap) throws Exception;
+  }
+
+  /**
+   * Get the hosts of workers which all run on
+   * 127.0.0.1
+   *
+   * @param numWorkers the number of workers
+   * @return the hosts
+   */
+  public static List<String> getLoopbackHosts(int numWorkers) {
+    List<String> hosts = new ArrayList<>();
+    for (int i = 0; i < numWorkers; i++) {
+      hosts.add("127.0.0.1");
+    }
+    return hosts;
+  }
+
+  /**
+   * Create the workers in one rack, each
+   * distinct host is a node
+   *
+   * @param hosts the host of each worker
+   * @param selfID this worker's id
+   * @return the workers
+   */
+  public static Workers createWorkers(List<String> hosts, int selfID) {
+    Map<Integer, List<String>> nodes = new HashMap<>();
+    nodes.put(0, hosts);
+    LinkedList<Integer> rackIDs = new LinkedList<>();
+    rackIDs.add(0);
+    return new Workers(nodes, rackIDs, new HashSet<>(hosts).size(), selfID);
+  }
+
+  /**
+   * Run the task on the given number of workers
+   * on 127.0.0.1
+   *
+   * @param numWorkers the number of workers
+   * @param task the task run by each worker
+   * @throws Exception
+   */
+  public static void run(int numWorkers, WorkerTask task) throws Exception {
+    run(getLoopbackHosts(numWorkers), task);
+  }
+
+  /**
+   * Run the task on one worker per host and
+   * assert that every worker succeeds
+   *
+   * @param hosts the host of each worker
+   * @param task the task run by each worker
+   * @throws Exception
+   */
+  public static void run(List<String> hosts, WorkerTask task)
+      throws Exception {
+    List<Server> servers = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(hosts.size());
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < hosts.size(); i++) {
+        Workers workers = createWorkers(hosts, i);
+        DataMap dataMap = new DataMap();
+        Server server = new Server(workers.getSelfInfo().getNode(),
+            workers.getSelfInfo().getPort(), new EventQueue(), dataMap,
+            workers);
+        server.start();
+        servers.add(server);
+        results.add(executor.submit(() -> task.run(workers, dataMap)));
+      }
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get(60, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+      // Close the connections before stopping the servers
+      ConnPool.get().clean();
+      for (Server server : servers) {
+        server.stop();
+      }
+    }
+  }
+}
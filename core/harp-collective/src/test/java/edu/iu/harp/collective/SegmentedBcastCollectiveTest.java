@@ -0,0 +1,147 @@
+package edu.iu.harp.collective;
+
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.partition.PartitionCombiner;
+import edu.iu.harp.partition.PartitionStatus;
+import edu.iu.harp.partition.Table;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Simple;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SegmentedBcastCollectiveTest {
+  private static final int SEGMENT_SIZE = 512;
+
+  private Table<Simple> createTable(int numDoubles) {
+    Table<Simple> table = new Table<>(0, new PartitionCombiner<Simple>() {
+      @Override
+      public PartitionStatus combine(Simple curPar, Simple newPar) {
+        return PartitionStatus.COMBINE_FAILED;
+      }
+    });
+    double[] doubles = new double[numDoubles];
+    for (int i = 0; i < doubles.length; i++) {
+      doubles[i] = i * 0.5;
+    }
+    // An array view which does not start at 0
+    table.addPartition(new Partition<>(0,
+        new DoubleArray(doubles, 1, doubles.length - 1)));
+    int[] ints = new int[7];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = -i;
+    }
+    table.addPartition(new Partition<>(1, new IntArray(ints, 0, 7)));
+    byte[] bytes = new byte[300];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    table.addPartition(new Partition<>(2, new ByteArray(bytes, 0, 300)));
+    return table;
+  }
+
+  private void checkTable(Table<Simple> table, int numDoubles) {
+    Assert.assertEquals(3, table.getNumPartitions());
+    DoubleArray doubles = (DoubleArray) table.getPartition(0).get();
+    Assert.assertEquals(numDoubles - 1, doubles.size());
+    for (int i = 0; i < doubles.size(); i++) {
+      Assert.assertEquals((i + 1) * 0.5,
+          doubles.get()[doubles.start() + i], 0.0);
+    }
+    IntArray ints = (IntArray) table.getPartition(1).get();
+    Assert.assertEquals(7, ints.size());
+    for (int i = 0; i < ints.size(); i++) {
+      Assert.assertEquals(-i, ints.get()[ints.start() + i]);
+    }
+    ByteArray bytes = (ByteArray) table.getPartition(2).get();
+    Assert.assertEquals(300, bytes.size());
+    for (int i = 0; i < bytes.size(); i++) {
+      Assert.assertEquals((byte) i, bytes.get()[bytes.start() + i]);
+    }
+  }
+
+  private boolean broadcast(String algorithm, boolean useMSTBcast,
+      int numDoubles, int bcastWorkerID, Workers workers,
+      DataMap dataMap) {
+    Table<Simple> table = null;
+    if (workers.getSelfID() == bcastWorkerID) {
+      table = createTable(numDoubles);
+    } else {
+      table = createTable(1);
+      table.release();
+      table.removePartition(0);
+      table.removePartition(1);
+      table.removePartition(2);
+    }
+    boolean isSuccess = BcastCollective.broadcast("segmented", algorithm,
+        table, bcastWorkerID, useMSTBcast, algorithm, SEGMENT_SIZE,
+        SEGMENT_SIZE * 8L, dataMap, workers);
+    if (!isSuccess) {
+      return false;
+    }
+    checkTable(table, numDoubles);
+    return true;
+  }
+
+  private void runWorkers(String algorithm, boolean useMSTBcast,
+      int numDoubles, int numWorkers, int bcastWorkerID) throws Exception {
+    LocalWorkers.run(numWorkers, (workers, dataMap) -> broadcast(algorithm,
+        useMSTBcast, numDoubles, bcastWorkerID, workers, dataMap));
+  }
+
+  @Test
+  public void testSplit() {
+    Table<Simple> table = createTable(1001);
+    List<SegmentedBcastCollective.Segment> segments =
+        SegmentedBcastCollective.split(table, SEGMENT_SIZE,
+            Integer.MAX_VALUE);
+    long numBytes = SegmentedBcastCollective.getNumBytes(table);
+    Assert.assertTrue(segments.size() >= numBytes / SEGMENT_SIZE);
+    int numObjects = 0;
+    for (SegmentedBcastCollective.Segment segment : segments) {
+      Assert.assertTrue(segment.getNumObjects() > 0);
+      // A slice may only end a segment after it is full
+      Assert.assertTrue(segment.getNumBytes() < SEGMENT_SIZE + 320);
+      numObjects += segment.getNumObjects();
+    }
+    Assert.assertTrue(numObjects > segments.size());
+    // Scatter into a fixed number of parts
+    segments = SegmentedBcastCollective.split(table,
+        (numBytes + 3) / 4, 4);
+    Assert.assertTrue(segments.size() <= 4);
+  }
+
+  @Test
+  public void testPipelinedChain() throws Exception {
+    runWorkers(BcastCollective.PIPELINE, false, 1001, 3, 0);
+  }
+
+  @Test
+  public void testPipelinedMST() throws Exception {
+    runWorkers(BcastCollective.PIPELINE, true, 1001, 4, 1);
+  }
+
+  @Test
+  public void testScatterAllgather() throws Exception {
+    runWorkers(BcastCollective.SCATTER_ALLGATHER, false, 1001, 4, 2);
+  }
+
+  @Test
+  public void testScatterAllgatherSmallTable() throws Exception {
+    // Fewer objects than workers leaves empty parts
+    runWorkers(BcastCollective.SCATTER_ALLGATHER, false, 2, 5, 0);
+  }
+
+  @Test
+  public void testAuto() throws Exception {
+    // Whole, pipelined and scatter-allgather
+    runWorkers(BcastCollective.AUTO, true, 10, 3, 0);
+    runWorkers(BcastCollective.AUTO, true, 400, 3, 0);
+    runWorkers(BcastCollective.AUTO, true, 1001, 3, 0);
+  }
+}
@@ -1,5 +1,6 @@
 package edu.iu.harp.combiner;
 
+import edu.iu.harp.partition.PartitionStatus;
 import edu.iu.harp.resource.DoubleArray;
 import org.junit.Assert;
 import org.junit.Before;
@@ -90,6 +91,98 @@ public class DoubleArrCombinerTest {
     }
   }
 
+  @Test
+  public void testCombineARGMAX() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.ARGMAX);
+
+    // (value, index) pairs
+    DoubleArray a1 = new DoubleArray(new double[]{1, 0, 5, 1, 3, 7}, 0, 6);
+    DoubleArray a2 = new DoubleArray(new double[]{2, 4, 4, 2, 3, 6}, 0, 6);
+
+    Assert.assertEquals(PartitionStatus.COMBINED, combiner.combine(a1, a2));
+    Assert.assertArrayEquals(new double[]{2, 4, 5, 1, 3, 6}, a1.get(), 0.0);
+  }
+
+  @Test
+  public void testCombineARGMIN() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.ARGMIN);
+
+    DoubleArray a1 = new DoubleArray(new double[]{1, 0, 5, 1, 3, 7}, 0, 6);
+    DoubleArray a2 = new DoubleArray(new double[]{2, 4, 4, 2, 3, 6}, 0, 6);
+
+    Assert.assertEquals(PartitionStatus.COMBINED, combiner.combine(a1, a2));
+    Assert.assertArrayEquals(new double[]{1, 0, 4, 2, 3, 6}, a1.get(), 0.0);
+  }
+
+  @Test
+  public void testCombinePairsOddSize() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.ARGMAX);
+
+    DoubleArray a1 = new DoubleArray(new double[3], 0, 3);
+    DoubleArray a2 = new DoubleArray(new double[3], 0, 3);
+
+    Assert.assertEquals(PartitionStatus.COMBINE_FAILED,
+        combiner.combine(a1, a2));
+  }
+
+  @Test
+  public void testCombineKAHAN_SUM() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.KAHAN_SUM);
+
+    // 1.0 and many tiny values, lost in a plain sum
+    int count = 10000;
+    double tiny = 1e-17;
+    double[] sums1 = new double[2];
+    double[] sums2 = new double[2];
+    DoubleArrCombiner.kahanAdd(sums1, 0, 1.0);
+    for (int i = 0; i < count; i++) {
+      DoubleArrCombiner.kahanAdd(sums1, 0, tiny);
+      DoubleArrCombiner.kahanAdd(sums2, 0, tiny);
+    }
+    Assert.assertEquals(PartitionStatus.COMBINED, combiner.combine(
+        new DoubleArray(sums1, 0, 2), new DoubleArray(sums2, 0, 2)));
+    Assert.assertEquals(1.0 + 2 * count * tiny,
+        DoubleArrCombiner.kahanGet(sums1, 0), 1e-15);
+  }
+
+  @Test
+  public void testCombineWithStart() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.SUM);
+
+    int length = 131;
+    DoubleArray a1 = new DoubleArray(createArr(length + 3, 1), 3, length);
+    DoubleArray a2 = new DoubleArray(createArr(length + 1, 2), 1, length);
+
+    Assert.assertEquals(PartitionStatus.COMBINED, combiner.combine(a1, a2));
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(1, a1.get()[i], 0.0);
+    }
+    for (int i = 3; i < length + 3; i++) {
+      Assert.assertEquals(3, a1.get()[i], 0.0);
+    }
+    // Out of the array bounds
+    Assert.assertEquals(PartitionStatus.COMBINE_FAILED, combiner.combine(
+        new DoubleArray(new double[length], 1, length), a2));
+  }
+
+  @Test
+  public void testCombineParallel() {
+    DoubleArrCombiner combiner = new DoubleArrCombiner(Operation.MAX);
+
+    int length = ArrCombiner.PARALLEL_THRESHOLD + 5;
+    double[] arr1 = new double[length];
+    double[] arr2 = new double[length];
+    for (int i = 0; i < length; i++) {
+      arr1[i] = i % 3;
+      arr2[i] = i % 5;
+    }
+    combiner.combine(new DoubleArray(arr1, 0, length),
+        new DoubleArray(arr2, 0, length));
+    for (int i = 0; i < length; i++) {
+      Assert.assertEquals(Math.max(i % 3, i % 5), arr1[i], 0.0);
+    }
+  }
+
   private double[] createArr(int length, double val) {
     double[] b = new double[length];
     for (int i = 0; i < length; i++) {
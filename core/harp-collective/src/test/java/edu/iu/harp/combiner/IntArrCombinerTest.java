@@ -90,6 +90,36 @@ public class IntArrCombinerTest {
     }
   }
 
+  @Test
+  public void testCombineARGMAX() {
+    IntArrCombiner combiner = new IntArrCombiner(Operation.ARGMAX);
+
+    // (value, index) pairs
+    IntArray a1 = new IntArray(new int[]{1, 0, 5, 1, 3, 7}, 0, 6);
+    IntArray a2 = new IntArray(new int[]{2, 4, 4, 2, 3, 6}, 0, 6);
+
+    combiner.combine(a1, a2);
+    Assert.assertArrayEquals(new int[]{2, 4, 5, 1, 3, 6}, a1.get());
+  }
+
+  @Test
+  public void testCombineParallel() {
+    IntArrCombiner combiner = new IntArrCombiner(Operation.SUM);
+
+    int length = ArrCombiner.PARALLEL_THRESHOLD * 2 + 3;
+    int[] arr1 = new int[length];
+    int[] arr2 = new int[length];
+    for (int i = 0; i < length; i++) {
+      arr1[i] = i;
+      arr2[i] = 1;
+    }
+    combiner.combine(new IntArray(arr1, 0, length),
+        new IntArray(arr2, 0, length));
+    for (int i = 0; i < length; i++) {
+      Assert.assertEquals(i + 1, arr1[i]);
+    }
+  }
+
   private int[] createArr(int length, int val) {
     int[] b = new int[length];
     for (int i = 0; i < length; i++) {
@@ -0,0 +1,181 @@
+package edu.iu.harp.io;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class CompressionTest {
+  private static final Codec[] CODECS = {new LZCodec(), new DeltaCodec()};
+
+  @After
+  public void tearDown() {
+    Compression.configure(Compression.NONE,
+        Compression.DEFAULT_THRESHOLD, null);
+  }
+
+  private static int checkRoundTrip(Codec codec, byte[] raw) {
+    byte[] compressed =
+        new byte[3 + codec.getMaxCompressedLength(raw.length)];
+    int size = codec.compress(raw, 0, raw.length, compressed, 3);
+    Assert.assertTrue(size <= codec.getMaxCompressedLength(raw.length));
+    byte[] decompressed = new byte[raw.length + 2];
+    Assert.assertEquals(raw.length, codec.decompress(compressed, 3, size,
+        decompressed, 2, raw.length));
+    Assert.assertArrayEquals(raw,
+        Arrays.copyOfRange(decompressed, 2, raw.length + 2));
+    return size;
+  }
+
+  private static byte[] sortedInts(int n) {
+    byte[] bytes = new byte[5 + n * 4];
+    bytes[0] = DataType.INT_ARRAY;
+    Random random = new Random(1);
+    int v = 0;
+    for (int i = 0; i < n; i++) {
+      v += random.nextInt(50);
+      int pos = 5 + i * 4;
+      bytes[pos] = (byte) (v >>> 24);
+      bytes[pos + 1] = (byte) (v >>> 16);
+      bytes[pos + 2] = (byte) (v >>> 8);
+      bytes[pos + 3] = (byte) v;
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Random random = new Random(7);
+    byte[] randomBytes = new byte[100000];
+    random.nextBytes(randomBytes);
+    byte[] text = new byte[100000];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) ("harp collective ".charAt(i % 16) + i / 5000);
+    }
+    for (Codec codec : CODECS) {
+      for (int len : new int[]{0, 1, 11, 12, 13, 100}) {
+        checkRoundTrip(codec, Arrays.copyOf(randomBytes, len));
+        checkRoundTrip(codec, Arrays.copyOf(text, len));
+      }
+      checkRoundTrip(codec, randomBytes);
+      checkRoundTrip(codec, text);
+      checkRoundTrip(codec, new byte[70000]);
+      checkRoundTrip(codec, sortedInts(30000));
+    }
+  }
+
+  @Test
+  public void testRatio() {
+    byte[] text = new byte[100000];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) ("harp collective ".charAt(i % 16));
+    }
+    Assert.assertTrue(
+        checkRoundTrip(new LZCodec(), text) * 20 < text.length);
+    byte[] ints = sortedInts(30000);
+    Assert.assertTrue(
+        checkRoundTrip(new DeltaCodec(), ints) * 3 < ints.length);
+  }
+
+  @Test
+  public void testCorrupted() {
+    byte[] text = new byte[10000];
+    for (int i = 0; i < text.length; i++) {
+      text[i] = (byte) (i % 7);
+    }
+    Random random = new Random(3);
+    for (Codec codec : CODECS) {
+      byte[] compressed =
+          new byte[codec.getMaxCompressedLength(text.length)];
+      int size = codec.compress(text, 0, text.length, compressed, 0);
+      byte[] out = new byte[text.length];
+      // Truncated
+      Assert.assertTrue(text.length != codec.decompress(compressed, 0,
+          size - 1, out, 0, text.length));
+      // Flipped bytes must not throw
+      for (int i = 0; i < 100; i++) {
+        byte[] copy = Arrays.copyOf(compressed, size);
+        copy[random.nextInt(size)] ^= (byte) (1 + random.nextInt(255));
+        codec.decompress(copy, 0, size, out, 0, text.length);
+      }
+    }
+  }
+
+  @Test
+  public void testConfigure() {
+    Assert.assertFalse(Compression.configure("zip", 0L, null));
+    Assert.assertFalse(Compression.configure(Compression.NONE, 0L,
+        "allgather"));
+    Assert.assertTrue(Compression.configure(LZCodec.NAME, 100L,
+        "regroup=delta, regroup.meta=none"));
+    Compression compression = Compression.get();
+    Assert.assertNull(compression.select("allreduce", 99L));
+    Assert.assertEquals(LZCodec.ID,
+        compression.select("allreduce", 100L).getID());
+    Assert.assertEquals(DeltaCodec.ID,
+        compression.select("regroup-0", 100L).getID());
+    Assert.assertNull(compression.select("regroup.meta", 100L));
+    Assert.assertEquals(LZCodec.ID,
+        compression.select(null, 100L).getID());
+  }
+
+  @Test
+  public void testData() {
+    Compression.configure(Compression.NONE, 1024L, "zip=" + DeltaCodec.NAME);
+    List<Transferable> partitions = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      int[] ints = new int[2000];
+      for (int j = 0; j < ints.length; j++) {
+        ints[j] = i * 10 + j;
+      }
+      partitions.add(new Partition<>(i, new IntArray(ints, 0, ints.length)));
+    }
+    long bodySize = DataUtil.getNumTransListBytes(partitions);
+    Data data = new Data(DataType.PARTITION_LIST, "context", 0, partitions,
+        bodySize, "zip", 5);
+    Assert.assertTrue(data.isBodyCompressible());
+    data.encodeBody();
+    data.encodeHead();
+    ByteArray body = data.getBodyArray();
+    Assert.assertTrue(body.size() * 3 < bodySize);
+    // Copy as received
+    ByteArray headCopy = ByteArray.create(data.getHeadArray().size(), false);
+    System.arraycopy(data.getHeadArray().get(), data.getHeadArray().start(),
+        headCopy.get(), headCopy.start(), headCopy.size());
+    Data received = new Data(headCopy);
+    Assert.assertEquals(DataStatus.ENCODED_ARRAY_DECODED,
+        received.decodeHeadArray());
+    Assert.assertEquals(DataType.PARTITION_LIST, received.getBodyType());
+    Assert.assertEquals(5, received.getPartitionID());
+    Assert.assertEquals(body.size(), received.getBodySize());
+    ByteArray bodyCopy = received.getBodyArray();
+    System.arraycopy(body.get(), body.start(), bodyCopy.get(),
+        bodyCopy.start(), body.size());
+    data.release();
+    Assert.assertEquals(DataStatus.ENCODED_ARRAY_DECODED,
+        received.decodeBodyArray());
+    Assert.assertEquals(bodySize, received.getBodySize());
+    Assert.assertEquals(4, received.getBody().size());
+    for (Transferable trans : received.getBody()) {
+      Partition<?> partition = (Partition<?>) trans;
+      IntArray array = (IntArray) partition.get();
+      for (int j = 0; j < array.size(); j++) {
+        Assert.assertEquals(partition.id() * 10 + j,
+            array.get()[array.start() + j]);
+      }
+    }
+    received.release();
+    // Below the threshold or encoded head first
+    data = new Data(DataType.PARTITION_LIST, "context", 0,
+        partitions.subList(0, 0), 1L, "zip");
+    Assert.assertFalse(data.isBodyCompressible());
+  }
+}
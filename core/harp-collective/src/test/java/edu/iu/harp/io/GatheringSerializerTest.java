@@ -0,0 +1,55 @@
+package edu.iu.harp.io;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.DirectFloatArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GatheringSerializerTest {
+  @Test
+  public void testSameAsSerializer() throws Exception {
+    List<Transferable> partitions = new ArrayList<>();
+    List<DirectFloatArray> directArrays = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      DirectFloatArray array = DirectFloatArray.create(1000, false);
+      for (int j = 0; j < 1000; j++) {
+        array.set(j, i + j);
+      }
+      directArrays.add(array);
+      partitions.add(new Partition<>(i, array));
+      partitions.add(new Partition<>(i + 4,
+          new IntArray(new int[]{i, i + 1}, 0, 2)));
+    }
+    Assert.assertTrue(DataUtil.hasDirectArray(partitions));
+    long size = DataUtil.getNumTransListBytes(partitions);
+    ByteArray expected = DataUtil.encodeTransList(partitions);
+    GatheringSerializer serializer = new GatheringSerializer();
+    DataUtil.encodeTransList(partitions, size, serializer);
+    serializer.flush();
+    Assert.assertEquals(size, serializer.getNumBytes());
+    ByteBuffer[] buffers = serializer.getBuffers();
+    ByteBuffer actual = ByteBuffer.allocate((int) size);
+    int numDirect = 0;
+    for (ByteBuffer buffer : buffers) {
+      if (buffer.isDirect()) {
+        numDirect++;
+      }
+      actual.put(buffer);
+    }
+    // The direct buffers are not copied
+    Assert.assertEquals(4, numDirect);
+    for (int i = 0; i < size; i++) {
+      Assert.assertEquals(expected.get()[i], actual.get(i));
+    }
+    serializer.release();
+    expected.release();
+    DataUtil.releaseTransList(partitions);
+  }
+}
@@ -0,0 +1,109 @@
+package edu.iu.harp.io;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.ByteArray;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.Transferable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SegmentedSerializerTest {
+  private ByteArray[] createSegments(long size, int segmentSize) {
+    int numSegments = (int) ((size - 1) / segmentSize + 1);
+    ByteArray[] segments = new ByteArray[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      int len = (int) Math.min(segmentSize, size - (long) i * segmentSize);
+      segments[i] = new ByteArray(new byte[len], 0, len);
+    }
+    return segments;
+  }
+
+  @Test
+  public void testPrimitives() throws Exception {
+    // Odd segment size so that values cross the segment boundaries
+    ByteArray[] segments = createSegments(100 * 24, 7);
+    SegmentedSerializer serializer = new SegmentedSerializer(segments);
+    for (int i = 0; i < 100; i++) {
+      serializer.writeInt(i);
+      serializer.writeLong(-i * 1000000007L);
+      serializer.writeDouble(i * 0.5);
+      serializer.writeShort(i);
+      serializer.writeShort(-i);
+    }
+    serializer.flush();
+    Assert.assertEquals(100 * 24, serializer.getNumBytes());
+    SegmentedDeserializer deserializer =
+        new SegmentedDeserializer(segments, 100 * 24);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(i, deserializer.readInt());
+      Assert.assertEquals(-i * 1000000007L, deserializer.readLong());
+      Assert.assertEquals(i * 0.5, deserializer.readDouble(), 0.0);
+      Assert.assertEquals(i, deserializer.readShort());
+      Assert.assertEquals(-i, deserializer.readShort());
+    }
+    Assert.assertEquals(100 * 24, deserializer.getPos());
+    try {
+      deserializer.readByte();
+      Assert.fail();
+    } catch (Exception e) {
+      // Expected, no bytes beyond the length
+    }
+  }
+
+  @Test
+  public void testOverflow() {
+    ByteArray[] segments = createSegments(6, 4);
+    SegmentedSerializer serializer = new SegmentedSerializer(segments);
+    try {
+      serializer.writeInt(1);
+      serializer.writeInt(2);
+      Assert.fail();
+    } catch (Exception e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testPartitionList() throws Exception {
+    List<Transferable> partitions = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      double[] doubles = new double[1000 + i];
+      for (int j = 0; j < doubles.length; j++) {
+        doubles[j] = i * j;
+      }
+      partitions.add(new Partition<>(i,
+          new DoubleArray(doubles, 0, doubles.length)));
+    }
+    long size = DataUtil.getNumTransListBytes(partitions);
+    ByteArray[] segments = createSegments(size, 1023);
+    Assert.assertTrue(segments.length > 1);
+    DataUtil.encodeTransList(partitions, size,
+        new SegmentedSerializer(segments));
+    List<Transferable> objs = DataUtil.decodeTransList(
+        new SegmentedDeserializer(segments, size), true);
+    Assert.assertNotNull(objs);
+    Assert.assertEquals(5, objs.size());
+    for (Transferable obj : objs) {
+      Partition<?> partition = (Partition<?>) obj;
+      DoubleArray array = (DoubleArray) partition.get();
+      Assert.assertEquals(1000 + partition.id(), array.size());
+      for (int j = 0; j < array.size(); j++) {
+        Assert.assertEquals(partition.id() * j,
+            array.get()[array.start() + j], 0.0);
+      }
+    }
+    DataUtil.releaseTransList(objs);
+  }
+
+  @Test
+  public void testCreateSegments() {
+    Assert.assertNull(DataUtil.createSegments(0L));
+    ByteArray[] segments = DataUtil.createSegments(100L);
+    Assert.assertEquals(1, segments.length);
+    Assert.assertEquals(100, segments[0].size());
+    DataUtil.releaseSegments(segments);
+  }
+}
@@ -0,0 +1,155 @@
+package edu.iu.harp.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ShmRingTest {
+  @Test
+  public void testTransferWithWrapAround() throws Exception {
+    ShmRing producer = ShmRing.create(64);
+    ShmRing consumer = ShmRing.open(producer.getPath());
+    Assert.assertFalse(new File(producer.getPath()).exists());
+    Assert.assertEquals(64, consumer.getCapacity());
+    byte[] bytes = new byte[10000];
+    new Random(7).nextBytes(bytes);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<byte[]> received = executor.submit(() -> {
+        InputStream in = consumer.getInputStream();
+        byte[] result = new byte[bytes.length];
+        IOUtil.receiveBytes(in, result, 0, result.length);
+        // Closed by the producer
+        Assert.assertEquals(-1, in.read());
+        in.close();
+        return result;
+      });
+      ShmRing.ShmOutputStream out = producer.getOutputStream();
+      // Writes of different sizes cross the end of
+      // the ring
+      int pos = 0;
+      int len = 1;
+      while (pos < bytes.length / 2) {
+        int n = Math.min(len, bytes.length / 2 - pos);
+        out.write(bytes, pos, n);
+        pos += n;
+        len = len * 3 % 97 + 1;
+      }
+      out.write(ByteBuffer.wrap(bytes, pos, 1000));
+      pos += 1000;
+      ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - pos);
+      direct.put(bytes, pos, bytes.length - pos);
+      direct.flip();
+      out.write(new ByteBuffer[] {direct});
+      out.close();
+      Assert.assertArrayEquals(bytes, received.get(30, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConsumerClosed() throws Exception {
+    ShmRing producer = ShmRing.create(16);
+    ShmRing consumer = ShmRing.open(producer.getPath());
+    consumer.close();
+    OutputStream out = producer.getOutputStream();
+    out.write(new byte[16]);
+    try {
+      out.write(new byte[1]);
+      Assert.fail();
+    } catch (java.io.IOException e) {
+      // Expected
+    }
+    out.close();
+  }
+
+  @Test
+  public void testOpenMissingPath() throws Exception {
+    ShmRing producer = ShmRing.create(16);
+    File file = new File(producer.getPath());
+    // The name is removed without a consumer
+    producer.close();
+    Assert.assertFalse(file.exists());
+    try {
+      ShmRing.open(file.getPath());
+      Assert.fail();
+    } catch (java.io.IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testOpenForeignPath() throws Exception {
+    // Outside the ring directory
+    File foreign = File.createTempFile("harp-", ".ring",
+        new File(System.getProperty("java.io.tmpdir")));
+    // In the ring directory but not a ring
+    ShmRing producer = ShmRing.create(16);
+    File shortFile = new File(new File(producer.getPath())
+        .getParentFile(), "harp-short.ring");
+    producer.close();
+    try {
+      java.nio.file.Files.write(shortFile.toPath(), new byte[8]);
+      for (File file : new File[]{foreign, shortFile}) {
+        try {
+          ShmRing.open(file.getPath());
+          Assert.fail();
+        } catch (java.io.IOException e) {
+          // Expected
+        }
+        Assert.assertTrue(file.exists());
+      }
+    } finally {
+      foreign.delete();
+      shortFile.delete();
+    }
+  }
+
+  @Test
+  public void testLocalHost() {
+    Assert.assertTrue(ShmRing.isLocalHost("127.0.0.1"));
+    Assert.assertTrue(ShmRing.isLocalHost("localhost"));
+  }
+
+  @Test
+  public void testRejectedRingStaysOnSocket() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (ServerSocket serverSocket = new ServerSocket(0)) {
+      // A server which cannot open the ring
+      Future<Integer> received = executor.submit(() -> {
+        try (Socket socket = serverSocket.accept()) {
+          DataInputStream in =
+              new DataInputStream(socket.getInputStream());
+          Assert.assertEquals(Constant.SHM_CONNECT, in.readByte());
+          in.readFully(new byte[in.readInt()]);
+          socket.getOutputStream().write(Constant.SHM_REJECTED);
+          return in.read();
+        }
+      });
+      Connection conn = new Connection("127.0.0.1",
+          serverSocket.getLocalPort(), 0, true);
+      try {
+        conn.getOutputStream().write(42);
+        conn.getOutputStream().flush();
+        Assert.assertEquals(42, (int) received.get(10, TimeUnit.SECONDS));
+      } finally {
+        conn.close();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package edu.iu.harp.io;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+public class StreamSerializerTest {
+  @Test
+  public void testPrimitives() throws Exception {
+    // Small buffers so that values cross the buffer boundaries
+    ChunkPipeline pipeline = new ChunkPipeline(2, 7);
+    Assert.assertTrue(pipeline.isValid());
+    Future<Long> writer = ChunkPipeline.submit(pipeline, () -> {
+      StreamSerializer serializer = new StreamSerializer(pipeline);
+      for (int i = 0; i < 100; i++) {
+        serializer.writeInt(i);
+        serializer.writeLong(-i * 1000000007L);
+        serializer.writeDouble(i * 0.5);
+        serializer.writeUTF("harp" + i);
+      }
+      serializer.flush();
+      pipeline.end();
+      return serializer.getNumBytes();
+    });
+    StreamDeserializer deserializer =
+        new StreamDeserializer(pipeline, Integer.MAX_VALUE);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(i, deserializer.readInt());
+      Assert.assertEquals(-i * 1000000007L, deserializer.readLong());
+      Assert.assertEquals(i * 0.5, deserializer.readDouble(), 0.0);
+      Assert.assertEquals("harp" + i, deserializer.readUTF());
+    }
+    Assert.assertEquals((long) deserializer.getPos(), (long) writer.get());
+    pipeline.release();
+  }
+
+  @Test
+  public void testPartitionList() throws Exception {
+    List<Transferable> partitions = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      double[] doubles = new double[1000 + i];
+      for (int j = 0; j < doubles.length; j++) {
+        doubles[j] = i + j;
+      }
+      partitions.add(new Partition<>(i,
+          new DoubleArray(doubles, 0, doubles.length)));
+    }
+    partitions.add(new Partition<>(10, new IntArray(new int[]{1, 2}, 0, 2)));
+    long size = DataUtil.getNumTransListBytes(partitions);
+    ChunkPipeline pipeline = new ChunkPipeline(3, 1000);
+    Future<Long> writer = ChunkPipeline.submit(pipeline, () -> {
+      StreamSerializer serializer = new StreamSerializer(pipeline);
+      DataUtil.encodeTransList(partitions, size, serializer);
+      serializer.flush();
+      pipeline.end();
+      return serializer.getNumBytes();
+    });
+    List<Transferable> objs = DataUtil
+        .decodeTransList(new StreamDeserializer(pipeline, size), true);
+    Assert.assertEquals((long) size, (long) writer.get());
+    pipeline.release();
+    Assert.assertNotNull(objs);
+    Assert.assertEquals(11, objs.size());
+    for (Transferable obj : objs) {
+      Partition<?> partition = (Partition<?>) obj;
+      if (partition.id() < 10) {
+        DoubleArray array = (DoubleArray) partition.get();
+        Assert.assertEquals(1000 + partition.id(), array.size());
+        for (int j = 0; j < array.size(); j++) {
+          Assert.assertEquals(partition.id() + j,
+              array.get()[array.start() + j], 0.0);
+        }
+      } else {
+        IntArray array = (IntArray) partition.get();
+        Assert.assertEquals(2, array.size());
+        Assert.assertEquals(2, array.get()[array.start() + 1]);
+      }
+    }
+    DataUtil.releaseTransList(objs);
+  }
+
+  @Test
+  public void testFailedPipeline() {
+    ChunkPipeline pipeline = new ChunkPipeline(1, 8);
+    pipeline.fail();
+    StreamDeserializer deserializer = new StreamDeserializer(pipeline, 8);
+    try {
+      deserializer.readLong();
+      Assert.fail();
+    } catch (Exception e) {
+      // Expected
+    }
+    pipeline.release();
+  }
+}
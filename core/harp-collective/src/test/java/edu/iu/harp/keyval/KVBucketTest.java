@@ -0,0 +1,107 @@
+package edu.iu.harp.keyval;
+
+import edu.iu.harp.resource.ByteArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KVBucketTest {
+  private static final long[] KEYS =
+      {Long.MIN_VALUE, -300L, -1L, 0L, 1L, 127L, 128L, 1L << 40,
+          Long.MAX_VALUE};
+
+  private KVBucket createBucket(long[] keys, long val) {
+    KVBucket bucket = new KVBucket(3, 1);
+    // Add in reverse to test sorting
+    for (int i = keys.length - 1; i >= 0; i--) {
+      bucket.add(keys[i], val + i);
+    }
+    bucket.sort();
+    return bucket;
+  }
+
+  private void checkEncodeDecode(boolean isDelta, int numValBytes) {
+    KVBucket bucket = createBucket(KEYS, -2L);
+    ByteArray array = bucket.encode(numValBytes, isDelta);
+    Assert.assertNotNull(array);
+    Assert.assertTrue(array.size()
+        >= bucket.getNumEncodeBytes(numValBytes, isDelta));
+    KVBucket decoded = KVBucket.decode(3, array);
+    array.release();
+    Assert.assertEquals(3, decoded.getBucketID());
+    Assert.assertEquals(KEYS.length, decoded.size());
+    for (int i = 0; i < KEYS.length; i++) {
+      Assert.assertEquals(KEYS[i], decoded.getKey(i));
+      Assert.assertEquals(-2L + i, decoded.getVal(i));
+    }
+  }
+
+  @Test
+  public void testEncodeDecode() {
+    checkEncodeDecode(false, 8);
+    checkEncodeDecode(false, 4);
+  }
+
+  @Test
+  public void testEncodeDecodeDelta() {
+    checkEncodeDecode(true, 8);
+    checkEncodeDecode(true, 4);
+  }
+
+  @Test
+  public void testDeltaIsSmaller() {
+    long[] keys = new long[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 1000000L + i * 3;
+    }
+    KVBucket bucket = createBucket(keys, 0L);
+    Assert.assertTrue(bucket.getNumEncodeBytes(4, true) * 2
+        < bucket.getNumEncodeBytes(4, false));
+  }
+
+  @Test
+  public void testMergeAll() {
+    KVBucket[] buckets = {createBucket(new long[]{1L, 3L, 5L}, 0L),
+        createBucket(new long[]{2L, 3L}, 10L),
+        createBucket(new long[]{-4L, 5L}, 100L)};
+    KVBucket merged =
+        KVBucket.mergeAll(buckets, buckets.length, Long::sum);
+    long[] keys = {-4L, 1L, 2L, 3L, 5L};
+    long[] vals = {100L, 0L, 10L, 1L + 11L, 2L + 101L};
+    Assert.assertEquals(keys.length, merged.size());
+    for (int i = 0; i < keys.length; i++) {
+      Assert.assertEquals(keys[i], merged.getKey(i));
+      Assert.assertEquals(vals[i], merged.getVal(i));
+    }
+  }
+
+  @Test
+  public void testGetBucket() {
+    for (long key : KEYS) {
+      int bucket = KVBucket.getBucket(key, 7);
+      Assert.assertTrue(bucket >= 0 && bucket < 7);
+    }
+  }
+
+  @Test
+  public void testTableBuckets() {
+    Long2DoubleKVTable table =
+        new Long2DoubleKVTable(0, new TypeDoubleCombiner(), 4);
+    for (long key : KEYS) {
+      table.addKeyVal(key, 0.5);
+    }
+    Assert.assertTrue(table.getNumPartitions() <= 4);
+    KVBucket[] buckets = table.getBuckets(4);
+    Long2DoubleKVTable copy =
+        new Long2DoubleKVTable(1, new TypeDoubleCombiner());
+    int size = 0;
+    for (KVBucket bucket : buckets) {
+      size += bucket.size();
+      copy.addBucket(bucket);
+      copy.addBucket(bucket);
+    }
+    Assert.assertEquals(KEYS.length, size);
+    for (long key : KEYS) {
+      Assert.assertEquals(1.0, copy.getVal(key), 0.0);
+    }
+  }
+}
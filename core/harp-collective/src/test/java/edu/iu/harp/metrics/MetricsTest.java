@@ -0,0 +1,143 @@
+package edu.iu.harp.metrics;
+
+import edu.iu.harp.client.DataSender;
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.server.Server;
+import edu.iu.harp.worker.Workers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class MetricsTest {
+  @After
+  public void tearDown() {
+    Metrics.setEnabled(false);
+    Metrics.get().reset();
+  }
+
+  @Test
+  public void testRecord() {
+    Metrics metrics = Metrics.get();
+    metrics.reset();
+    metrics.recordSent("ctx", "op", 1, 100L);
+    metrics.recordSent("ctx", "op", 2, 50L);
+    metrics.recordReceived("ctx", "op", 1, 70L);
+    metrics.recordWait("ctx", "op", 1000L, false);
+    metrics.recordWait("ctx", "op", 3000L, true);
+    metrics.recordQueueDepth("ctx", "op", 3);
+    metrics.recordQueueDepth("ctx", "op", 2);
+    metrics.recordPool("BytesPool", true);
+    metrics.recordPool("BytesPool", false);
+    metrics.recordPool("BytesPool", true);
+    metrics.recordSent("ctx,\"x\"", null, 1, 1L);
+
+    OperationMetrics op = metrics.getOperations().get("ctx/op");
+    Assert.assertEquals(2, op.getNumSent());
+    Assert.assertEquals(150L, op.getBytesSent());
+    Assert.assertEquals(70L, op.getBytesReceived());
+    Assert.assertEquals(2, op.getNumWaits());
+    Assert.assertEquals(1, op.getNumTimeouts());
+    Assert.assertEquals(4000L, op.getWaitNanos());
+    Assert.assertEquals(3L, op.getMaxQueueDepth());
+    Assert.assertEquals(101L, metrics.getPeer(1).getBytesSent());
+    Assert.assertEquals(70L, metrics.getPeer(1).getBytesReceived());
+    Assert.assertEquals(2.0 / 3,
+        metrics.getPools().get("BytesPool").getHitRate(), 1e-9);
+
+    String json = metrics.toJSON();
+    Assert.assertTrue(json.contains(
+        "{\"context\":\"ctx\",\"operation\":\"op\",\"sent\":2,"
+            + "\"bytesSent\":150,"));
+    Assert.assertTrue(json.contains("\"context\":\"ctx,\\\"x\\\"\""));
+    Assert.assertTrue(
+        json.contains("{\"pool\":\"BytesPool\",\"hits\":2,\"misses\":1}"));
+    String[] lines = metrics.toCSV().split("\n");
+    // Header, 2 operations, 2 peers and 1 pool
+    Assert.assertEquals(6, lines.length);
+    int numColumns = lines[0].split(",", -1).length;
+    Assert.assertTrue(lines[2].startsWith("operation,ctx/op,2,150,1,70,"));
+    Assert.assertEquals("pool,BytesPool,,,,,,,,,,,,,2,1", lines[5]);
+    for (String line : lines) {
+      if (!line.contains("\"")) {
+        Assert.assertEquals(numColumns, line.split(",", -1).length);
+      }
+    }
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    Metrics.get().reset();
+    DataMap dataMap = new DataMap();
+    Assert.assertNull(dataMap.waitAndGetData("ctx", "op", 0));
+    Assert.assertTrue(Metrics.get().getOperations().isEmpty());
+  }
+
+  @Test
+  public void testSend() throws Exception {
+    Metrics.setEnabled(true);
+    Metrics.get().reset();
+    String fileName = new File(Objects.requireNonNull(
+        getClass().getClassLoader().getResource("test_nodes")).getFile())
+        .getAbsolutePath();
+    Workers workers =
+        new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    DataMap dataMap = new DataMap();
+    Server server = new Server(workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(), new EventQueue(), dataMap, workers);
+    server.start();
+    try {
+      List<Transferable> list = new ArrayList<>();
+      list.add(new IntArray(new int[1000], 0, 1000));
+      Data data = new Data(DataType.SIMPLE_LIST, "metrics", 0, list,
+          DataUtil.getNumTransListBytes(list), "send");
+      Assert.assertTrue(new DataSender(data, 0, workers,
+          Constant.SEND_DECODE).execute());
+      long numBytes = data.getHeadArray().size() + data.getBodySize();
+      data.releaseHeadArray();
+      data.releaseBodyArray();
+      Data received = dataMap.waitAndGetData("metrics", "send", 10);
+      Assert.assertNotNull(received);
+      received.release();
+      OperationMetrics op = Metrics.get().getOperations().get("metrics/send");
+      Assert.assertEquals(1, op.getNumSent());
+      Assert.assertEquals(numBytes, op.getBytesSent());
+      Assert.assertEquals(1, op.getNumReceived());
+      Assert.assertEquals(numBytes, op.getBytesReceived());
+      Assert.assertEquals(1, op.getNumEncoded());
+      Assert.assertEquals(1, op.getNumDecoded());
+      Assert.assertEquals(1, op.getNumWaits());
+      Assert.assertEquals(0, op.getNumTimeouts());
+      Assert.assertTrue(op.getMaxQueueDepth() >= 1);
+      Assert.assertEquals(numBytes, Metrics.get().getPeer(0).getBytesSent());
+      Assert.assertFalse(Metrics.get().getPools().isEmpty());
+
+      File dir = Files.createTempDirectory("metrics").toFile();
+      Assert.assertTrue(Metrics.get().write(dir.getPath(), "0"));
+      File json = new File(dir, "metrics-0.json");
+      File csv = new File(dir, "metrics-0.csv");
+      Assert.assertTrue(json.length() > 0 && csv.length() > 0);
+      json.delete();
+      csv.delete();
+      dir.delete();
+    } finally {
+      ConnPool.get().clean();
+      server.stop();
+    }
+  }
+}
@@ -1,9 +1,12 @@
 package edu.iu.harp.partition;
 
+import edu.iu.harp.collective.LocalWorkers;
 import edu.iu.harp.combiner.IntArrCombiner;
 import edu.iu.harp.combiner.Operation;
 import edu.iu.harp.resource.IntArray;
 import edu.iu.harp.resource.Transferable;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -11,6 +14,82 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PartitionUtilsTest {
+  // Not a power of two, Bruck's last step is partial
+  private static final int NUM_WORKERS = 5;
+
+  @Test
+  public void testAlltoall() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      // Worker i sends (i, j) repeated i + j times
+      // to worker j, nothing to the next worker
+      IntArrayList[] sendLists = new IntArrayList[NUM_WORKERS];
+      for (int j = 0; j < NUM_WORKERS; j++) {
+        if (j != (selfID + 1) % NUM_WORKERS) {
+          sendLists[j] = new IntArrayList();
+          for (int k = 0; k < selfID + j; k++) {
+            sendLists[j].add(selfID * 100 + j);
+          }
+        }
+      }
+      IntArrayList[] recvLists = PartitionUtil.alltoall("test",
+          "alltoall", sendLists, dataMap, workers);
+      if (recvLists == null) {
+        return false;
+      }
+      for (int i = 0; i < NUM_WORKERS; i++) {
+        IntArrayList recvList = recvLists[i];
+        int size = selfID == (i + 1) % NUM_WORKERS ? 0 : i + selfID;
+        if (recvList.size() != size) {
+          return false;
+        }
+        for (int k = 0; k < size; k++) {
+          if (recvList.getInt(k) != i * 100 + selfID) {
+            return false;
+          }
+        }
+      }
+      return true;
+    });
+  }
+
+  @Test
+  public void testExchangeRoutes() throws Exception {
+    LocalWorkers.run(NUM_WORKERS, (workers, dataMap) -> {
+      int selfID = workers.getSelfID();
+      // Every worker sends partitions 0-9, worker i
+      // receives partition i and i + 5 except the
+      // partitions 4 and 9, which the partitioner
+      // routes to worker 4
+      IntArrayList senderIDs = new IntArrayList();
+      for (int i = 0; i < 10; i++) {
+        senderIDs.add(i);
+      }
+      IntArrayList receiverIDs = new IntArrayList();
+      if (selfID != 4) {
+        receiverIDs.add(selfID);
+        receiverIDs.add(selfID + NUM_WORKERS);
+      }
+      Int2ObjectOpenHashMap<IntArrayList> routes =
+          new Int2ObjectOpenHashMap<>();
+      int numRecvPartitions = PartitionUtil.exchangeRoutes("test",
+          "routes", senderIDs, receiverIDs,
+          new Partitioner(NUM_WORKERS), routes, dataMap, workers);
+      if (numRecvPartitions != 2 * NUM_WORKERS
+          || routes.size() != 10) {
+        return false;
+      }
+      for (int i = 0; i < 10; i++) {
+        IntArrayList receivers = routes.get(i);
+        if (receivers.size() != 1
+            || receivers.getInt(0) != i % NUM_WORKERS) {
+          return false;
+        }
+      }
+      return true;
+    });
+  }
+
   @Test
   public void testAddPartitionsToTable() {
     Table<IntArray> table = new Table<>(0, new IntArrCombiner(Operation.SUM));
@@ -0,0 +1,81 @@
+package edu.iu.harp.resource;
+
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.Deserializer;
+import edu.iu.harp.io.Serializer;
+import edu.iu.harp.partition.Partition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DirectDoubleArrayTest {
+  @Test
+  public void testGetNumEncodedBytes() {
+    DirectDoubleArray array = DirectDoubleArray.create(4, false);
+    Assert.assertEquals(4 * Double.BYTES + 5, array.getNumEnocdeBytes());
+    Assert.assertTrue(array.get().isDirect());
+    array.release();
+  }
+
+  @Test
+  public void testEncode() throws IOException {
+    int length = 4;
+    DirectDoubleArray array = DirectDoubleArray.create(length, true);
+    for (int i = 0; i < length; i++) {
+      array.set(i, i);
+    }
+    int byteLength = length * Double.BYTES + 5;
+    byte[] bytes = new byte[byteLength];
+    Serializer serializer = new Serializer(bytes, 0, byteLength);
+    array.encode(serializer);
+    // The same encoding as DoubleArray
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, byteLength);
+    Assert.assertEquals(DataType.DIRECT_DOUBLE_ARRAY, buffer.get());
+    Assert.assertEquals(4, buffer.getInt());
+    for (int i = 0; i < length; i++) {
+      Assert.assertEquals(i, buffer.getDouble(), 0.00001);
+    }
+    array.release();
+  }
+
+  @Test
+  public void testDecodePartitionList() throws Exception {
+    List<Transferable> partitions = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      DirectDoubleArray array = DirectDoubleArray.create(100, false);
+      for (int j = 0; j < 100; j++) {
+        array.set(j, i * j);
+      }
+      partitions.add(new Partition<>(i, array));
+    }
+    partitions.add(new Partition<>(3, new DoubleArray(new double[]{1.0}, 0, 1)));
+    ByteArray byteArray = DataUtil.encodeTransList(partitions);
+    List<Transferable> objs = DataUtil.decodePartitionList(byteArray);
+    Assert.assertEquals(4, objs.size());
+    for (int i = 0; i < 3; i++) {
+      Partition<?> partition = (Partition<?>) objs.get(i);
+      DirectDoubleArray array = (DirectDoubleArray) partition.get();
+      Assert.assertEquals(100, array.size());
+      for (int j = 0; j < 100; j++) {
+        Assert.assertEquals(partition.id() * j, array.get(j), 0.0);
+      }
+    }
+    Assert.assertTrue(((Partition<?>) objs.get(3)).get() instanceof DoubleArray);
+    DataUtil.releaseTransList(objs);
+    DataUtil.releaseTransList(partitions);
+    byteArray.release();
+  }
+
+  @Test
+  public void testDeserializeTooShort() {
+    byte[] bytes = new byte[4 + 8];
+    ByteBuffer.wrap(bytes).putInt(2);
+    Assert.assertNull(DataUtil.deserializeDirectArray(
+        DataType.DIRECT_DOUBLE_ARRAY, new Deserializer(bytes, 0, bytes.length)));
+  }
+}
@@ -3,6 +3,12 @@ package edu.iu.harp.resource;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class DoublesPoolTest {
   @Test
   public void testCreateNewArray() {
@@ -45,4 +51,73 @@ public class DoublesPoolTest {
     double[] newSecondArray = bytesPool.getArray(125, true);
     Assert.assertSame(secondArray, newSecondArray);
   }
+
+  @Test
+  public void testReleaseTwice() {
+    DoublesPool pool = new DoublesPool();
+    double[] array = pool.getArray(100, true);
+    Assert.assertTrue(pool.releaseArray(array));
+    Assert.assertFalse(pool.releaseArray(array));
+    Assert.assertFalse(pool.releaseArray(new double[128]));
+    Assert.assertFalse(pool.releaseArray(new double[99]));
+  }
+
+  @Test
+  public void testUntracked() {
+    DoublesPool pool = new DoublesPool(false);
+    double[] array = pool.getArray(100, true);
+    Assert.assertTrue(pool.releaseArray(array));
+    Assert.assertSame(array, pool.getArray(100, true));
+    Assert.assertTrue(pool.freeArray(array));
+    Assert.assertNotSame(array, pool.getArray(100, true));
+  }
+
+  @Test
+  public void testReleaseLargeArray() {
+    DoublesPool pool = new DoublesPool();
+    // Larger than the arrays cached in threads
+    double[] array = pool.getArray(100000, false);
+    Assert.assertTrue(pool.releaseArray(array));
+    Assert.assertSame(array, pool.getArray(100000, false));
+  }
+
+  @Test
+  public void testClean() {
+    DoublesPool pool = new DoublesPool();
+    double[] array = pool.getArray(100, false);
+    pool.releaseArray(array);
+    pool.clean();
+    Assert.assertNotSame(array, pool.getArray(100, false));
+  }
+
+  @Test
+  public void testConcurrentChurn() throws Exception {
+    DoublesPool pool = new DoublesPool();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final int seed = i;
+      futures.add(executor.submit(() -> {
+        List<double[]> arrays = new ArrayList<>();
+        for (int j = 0; j < 10000; j++) {
+          double[] array = pool.getArray(1 + (seed + j) % 200, true);
+          array[0] = seed;
+          arrays.add(array);
+          if (arrays.size() == 16) {
+            for (double[] a : arrays) {
+              if (a[0] != seed || !pool.releaseArray(a)) {
+                return false;
+              }
+            }
+            arrays.clear();
+          }
+        }
+        return true;
+      }));
+    }
+    for (Future<Boolean> future : futures) {
+      Assert.assertTrue(future.get());
+    }
+    executor.shutdown();
+  }
 }
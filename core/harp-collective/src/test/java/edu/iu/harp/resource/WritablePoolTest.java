@@ -0,0 +1,45 @@
+package edu.iu.harp.resource;
+
+import edu.iu.harp.util.Ack;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WritablePoolTest {
+  @Test
+  public void testGetAndRelease() {
+    WritablePool pool = new WritablePool();
+    Ack ack = pool.getWritable(Ack.class);
+    Assert.assertNotNull(ack);
+    Assert.assertTrue(pool.releaseWritable(ack));
+    Assert.assertFalse(pool.releaseWritable(ack));
+    Assert.assertSame(ack, pool.getWritable(Ack.class));
+    Assert.assertTrue(pool.freeWritable(ack));
+    Assert.assertFalse(pool.freeWritable(ack));
+    Assert.assertNotSame(ack, pool.getWritable(Ack.class));
+  }
+
+  @Test
+  public void testReleaseInAnotherThread() throws Exception {
+    WritablePool pool = new WritablePool();
+    Ack ack = pool.getWritable(Ack.class);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Boolean> released =
+        executor.submit(() -> pool.releaseWritable(ack));
+    Assert.assertTrue(released.get());
+    // Cached in the magazine of the other thread
+    Assert.assertNotSame(ack, pool.getWritable(Ack.class));
+    executor.shutdown();
+  }
+
+  @Test
+  public void testUntracked() {
+    WritablePool pool = new WritablePool(false);
+    Ack ack = pool.getWritable(Ack.class);
+    Assert.assertTrue(pool.releaseWritable(ack));
+    Assert.assertSame(ack, pool.getWritable(Ack.class));
+  }
+}
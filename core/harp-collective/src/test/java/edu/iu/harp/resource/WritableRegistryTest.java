@@ -0,0 +1,107 @@
+package edu.iu.harp.resource;
+
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.Deserializer;
+import edu.iu.harp.io.Serializer;
+import edu.iu.harp.util.Ack;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class WritableRegistryTest {
+
+  public static class IntWritable extends Writable {
+    int value;
+
+    public IntWritable() {
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      out.writeInt(value);
+    }
+
+    @Override
+    public void read(DataInput in) throws IOException {
+      value = in.readInt();
+    }
+
+    @Override
+    public void clear() {
+      value = 0;
+    }
+
+    @Override
+    public int getNumWriteBytes() {
+      return 4;
+    }
+  }
+
+  public static class UnregisteredWritable extends IntWritable {
+    public UnregisteredWritable() {
+    }
+  }
+
+  private static Writable encodeAndDecode(Writable obj) throws IOException {
+    byte[] bytes = new byte[(int) obj.getNumEnocdeBytes()];
+    Serializer serializer = new Serializer(bytes, 0, bytes.length);
+    obj.encode(serializer);
+    Assert.assertEquals(bytes.length, serializer.getPos());
+    Deserializer deserializer = new Deserializer(bytes, 0, bytes.length);
+    Assert.assertEquals(DataType.WRITABLE, deserializer.readByte());
+    return DataUtil.deserializeWritable(deserializer);
+  }
+
+  @Test
+  public void testHarpWritablesRegistered() {
+    Assert.assertTrue(WritableRegistry.isRegistered(Ack.class));
+    Assert.assertEquals(1 + 4 + new Ack().getNumWriteBytes(),
+        new Ack().getNumEnocdeBytes());
+  }
+
+  @Test
+  public void testRegisteredClassEncodedAsID() throws IOException {
+    Assert.assertTrue(WritableRegistry.register(IntWritable.class));
+    Assert.assertTrue(WritableRegistry.register(IntWritable.class));
+    IntWritable obj = new IntWritable();
+    obj.value = 42;
+    Assert.assertEquals(1 + 4 + 4, obj.getNumEnocdeBytes());
+    Writable decoded = encodeAndDecode(obj);
+    Assert.assertTrue(decoded instanceof IntWritable);
+    Assert.assertEquals(42, ((IntWritable) decoded).value);
+  }
+
+  @Test
+  public void testUnregisteredClassEncodedAsName() throws IOException {
+    UnregisteredWritable obj = new UnregisteredWritable();
+    obj.value = 7;
+    Assert.assertFalse(
+        WritableRegistry.isRegistered(UnregisteredWritable.class));
+    String name = UnregisteredWritable.class.getName();
+    Assert.assertEquals(1 + 4 + name.length() * 2 + 4,
+        obj.getNumEnocdeBytes());
+    Writable decoded = encodeAndDecode(obj);
+    Assert.assertTrue(decoded instanceof UnregisteredWritable);
+    Assert.assertEquals(7, ((UnregisteredWritable) decoded).value);
+  }
+
+  @Test
+  public void testClassIDIsNegative() {
+    Assert.assertTrue(WritableRegistry.getClassID("") < 0);
+    Assert.assertTrue(
+        WritableRegistry.getClassID(Ack.class.getName()) < 0);
+  }
+
+  @Test
+  public void testNewInstance() {
+    IntWritable obj = Writable.newInstance(IntWritable.class);
+    Assert.assertNotNull(obj);
+    Assert.assertNotSame(obj, Writable.newInstance(IntWritable.class));
+    Assert.assertSame(IntWritable.class,
+        Writable.forClass(IntWritable.class.getName()));
+  }
+}
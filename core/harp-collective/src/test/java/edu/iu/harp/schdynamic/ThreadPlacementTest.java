@@ -0,0 +1,118 @@
+package edu.iu.harp.schdynamic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class ThreadPlacementTest {
+  // Two sockets, two cores per socket, two threads
+  // per core, siblings numbered as on Intel boxes
+  private static final int[] CPUS = {0, 1, 2, 3, 4, 5, 6, 7};
+  private static final int[] SOCKETS = {0, 0, 1, 1, 0, 0, 1, 1};
+  private static final int[] CORES = {0, 1, 0, 1, 0, 1, 0, 1};
+
+  private static int getCPU(ThreadPlacement placement, int index,
+      int numThreads) {
+    BitSet cpus = placement.getCPUs(index, numThreads);
+    Assert.assertEquals(1, cpus.cardinality());
+    return cpus.nextSetBit(0);
+  }
+
+  @Test
+  public void testParseCPUList() {
+    Assert.assertArrayEquals(new int[] {0, 1, 2, 3, 8, 10, 11},
+        ThreadPlacement.parseCPUList("0-3,8,10-11\n"));
+    Assert.assertArrayEquals(new int[] {0},
+        ThreadPlacement.parseCPUList("0"));
+    Assert.assertNull(ThreadPlacement.parseCPUList("a-b"));
+  }
+
+  @Test
+  public void testCompact() {
+    ThreadPlacement placement = new ThreadPlacement(
+        ThreadPlacement.COMPACT, 0, CPUS, SOCKETS, CORES);
+    Assert.assertTrue(placement.isEnabled());
+    Assert.assertEquals(2, placement.getNumSockets());
+    int[] expected = {0, 4, 1, 5, 2, 6, 3, 7};
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], getCPU(placement, i, 8));
+    }
+    Assert.assertEquals(0, getCPU(placement, 8, 16));
+    Assert.assertEquals(0, placement.getSocket(3, 8));
+    Assert.assertEquals(1, placement.getSocket(4, 8));
+  }
+
+  @Test
+  public void testCompactOneThreadPerCore() {
+    ThreadPlacement placement = new ThreadPlacement(
+        ThreadPlacement.COMPACT, 1, CPUS, SOCKETS, CORES);
+    int[] expected = {0, 1, 2, 3};
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], getCPU(placement, i, 4));
+    }
+  }
+
+  @Test
+  public void testScatter() {
+    ThreadPlacement placement = new ThreadPlacement(
+        ThreadPlacement.SCATTER, 0, CPUS, SOCKETS, CORES);
+    int[] expected = {0, 2, 1, 3, 4, 6, 5, 7};
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], getCPU(placement, i, 8));
+    }
+  }
+
+  @Test
+  public void testSocket() {
+    ThreadPlacement placement = new ThreadPlacement(
+        ThreadPlacement.SOCKET, 0, CPUS, SOCKETS, CORES);
+    BitSet socket0 = new BitSet();
+    socket0.set(0);
+    socket0.set(1);
+    socket0.set(4);
+    socket0.set(5);
+    BitSet socket1 = new BitSet();
+    socket1.set(2);
+    socket1.set(3);
+    socket1.set(6);
+    socket1.set(7);
+    // First half on socket 0, second half on socket 1
+    for (int i = 0; i < 6; i++) {
+      Assert.assertEquals(i < 3 ? socket0 : socket1,
+          placement.getCPUs(i, 6));
+      Assert.assertEquals(i < 3 ? 0 : 1, placement.getSocket(i, 6));
+    }
+    Assert.assertEquals(socket0, placement.getReceiverCPUs(0));
+    Assert.assertEquals(socket1, placement.getReceiverCPUs(1));
+  }
+
+  @Test
+  public void testNone() {
+    ThreadPlacement placement = new ThreadPlacement("unknown", 0, CPUS,
+        SOCKETS, CORES);
+    Assert.assertFalse(placement.isEnabled());
+    Assert.assertNull(placement.getCPUs(0, 1));
+    Assert.assertNull(placement.getReceiverCPUs(0));
+    Assert.assertFalse(placement.place(0, 1));
+    Runnable runnable = () -> {
+    };
+    Assert.assertSame(runnable, placement.wrap(runnable, 0, 1));
+    Assert.assertEquals("data", placement.allocate(0, 1, () -> "data"));
+  }
+
+  @Test
+  public void testConfigure() {
+    try {
+      ThreadPlacement placement =
+          ThreadPlacement.configure(ThreadPlacement.COMPACT, 0);
+      Assert.assertSame(placement, ThreadPlacement.get());
+      Assert.assertTrue(placement.getNumSockets() >= 1);
+      Assert.assertNotNull(placement.getCPUs(0, 1));
+      Assert.assertEquals("data", placement.allocate(0, 1, () -> "data"));
+    } finally {
+      ThreadPlacement.configure(ThreadPlacement.NONE, 0);
+    }
+    Assert.assertFalse(ThreadPlacement.get().isEnabled());
+  }
+}
@@ -0,0 +1,156 @@
+package edu.iu.harp.schdynamic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WorkStealingSchedulerTest {
+  private static final int NUM_TASKS = 4;
+
+  private static class SquareTask implements Task<Integer, Integer> {
+    private final long sleep;
+
+    SquareTask(long sleep) {
+      this.sleep = sleep;
+    }
+
+    @Override
+    public Integer run(Integer input) throws Exception {
+      if (sleep > 0) {
+        Thread.sleep(sleep);
+      }
+      if (input < 0) {
+        throw new Exception("Negative input");
+      }
+      // Null output for zero
+      return input == 0 ? null : input * input;
+    }
+  }
+
+  private static WorkStealingScheduler<Integer, Integer, SquareTask>
+      createScheduler(long sleep) {
+    List<SquareTask> tasks = new ArrayList<>();
+    for (int i = 0; i < NUM_TASKS; i++) {
+      tasks.add(new SquareTask(sleep));
+    }
+    return new WorkStealingScheduler<>(tasks);
+  }
+
+  private static long drain(
+      WorkStealingScheduler<Integer, Integer, SquareTask> scheduler,
+      int[] count) {
+    long sum = 0;
+    while (scheduler.hasOutput()) {
+      Integer output = scheduler.waitForOutput();
+      if (output != null) {
+        sum += output;
+      }
+      count[0]++;
+    }
+    return sum;
+  }
+
+  @Test
+  public void testSubmitBeforeStart() {
+    WorkStealingScheduler<Integer, Integer, SquareTask> scheduler =
+        createScheduler(0);
+    List<Integer> inputs = new ArrayList<>();
+    long expected = 0;
+    for (int i = 0; i < 1000; i++) {
+      inputs.add(i);
+      expected += i * i;
+    }
+    scheduler.submitAll(inputs);
+    Assert.assertFalse(scheduler.hasOutput());
+    scheduler.start();
+    scheduler.stop();
+    int[] count = {0};
+    Assert.assertEquals(expected, drain(scheduler, count));
+    Assert.assertEquals(1000, count[0]);
+    Assert.assertFalse(scheduler.hasError());
+  }
+
+  @Test
+  public void testSubmitWhileRunning() {
+    WorkStealingScheduler<Integer, Integer, SquareTask> scheduler =
+        createScheduler(0);
+    scheduler.start();
+    for (int iter = 0; iter < 10; iter++) {
+      long expected = 0;
+      Integer[] inputs = new Integer[101];
+      for (int i = 0; i < 100; i++) {
+        scheduler.submit(i);
+        inputs[i] = i + 100;
+        expected += i * i + (i + 100) * (i + 100);
+      }
+      // Errors are null outputs
+      inputs[100] = -1;
+      scheduler.submitAll(inputs);
+      int[] count = {0};
+      Assert.assertEquals(expected, drain(scheduler, count));
+      Assert.assertEquals(201, count[0]);
+      Assert.assertTrue(scheduler.hasError());
+      Assert.assertFalse(scheduler.hasError());
+    }
+    scheduler.stop();
+  }
+
+  @Test
+  public void testPause() {
+    WorkStealingScheduler<Integer, Integer, SquareTask> scheduler =
+        createScheduler(1);
+    scheduler.start();
+    for (int i = 1; i <= 100; i++) {
+      scheduler.submit(i);
+    }
+    scheduler.pause();
+    int[] count = {0};
+    drain(scheduler, count);
+    Assert.assertEquals(100, count[0]);
+    scheduler.stop();
+  }
+
+  @Test
+  public void testPauseNow() {
+    WorkStealingScheduler<Integer, Integer, SquareTask> scheduler =
+        createScheduler(5);
+    scheduler.start();
+    long expected = 0;
+    for (int i = 1; i <= 200; i++) {
+      scheduler.submit(i);
+      expected += i * i;
+    }
+    scheduler.pauseNow();
+    int[] count = {0};
+    long sum = drain(scheduler, count);
+    Assert.assertTrue(count[0] < 200);
+    // Inputs submitted when paused wait for start
+    scheduler.submit(0);
+    Assert.assertFalse(scheduler.hasOutput());
+    scheduler.start();
+    scheduler.stop();
+    sum += drain(scheduler, count);
+    Assert.assertEquals(expected, sum);
+    Assert.assertEquals(201, count[0]);
+  }
+
+  @Test
+  public void testCleanInputQueue() {
+    WorkStealingScheduler<Integer, Integer, SquareTask> scheduler =
+        createScheduler(5);
+    scheduler.start();
+    for (int i = 1; i <= 200; i++) {
+      scheduler.submit(i);
+    }
+    scheduler.pauseNow();
+    int[] count = {0};
+    drain(scheduler, count);
+    scheduler.cleanInputQueue();
+    scheduler.start();
+    scheduler.stop();
+    Assert.assertFalse(scheduler.hasOutput());
+    Assert.assertTrue(count[0] < 200);
+  }
+}
@@ -0,0 +1,105 @@
+package edu.iu.harp.server;
+
+import edu.iu.harp.client.DataChainBcastSender;
+import edu.iu.harp.client.DataSender;
+import edu.iu.harp.io.ConnPool;
+import edu.iu.harp.io.Constant;
+import edu.iu.harp.io.Data;
+import edu.iu.harp.io.DataMap;
+import edu.iu.harp.io.DataType;
+import edu.iu.harp.io.DataUtil;
+import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.resource.IntArray;
+import edu.iu.harp.resource.Transferable;
+import edu.iu.harp.worker.Workers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class NioServerTest {
+  private String fileName;
+
+  @Before
+  public void setUp() {
+    ClassLoader classLoader = getClass().getClassLoader();
+    fileName = new File(Objects.requireNonNull(
+        classLoader.getResource("test_nodes")).getFile()).getAbsolutePath();
+  }
+
+  private Data createData(String opName, int size) {
+    int[] ints = new int[size];
+    for (int i = 0; i < size; i++) {
+      ints[i] = i;
+    }
+    List<Transferable> transList = new ArrayList<>(1);
+    transList.add(new IntArray(ints, 0, size));
+    return new Data(DataType.SIMPLE_LIST, "nio", 0, transList,
+        DataUtil.getNumTransListBytes(transList), opName);
+  }
+
+  private void checkData(Data data, int size) {
+    Assert.assertNotNull(data);
+    data.decodeBodyArray();
+    IntArray array = (IntArray) data.getBody().get(0);
+    Assert.assertEquals(size, array.size());
+    for (int i = 0; i < size; i++) {
+      Assert.assertEquals(i, array.get()[array.start() + i]);
+    }
+    data.release();
+  }
+
+  @Test
+  public void testStart() throws Exception {
+    Workers workers = new Workers(new BufferedReader(new FileReader(fileName)), 0);
+
+    NioServer s = new NioServer("localhost", 10093, new EventQueue(), new DataMap(), workers);
+    s.start();
+    s.stop();
+  }
+
+  @Test
+  public void testSend() throws Exception {
+    Workers workers = new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    DataMap dataMap = new DataMap();
+    NioServer s = new NioServer(workers.getSelfInfo().getNode(),
+        workers.getSelfInfo().getPort(), new EventQueue(), dataMap, workers, 2);
+    s.start();
+    try {
+      // Large enough to arrive in several reads
+      Assert.assertTrue(new DataSender(createData("send", 500000), 0, workers,
+          Constant.SEND).execute());
+      Assert.assertTrue(new DataSender(createData("decode", 100), 0, workers,
+          Constant.SEND_DECODE).execute());
+      checkData(dataMap.waitAndGetData("nio", "send", 10), 500000);
+      checkData(dataMap.waitAndGetData("nio", "decode", 10), 100);
+    } finally {
+      ConnPool.get().clean();
+      s.stop();
+    }
+  }
+
+  @Test
+  public void testChainBcast() throws Exception {
+    Workers workers0 = new Workers(new BufferedReader(new FileReader(fileName)), 0);
+    Workers workers1 = new Workers(new BufferedReader(new FileReader(fileName)), 1);
+    DataMap dataMap = new DataMap();
+    NioServer s = new NioServer(workers1.getSelfInfo().getNode(),
+        workers1.getSelfInfo().getPort(), new EventQueue(), dataMap, workers1);
+    s.start();
+    try {
+      Assert.assertTrue(new DataChainBcastSender(createData("bcast", 1000),
+          workers0, Constant.CHAIN_BCAST_DECODE).execute());
+      checkData(dataMap.waitAndGetData("nio", "bcast", 10), 1000);
+    } finally {
+      ConnPool.get().clean();
+      s.stop();
+    }
+  }
+}
@@ -7,6 +7,11 @@ import org.junit.Test;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 public class WorkerTest {
   private String fileName;
@@ -25,4 +30,32 @@ public class WorkerTest {
     Assert.assertEquals(workers.getMaxID(), 1);
     Assert.assertEquals(workers.getMiddleID(), 0);
   }
+
+  @Test
+  public void testNodeGroups() {
+    Map<Integer, List<String>> nodes = new HashMap<>();
+    nodes.put(0, Arrays.asList("a", "a", "b", "b", "b"));
+    LinkedList<Integer> rackIDs = new LinkedList<>();
+    rackIDs.add(0);
+    Workers workers = new Workers(nodes, rackIDs, 2, 3);
+    Assert.assertTrue(workers.hasSharedNodes());
+    Assert.assertEquals(2, workers.getNumWorkerNodes());
+    Assert.assertEquals(Arrays.asList(2, 3, 4),
+        workers.getNodeWorkerIDs(3));
+    Assert.assertEquals(Arrays.asList(0, 2),
+        workers.getNodeLeaderIDs(-1));
+    Assert.assertEquals(Arrays.asList(1, 2),
+        workers.getNodeLeaderIDs(1));
+
+    Workers group = workers.getSubWorkers(Arrays.asList(2, 3, 4));
+    Assert.assertEquals(3, group.getNumWorkers());
+    Assert.assertEquals(1, group.getSelfID());
+    Assert.assertEquals(2, group.getNextID());
+    Assert.assertEquals(workers.getWorkerInfo(4).getPort(),
+        group.getWorkerInfo(2).getPort());
+    Assert.assertFalse(group.hasSharedNodes());
+
+    Workers other = workers.getSubWorkers(Arrays.asList(0, 2));
+    Assert.assertFalse(other.isSelfInWorker());
+  }
 }
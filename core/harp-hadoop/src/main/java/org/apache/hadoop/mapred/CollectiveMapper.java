@@ -18,27 +18,43 @@ package org.apache.hadoop.mapred;
 
 import edu.iu.harp.client.Event;
 import edu.iu.harp.client.EventType;
+import edu.iu.harp.client.SenderPool;
 import edu.iu.harp.client.SyncClient;
 import edu.iu.harp.collective.AllgatherCollective;
 import edu.iu.harp.collective.AllreduceCollective;
+import edu.iu.harp.collective.AllreduceSelector;
 import edu.iu.harp.collective.BcastCollective;
+import edu.iu.harp.collective.CollectiveExecutor;
+import edu.iu.harp.collective.CommPlan;
 import edu.iu.harp.collective.Communication;
+import edu.iu.harp.collective.HierarchicalCollective;
+import edu.iu.harp.collective.KVCollective;
 import edu.iu.harp.collective.LocalGlobalSyncCollective;
 import edu.iu.harp.collective.ReduceCollective;
 import edu.iu.harp.collective.RegroupCollective;
+import edu.iu.harp.io.Compression;
 import edu.iu.harp.io.ConnPool;
 import edu.iu.harp.io.Constant;
 import edu.iu.harp.io.DataMap;
 import edu.iu.harp.io.EventQueue;
+import edu.iu.harp.metrics.Metrics;
+import edu.iu.harp.keyval.KVTable;
+import edu.iu.harp.keyval.SparseKVTable;
 import edu.iu.harp.partition.Partitioner;
 import edu.iu.harp.partition.Table;
 import edu.iu.harp.resource.ResourcePool;
 import edu.iu.harp.resource.Simple;
+import edu.iu.harp.resource.Writable;
+import edu.iu.harp.resource.WritableRegistry;
+import edu.iu.harp.schdynamic.ThreadPlacement;
+import edu.iu.harp.server.NioServer;
 import edu.iu.harp.server.Server;
+import edu.iu.harp.server.Transport;
 import edu.iu.harp.worker.Workers;
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -51,6 +67,7 @@ import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
@@ -74,12 +91,125 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
   protected static final Log LOG =
     LogFactory.getLog(CollectiveMapper.class);
 
+  /**
+   * Use the selector-based NioServer instead of
+   * the thread-per-connection Server
+   */
+  public static final String NIO_TRANSPORT =
+    "mapreduce.map.collective.nio";
+  /** The number of IO threads in NioServer */
+  public static final String NIO_THREADS =
+    "mapreduce.map.collective.nio.threads";
+  /**
+   * The allreduce algorithm, "auto",
+   * "recursive-doubling", "ring" or "rabenseifner"
+   */
+  public static final String ALLREDUCE_ALGORITHM =
+    "mapreduce.map.collective.allreduce.algorithm";
+  /**
+   * In "auto" mode, tables smaller than this
+   * number of bytes use recursive doubling
+   */
+  public static final String ALLREDUCE_THRESHOLD =
+    "mapreduce.map.collective.allreduce.threshold";
+  /**
+   * The broadcast algorithm, "auto", "whole",
+   * "pipeline" or "scatter-allgather"
+   */
+  public static final String BCAST_ALGORITHM =
+    "mapreduce.map.collective.bcast.algorithm";
+  /** The number of bytes in a pipeline segment */
+  public static final String BCAST_SEGMENT_SIZE =
+    "mapreduce.map.collective.bcast.segment.size";
+  /**
+   * In "auto" mode, tables of at least this
+   * number of bytes use scatter-allgather
+   */
+  public static final String BCAST_SCATTER_THRESHOLD =
+    "mapreduce.map.collective.bcast.scatter.threshold";
+  /**
+   * The number of workers a regroup, push, pull
+   * or join sends to concurrently
+   */
+  public static final String SEND_CONCURRENCY =
+    "mapreduce.map.collective.send.concurrency";
+  /**
+   * Comma-separated Writable classes encoded with
+   * class IDs, all workers use the same list
+   */
+  public static final String WRITABLE_CLASSES =
+    "mapreduce.map.collective.writable.classes";
+  /**
+   * Use node-aware broadcast, reduce, allgather
+   * and allreduce when more than one worker runs
+   * on a node
+   */
+  public static final String HIERARCHICAL =
+    "mapreduce.map.collective.hierarchical";
+  /**
+   * The barrier algorithm, "dissemination",
+   * "tree" or "central"
+   */
+  public static final String BARRIER_ALGORITHM =
+    "mapreduce.map.collective.barrier.algorithm";
+  /**
+   * The placement of scheduler and receiver
+   * threads, "none", "compact", "scatter" or
+   * "socket"
+   */
+  public static final String THREAD_PLACEMENT =
+    "mapreduce.map.collective.thread.placement";
+  /**
+   * The number of hardware threads used on each
+   * core in thread placement, 0 for all
+   */
+  public static final String THREADS_PER_CORE =
+    "mapreduce.map.collective.thread.placement.tpc";
+  /**
+   * The codec of the Data bodies sent, "none",
+   * "lz" or "delta"
+   */
+  public static final String COMPRESSION =
+    "mapreduce.map.collective.compression";
+  /**
+   * The smallest body size compressed
+   */
+  public static final String COMPRESSION_THRESHOLD =
+    "mapreduce.map.collective.compression.threshold";
+  /**
+   * The codecs of operations by the prefix of
+   * their names, "prefix=codec,..."
+   */
+  public static final String COMPRESSION_OPERATIONS =
+    "mapreduce.map.collective.compression.operations";
+  /**
+   * Record the communication metrics
+   */
+  public static final String METRICS =
+    "mapreduce.map.collective.metrics";
+  /**
+   * The local directory the metrics are written
+   * to at the end of the job, the log if not set
+   */
+  public static final String METRICS_DIR =
+    "mapreduce.map.collective.metrics.dir";
+
   private int workerID;
   private Workers workers;
   private EventQueue eventQueue;
   private DataMap dataMap;
-  private Server server;
+  private Transport server;
   private SyncClient client;
+  private CollectiveExecutor collectiveExecutor;
+  private String allreduceAlgorithm;
+  private String metricsDir;
+  private long allreduceThreshold;
+  private AllreduceSelector allreduceSelector;
+  private String bcastAlgorithm;
+  private int bcastSegmentSize;
+  private long bcastScatterThreshold;
+  private boolean useHierarchical;
+  private String barrierAlgorithm;
 
   /*******************************************************
    * A Key-Value reader to read key-value inputs
@@ -288,13 +418,76 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     }
     eventQueue = new EventQueue();
     dataMap = new DataMap();
+    collectiveExecutor =
+      new CollectiveExecutor(dataMap);
     client = new SyncClient(workers);
     // Initialize receiver
     String host = workers.getSelfInfo().getNode();
     int port = workers.getSelfInfo().getPort();
+    Configuration conf =
+      context.getConfiguration();
+    allreduceAlgorithm = conf.get(
+      ALLREDUCE_ALGORITHM, AllreduceCollective.AUTO);
+    allreduceSelector = new AllreduceSelector();
+    allreduceThreshold = conf.getLong(
+      ALLREDUCE_THRESHOLD,
+      AllreduceCollective.DEFAULT_CHUNKED_THRESHOLD);
+    bcastAlgorithm = conf.get(BCAST_ALGORITHM,
+      BcastCollective.AUTO);
+    bcastSegmentSize = conf.getInt(
+      BCAST_SEGMENT_SIZE,
+      BcastCollective.DEFAULT_SEGMENT_SIZE);
+    bcastScatterThreshold = conf.getLong(
+      BCAST_SCATTER_THRESHOLD,
+      BcastCollective.DEFAULT_SCATTER_THRESHOLD);
+    barrierAlgorithm = conf.get(
+      BARRIER_ALGORITHM,
+      Communication.DISSEMINATION_BARRIER);
+    useHierarchical =
+      conf.getBoolean(HIERARCHICAL, true)
+        && HierarchicalCollective
+          .isApplicable(workers);
+    LOG.info("Node-aware collectives: "
+      + useHierarchical);
     try {
-      server = new Server(host, port, eventQueue,
-        dataMap, workers);
+      for (Class<?> clazz : conf
+        .getClasses(WRITABLE_CLASSES)) {
+        WritableRegistry.register(
+          clazz.asSubclass(Writable.class));
+      }
+    } catch (Exception e) {
+      LOG.error("Cannot register writables.", e);
+      throw new IOException(e);
+    }
+    Metrics.setEnabled(conf.getBoolean(METRICS,
+      Metrics.isEnabled()));
+    SenderPool.setConcurrency(conf.getInt(
+      SEND_CONCURRENCY, SenderPool.getConcurrency()));
+    metricsDir = conf.get(METRICS_DIR);
+    if (!Compression.configure(
+      conf.get(COMPRESSION, Compression.NONE),
+      conf.getLong(COMPRESSION_THRESHOLD,
+        Compression.DEFAULT_THRESHOLD),
+      conf.get(COMPRESSION_OPERATIONS))) {
+      throw new IOException(
+        "Invalid compression configuration.");
+    }
+    // Place the receivers and the schedulers
+    // created by the tasks
+    ThreadPlacement.configure(
+      conf.get(THREAD_PLACEMENT,
+        ThreadPlacement.NONE),
+      conf.getInt(THREADS_PER_CORE, 0));
+    try {
+      if (conf.getBoolean(NIO_TRANSPORT, false)) {
+        server = new NioServer(host, port,
+          eventQueue, dataMap, workers,
+          conf.getInt(NIO_THREADS,
+            Constant.NUM_IO_THREADS));
+      } else {
+        server = new Server(host, port,
+          eventQueue, dataMap, workers);
+      }
     } catch (Exception e) {
       LOG.error("Cannot initialize receivers.",
         e);
@@ -309,6 +502,16 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     return isSuccess;
   }
 
+  /**
+   * Get the communication metrics recorded, they
+   * are only recorded if enabled by METRICS
+   *
+   * @return the Metrics
+   */
+  public Metrics getMetrics() {
+    return Metrics.get();
+  }
+
   /**
    * Get the ID of this worker.
    *
@@ -375,9 +578,17 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     String operationName) {
     boolean isSuccess =
       Communication.barrier(contextName,
-        operationName, dataMap, workers);
-    dataMap.cleanOperationData(contextName,
-      operationName);
+        operationName, barrierAlgorithm, dataMap,
+        workers);
+    // The dissemination and tree barriers leave
+    // the messages of the next barrier with the
+    // same name in the DataMap, only the central
+    // barrier has nothing to keep
+    if (Communication.CENTRAL_BARRIER
+      .equals(barrierAlgorithm)) {
+      dataMap.cleanOperationData(contextName,
+        operationName);
+    }
     return isSuccess;
   }
 
@@ -404,10 +615,9 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     String contextName, String operationName,
     Table<P> table, int bcastWorkerID,
     boolean useMSTBcast) {
-    boolean isSucess =
-      BcastCollective.broadcast(contextName,
-        operationName, table, bcastWorkerID,
-        useMSTBcast, dataMap, workers);
+    boolean isSucess = broadcastTable(contextName,
+      operationName, table, bcastWorkerID,
+      useMSTBcast);
     dataMap.cleanOperationData(contextName,
       operationName);
     return isSucess;
@@ -431,9 +641,8 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
   public <P extends Simple> boolean reduce(
     String contextName, String operationName,
     Table<P> table, int reduceWorkerID) {
-    boolean isSuccess = ReduceCollective.reduce(
-      contextName, operationName, table,
-      reduceWorkerID, dataMap, workers);
+    boolean isSuccess = reduceTable(contextName,
+      operationName, table, reduceWorkerID);
     dataMap.cleanOperationData(contextName,
       operationName);
     return isSuccess;
@@ -455,9 +664,8 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
   public <P extends Simple> boolean allgather(
     String contextName, String operationName,
     Table<P> table) {
-    boolean isSuccess =
-      AllgatherCollective.allgather(contextName,
-        operationName, table, dataMap, workers);
+    boolean isSuccess = allgatherTable(
+      contextName, operationName, table);
     dataMap.cleanOperationData(contextName,
       operationName);
     return isSuccess;
@@ -479,14 +687,167 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
   public <P extends Simple> boolean allreduce(
     String contextName, String operationName,
     Table<P> table) {
-    boolean isSuccess =
-      AllreduceCollective.allreduce(contextName,
-        operationName, table, dataMap, workers);
+    boolean isSuccess = allreduceTable(
+      contextName, operationName, table);
     dataMap.cleanOperationData(contextName,
       operationName);
     return isSuccess;
   }
 
+  /**
+   * Allreduce the key-value pairs of a primitive
+   * KVTable. The keys are hashed to buckets which
+   * are sent as sorted packed arrays and merged
+   * by their owners, so the traffic follows the
+   * number of distinct keys.
+   *
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param table
+   *          the KVTable
+   * @param numBuckets
+   *          the number of buckets, a few times
+   *          the number of workers
+   * @return a boolean tells if the operation
+   *         succeeds
+   */
+  public <T extends KVTable<?> & SparseKVTable> boolean
+    allreduceKV(String contextName,
+      String operationName, T table,
+      int numBuckets) {
+    boolean isSuccess = KVCollective.allreduce(
+      contextName, operationName, table,
+      numBuckets, true, dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      operationName);
+    return isSuccess;
+  }
+
+  /**
+   * Regroup the key-value pairs of a primitive
+   * KVTable, each worker gets the combined pairs
+   * of the buckets it owns.
+   *
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param table
+   *          the KVTable
+   * @param numBuckets
+   *          the number of buckets
+   * @return a boolean tells if the operation
+   *         succeeds
+   */
+  public <T extends KVTable<?> & SparseKVTable> boolean
+    regroupKV(String contextName,
+      String operationName, T table,
+      int numBuckets) {
+    boolean isSuccess = KVCollective.regroup(
+      contextName, operationName, table,
+      numBuckets, true, dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      operationName);
+    return isSuccess;
+  }
+
+  /**
+   * Broadcast with the node-aware algorithm if
+   * enabled, otherwise with chain or MST,
+   * segmented by the configured algorithm. The
+   * node-aware broadcast only picks between the
+   * tree and scatter-allgather, so an explicitly
+   * configured algorithm or MST runs across all
+   * the workers.
+   */
+  private <P extends Simple> boolean
+    broadcastTable(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, boolean useMSTBcast) {
+    if (useHierarchical && !useMSTBcast
+      && BcastCollective.AUTO
+        .equals(bcastAlgorithm)) {
+      return HierarchicalCollective.broadcast(
+        contextName, operationName, table,
+        bcastWorkerID, bcastScatterThreshold,
+        dataMap, workers);
+    } else {
+      return BcastCollective.broadcast(
+        contextName, operationName, table,
+        bcastWorkerID, useMSTBcast, bcastAlgorithm,
+        bcastSegmentSize, bcastScatterThreshold,
+        dataMap, workers);
+    }
+  }
+
+  /**
+   * Reduce with the node-aware algorithm if
+   * enabled.
+   */
+  private <P extends Simple> boolean reduceTable(
+    String contextName, String operationName,
+    Table<P> table, int reduceWorkerID) {
+    if (useHierarchical) {
+      return HierarchicalCollective.reduce(
+        contextName, operationName, table,
+        reduceWorkerID, dataMap, workers);
+    } else {
+      return ReduceCollective.reduce(contextName,
+        operationName, table, reduceWorkerID,
+        dataMap, workers);
+    }
+  }
+
+  /**
+   * Allgather with the node-aware algorithm if
+   * enabled.
+   */
+  private <P extends Simple> boolean
+    allgatherTable(String contextName,
+      String operationName, Table<P> table) {
+    if (useHierarchical) {
+      return HierarchicalCollective.allgather(
+        contextName, operationName, table,
+        dataMap, workers);
+    } else {
+      return AllgatherCollective.allgather(
+        contextName, operationName, table,
+        dataMap, workers);
+    }
+  }
+
+  /**
+   * Allreduce with the node-aware algorithm if
+   * enabled, the configured algorithm is used
+   * across the nodes.
+   */
+  private <P extends Simple> boolean
+    allreduceTable(String contextName,
+      String operationName, Table<P> table) {
+    // Small tables skip the layout round after
+    // the first call, see AllreduceSelector
+    String algorithm = allreduceSelector.select(
+      contextName, operationName,
+      allreduceAlgorithm, allreduceThreshold);
+    boolean isSuccess;
+    if (useHierarchical) {
+      isSuccess = HierarchicalCollective.allreduce(
+        contextName, operationName, table,
+        dataMap, workers, algorithm,
+        allreduceThreshold);
+    } else {
+      isSuccess = AllreduceCollective.allreduce(
+        contextName, operationName, table,
+        dataMap, workers, algorithm,
+        allreduceThreshold);
+    }
+    allreduceSelector.record(contextName,
+      operationName, table, isSuccess);
+    return isSuccess;
+  }
+
   /**
    * Regroup the partitions of the tables based on
    * a partitioner.
@@ -514,6 +875,39 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     return isSucess;
   }
 
+  /**
+   * Regroup with a communication plan. The first
+   * call plans the routing, the later calls with
+   * the same plan skip the metadata exchange. The
+   * partition IDs of the table must stay the same
+   * on all the workers.
+   *
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param table
+   *          the table to hold the partitions
+   * @param partitioner
+   *          the partitioner
+   * @param plan
+   *          the plan reused across the calls
+   * @return a boolean tells if the operation
+   *         succeeds
+   */
+  public <P extends Simple, PT extends Partitioner>
+    boolean regroup(String contextName,
+      String operationName, Table<P> table,
+      PT partitioner, CommPlan plan) {
+    boolean isSucess = RegroupCollective
+      .regroupCombine(contextName, operationName,
+        table, partitioner, plan, dataMap,
+        workers);
+    dataMap.cleanOperationData(contextName,
+      operationName);
+    return isSucess;
+  }
+
   /**
    * Pull partitions in the global table to the
    * local tables. If any partition ID conflicts
@@ -548,6 +942,39 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     return isSuccess;
   }
 
+  /**
+   * Pull with a communication plan, see pull and
+   * CommPlan.
+   *
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of the operation
+   * @param localTable
+   *          the local tables
+   * @param globalTable
+   *          the global table
+   * @param useBcast
+   *          if using broadcast in scattering the
+   *          partitions
+   * @param plan
+   *          the plan reused across the calls
+   * @return a boolean tells if the operation
+   *         succeeds
+   */
+  public <P extends Simple> boolean pull(
+    String contextName, String operationName,
+    Table<P> localTable, Table<P> globalTable,
+    boolean useBcast, CommPlan plan) {
+    boolean isSuccess =
+      LocalGlobalSyncCollective.pull(contextName,
+        operationName, localTable, globalTable,
+        useBcast, plan, dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      operationName);
+    return isSuccess;
+  }
+
   /**
    * Push the partitions of local tables to the
    * global table.
@@ -583,6 +1010,39 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     return isSuccess;
   }
 
+  /**
+   * Push with a communication plan, see push and
+   * CommPlan.
+   *
+   * @param contextName
+   *          the name of the operation context
+   * @param operationName
+   *          the name of operation
+   * @param localTable
+   *          the local tables
+   * @param globalTable
+   *          the global table
+   * @param partitioner
+   *          the partitioner
+   * @param plan
+   *          the plan reused across the calls
+   * @return a boolean tells if the operation
+   *         succeeds
+   */
+  public <P extends Simple, PT extends Partitioner>
+    boolean push(String contextName,
+      String operationName, Table<P> localTable,
+      Table<P> globalTable, PT partitioner,
+      CommPlan plan) {
+    boolean isSuccess =
+      LocalGlobalSyncCollective.push(contextName,
+        operationName, localTable, globalTable,
+        partitioner, plan, dataMap, workers);
+    dataMap.cleanOperationData(contextName,
+      operationName);
+    return isSuccess;
+  }
+
   /**
    * The rotation communication. Transfer the
    * partitions from worker to worker. After
@@ -614,6 +1074,137 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
     return isSuccess;
   }
 
+  /**
+   * Broadcast asynchronously, see broadcast.
+   *
+   * @return the future of the operation, which
+   *         completes with false if the operation
+   *         fails
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    ibroadcast(String contextName,
+      String operationName, Table<P> table,
+      int bcastWorkerID, boolean useMSTBcast) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> broadcastTable(contextName,
+        operationName, table, bcastWorkerID,
+        useMSTBcast));
+  }
+
+  /**
+   * Reduce asynchronously, see reduce.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    ireduce(String contextName,
+      String operationName, Table<P> table,
+      int reduceWorkerID) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> reduceTable(contextName,
+        operationName, table, reduceWorkerID));
+  }
+
+  /**
+   * Allgather asynchronously, see allgather.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    iallgather(String contextName,
+      String operationName, Table<P> table) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> allgatherTable(contextName,
+        operationName, table));
+  }
+
+  /**
+   * Allreduce asynchronously, see allreduce.
+   * The table should not be used until the
+   * future completes.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    iallreduce(String contextName,
+      String operationName, Table<P> table) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> allreduceTable(contextName,
+        operationName, table));
+  }
+
+  /**
+   * Regroup asynchronously, see regroup.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple, PT extends Partitioner>
+    CompletableFuture<Boolean> iregroup(
+      String contextName, String operationName,
+      Table<P> table, PT partitioner) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> RegroupCollective.regroupCombine(
+        contextName, operationName, table,
+        partitioner, dataMap, workers));
+  }
+
+  /**
+   * Pull asynchronously, see pull.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    ipull(String contextName,
+      String operationName, Table<P> localTable,
+      Table<P> globalTable, boolean useBcast) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> LocalGlobalSyncCollective.pull(
+        contextName, operationName, localTable,
+        globalTable, useBcast, dataMap, workers));
+  }
+
+  /**
+   * Push asynchronously, see push.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple, PT extends Partitioner>
+    CompletableFuture<Boolean> ipush(
+      String contextName, String operationName,
+      Table<P> localTable, Table<P> globalTable,
+      PT partitioner) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> LocalGlobalSyncCollective.push(
+        contextName, operationName, localTable,
+        globalTable, partitioner, dataMap,
+        workers));
+  }
+
+  /**
+   * Rotate asynchronously, see rotate. Rotations
+   * of different tables overlap if they use
+   * different operation names.
+   *
+   * @return the future of the operation
+   */
+  public <P extends Simple> CompletableFuture<Boolean>
+    irotate(String contextName,
+      String operationName, Table<P> globalTable,
+      Int2IntMap rotateMap) {
+    return collectiveExecutor.submit(contextName,
+      operationName,
+      () -> LocalGlobalSyncCollective.rotate(
+        contextName, operationName, globalTable,
+        rotateMap, dataMap, workers));
+  }
+
   /**
    * Get an event from the event queue.
    *
@@ -690,6 +1281,22 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
       + Runtime.getRuntime().freeMemory());
   }
 
+  /**
+   * Log the communication metrics, or write them
+   * to METRICS_DIR as JSON and CSV
+   */
+  protected void logMetrics() {
+    if (!Metrics.isEnabled()) {
+      return;
+    }
+    if (metricsDir == null) {
+      LOG.info("Metrics: " + Metrics.get().toJSON());
+    } else {
+      Metrics.get().write(metricsDir,
+        Integer.toString(workerID));
+    }
+  }
+
   /**
    * Log Garbage collection time
    */
@@ -775,11 +1382,15 @@ public class CollectiveMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>
       mapCollective(reader, context);
       ResourcePool.get().log();
       ConnPool.get().log();
+      Compression.logStats();
+      logMetrics();
     } catch (Throwable t) {
       LOG.error("Fail to do map-collective.", t);
       throw new IOException(t);
     } finally {
       cleanup(context);
+      collectiveExecutor
+        .stop(Constant.TERMINATION_TIMEOUT);
       ConnPool.get().clean();
       client.stop();
       server.stop();
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2013-2017 Indiana University
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.iu.ccd;
+
+import edu.iu.harp.partition.Partition;
+import edu.iu.harp.resource.DoubleArray;
+import edu.iu.harp.schdynamic.DynamicScheduler;
+import edu.iu.harp.schdynamic.Task;
+import edu.iu.sgd.SGDUtil;
+import edu.iu.sgd.VRowCol;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare the CCD of CCDMPTask with the previous
+ * CCD, which walked the partition lists for
+ * every row and gathered the factors twice per
+ * dimension, on a random matrix of the Netflix
+ * shape (480189 rows, 17770 columns, 100480507
+ * ratings) scaled by the given factor. Both run
+ * the row updates of the mapper on the same data
+ * with the DynamicScheduler, and the updated W
+ * is checked to be the same.
+ */
+public class CCDBenchmark {
+
+  private static final int NETFLIX_ROWS = 480189;
+  private static final int NETFLIX_COLS = 17770;
+  private static final long NETFLIX_RATINGS =
+    100480507L;
+
+  public static void main(String[] args)
+    throws Exception {
+    if (args.length < 4) {
+      System.err
+        .println("Usage: edu.iu.ccd.CCDBenchmark "
+          + "<scale> <num of dimensions> "
+          + "<num of threads> <num of iterations>");
+      System.exit(-1);
+    }
+    double scale = Double.parseDouble(args[0]);
+    int numDims = Integer.parseInt(args[1]);
+    int numThreads = Integer.parseInt(args[2]);
+    int numIterations = Integer.parseInt(args[3]);
+    int numRows =
+      (int) Math.max(1, NETFLIX_ROWS * scale);
+    int numCols = NETFLIX_COLS;
+    int numVPerRow = (int) Math
+      .max(1, NETFLIX_RATINGS / NETFLIX_ROWS);
+    Random random = new Random(0);
+    // Rows with random columns, split as in
+    // the mapper
+    int numSplits = Math.max(numThreads * 4, 1);
+    List<VRowCol>[] splits = new List[numSplits];
+    for (int i = 0; i < numSplits; i++) {
+      splits[i] = new LinkedList<>();
+    }
+    long numV = 0L;
+    for (int i = 0; i < numRows; i++) {
+      VRowCol row = new VRowCol();
+      row.id = i;
+      row.numV =
+        1 + random.nextInt(2 * numVPerRow - 1);
+      row.ids = new int[row.numV];
+      row.v = new double[row.numV];
+      row.m1 = new double[row.numV];
+      for (int j = 0; j < row.numV; j++) {
+        row.ids[j] = random.nextInt(numCols);
+        row.v[j] = 1 + random.nextInt(5);
+      }
+      splits[i % numSplits].add(row);
+      numV += row.numV;
+    }
+    double oneOverSqrtR = 1.0 / Math.sqrt(numDims);
+    double[][] w = new double[numDims][numRows];
+    double[][] h = new double[numDims][numCols];
+    for (int t = 0; t < numDims; t++) {
+      SGDUtil.randomize(random, w[t], numRows,
+        oneOverSqrtR);
+      SGDUtil.randomize(random, h[t], numCols,
+        oneOverSqrtR);
+    }
+    System.out.println("Rows " + numRows
+      + ", columns " + numCols + ", ratings "
+      + numV + ", dimensions " + numDims
+      + ", threads " + numThreads);
+    List<Partition<DoubleArray>> hList =
+      createModelList(h);
+    // Each run starts from the same W
+    double[][] legacyW = copyModel(w);
+    double[][] newW = copyModel(w);
+    List<LegacyCCDTask> legacyTasks =
+      new LinkedList<>();
+    List<CCDMPTask> tasks = new LinkedList<>();
+    for (int i = 0; i < numThreads; i++) {
+      LegacyCCDTask legacyTask =
+        new LegacyCCDTask(0.001);
+      legacyTask.setWHPartitionLists(
+        createModelList(legacyW), hList);
+      legacyTasks.add(legacyTask);
+      CCDMPTask task = new CCDMPTask(0.001);
+      task.useRow(true);
+      task.setWHPartitionLists(
+        createModelList(newW), hList);
+      tasks.add(task);
+    }
+    long numUpdates = numV * numDims;
+    run("Previous CCD",
+      new DynamicScheduler<>(legacyTasks), splits,
+      numIterations, numUpdates);
+    run("Fused CCD", new DynamicScheduler<>(tasks),
+      splits, numIterations, numUpdates);
+    double maxDiff = 0.0;
+    for (int t = 0; t < numDims; t++) {
+      for (int i = 0; i < numRows; i++) {
+        maxDiff = Math.max(maxDiff,
+          Math.abs(legacyW[t][i] - newW[t][i]));
+      }
+    }
+    System.out.println("Max difference of W "
+      + maxDiff);
+  }
+
+  private static double[][] copyModel(
+    double[][] model) {
+    double[][] copy = new double[model.length][];
+    for (int t = 0; t < model.length; t++) {
+      copy[t] = model[t].clone();
+    }
+    return copy;
+  }
+
+  private static List<Partition<DoubleArray>>
+    createModelList(double[][] model) {
+    List<Partition<DoubleArray>> list =
+      new LinkedList<>();
+    for (int t = 0; t < model.length; t++) {
+      list.add(new Partition<>(t, new DoubleArray(
+        model[t], 0, model[t].length)));
+    }
+    return list;
+  }
+
+  private static <T extends Task<List<VRowCol>, Object>> void
+    run(String name,
+      DynamicScheduler<List<VRowCol>, Object, T> compute,
+      List<VRowCol>[] splits, int numIterations,
+      long numUpdates) {
+    // Each run starts from the same residual
+    for (List<VRowCol> split : splits) {
+      for (VRowCol row : split) {
+        System.arraycopy(row.v, 0, row.m1, 0,
+          row.numV);
+      }
+    }
+    compute.start();
+    long time = 0L;
+    for (int i = 0; i < numIterations; i++) {
+      long start = System.nanoTime();
+      compute.submitAll(splits);
+      while (compute.hasOutput()) {
+        compute.waitForOutput();
+      }
+      time += System.nanoTime() - start;
+    }
+    compute.stop();
+    double seconds = time / 1e9;
+    System.out.println(name + ": "
+      + (seconds / numIterations)
+      + " s per iteration, "
+      + (numUpdates * numIterations / seconds
+        / 1e6)
+      + " M updates/s");
+  }
+
+  /**
+   * The CCD before the fused loops
+   */
+  private static class LegacyCCDTask
+    implements Task<List<VRowCol>, Object> {
+    private final double lambda;
+    private List<Partition<DoubleArray>> wPartitions;
+    private List<Partition<DoubleArray>> hPartitions;
+
+    LegacyCCDTask(double lambda) {
+      this.lambda = lambda;
+    }
+
+    void setWHPartitionLists(
+      List<Partition<DoubleArray>> wPartitions,
+      List<Partition<DoubleArray>> hPartitions) {
+      this.wPartitions = wPartitions;
+      this.hPartitions = hPartitions;
+    }
+
+    @Override
+    public Object run(List<VRowCol> vList)
+      throws Exception {
+      for (VRowCol row : vList) {
+        Iterator<Partition<DoubleArray>> wIterator =
+          wPartitions.iterator();
+        Iterator<Partition<DoubleArray>> hIterator =
+          hPartitions.iterator();
+        while (wIterator.hasNext()
+          && hIterator.hasNext()) {
+          double[] wr =
+            wIterator.next().get().get();
+          double[] hr =
+            hIterator.next().get().get();
+          double wt = wr[row.id];
+          double up = 0.0;
+          double down = lambda * row.numV;
+          for (int j = 0; j < row.numV; j++) {
+            double ht = hr[row.ids[j]];
+            up += ((row.m1[j] + wt * ht) * ht);
+            down += (ht * ht);
+          }
+          double zStar = up / down;
+          double delta = zStar - wt;
+          for (int j = 0; j < row.numV; j++) {
+            row.m1[j] -= (delta * hr[row.ids[j]]);
+          }
+          wr[row.id] = zStar;
+        }
+      }
+      return null;
+    }
+  }
+}
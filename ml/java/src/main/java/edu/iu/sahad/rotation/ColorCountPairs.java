@@ -1,26 +1,28 @@
 package edu.iu.sahad.rotation;
 
 import edu.iu.harp.keyval.Value;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 
 public class ColorCountPairs  extends Value {
 	protected static final Log LOG = LogFactory
 			    .getLog(ColorCountPairs.class);
 	
-	private ArrayList<Integer> colors;
-	private ArrayList<Double> counts;	
+	private IntArrayList colors;
+	private DoubleArrayList counts;
 	// the data structure is (color0, count0) (color1, count1) ...
+	// colors and counts are kept in two primitive arrays,
+	// no entry is boxed
 	
 	public ColorCountPairs(){
-		colors = new ArrayList<>();
-		counts = new ArrayList<>();
+		colors = new IntArrayList();
+		counts = new DoubleArrayList();
 	}
 	
 	public void addAPair(int color, double count){
@@ -31,35 +33,32 @@ public class ColorCountPairs  extends Value {
 		return this.colors.size();
 	}
 	
-	public ArrayList<Integer> getColors() {
+	public IntArrayList getColors() {
 		return colors;
 	}
 
-	public void setColors(ArrayList<Integer> colors) {
+	public void setColors(IntArrayList colors) {
 		this.colors = colors;
 	}
 
-	public ArrayList<Double> getCounts() {
+	public DoubleArrayList getCounts() {
 		return counts;
 	}
 
-	public void setCounts(ArrayList<Double> counts) {
+	public void setCounts(DoubleArrayList counts) {
 		this.counts = counts;
 	}
 
 	public void copyTo(Value value){
-		ArrayList<Integer> othercolors = ((ColorCountPairs) value).getColors();
-		ArrayList<Double> othercounts = ((ColorCountPairs) value).getCounts();
-
-		for(int i=0; i<this.colors.size(); i++){
-			othercolors.add(this.colors.get(i));
-			othercounts.add(this.counts.get(i));
-		}
+		IntArrayList othercolors = ((ColorCountPairs) value).getColors();
+		DoubleArrayList othercounts = ((ColorCountPairs) value).getCounts();
+		int size = this.colors.size();
+		othercolors.addElements(othercolors.size(), this.colors.elements(), 0, size);
+		othercounts.addElements(othercounts.size(), this.counts.elements(), 0, size);
 	}
 	
 	@Override
 	public int getNumWriteBytes() {
-		// TODO Auto-generated method stub
 		// int type takes 4 bytes; double type takes 8 bytes
 		// size = 4;  arraylist consists of int(4) and double(8)
 		return 4 + this.colors.size() * 12;
@@ -67,26 +66,32 @@ public class ColorCountPairs  extends Value {
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		// TODO Auto-generated method stub
-		 out.writeInt(this.colors.size());
-		 for(int i=0; i<this.colors.size(); i++) {
-		      out.writeInt(this.colors.get(i));
-		      out.writeDouble(this.counts.get(i));
-		   }
+		int size = this.colors.size();
+		int[] colorArr = this.colors.elements();
+		double[] countArr = this.counts.elements();
+		out.writeInt(size);
+		for(int i=0; i<size; i++) {
+			out.writeInt(colorArr[i]);
+			out.writeDouble(countArr[i]);
+		}
 	}
 
 	@Override
 	public void read(DataInput in) throws IOException {
-		// TODO Auto-generated method stub
 		int size = in.readInt();
-	    for (int i = 0; i < size; i++) {
-	      this.colors.add(in.readInt());
-	      this.counts.add(in.readDouble());
-	    }
+		int start = this.colors.size();
+		// grow once and fill the arrays in place
+		this.colors.size(start + size);
+		this.counts.size(start + size);
+		int[] colorArr = this.colors.elements();
+		double[] countArr = this.counts.elements();
+		for (int i = start; i < start + size; i++) {
+			colorArr[i] = in.readInt();
+			countArr[i] = in.readDouble();
+		}
 	}
 	@Override
 	public void clear() {
-		// TODO Auto-generated method stub
 		this.colors.clear();
 		this.counts.clear();
 	}
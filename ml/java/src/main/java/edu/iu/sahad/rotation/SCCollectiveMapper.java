@@ -281,7 +281,7 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 					 this.logMemUsage();
 					 
 					 //get the aggregate result and then compute the final result
-					 double finalCount=localCountTable.getVal(key).getCounts().get(0);
+					 double finalCount=localCountTable.getVal(key).getCounts().getDouble(0);
 					 finalCount /= isom;
 					 finalCount /= SCUtils.Prob(numColor, sizeTemplate);
 					 
@@ -317,7 +317,7 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 		for(int  parID: subMatchingTable.getPartitionIDs()){
 			ColorCountPairs ccp = subMatchingTable.getVal(parID);
 			for(int i = 0; i< ccp.getCounts().size(); i++){
-				count +=  ccp.getCounts().get(i);
+				count +=  ccp.getCounts().getDouble(i);
 			}
 		}
 		return count;
@@ -392,12 +392,12 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 				//compute the new result using these two valuepairlist
 				for(int j = 0; j < activeValuelist.getColors().size(); j++){
 
-					int activeColor =activeValuelist.getColors().get(j);
-		            double activeCount = activeValuelist.getCounts().get(j);
+					int activeColor =activeValuelist.getColors().getInt(j);
+		            double activeCount = activeValuelist.getCounts().getDouble(j);
 					for(int k = 0; k < passiveValuelist.getColors().size(); k++){
 
-						 int passiveColor =  passiveValuelist.getColors().get(k);
-		                 double passiveCount =passiveValuelist.getCounts().get(k);
+						 int passiveColor =  passiveValuelist.getColors().getInt(k);
+		                 double passiveCount =passiveValuelist.getCounts().getDouble(k);
 		              //  LOG.info("color:"+activeColor +":"+activeCount+":"+passiveColor+":"+passiveCount);
 		                 if ((activeColor & passiveColor) == 0)
 		                  // color set intersection is empty
@@ -723,7 +723,7 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 			 ColorCountPairs ccp = par.get().getVal(key);
 			 System.out.print(key+"\t");
 			 for(int i = 0; i<ccp.getColors().size(); i++)
-				 System.out.print(ccp.getColors().get(i)+","+ccp.getCounts().get(i)+",");
+				 System.out.print(ccp.getColors().getInt(i)+","+ccp.getCounts().getDouble(i)+",");
 			 System.out.println();
 		}
 	}
@@ -45,11 +45,11 @@ public class SubMatchingTask implements Task<Partition<ColorCountPairsKVPartitio
 			//compute the new result using these two valuepairlist
 			for(int j = 0; j < activeValuelist.getColors().size(); j++){
 
-				int activeColor =activeValuelist.getColors().get(j);
-				double activeCount = activeValuelist.getCounts().get(j);
+				int activeColor =activeValuelist.getColors().getInt(j);
+				double activeCount = activeValuelist.getCounts().getDouble(j);
 				for(int k =0; k < passiveValuelist.getColors().size(); k++){
-					int passiveColor =  passiveValuelist.getColors().get(k);
-					double passiveCount =passiveValuelist.getCounts().get(k);
+					int passiveColor =  passiveValuelist.getColors().getInt(k);
+					double passiveCount =passiveValuelist.getCounts().getDouble(k);
 					//System.out.println("key:"+key+", neighbor"+neighbor+"; color:"+activeColor +":"+activeCount+":"+passiveColor+":"+passiveCount);
 					if ((activeColor & passiveColor) == 0)
 		                  // color set intersection is empty
@@ -17,6 +17,8 @@ public class ColorCountPairs  extends Value {
 	private IntArrayList colors;
 	private LongArrayList counts;
 	// the data structure is (color0, count0) (color1, count1) ...
+	// colors and counts are kept in two primitive arrays,
+	// no entry is boxed
 	
 	public ColorCountPairs(){
 		colors = new IntArrayList();
@@ -50,16 +52,13 @@ public class ColorCountPairs  extends Value {
 	public void copyTo(Value value){
 		IntArrayList othercolors = ((ColorCountPairs) value).getColors();
 		LongArrayList othercounts = ((ColorCountPairs) value).getCounts();
-
-		for(int i=0; i<this.colors.size(); i++){
-			othercolors.add(this.colors.getInt(i));
-			othercounts.add(this.counts.getLong(i));
-		}
+		int size = this.colors.size();
+		othercolors.addElements(othercolors.size(), this.colors.elements(), 0, size);
+		othercounts.addElements(othercounts.size(), this.counts.elements(), 0, size);
 	}
 	
 	@Override
 	public int getNumWriteBytes() {
-		// TODO Auto-generated method stub
 		// int type takes 4 bytes; long type takes 8 bytes
 		// size = 4;  arraylist consists of int(4) and long(8)
 		return 4 + this.colors.size() * 12;
@@ -67,26 +66,32 @@ public class ColorCountPairs  extends Value {
 
 	@Override
 	public void write(DataOutput out) throws IOException {
-		// TODO Auto-generated method stub
-		 out.writeInt(this.colors.size());
-		 for(int i=0; i<this.colors.size(); i++) {
-		      out.writeInt(this.colors.getInt(i));
-		      out.writeLong(this.counts.getLong(i));
-		   }
+		int size = this.colors.size();
+		int[] colorArr = this.colors.elements();
+		long[] countArr = this.counts.elements();
+		out.writeInt(size);
+		for(int i=0; i<size; i++) {
+			out.writeInt(colorArr[i]);
+			out.writeLong(countArr[i]);
+		}
 	}
 
 	@Override
 	public void read(DataInput in) throws IOException {
-		// TODO Auto-generated method stub
 		int size = in.readInt();
-	    for (int i = 0; i < size; i++) {
-	      this.colors.add(in.readInt());
-	      this.counts.add(in.readLong());
-	    }
+		int start = this.colors.size();
+		// grow once and fill the arrays in place
+		this.colors.size(start + size);
+		this.counts.size(start + size);
+		int[] colorArr = this.colors.elements();
+		long[] countArr = this.counts.elements();
+		for (int i = start; i < start + size; i++) {
+			colorArr[i] = in.readInt();
+			countArr[i] = in.readLong();
+		}
 	}
 	@Override
 	public void clear() {
-		// TODO Auto-generated method stub
 		this.colors.clear();
 		this.counts.clear();
 	}
@@ -1,28 +1,52 @@
 package edu.iu.sahad.rotation2;
 import edu.iu.harp.keyval.ValCombiner;
 import edu.iu.harp.keyval.ValStatus;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 
 public class ColorCountPairsCombiner extends ValCombiner<ColorCountPairs> {
 
+	// with more colors, the colors of curVal are looked up
+	// in a map instead of a scan
+	private static final int MAX_SCAN_SIZE = 16;
+
 	@Override
 	public ValStatus combine(ColorCountPairs curVal, ColorCountPairs newVal) {
-		boolean flag=false;// curVal doesn't exists the same color 
-		for(int j = 0; j<newVal.getColors().size();j++){
-			flag = false;
-			for(int i=0; i<curVal.getColors().size(); i++){
-				if(curVal.getColors().get(i) ==  newVal.getColors().get(j)){
-					curVal.getCounts().set(i, curVal.getCounts().get(i) + newVal.getCounts().get(j));
-					flag = true;
-					break;
+		int curSize = curVal.getSize();
+		int newSize = newVal.getSize();
+		int[] newColors = newVal.getColors().elements();
+		long[] newCounts = newVal.getCounts().elements();
+		Int2IntOpenHashMap colorIndex = null;
+		if (curSize + newSize > MAX_SCAN_SIZE) {
+			colorIndex = new Int2IntOpenHashMap(curSize + newSize);
+			colorIndex.defaultReturnValue(-1);
+			int[] curColors = curVal.getColors().elements();
+			for (int i = 0; i < curSize; i++) {
+				colorIndex.put(curColors[i], i);
+			}
+		}
+		for(int j = 0; j<newSize;j++){
+			int index = -1;// curVal doesn't exists the same color
+			if (colorIndex != null) {
+				index = colorIndex.get(newColors[j]);
+			} else {
+				int[] curColors = curVal.getColors().elements();
+				for(int i=0; i<curVal.getSize(); i++){
+					if(curColors[i] == newColors[j]){
+						index = i;
+						break;
+					}
 				}
 			}
-			
-			if(flag == false){
-				curVal.getColors().add(newVal.getColors().get(j));
-				curVal.getCounts().add(newVal.getCounts().get(j));
+			if(index >= 0){
+				curVal.getCounts().elements()[index] += newCounts[j];
+			} else {
+				if (colorIndex != null) {
+					colorIndex.put(newColors[j], curVal.getSize());
+				}
+				curVal.addAPair(newColors[j], newCounts[j]);
 			}
 		}
 		
 		return ValStatus.COMBINED;
 	}
-}
\ No newline at end of file
+}
@@ -242,7 +242,7 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 					 this.logMemUsage();
 
 					 //get the aggregate result and then compute the final result
-					 long finalCount=localCountTable.getVal(key).getCounts().get(0);
+					 long finalCount=localCountTable.getVal(key).getCounts().getLong(0);
 					 finalCount /= isom;
 					 finalCount /= SCUtils.Prob(numColor, sizeTemplate);
 
@@ -705,7 +705,7 @@ public class SCCollectiveMapper  extends CollectiveMapper<String, String, Object
 			 ColorCountPairs ccp = par.get().getVal(key);
 			 System.out.print(key+"\t");
 			 for(int i = 0; i<ccp.getColors().size(); i++)
-				 System.out.print(ccp.getColors().get(i)+","+ccp.getCounts().get(i)+",");
+				 System.out.print(ccp.getColors().getInt(i)+","+ccp.getCounts().getLong(i)+",");
 			 System.out.println();
 		}
 	}